@@ -130,14 +130,20 @@ final class CacheLoaders {
     Collection<FileDescriptor> getFileDescriptors(
         SetMultimap<String, CachedDescriptorSet> protoFileToDescriptor, SoyInputCache cache)
         throws DescriptorValidationException {
-      if (fileNameToDescriptors.size() == protosByFileName.size()) {
+      // Building descriptors mutates this set and the sets it depends on, which may be shared by
+      // concurrent compiles when the cache outlives a single compile. Use a single global lock
+      // since the descriptors are only built once per cached set.
+      synchronized (CachedDescriptorSet.class) {
+        if (fileNameToDescriptors.size() == protosByFileName.size()) {
+          return fileNameToDescriptors.values();
+        }
+        // we are missing some descriptors, iterate over everything to make sure they are
+        // populated.
+        for (FileDescriptorProto fileProto : protosByFileName.values()) {
+          buildDescriptor(fileProto, protoFileToDescriptor, cache);
+        }
         return fileNameToDescriptors.values();
       }
-      // we are missing some descriptors, iterate over everything to make sure they are populated.
-      for (FileDescriptorProto fileProto : protosByFileName.values()) {
-        buildDescriptor(fileProto, protoFileToDescriptor, cache);
-      }
-      return fileNameToDescriptors.values();
     }
 
     private FileDescriptor buildDescriptor(
@@ -0,0 +1,295 @@
+/*
+ * Copyright 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.template.soy;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.SetMultimap;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteSource;
+import com.google.template.soy.base.SourceFilePath;
+import com.google.template.soy.base.internal.AbstractSoyFileSupplier;
+import com.google.template.soy.base.internal.SoyFileSupplier;
+import com.google.template.soy.shared.SoyAstCache;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * A {@link SoyInputCache} that keeps inputs for as long as their contents don't change.
+ *
+ * <p>Every read hashes the file (and everything it declared a dependency on) and evicts stale
+ * entries before consulting the cache, so it is safe to share a single instance across many
+ * compiles in a long lived process, such as the {@link SoyCompilerWorker}. Soy sources are
+ * versioned by their content hash so the {@link SoyAstCache} can reuse parsed files as well.
+ *
+ * <p>The cache holds at most {@code maxEntries} files, and as many parsed Soy files, evicting the
+ * least recently used ones first. Evicting a file also evicts the files that depend on it.
+ *
+ * <p>This class is thread safe.
+ */
+final class ContentHashSoyInputCache implements SoyInputCache {
+  private static final class CacheEntry {
+    final HashCode hash;
+    final Map<CacheLoader<?>, Object> values = new LinkedHashMap<>();
+
+    CacheEntry(HashCode hash) {
+      this.hash = hash;
+    }
+  }
+
+  /** A pending {@link CacheLoader#onEvict} call, run after the lock has been released. */
+  private static final class Eviction<T> {
+    final CacheLoader<T> loader;
+    final T value;
+
+    Eviction(CacheLoader<T> loader, T value) {
+      this.loader = loader;
+      this.value = value;
+    }
+
+    void run() throws IOException {
+      loader.onEvict(value);
+    }
+  }
+
+  /** The default maximum number of files to keep, which comfortably covers most compiles. */
+  static final int DEFAULT_MAX_ENTRIES = 10_000;
+
+  private final SoyAstCache astCache = new SoyAstCache();
+  private final int maxEntries;
+
+  /** The cached files, from least to most recently used. */
+  @GuardedBy("this")
+  private final Map<File, CacheEntry> entries =
+      new LinkedHashMap<>(16, 0.75f, /* accessOrder= */ true);
+
+  /** The Soy files that may be in the {@link #astCache}, from least to most recently used. */
+  @GuardedBy("this")
+  private final Map<SourceFilePath, Boolean> parsedFiles =
+      new LinkedHashMap<>(16, 0.75f, /* accessOrder= */ true);
+
+  /** Maps a file to the files it depends on. */
+  @GuardedBy("this")
+  private final SetMultimap<File, File> dependencies = HashMultimap.create();
+
+  /** Maps a file to the files that depend on it. */
+  @GuardedBy("this")
+  private final SetMultimap<File, File> dependents = HashMultimap.create();
+
+  ContentHashSoyInputCache() {
+    this(DEFAULT_MAX_ENTRIES);
+  }
+
+  ContentHashSoyInputCache(int maxEntries) {
+    checkArgument(maxEntries > 0, "maxEntries must be positive: %s", maxEntries);
+    this.maxEntries = maxEntries;
+  }
+
+  @Override
+  public <T> T read(File file, CacheLoader<T> loader, SoyCompilerFileReader reader)
+      throws IOException {
+    // Hash outside of the lock so concurrent compiles don't serialize on file IO.
+    Map<File, HashCode> hashes = new HashMap<>();
+    for (File f : transitiveDependencies(file)) {
+      hashes.put(f, reader.read(f).hash(Hashing.sha256()));
+    }
+    HashCode hash = hashes.get(file);
+    List<Eviction<?>> evictions = new ArrayList<>();
+    T value;
+    synchronized (this) {
+      for (Map.Entry<File, HashCode> entry : hashes.entrySet()) {
+        CacheEntry cacheEntry = entries.get(entry.getKey());
+        if (cacheEntry != null && !cacheEntry.hash.equals(entry.getValue())) {
+          evict(entry.getKey(), evictions);
+        }
+      }
+      CacheEntry cacheEntry = entries.get(file);
+      @SuppressWarnings("unchecked") // values are always stored with their loader
+      T cached = cacheEntry == null ? null : (T) cacheEntry.values.get(loader);
+      value = cached;
+    }
+    runEvictions(evictions);
+    if (value != null) {
+      return value;
+    }
+    value = loader.read(file, reader, this);
+    synchronized (this) {
+      CacheEntry cacheEntry = entries.computeIfAbsent(file, f -> new CacheEntry(hash));
+      if (!cacheEntry.hash.equals(hash)) {
+        // The file changed while we were reading it and another thread already cached the newer
+        // version, just hand back what we read without caching it.
+        evictions.add(new Eviction<>(loader, value));
+      } else {
+        @SuppressWarnings("unchecked") // values are always stored with their loader
+        T existing = (T) cacheEntry.values.putIfAbsent(loader, value);
+        if (existing != null) {
+          // Another thread won the race, prefer its value so all callers share one instance.
+          evictions.add(new Eviction<>(loader, value));
+          value = existing;
+        }
+      }
+      while (entries.size() > maxEntries) {
+        evict(entries.keySet().iterator().next(), evictions);
+      }
+    }
+    runEvictions(evictions);
+    return value;
+  }
+
+  @Override
+  public synchronized void declareDependency(File file, File dependency) {
+    dependencies.put(file, dependency);
+    dependents.put(dependency, file);
+  }
+
+  @Override
+  public SoyAstCache astCache() {
+    return astCache;
+  }
+
+  @Override
+  public SoyFileSupplier createFileSupplier(
+      File file, SourceFilePath pathToUse, SoyCompilerFileReader reader)
+      throws FileNotFoundException {
+    synchronized (this) {
+      parsedFiles.put(pathToUse, true);
+      if (parsedFiles.size() > maxEntries) {
+        Iterator<SourceFilePath> leastRecentlyUsed = parsedFiles.keySet().iterator();
+        astCache.evict(leastRecentlyUsed.next());
+        leastRecentlyUsed.remove();
+      }
+    }
+    return new ContentHashedSoyFileSupplier(reader.read(file), pathToUse);
+  }
+
+  private synchronized ImmutableList<File> transitiveDependencies(File file) {
+    Set<File> seen = new HashSet<>();
+    Deque<File> worklist = new ArrayDeque<>();
+    worklist.add(file);
+    while (!worklist.isEmpty()) {
+      File next = worklist.remove();
+      if (seen.add(next)) {
+        worklist.addAll(dependencies.get(next));
+      }
+    }
+    return ImmutableList.copyOf(seen);
+  }
+
+  /** Removes the file and everything that depends on it from the cache. */
+  @GuardedBy("this")
+  private void evict(File file, List<Eviction<?>> evictions) {
+    CacheEntry entry = entries.remove(file);
+    if (entry != null) {
+      for (Map.Entry<CacheLoader<?>, Object> value : entry.values.entrySet()) {
+        evictions.add(newEviction(value.getKey(), value.getValue()));
+      }
+    }
+    // The dependencies will be declared again when the file is reloaded.
+    for (File dependency : dependencies.removeAll(file)) {
+      dependents.remove(dependency, file);
+    }
+    for (File dependent : ImmutableList.copyOf(dependents.get(file))) {
+      evict(dependent, evictions);
+    }
+  }
+
+  @SuppressWarnings("unchecked") // values are always stored with their loader
+  private static <T> Eviction<T> newEviction(CacheLoader<T> loader, Object value) {
+    return new Eviction<>(loader, (T) value);
+  }
+
+  private static void runEvictions(List<Eviction<?>> evictions) throws IOException {
+    for (Eviction<?> eviction : evictions) {
+      eviction.run();
+    }
+    evictions.clear();
+  }
+
+  /**
+   * A {@link SoyFileSupplier} that is versioned by the hash of its contents.
+   *
+   * <p>The contents are read once so the version always describes the text that gets parsed.
+   */
+  private static final class ContentHashedSoyFileSupplier extends AbstractSoyFileSupplier {
+    private final ByteSource source;
+
+    @GuardedBy("this")
+    private ByteSource contents;
+
+    ContentHashedSoyFileSupplier(ByteSource source, SourceFilePath filePath) {
+      super(filePath);
+      this.source = source;
+    }
+
+    private synchronized ByteSource contents() throws IOException {
+      if (contents == null) {
+        contents = ByteSource.wrap(source.read());
+      }
+      return contents;
+    }
+
+    @Override
+    public Reader open() throws IOException {
+      return contents().asCharSource(UTF_8).openStream();
+    }
+
+    @Override
+    public Version getVersion() {
+      try {
+        return new HashVersion(contents().hash(Hashing.sha256()));
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  private static final class HashVersion implements SoyFileSupplier.Version {
+    private final HashCode hash;
+
+    HashVersion(HashCode hash) {
+      this.hash = hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof HashVersion && ((HashVersion) o).hash.equals(hash);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash.hashCode();
+    }
+  }
+}
@@ -22,10 +22,10 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Ascii;
 import com.google.common.base.Joiner;
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.ListMultimap;
-import com.google.common.collect.MultimapBuilder;
 import com.google.common.io.MoreFiles;
 import com.google.template.soy.base.SourceFilePath;
 import com.google.template.soy.shared.internal.MainEntryPointUtils;
@@ -34,8 +34,11 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 import javax.annotation.Nullable;
 import org.kohsuke.args4j.Option;
 
@@ -113,34 +116,61 @@ final class PerInputOutputFiles {
               "Expected to generate %d code chunk(s), got %d",
               srcs.size(), outFileContents.size()));
     }
+    outFileContents.forEach(fileWriter(srcs, locale));
+  }
 
-    ListMultimap<Path, String> outputPathToContents =
-        MultimapBuilder.linkedHashKeys().arrayListValues().build();
-    for (int i = 0; i < srcs.size(); i++) {
-      outputPathToContents.put(getOutputPath(srcs.get(i), locale), outFileContents.get(i));
+  /**
+   * Returns a consumer that accepts the generated code for each of {@code srcs}, in order, and
+   * writes each output file as soon as the code for all the sources that map to it has been
+   * accepted. This lets callers write files while the rest are still being generated.
+   */
+  Consumer<String> fileWriter(List<File> srcs, @Nullable String locale) {
+    List<Path> outputPaths = new ArrayList<>(srcs.size());
+    Map<Path, Integer> chunksPerPath = new HashMap<>();
+    for (File src : srcs) {
+      Path outputPath = getOutputPath(src, locale);
+      outputPaths.add(outputPath);
+      chunksPerPath.merge(outputPath, 1, Integer::sum);
     }
-    for (Path outputPath : outputPathToContents.keySet()) {
-      if (outputPath.getParent() != null) {
-        outputPath.getParent().toFile().mkdirs();
-      }
-      try {
-        if (fileJoiner.isPresent()) {
-          // Having multiple input files map to the same output file is only possible with the
-          // --outputPathFormat flag
-          MoreFiles.asCharSink(outputPath, UTF_8)
-              .write(fileJoiner.get().join(outputPathToContents.get(outputPath)));
-        } else {
-          checkState(
-              outputPathToContents.get(outputPath).size() == 1,
-              "A file joiner must be specified if multiple sources will map to a single output"
-                  + " file");
-          MoreFiles.asCharSink(outputPath, UTF_8)
-              .write(Iterables.getOnlyElement(outputPathToContents.get(outputPath)));
+    // Having multiple input files map to the same output file is only possible with the
+    // --outputPathFormat flag
+    checkState(
+        fileJoiner.isPresent() || chunksPerPath.values().stream().allMatch(n -> n == 1),
+        "A file joiner must be specified if multiple sources will map to a single output file");
+    ListMultimap<Path, String> pendingContents = ArrayListMultimap.create();
+    return new Consumer<String>() {
+      int nextIndex = 0;
+
+      @Override
+      public void accept(String contents) {
+        if (nextIndex == outputPaths.size()) {
+          throw new AssertionError(
+              String.format(
+                  "Expected to generate %d code chunk(s), got more", outputPaths.size()));
+        }
+        Path outputPath = outputPaths.get(nextIndex++);
+        pendingContents.put(outputPath, contents);
+        List<String> chunks = pendingContents.get(outputPath);
+        if (chunks.size() == chunksPerPath.get(outputPath)) {
+          writeFile(
+              outputPath,
+              fileJoiner.isPresent()
+                  ? fileJoiner.get().join(chunks)
+                  : Iterables.getOnlyElement(chunks));
+          pendingContents.removeAll(outputPath);
         }
-
-      } catch (IOException ioe) {
-        throw new CommandLineError("Failed to write: " + outputPath + ": " + ioe.getMessage(), ioe);
       }
+    };
+  }
+
+  private static void writeFile(Path outputPath, String contents) {
+    if (outputPath.getParent() != null) {
+      outputPath.getParent().toFile().mkdirs();
+    }
+    try {
+      MoreFiles.asCharSink(outputPath, UTF_8).write(contents);
+    } catch (IOException ioe) {
+      throw new CommandLineError("Failed to write: " + outputPath + ": " + ioe.getMessage(), ioe);
     }
   }
 
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.template.soy;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
+import javax.annotation.Nullable;
+
+/**
+ * Runs a Soy compiler as a long lived worker process.
+ *
+ * <p>When started with {@code --persistent_worker} the compiler reads length-delimited {@code
+ * WorkRequest} messages from stdin and writes a length-delimited {@code WorkResponse} to stdout for
+ * each one, following the Bazel persistent worker protocol. Requests are handled concurrently, each
+ * by a fresh compiler instance, but all of them share a single {@link PluginLoader} and a {@link
+ * ContentHashSoyInputCache}, so unchanged sources, dependency headers and proto descriptors that
+ * are in regular use are only read once.
+ *
+ * <p>Compiles can't be interrupted, but cancel requests are still honored: a request that is
+ * cancelled before it completes gets a response with {@code was_cancelled} set right away, and its
+ * compile result, if any, is discarded.
+ */
+final class SoyCompilerWorker {
+  static final String PERSISTENT_WORKER_FLAG = "--persistent_worker";
+
+  /** Creates a compiler instance for a single request. */
+  interface CompilerFactory {
+    AbstractSoyCompiler create(PluginLoader loader, SoyInputCache cache);
+  }
+
+  /**
+   * Runs the compiler once with the given arguments, or as a persistent worker if {@link
+   * #PERSISTENT_WORKER_FLAG} is passed.
+   */
+  static void runMain(String[] args, CompilerFactory factory) {
+    if (!Arrays.asList(args).contains(PERSISTENT_WORKER_FLAG)) {
+      factory.create(new PluginLoader.Default(), SoyInputCache.DEFAULT).runMain(args);
+      return;
+    }
+    PrintStream stdout = System.out;
+    // Responses are written to stdout, so anything else printed there would corrupt them.
+    System.setOut(System.err);
+    ExecutorService executor =
+        Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    int status = 0;
+    try {
+      new SoyCompilerWorker(
+              factory, new PluginLoader.Default(), new ContentHashSoyInputCache(), executor)
+          .run(System.in, stdout);
+    } catch (IOException e) {
+      e.printStackTrace(System.err);
+      status = 1;
+    } finally {
+      executor.shutdown();
+    }
+    System.exit(status);
+  }
+
+  private final CompilerFactory factory;
+  private final PluginLoader pluginLoader;
+  private final SoyInputCache cache;
+  private final ExecutorService executor;
+
+  /** The ids of the requests that haven't been responded to yet. */
+  private final Set<Integer> pending = ConcurrentHashMap.newKeySet();
+
+  SoyCompilerWorker(
+      CompilerFactory factory,
+      PluginLoader pluginLoader,
+      SoyInputCache cache,
+      ExecutorService executor) {
+    this.factory = factory;
+    this.pluginLoader = pluginLoader;
+    this.cache = cache;
+    this.executor = executor;
+  }
+
+  /**
+   * Handles requests from {@code in} until it is exhausted, and then waits for all outstanding
+   * requests to complete.
+   */
+  void run(InputStream in, OutputStream out) throws IOException {
+    // One party for the reading thread and one more for every request in flight.
+    Phaser inFlight = new Phaser(1);
+    WorkRequest request;
+    while ((request = WorkRequest.readDelimitedFrom(in)) != null) {
+      if (request.cancel) {
+        // Each request gets exactly one response, so cancelling a completed request is a no-op.
+        if (pending.remove(request.requestId)) {
+          writeResponse(out, WorkResponse.cancelled(request.requestId));
+        }
+        continue;
+      }
+      pending.add(request.requestId);
+      WorkRequest current = request;
+      inFlight.register();
+      executor.execute(
+          () -> {
+            try {
+              handle(current, out);
+            } finally {
+              inFlight.arriveAndDeregister();
+            }
+          });
+    }
+    inFlight.arriveAndAwaitAdvance();
+  }
+
+  private void handle(WorkRequest request, OutputStream out) {
+    if (!pending.contains(request.requestId)) {
+      // Cancelled before it started.
+      return;
+    }
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    int exitCode;
+    try (PrintStream err = new PrintStream(output, /* autoFlush= */ true, UTF_8.name())) {
+      exitCode =
+          factory.create(pluginLoader, cache).run(request.arguments.toArray(new String[0]), err);
+    } catch (IOException e) {
+      // Only thrown if UTF-8 is unsupported.
+      throw new AssertionError(e);
+    }
+    if (!pending.remove(request.requestId)) {
+      // Cancelled while compiling, the response has already been sent.
+      return;
+    }
+    try {
+      writeResponse(
+          out,
+          WorkResponse.completed(
+              request.requestId, exitCode, new String(output.toByteArray(), UTF_8)));
+    } catch (IOException e) {
+      // The client has gone away, there is nobody left to report to.
+      e.printStackTrace(System.err);
+    }
+  }
+
+  /** Writes a length-delimited {@code WorkResponse}. */
+  private static void writeResponse(OutputStream out, byte[] message) throws IOException {
+    // Responses complete in any order, so serialize writes to keep each one contiguous.
+    synchronized (out) {
+      CodedOutputStream delimited = CodedOutputStream.newInstance(out);
+      delimited.writeUInt32NoTag(message.length);
+      delimited.flush();
+      out.write(message);
+      out.flush();
+    }
+  }
+
+  /** The fields of a {@code WorkResponse} that the worker sets. */
+  static final class WorkResponse {
+    static final int EXIT_CODE_FIELD_NUMBER = 1;
+    static final int OUTPUT_FIELD_NUMBER = 2;
+    static final int REQUEST_ID_FIELD_NUMBER = 3;
+    static final int WAS_CANCELLED_FIELD_NUMBER = 4;
+
+    /** Encodes the response to a request that ran to completion. */
+    static byte[] completed(int requestId, int exitCode, String output) throws IOException {
+      ByteArrayOutputStream message = new ByteArrayOutputStream();
+      CodedOutputStream coded = CodedOutputStream.newInstance(message);
+      coded.writeInt32(EXIT_CODE_FIELD_NUMBER, exitCode);
+      coded.writeString(OUTPUT_FIELD_NUMBER, output);
+      coded.writeInt32(REQUEST_ID_FIELD_NUMBER, requestId);
+      coded.flush();
+      return message.toByteArray();
+    }
+
+    /** Encodes the response to a cancelled request. */
+    static byte[] cancelled(int requestId) throws IOException {
+      ByteArrayOutputStream message = new ByteArrayOutputStream();
+      CodedOutputStream coded = CodedOutputStream.newInstance(message);
+      coded.writeInt32(REQUEST_ID_FIELD_NUMBER, requestId);
+      coded.writeBool(WAS_CANCELLED_FIELD_NUMBER, true);
+      coded.flush();
+      return message.toByteArray();
+    }
+
+    private WorkResponse() {}
+  }
+
+  /** The fields of a {@code WorkRequest} that the worker understands. */
+  static final class WorkRequest {
+    static final int ARGUMENTS_FIELD_NUMBER = 1;
+    static final int REQUEST_ID_FIELD_NUMBER = 3;
+    static final int CANCEL_FIELD_NUMBER = 4;
+
+    final ImmutableList<String> arguments;
+    final int requestId;
+    final boolean cancel;
+
+    private WorkRequest(ImmutableList<String> arguments, int requestId, boolean cancel) {
+      this.arguments = arguments;
+      this.requestId = requestId;
+      this.cancel = cancel;
+    }
+
+    /** Reads a length-delimited request, or returns null at the end of the stream. */
+    @Nullable
+    static WorkRequest readDelimitedFrom(InputStream in) throws IOException {
+      int firstByte = in.read();
+      if (firstByte == -1) {
+        return null;
+      }
+      byte[] bytes = new byte[CodedInputStream.readRawVarint32(firstByte, in)];
+      ByteStreams.readFully(in, bytes);
+      CodedInputStream coded = CodedInputStream.newInstance(bytes);
+      ImmutableList.Builder<String> arguments = ImmutableList.builder();
+      int requestId = 0;
+      boolean cancel = false;
+      int tag;
+      while ((tag = coded.readTag()) != 0) {
+        switch (WireFormat.getTagFieldNumber(tag)) {
+          case ARGUMENTS_FIELD_NUMBER:
+            arguments.add(coded.readString());
+            break;
+          case REQUEST_ID_FIELD_NUMBER:
+            requestId = coded.readInt32();
+            break;
+          case CANCEL_FIELD_NUMBER:
+            cancel = coded.readBool();
+            break;
+          default:
+            // Inputs and the sandbox directory are not used by the compilers.
+            coded.skipField(tag);
+        }
+      }
+      return new WorkRequest(arguments.build(), requestId, cancel);
+    }
+  }
+}
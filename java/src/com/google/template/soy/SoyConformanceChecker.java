@@ -38,6 +38,13 @@ public final class SoyConformanceChecker extends AbstractSoyCompiler {
       handler = SoyCmdLineParser.FileListOptionHandler.class)
   private List<File> conformanceConfigs = new ArrayList<>();
 
+  @Option(
+      name = "--conformanceThreads",
+      usage =
+          "The number of threads to use to check files concurrently. Defaults to 1. Values"
+              + " greater than 1 require all custom conformance rules to be thread safe.")
+  private int conformanceThreads = 1;
+
   SoyConformanceChecker(PluginLoader loader, SoyInputCache cache) {
     super(loader, cache);
   }
@@ -53,12 +60,15 @@ public final class SoyConformanceChecker extends AbstractSoyCompiler {
     if (conformanceConfigs.isEmpty()) {
       exitWithError("Must set --conformanceConfig");
     }
+    if (conformanceThreads < 1) {
+      exitWithError("--conformanceThreads must be positive");
+    }
   }
 
   @Override
   protected void compile(SoyFileSet.Builder sfsBuilder) {
     ValidatedConformanceConfig conformanceConfig = parseConformanceConfig();
-    sfsBuilder.setConformanceConfig(conformanceConfig).build().checkConformance();
+    sfsBuilder.setConformanceConfig(conformanceConfig).build().checkConformance(conformanceThreads);
   }
 
   private ValidatedConformanceConfig parseConformanceConfig() {
@@ -62,6 +62,7 @@ import com.google.template.soy.logging.VeMetadataGenerator;
 import com.google.template.soy.msgs.SoyMsgBundle;
 import com.google.template.soy.msgs.SoyMsgBundleHandler;
 import com.google.template.soy.msgs.SoyMsgBundleHandler.OutputFileOptions;
+import com.google.template.soy.msgs.internal.ExternalMsgSorter;
 import com.google.template.soy.msgs.internal.ExtractMsgsVisitor;
 import com.google.template.soy.parseinfo.passes.GenerateParseInfoVisitor;
 import com.google.template.soy.passes.CheckTemplateHeaderVarsPass;
@@ -95,10 +96,12 @@ import com.google.template.soy.types.SoyTypeRegistryBuilder;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 import javax.annotation.Nullable;
 
@@ -773,8 +776,12 @@ public final class SoyFileSet {
         });
   }
 
-  /** A simple tool to enforce conformance and only conformance. */
-  void checkConformance() {
+  /**
+   * A simple tool to enforce conformance and only conformance.
+   *
+   * @param parallelism The number of threads to use to check files concurrently.
+   */
+  void checkConformance(int parallelism) {
     entryPointVoid(
         () ->
             // to check conformance we only need to run as much as it takes to execute the
@@ -786,6 +793,7 @@ public final class SoyFileSet {
                     .desugarHtmlAndStateNodes(false)
                     .optimize(false)
                     .addHtmlAttributesForDebugging(false)
+                    .setConformanceParallelism(parallelism)
                     // TODO(lukes): kill the pass continuation mechanism
                     .addPassContinuationRule(
                         SoyConformancePass.class, PassContinuationRule.STOP_AFTER_PASS)));
@@ -862,8 +870,56 @@ public final class SoyFileSet {
         });
   }
 
+  /**
+   * Extracts all messages from this Soy file set and streams them to an output sink, sorted by
+   * message id.
+   *
+   * <p>Unlike {@link #extractAndWriteMsgs}, neither the full set of extracted messages nor the
+   * output file is ever held in memory: files are extracted on up to {@code parallelism} threads,
+   * messages are spilled to sorted temporary files once more than {@code maxMsgsInMemory} are
+   * buffered, and the output is written as the sorted runs are merged. Nothing is written to
+   * {@code output} if merging messages reports errors.
+   *
+   * @param msgBundleHandler Handler to write the messages.
+   * @param options Options to configure how to write the extracted messages.
+   * @param output Where to write the extracted messages.
+   * @param parallelism The number of threads to extract messages on.
+   * @param maxMsgsInMemory The number of messages to buffer before spilling to disk.
+   * @throws IOException If there are errors writing to the output.
+   */
+  void extractAndStreamMsgs(
+      SoyMsgBundleHandler msgBundleHandler,
+      OutputFileOptions options,
+      ByteSink output,
+      int parallelism,
+      int maxMsgsInMemory)
+      throws IOException {
+    entryPointVoid(
+        () -> {
+          SoyFileSetNode soyTree = parseForExtractMsgs();
+          throwIfErrorsPresent();
+          try (ExternalMsgSorter sorter = new ExternalMsgSorter(maxMsgsInMemory, errorReporter)) {
+            ExtractMsgsVisitor.extractPerFile(
+                soyTree.getChildren(), parallelism, errorReporter, sorter);
+            throwIfErrorsPresent();
+            msgBundleHandler.streamExtractedMsgs(
+                sorter.sortedMsgs(), options, output, errorReporter);
+          } catch (IOException e) {
+            throw new RuntimeException(e);
+          }
+        });
+  }
+
   /** Performs the parsing and extraction logic. */
   private SoyMsgBundle doExtractMsgs() {
+    SoyFileSetNode soyTree = parseForExtractMsgs();
+    throwIfErrorsPresent();
+    SoyMsgBundle bundle = new ExtractMsgsVisitor(errorReporter).exec(soyTree);
+    throwIfErrorsPresent();
+    return bundle;
+  }
+
+  private SoyFileSetNode parseForExtractMsgs() {
     // extractMsgs disables a bunch of passes since it is typically not configured with things
     // like global definitions, type definitions, plugins, etc.
     SoyFileSetNode soyTree =
@@ -891,10 +947,7 @@ public final class SoyFileSet {
                 // can't resolve strict types
                 SoyTypeRegistry.DEFAULT_UNKNOWN)
             .fileSet();
-    throwIfErrorsPresent();
-    SoyMsgBundle bundle = new ExtractMsgsVisitor(errorReporter).exec(soyTree);
-    throwIfErrorsPresent();
-    return bundle;
+    return soyTree;
   }
 
   /**
@@ -975,7 +1028,7 @@ public final class SoyFileSet {
     return entryPoint(
         () -> {
           disallowExternalCalls();
-          ServerCompilationPrimitives primitives = compileForServerRendering();
+          ServerCompilationPrimitives primitives = compileForJbcSrc();
           throwIfErrorsPresent();
           return doCompileSoySauce(primitives, pluginInstances);
         });
@@ -989,13 +1042,35 @@ public final class SoyFileSet {
    * @throws SoyCompilationException If compilation fails.
    */
   void compileToJar(ByteSink jarTarget, Optional<ByteSink> srcJarTarget) {
+    compileToJar(jarTarget, srcJarTarget, BytecodeCompiler.JarOptions.defaults());
+  }
+
+  /**
+   * Compiles this Soy file set into a set of java classes implementing the {@link
+   * com.google.template.soy.jbcsrc.shared.CompiledTemplate} interface and writes them out to the
+   * given ByteSink as a JAR file.
+   *
+   * @param options Configures which templates are compiled and what is resolved at compile time.
+   *     Concurrent calls are also enabled by the {@code jbcsrc_concurrent_calls} experimental
+   *     feature.
+   * @throws SoyCompilationException If compilation fails.
+   */
+  void compileToJar(
+      ByteSink jarTarget, Optional<ByteSink> srcJarTarget, BytecodeCompiler.JarOptions options) {
+    BytecodeCompiler.JarOptions jarOptions =
+        concurrentCallsEnabled() ? options.toBuilder().setConcurrentCalls(true).build() : options;
     entryPointVoid(
         () -> {
           disallowExternalCalls();
-          ServerCompilationPrimitives primitives = compileForServerRendering();
+          ServerCompilationPrimitives primitives = compileForJbcSrc();
           try {
             BytecodeCompiler.compileToJar(
-                primitives.registry, primitives.soyTree, errorReporter, typeRegistry, jarTarget);
+                primitives.registry,
+                primitives.soyTree,
+                errorReporter,
+                typeRegistry,
+                jarTarget,
+                jarOptions);
             if (srcJarTarget.isPresent()) {
               BytecodeCompiler.writeSrcJar(
                   primitives.soyTree, soyFileSuppliers, srcJarTarget.get());
@@ -1011,18 +1086,30 @@ public final class SoyFileSet {
       ServerCompilationPrimitives primitives, Map<String, Supplier<Object>> pluginInstances) {
     Optional<CompiledTemplates> templates =
         BytecodeCompiler.compile(
-            primitives.registry, primitives.soyTree, errorReporter, soyFileSuppliers, typeRegistry);
+            primitives.registry,
+            primitives.soyTree,
+            errorReporter,
+            soyFileSuppliers,
+            typeRegistry,
+            concurrentCallsEnabled());
 
     throwIfErrorsPresent();
 
     return new SoySauceImpl(
         templates.get(),
-        scopedData.enterable(),
         soyFunctions,
         printDirectives,
         ImmutableMap.copyOf(pluginInstances));
   }
 
+  /**
+   * Whether runs of independent calls should be compiled so that they can render concurrently, see
+   * {@link BytecodeCompiler.JarOptions#concurrentCalls}.
+   */
+  private boolean concurrentCallsEnabled() {
+    return generalOptions.getExperimentalFeatures().contains("jbcsrc_concurrent_calls");
+  }
+
   /**
    * A tuple of the outputs of shared compiler passes that are needed to produce SoyTofu or
    * SoySauce.
@@ -1039,7 +1126,19 @@ public final class SoyFileSet {
 
   /** Runs common compiler logic shared by tofu and jbcsrc backends. */
   private ServerCompilationPrimitives compileForServerRendering() {
-    ParseResult result = parse();
+    return compileForServerRendering(passManagerBuilder());
+  }
+
+  /**
+   * Runs the server compiler logic for the jbcsrc backend, which additionally inlines calls to
+   * small private templates.
+   */
+  private ServerCompilationPrimitives compileForJbcSrc() {
+    return compileForServerRendering(passManagerBuilder().inlineTemplateCalls(true));
+  }
+
+  private ServerCompilationPrimitives compileForServerRendering(PassManager.Builder builder) {
+    ParseResult result = parse(builder);
     throwIfErrorsPresent();
 
     SoyFileSetNode soyTree = result.fileSet();
@@ -1086,7 +1185,23 @@ public final class SoyFileSet {
 
   List<String> compileToJsSrcInternal(
       SoyJsSrcOptions jsSrcOptions, @Nullable SoyMsgBundle msgBundle) {
-    return entryPoint(
+    List<String> jsFiles = new ArrayList<>();
+    compileToJsSrcInternal(jsSrcOptions, msgBundle, jsFiles::add);
+    return jsFiles;
+  }
+
+  /**
+   * Compiles this Soy file set into JS source code files, passing each file to {@code sink} in
+   * order.
+   *
+   * <p>The files are only passed to {@code sink} once all of them have been generated without
+   * errors, so a failed compile never produces partial output.
+   *
+   * @throws SoyCompilationException If compilation fails.
+   */
+  void compileToJsSrcInternal(
+      SoyJsSrcOptions jsSrcOptions, @Nullable SoyMsgBundle msgBundle, Consumer<String> sink) {
+    entryPointVoid(
         () -> {
           PassManager.Builder builder =
               passManagerBuilder().allowUnknownJsGlobals().desugarHtmlAndStateNodes(false);
@@ -1094,8 +1209,11 @@ public final class SoyFileSet {
           throwIfErrorsPresent();
           TemplateRegistry registry = result.registry();
           SoyFileSetNode fileSet = result.fileSet();
-          return new JsSrcMain(scopedData.enterable(), typeRegistry)
-              .genJsSrc(fileSet, registry, jsSrcOptions, msgBundle, errorReporter);
+          List<String> jsFiles = new ArrayList<>();
+          new JsSrcMain(scopedData.enterable(), typeRegistry)
+              .genJsSrc(fileSet, registry, jsSrcOptions, msgBundle, errorReporter, jsFiles::add);
+          throwIfErrorsPresent();
+          jsFiles.forEach(sink);
         });
   }
 
@@ -1109,14 +1227,34 @@ public final class SoyFileSet {
    * @throws SoyCompilationException If compilation fails.
    */
   List<String> compileToIncrementalDomSrcInternal(SoyIncrementalDomSrcOptions jsSrcOptions) {
-    return entryPoint(
+    List<String> jsFiles = new ArrayList<>();
+    compileToIncrementalDomSrcInternal(jsSrcOptions, jsFiles::add);
+    return jsFiles;
+  }
+
+  /**
+   * Compiles this Soy file set into iDOM source code files, passing each file to {@code sink} in
+   * order.
+   *
+   * <p>The files are only passed to {@code sink} once all of them have been generated without
+   * errors, so a failed compile never produces partial output.
+   *
+   * @throws SoyCompilationException If compilation fails.
+   */
+  void compileToIncrementalDomSrcInternal(
+      SoyIncrementalDomSrcOptions jsSrcOptions, Consumer<String> sink) {
+    entryPointVoid(
         () -> {
           // For incremental dom backend, we don't desugar HTML nodes since it requires HTML
           // context.
           ParseResult result = parse(passManagerBuilder().desugarHtmlAndStateNodes(false));
           throwIfErrorsPresent();
-          return new IncrementalDomSrcMain(scopedData.enterable(), typeRegistry)
-              .genJsSrc(result.fileSet(), result.registry(), jsSrcOptions, errorReporter);
+          List<String> jsFiles = new ArrayList<>();
+          new IncrementalDomSrcMain(scopedData.enterable(), typeRegistry)
+              .genJsSrc(
+                  result.fileSet(), result.registry(), jsSrcOptions, errorReporter, jsFiles::add);
+          throwIfErrorsPresent();
+          jsFiles.forEach(sink);
         });
   }
 
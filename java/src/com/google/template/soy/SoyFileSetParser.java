@@ -205,6 +205,7 @@ public abstract class SoyFileSetParser {
       SoyFileSupplier.Version version = fileSupplier.getVersion();
       SoyFileNode node = cache() != null ? cache().get(fileSupplier.getFilePath(), version) : null;
       if (node == null) {
+        ErrorReporter.Checkpoint checkpoint = errorReporter().checkpoint();
         node = parseSoyFileHelper(fileSupplier, fixedIdGenerator);
         // TODO(b/19269289): implement error recovery and keep on trucking in order to display
         // as many errors as possible. Currently, the later passes just spew NPEs if run on
@@ -216,7 +217,9 @@ public abstract class SoyFileSetParser {
         // Run passes that are considered part of initial parsing.
         passManager().runParsePasses(node, fixedIdGenerator);
         // Run passes that check the tree.
-        if (cache() != null) {
+        // Don't cache files with errors, otherwise the errors would not be reported the next time
+        // the file is compiled.
+        if (cache() != null && !errorReporter().errorsSince(checkpoint)) {
           cache().put(fileSupplier.getFilePath(), version, node);
         }
       }
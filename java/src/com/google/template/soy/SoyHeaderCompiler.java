@@ -244,6 +244,6 @@ final class SoyHeaderCompiler extends AbstractSoyCompiler {
    * @throws IOException If there are problems reading the input files or writing the output file.
    */
   public static void main(final String[] args) throws IOException {
-    new SoyHeaderCompiler().runMain(args);
+    SoyCompilerWorker.runMain(args, SoyHeaderCompiler::new);
   }
 }
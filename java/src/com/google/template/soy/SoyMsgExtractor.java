@@ -77,6 +77,27 @@ public final class SoyMsgExtractor extends AbstractSoyCompiler {
   )
   private SoyMsgPlugin messagePlugin = new XliffMsgPlugin();
 
+  @Option(
+      name = "--streaming",
+      usage =
+          "Whether to extract messages in bounded memory. Messages are extracted file by file,"
+              + " spilled to sorted temporary files when there are too many to hold in memory, and"
+              + " written to the output sorted by message id rather than in source order.")
+  private boolean streaming = false;
+
+  @Option(
+      name = "--extractionThreads",
+      usage =
+          "The number of threads to extract messages on when --streaming is set (default 1).")
+  private int extractionThreads = 1;
+
+  @Option(
+      name = "--maxMsgsInMemory",
+      usage =
+          "The number of extracted messages to buffer before spilling them to a temporary file"
+              + " when --streaming is set (default 100000).")
+  private int maxMsgsInMemory = 100_000;
+
   /**
    * Extracts messages from a set of Soy files into an output messages file.
    *
@@ -103,7 +124,22 @@ public final class SoyMsgExtractor extends AbstractSoyCompiler {
     if (targetLocaleString.length() > 0) {
       options.setTargetLocaleString(targetLocaleString);
     }
-    sfs.extractAndWriteMsgs(
-        new SoyMsgBundleHandler(messagePlugin), options, Files.asByteSink(outputFile));
+    if (streaming) {
+      if (extractionThreads < 1) {
+        exitWithError("--extractionThreads must be positive, got " + extractionThreads);
+      }
+      if (maxMsgsInMemory < 1) {
+        exitWithError("--maxMsgsInMemory must be positive, got " + maxMsgsInMemory);
+      }
+      sfs.extractAndStreamMsgs(
+          new SoyMsgBundleHandler(messagePlugin),
+          options,
+          Files.asByteSink(outputFile),
+          extractionThreads,
+          maxMsgsInMemory);
+    } else {
+      sfs.extractAndWriteMsgs(
+          new SoyMsgBundleHandler(messagePlugin), options, Files.asByteSink(outputFile));
+    }
   }
 }
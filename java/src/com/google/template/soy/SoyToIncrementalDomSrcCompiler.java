@@ -19,6 +19,7 @@ package com.google.template.soy;
 import com.google.common.collect.ImmutableList;
 import com.google.template.soy.incrementaldomsrc.SoyIncrementalDomSrcOptions;
 import java.io.IOException;
+import org.kohsuke.args4j.Option;
 
 /**
  * Executable for compiling a set of Soy files into corresponding Incremental DOM source files. This
@@ -33,6 +34,14 @@ public final class SoyToIncrementalDomSrcCompiler extends AbstractSoyCompiler {
 
   private final PerInputOutputFiles outputFiles =
       new PerInputOutputFiles("idom.soy.js", PerInputOutputFiles.JS_JOINER);
+
+  @Option(
+      name = "--codegenThreads",
+      usage =
+          "The number of threads to use to generate files concurrently. Defaults to 1. The"
+              + " output does not depend on this value.")
+  private int codegenThreads = 1;
+
   /**
    * Compiles a set of Soy files into corresponding Incremental DOM source files.
    *
@@ -52,6 +61,9 @@ public final class SoyToIncrementalDomSrcCompiler extends AbstractSoyCompiler {
   @Override
   protected void validateFlags() {
     outputFiles.validateFlags();
+    if (codegenThreads < 1) {
+      exitWithError("--codegenThreads must be positive");
+    }
   }
 
   @Override
@@ -62,9 +74,9 @@ public final class SoyToIncrementalDomSrcCompiler extends AbstractSoyCompiler {
   @Override
   protected void compile(SoyFileSet.Builder sfsBuilder) throws IOException {
     SoyFileSet sfs = sfsBuilder.build();
-    outputFiles.writeFiles(
-        srcs,
-        sfs.compileToIncrementalDomSrcInternal(new SoyIncrementalDomSrcOptions()),
-        /*locale=*/ null);
+    SoyIncrementalDomSrcOptions options = new SoyIncrementalDomSrcOptions();
+    options.setCodegenThreads(codegenThreads);
+    sfs.compileToIncrementalDomSrcInternal(
+        options, outputFiles.fileWriter(srcs, /*locale=*/ null));
   }
 }
@@ -16,10 +16,18 @@
 
 package com.google.template.soy;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.common.io.ByteSink;
 import com.google.common.io.Files;
+import com.google.template.soy.jbcsrc.BytecodeCompiler;
+import com.google.template.soy.msgs.SoyMsgBundle;
+import com.google.template.soy.msgs.SoyMsgBundleHandler;
+import com.google.template.soy.msgs.SoyMsgPlugin;
+import com.google.template.soy.xliffmsgplugin.XliffMsgPlugin;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import org.kohsuke.args4j.Option;
 
@@ -44,6 +52,36 @@ public final class SoyToJbcSrcCompiler extends AbstractSoyCompiler {
   )
   private File outputSrcJar;
 
+  @Option(
+    name = "--messageFile",
+    required = false,
+    usage =
+        "[Optional] The translated messages file to compile into the templates. If set, the JAR"
+            + " is specialized for the locale of the messages file and any message bundle passed"
+            + " at render time is only used for its locale. Messages missing from the file fall"
+            + " back to the source text."
+  )
+  private File messageFile;
+
+  @Option(
+    name = "--messagePlugin",
+    usage =
+        "Specifies the full class name of a SoyMsgPlugin used to read --messageFile. If not"
+            + " specified, the default is com.google.template.soy.xliffmsgplugin.XliffMsgPlugin. "
+  )
+  private SoyMsgPlugin messagePlugin = new XliffMsgPlugin();
+
+  @Option(
+    name = "--entryPoints",
+    required = false,
+    usage =
+        "[Optional] The full names of the templates that will be rendered from the JAR. If set,"
+            + " only these templates and the templates they transitively call are compiled."
+            + " Calls to deltemplates conservatively include every implementation.",
+    handler = SoyCmdLineParser.StringListOptionHandler.class
+  )
+  private List<String> entryPoints = new ArrayList<>();
+
   SoyToJbcSrcCompiler(PluginLoader loader, SoyInputCache cache) {
     super(loader, cache);
   }
@@ -56,7 +94,19 @@ public final class SoyToJbcSrcCompiler extends AbstractSoyCompiler {
     if (outputSrcJar != null) {
       srcJarSink = Optional.of(Files.asByteSink(outputSrcJar));
     }
-    compile(sfsBuilder.build(), Files.asByteSink(output), srcJarSink);
+    SoyMsgBundle msgBundle = null;
+    if (messageFile != null) {
+      msgBundle = new SoyMsgBundleHandler(messagePlugin).createFromFile(messageFile);
+      if (msgBundle.getLocaleString() == null) {
+        throw new IOException("Error opening or reading message file " + messageFile);
+      }
+    }
+    BytecodeCompiler.JarOptions.Builder options =
+        BytecodeCompiler.JarOptions.builder().setMsgBundle(msgBundle);
+    if (!entryPoints.isEmpty()) {
+      options.setEntryPoints(ImmutableSet.copyOf(entryPoints));
+    }
+    compile(sfsBuilder.build(), Files.asByteSink(output), srcJarSink, options.build());
   }
 
   /**
@@ -70,12 +120,28 @@ public final class SoyToJbcSrcCompiler extends AbstractSoyCompiler {
    */
   public static void compile(SoyFileSet sfs, ByteSink jarTarget, Optional<ByteSink> srcJarTarget)
       throws IOException {
+    compile(sfs, jarTarget, srcJarTarget, BytecodeCompiler.JarOptions.defaults());
+  }
+
+  /**
+   * Compile a set of Soy files into corresponding Java class files in a jar, configured by {@code
+   * options}.
+   *
+   * @param options Configures which templates are compiled and whether messages are translated at
+   *     compile time.
+   */
+  public static void compile(
+      SoyFileSet sfs,
+      ByteSink jarTarget,
+      Optional<ByteSink> srcJarTarget,
+      BytecodeCompiler.JarOptions options)
+      throws IOException {
     // compileToJar disallows external calls so we don't need to enforce the external call
     // requirement here.
-    sfs.compileToJar(jarTarget, srcJarTarget);
+    sfs.compileToJar(jarTarget, srcJarTarget, options);
   }
 
   public static void main(final String[] args) {
-    new SoyToJbcSrcCompiler().runMain(args);
+    SoyCompilerWorker.runMain(args, SoyToJbcSrcCompiler::new);
   }
 }
@@ -126,6 +126,13 @@ public final class SoyToJsSrcCompiler extends AbstractSoyCompiler {
   )
   private SoyMsgPlugin messagePlugin = new XliffMsgPlugin();
 
+  @Option(
+      name = "--codegenThreads",
+      usage =
+          "The number of threads to use to generate files concurrently. Defaults to 1. The"
+              + " output does not depend on this value.")
+  private int codegenThreads = 1;
+
   private final PerInputOutputFiles outputFiles =
       new PerInputOutputFiles("soy.js", PerInputOutputFiles.JS_JOINER);
 
@@ -142,12 +149,15 @@ public final class SoyToJsSrcCompiler extends AbstractSoyCompiler {
    * @throws IOException If there are problems reading the input files or writing the output file.
    */
   public static void main(final String[] args) throws IOException {
-    new SoyToJsSrcCompiler().runMain(args);
+    SoyCompilerWorker.runMain(args, SoyToJsSrcCompiler::new);
   }
 
   @Override
   protected void validateFlags() {
     outputFiles.validateFlags();
+    if (codegenThreads < 1) {
+      exitWithError("--codegenThreads must be positive");
+    }
   }
 
   @Override
@@ -167,6 +177,7 @@ public final class SoyToJsSrcCompiler extends AbstractSoyCompiler {
     jsSrcOptions.setGoogMsgsAreExternal(googMsgsAreExternal);
     jsSrcOptions.setBidiGlobalDir(bidiGlobalDir);
     jsSrcOptions.setUseGoogIsRtlForBidiGlobalDir(useGoogIsRtlForBidiGlobalDir);
+    jsSrcOptions.setCodegenThreads(codegenThreads);
 
     // Compile.
     boolean generateLocalizedJs = !locales.isEmpty();
@@ -186,11 +197,12 @@ public final class SoyToJsSrcCompiler extends AbstractSoyCompiler {
             throw new IOException("Error opening or reading message file " + msgFilePath);
           }
         }
-        outputFiles.writeFiles(srcs, sfs.compileToJsSrcInternal(jsSrcOptions, msgBundle), locale);
+        sfs.compileToJsSrcInternal(
+            jsSrcOptions, msgBundle, outputFiles.fileWriter(srcs, locale));
       }
     } else {
-      outputFiles.writeFiles(
-          srcs, sfs.compileToJsSrcInternal(jsSrcOptions, /*msgBundle=*/ null), /*locale=*/ null);
+      sfs.compileToJsSrcInternal(
+          jsSrcOptions, /*msgBundle=*/ null, outputFiles.fileWriter(srcs, /*locale=*/ null));
     }
   }
 }
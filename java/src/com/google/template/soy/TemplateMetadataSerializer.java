@@ -205,48 +205,70 @@ public final class TemplateMetadataSerializer {
         throw new AssertionError();
     }
 
-    SoyTypeP returnTypeP = templateProto.getTemplateType().getReturnType();
-    SoyType returnType = fromProto(returnTypeP, typeRegistry, filePath, errorReporter);
-
-    TemplateContentKind templateContentKind =
-        returnTypeP.getHtml().getIsElement()
-            ? ElementContentKind.valueOf(returnTypeP.getHtml().getTagName())
-            : TemplateContentKind.fromSanitizedContentKind(
-                returnType instanceof StringType
-                    ? SanitizedContentKind.TEXT
-                    : ((SanitizedType) returnType).getContentKind());
-
+    // Only the template name, kind and location are needed to index a dependency template, so the
+    // rest of its signature is only decoded the first time a compilation actually references it.
+    // Until then the metadata is compared by its proto.
     return builder
         .setTemplateName(templateName)
         .setSoyFileKind(fileKind)
         .setDelPackageName(delPackageName)
         .setHtmlElement(templateProto.getHtmlElement())
         .setSoyElement(templateProto.getSoyElement())
-        .setTemplateType(
-            TemplateType.builder()
-                .setTemplateKind(templateKind)
-                .setContentKind(templateContentKind)
-                .setStrictHtml(templateProto.getStrictHtml())
-                .setAllowExtraAttributes(returnTypeP.getHtml().getAllowExtraAttributes())
-                .setReservedAttributes(
-                    ImmutableSet.copyOf(returnTypeP.getHtml().getReservedAttributesList()))
-                .setDataAllCallSituations(
-                    callSituationsFromProto(templateProto.getDataAllCallSituationList(), fileProto))
-                .setParameters(
-                    parametersFromProto(
-                        templateProto.getTemplateType().getParameterList(),
-                        typeRegistry,
-                        filePath,
-                        errorReporter))
-                .setIdentifierForDebugging(templateName)
-                .setInferredType(true)
-                .build())
+        .setTemplateTypeLazily(
+            templateKind,
+            templateProto,
+            () ->
+                templateTypeFromProto(
+                    fileProto,
+                    templateProto,
+                    templateKind,
+                    templateName,
+                    typeRegistry,
+                    filePath,
+                    errorReporter))
         .setSourceLocation(new SourceLocation(SourceFilePath.create(fileProto.getFilePath())))
         .setVisibility(VISIBILITY_CONVERTER.convert(templateProto.getVisibility()))
         .setComponent(templateProto.getComponent())
         .build();
   }
 
+  private static TemplateType templateTypeFromProto(
+      SoyFileP fileProto,
+      TemplateMetadataP templateProto,
+      TemplateType.TemplateKind templateKind,
+      String templateName,
+      SoyTypeRegistry typeRegistry,
+      SourceFilePath filePath,
+      ErrorReporter errorReporter) {
+    SoyTypeP returnTypeP = templateProto.getTemplateType().getReturnType();
+    SoyType returnType = fromProto(returnTypeP, typeRegistry, filePath, errorReporter);
+    TemplateContentKind templateContentKind =
+        returnTypeP.getHtml().getIsElement()
+            ? ElementContentKind.valueOf(returnTypeP.getHtml().getTagName())
+            : TemplateContentKind.fromSanitizedContentKind(
+                returnType instanceof StringType
+                    ? SanitizedContentKind.TEXT
+                    : ((SanitizedType) returnType).getContentKind());
+    return TemplateType.builder()
+        .setTemplateKind(templateKind)
+        .setContentKind(templateContentKind)
+        .setStrictHtml(templateProto.getStrictHtml())
+        .setAllowExtraAttributes(returnTypeP.getHtml().getAllowExtraAttributes())
+        .setReservedAttributes(
+            ImmutableSet.copyOf(returnTypeP.getHtml().getReservedAttributesList()))
+        .setDataAllCallSituations(
+            callSituationsFromProto(templateProto.getDataAllCallSituationList(), fileProto))
+        .setParameters(
+            parametersFromProto(
+                templateProto.getTemplateType().getParameterList(),
+                typeRegistry,
+                filePath,
+                errorReporter))
+        .setIdentifierForDebugging(templateName)
+        .setInferredType(true)
+        .build();
+  }
+
   private static ImmutableList<Parameter> parametersFromProto(
       List<ParameterP> parameterList,
       SoyTypeRegistry typeRegistry,
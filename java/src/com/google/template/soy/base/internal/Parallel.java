@@ -0,0 +1,82 @@
+/*
+ * Copyright 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.template.soy.base.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/** Utilities for running independent pieces of compiler work on several threads. */
+public final class Parallel {
+
+  /** A function that may throw a checked exception. */
+  @FunctionalInterface
+  public interface ThrowingFunction<T, R, E extends Exception> {
+    R apply(T input) throws E;
+  }
+
+  /**
+   * Applies {@code fn} to each of the {@code items}, using up to {@code threads} threads, and
+   * returns the results in the order of the items.
+   *
+   * <p>With a single thread or a single item everything runs on the calling thread. Otherwise a
+   * pool is created for the call and shut down before it returns. If {@code fn} throws, the
+   * exception for the first failing item is rethrown as is.
+   */
+  public static <T, R, E extends Exception> ImmutableList<R> parallelMap(
+      List<T> items, int threads, ThrowingFunction<? super T, ? extends R, E> fn) throws E {
+    checkArgument(threads > 0, "threads must be positive, got %s", threads);
+    ImmutableList.Builder<R> results = ImmutableList.builderWithExpectedSize(items.size());
+    if (threads == 1 || items.size() <= 1) {
+      for (T item : items) {
+        results.add(fn.apply(item));
+      }
+      return results.build();
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, items.size()));
+    try {
+      List<Future<R>> futures = new ArrayList<>(items.size());
+      for (T item : items) {
+        futures.add(executor.submit(() -> fn.apply(item)));
+      }
+      for (Future<R> future : futures) {
+        results.add(future.get());
+      }
+      return results.build();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    } catch (ExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      // fn can only throw unchecked exceptions or an E.
+      @SuppressWarnings("unchecked")
+      E cause = (E) e.getCause();
+      throw cause;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private Parallel() {}
+}
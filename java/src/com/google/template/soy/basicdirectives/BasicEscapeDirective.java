@@ -56,7 +56,7 @@ public abstract class BasicEscapeDirective
     implements SoyJavaPrintDirective,
         SoyLibraryAssistedJsSrcPrintDirective,
         SoyPySrcPrintDirective,
-        SoyJbcSrcPrintDirective {
+        SoyJbcSrcPrintDirective.Escaper {
 
   private static final ImmutableSet<Integer> VALID_ARGS_SIZES = ImmutableSet.of(0);
 
@@ -129,6 +129,11 @@ public abstract class BasicEscapeDirective
     return SoyExpression.forString(javaSanitizer(SoyValue.class).invoke(value));
   }
 
+  @Override
+  public MethodRef escaperMethod() {
+    return javaSanitizer(String.class);
+  }
+
   @VisibleForTesting
   synchronized MethodRef javaSanitizer(Class<?> paramType) {
     if (javaSanitizerByParamType == null) {
@@ -49,6 +49,11 @@ abstract class Rule<T extends Node> {
     this.error = Preconditions.checkNotNull(error);
   }
 
+  /** Returns the node type this rule applies to. */
+  final Class<T> getNodeClass() {
+    return nodeClass;
+  }
+
   /**
    * Checks whether the given node is relevant for this rule, and, if so, checks whether the node
    * conforms to the rule. Intended to be called only from {@link SoyConformance}.
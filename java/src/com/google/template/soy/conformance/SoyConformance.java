@@ -16,11 +16,20 @@
 
 package com.google.template.soy.conformance;
 
+import static com.google.template.soy.base.internal.Parallel.parallelMap;
+
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.primitives.Ints;
 import com.google.template.soy.base.SourceFilePath;
+import com.google.template.soy.basetree.Node;
+import com.google.template.soy.basetree.NodeVisitor;
 import com.google.template.soy.error.ErrorReporter;
+import com.google.template.soy.exprtree.ExprNode;
 import com.google.template.soy.soytree.SoyFileNode;
+import com.google.template.soy.soytree.SoyNode;
 import com.google.template.soy.soytree.SoyTreeUtils;
+import com.google.template.soy.soytree.SoyTreeUtils.VisitDirective;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -28,6 +37,9 @@ import java.util.List;
  * Class for collecting Soy conformance violations. Performs a single pass over the AST, aggregating
  * results from different conformance rules.
  *
+ * <p>Rules are indexed by the node type they apply to, so each node is only dispatched to the rules
+ * that could possibly match it.
+ *
  * @author brndn@google.com (Brendan Linn)
  */
 public final class SoyConformance {
@@ -41,8 +53,31 @@ public final class SoyConformance {
     return new SoyConformance(conformanceConfig.getRules());
   }
 
+  private static final NodeVisitor<Node, VisitDirective> VISIT_ALL = n -> VisitDirective.CONTINUE;
+
+  private static final NodeVisitor<Node, VisitDirective> VISIT_NON_EXPR =
+      n -> n instanceof ExprNode ? VisitDirective.SKIP_CHILDREN : VisitDirective.CONTINUE;
+
   private final ImmutableList<RuleWithExemptions> rules;
 
+  /**
+   * For each concrete node class, the indices into {@link #rules} of the rules whose node type is a
+   * supertype of it.
+   */
+  private final ClassValue<int[]> rulesByNodeClass =
+      new ClassValue<int[]>() {
+        @Override
+        protected int[] computeValue(Class<?> nodeClass) {
+          List<Integer> indices = new ArrayList<>();
+          for (int i = 0; i < rules.size(); i++) {
+            if (rules.get(i).getRule().getNodeClass().isAssignableFrom(nodeClass)) {
+              indices.add(i);
+            }
+          }
+          return Ints.toArray(indices);
+        }
+      };
+
   SoyConformance(ImmutableList<RuleWithExemptions> rules) {
     this.rules = rules;
   }
@@ -50,22 +85,53 @@ public final class SoyConformance {
   /** Performs the overall check. */
   public void check(SoyFileNode file, final ErrorReporter errorReporter) {
     // first filter to only the rules that need to be checked for this file.
-    final List<Rule<?>> rulesForFile = new ArrayList<>(rules.size());
+    boolean[] enabledRules = new boolean[rules.size()];
+    boolean anyEnabled = false;
+    boolean exploreExpressions = false;
     SourceFilePath filePath = file.getFilePath();
-    for (RuleWithExemptions rule : rules) {
+    for (int i = 0; i < rules.size(); i++) {
+      RuleWithExemptions rule = rules.get(i);
       if (rule.shouldCheckConformanceFor(filePath.path())) {
-        rulesForFile.add(rule.getRule());
+        enabledRules[i] = true;
+        anyEnabled = true;
+        // Only rules on SoyNode subtypes are guaranteed to not match anything in an expression.
+        exploreExpressions |= !SoyNode.class.isAssignableFrom(rule.getRule().getNodeClass());
       }
     }
-    if (rulesForFile.isEmpty()) {
+    if (!anyEnabled) {
       return;
     }
-    SoyTreeUtils.allNodes(file)
+    SoyTreeUtils.allNodes(file, exploreExpressions ? VISIT_ALL : VISIT_NON_EXPR)
         .forEach(
             node -> {
-              for (Rule<?> rule : rulesForFile) {
-                rule.checkConformance(node, errorReporter);
+              for (int index : rulesByNodeClass.get(node.getClass())) {
+                if (enabledRules[index]) {
+                  rules.get(index).getRule().checkConformance(node, errorReporter);
+                }
               }
             });
   }
+
+  /**
+   * Checks all the given files, using up to {@code parallelism} threads.
+   *
+   * <p>Errors are reported to {@code errorReporter} in file order regardless of the parallelism, so
+   * the output is deterministic. Using more than one thread requires all configured rules
+   * (including custom rules) to be thread safe; the builtin rules are all stateless.
+   */
+  public void check(
+      ImmutableList<SoyFileNode> files, ErrorReporter errorReporter, int parallelism) {
+    ImmutableList<ErrorReporter> fileReporters =
+        parallelMap(
+            files,
+            parallelism,
+            file -> {
+              ErrorReporter fileReporter = ErrorReporter.create(ImmutableMap.of());
+              check(file, fileReporter);
+              return fileReporter;
+            });
+    for (ErrorReporter fileReporter : fileReporters) {
+      fileReporter.copyTo(errorReporter);
+    }
+  }
 }
@@ -30,6 +30,7 @@ import com.google.template.soy.jssrc.restricted.JsExpr;
 import com.google.template.soy.jssrc.restricted.SoyLibraryAssistedJsSrcPrintDirective;
 import com.google.template.soy.pysrc.restricted.PyExpr;
 import com.google.template.soy.pysrc.restricted.SoyPySrcPrintDirective;
+import com.google.template.soy.shared.internal.Sanitizers;
 import com.google.template.soy.shared.internal.ShortCircuitable;
 import com.google.template.soy.shared.restricted.SoyJavaPrintDirective;
 import com.google.template.soy.shared.restricted.SoyPurePrintDirective;
@@ -47,6 +48,7 @@ public class EscapeHtmlDirective
         SoyLibraryAssistedJsSrcPrintDirective,
         SoyPySrcPrintDirective,
         SoyJbcSrcPrintDirective.Streamable,
+        SoyJbcSrcPrintDirective.Escaper,
         ShortCircuitable {
 
   public static final String NAME = "|escapeHtml";
@@ -76,6 +78,8 @@ public class EscapeHtmlDirective
         MethodRef.create(CoreDirectivesRuntime.class, "escapeHtml", SoyValue.class).asNonNullable();
     static final MethodRef ESCAPE_HTML_STRING =
         MethodRef.create(CoreDirectivesRuntime.class, "escapeHtml", String.class).asNonNullable();
+    static final MethodRef SANITIZERS_ESCAPE_HTML =
+        MethodRef.create(Sanitizers.class, "escapeHtml", String.class).asNonNullable();
     static final MethodRef STREAMING_ESCAPE_HTML =
         MethodRef.create(
                 CoreDirectivesRuntime.class, "streamingEscapeHtml", LoggingAdvisingAppendable.class)
@@ -92,6 +96,11 @@ public class EscapeHtmlDirective
             : JbcSrcMethods.ESCAPE_HTML_STRING.invoke(value.coerceToString()));
   }
 
+  @Override
+  public MethodRef escaperMethod() {
+    return JbcSrcMethods.SANITIZERS_ESCAPE_HTML;
+  }
+
   @Override
   public AppendableAndOptions applyForJbcSrcStreaming(
       JbcSrcPluginContext context, Expression delegateAppendable, List<SoyExpression> args) {
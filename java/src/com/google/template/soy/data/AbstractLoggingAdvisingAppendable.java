@@ -68,6 +68,15 @@ public abstract class AbstractLoggingAdvisingAppendable extends LoggingAdvisingA
     return this;
   }
 
+  @Override
+  public final AbstractLoggingAdvisingAppendable appendRawText(String text, byte[] utf8)
+      throws IOException {
+    if (!isLogOnly()) {
+      doAppendRawText(text, utf8);
+    }
+    return this;
+  }
+
   /** Called whenever a logging function is being rendered. */
   @Override
   public final AbstractLoggingAdvisingAppendable appendLoggingFunctionInvocation(
@@ -116,6 +125,15 @@ public abstract class AbstractLoggingAdvisingAppendable extends LoggingAdvisingA
   @ForOverride
   protected abstract void doAppend(char c) throws IOException;
 
+  /**
+   * Appends static template text, {@code utf8} is its pre-encoded UTF-8 form. By default this just
+   * calls {@link #doAppend(CharSequence)}.
+   */
+  @ForOverride
+  protected void doAppendRawText(String text, byte[] utf8) throws IOException {
+    doAppend(text);
+  }
+
   @ForOverride
   protected abstract void doEnterLoggableElement(LogStatement statement);
 
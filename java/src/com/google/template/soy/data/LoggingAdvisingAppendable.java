@@ -73,6 +73,12 @@ public abstract class LoggingAdvisingAppendable implements AdvisingAppendable {
       super(delegate);
     }
 
+    @Override
+    public LoggingAdvisingAppendable appendRawText(String text, byte[] utf8) throws IOException {
+      delegate.appendRawText(text, utf8);
+      return this;
+    }
+
     @Override
     public LoggingAdvisingAppendable enterLoggableElement(LogStatement statement) {
       return this;
@@ -103,6 +109,17 @@ public abstract class LoggingAdvisingAppendable implements AdvisingAppendable {
   @Override
   public abstract LoggingAdvisingAppendable append(char c) throws IOException;
 
+  /**
+   * Appends static template text.
+   *
+   * <p>{@code utf8} is the UTF-8 encoding of {@code text}, precomputed by the compiler so that byte
+   * oriented output sinks can skip encoding it on every render. The array is shared and must not be
+   * modified. The default implementation just appends {@code text}.
+   */
+  public LoggingAdvisingAppendable appendRawText(String text, byte[] utf8) throws IOException {
+    return append(text);
+  }
+
   /** Called whenever a loggable element is entered. */
   public abstract LoggingAdvisingAppendable enterLoggableElement(LogStatement statement);
 
@@ -327,6 +344,19 @@ public abstract class LoggingAdvisingAppendable implements AdvisingAppendable {
       return value;
     }
 
+    /** Returns the number of chars of content appended so far. */
+    public int length() {
+      int length = delegate.length();
+      if (commands != null) {
+        for (Object o : commands) {
+          if (o instanceof String) {
+            length += ((String) o).length();
+          }
+        }
+      }
+      return length;
+    }
+
     public SoyValue getAsSoyValue() {
       // Null will happen for default empty deltemplates.
       return (getSanitizedContentKind() == ContentKind.TEXT || getSanitizedContentKind() == null)
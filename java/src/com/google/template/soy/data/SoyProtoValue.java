@@ -25,8 +25,10 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.errorprone.annotations.CheckReturnValue;
 import com.google.errorprone.annotations.concurrent.LazyInit;
+import com.google.protobuf.ByteString;
 import com.google.protobuf.Descriptors.Descriptor;
 import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor.JavaType;
 import com.google.protobuf.Message;
 import com.google.protobuf.TextFormat;
 import com.google.template.soy.data.restricted.NullData;
@@ -35,12 +37,19 @@ import com.google.template.soy.internal.proto.Field;
 import com.google.template.soy.internal.proto.JavaQualifiedNames;
 import com.google.template.soy.jbcsrc.shared.Names;
 import java.io.IOException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.util.Collection;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.annotation.Nullable;
 
 /**
  * Soy value that wraps a protocol buffer message object.
@@ -80,20 +89,37 @@ public final class SoyProtoValue extends SoyAbstractValue implements SoyLegacyOb
   private static final class FieldWithInterpreter extends Field {
     @LazyInit ProtoFieldInterpreter interpreter;
 
-    FieldWithInterpreter(FieldDescriptor fieldDesc) {
+    /** The generated message class that {@link #getter} applies to. */
+    private final Class<?> messageClass;
+
+    /** Calls the generated accessor for this field, or {@code null} to read it reflectively. */
+    @Nullable private final FieldGetter getter;
+
+    FieldWithInterpreter(FieldDescriptor fieldDesc, Class<?> messageClass) {
       super(fieldDesc);
+      this.messageClass = messageClass;
+      this.getter = findGetter(messageClass, fieldDesc);
     }
 
     private ProtoFieldInterpreter impl() {
       ProtoFieldInterpreter local = interpreter;
       if (local == null) {
         local = ProtoFieldInterpreter.create(getDescriptor());
+        interpreter = local;
       }
       return local;
     }
 
     public SoyValue interpretField(Message message) {
-      return impl().soyFromProto(message.getField(getDescriptor()));
+      return impl().soyFromProto(getFieldValue(message));
+    }
+
+    private Object getFieldValue(Message message) {
+      // The message may be a DynamicMessage, or a generated message from another classloader.
+      if (getter == null || message.getClass() != messageClass) {
+        return message.getField(getDescriptor());
+      }
+      return getter.get(message);
     }
 
     public void assignField(Message.Builder builder, SoyValue value) {
@@ -110,19 +136,110 @@ public final class SoyProtoValue extends SoyAbstractValue implements SoyLegacyOb
     }
   }
 
+  /** Reads a field of a generated message through its generated accessor. */
+  @FunctionalInterface
+  interface FieldGetter {
+    Object get(Message message);
+  }
+
+  /**
+   * Returns a getter that calls the generated {@code getFoo()} or {@code getFooList()} method for
+   * the field, or {@code null} if there is no suitable accessor.
+   *
+   * <p>The getter is spun with {@link LambdaMetafactory}, so each field gets a small class that
+   * calls its accessor directly. Unlike invoking a {@link MethodHandle} held in a field, which the
+   * JIT can't treat as a constant, this is an ordinary call that can be inlined.
+   *
+   * <p>{@link Message#getField} goes through the reflective field accessor table on every call,
+   * which dominates field access from Tofu and the {@link SoyValueConverter}. The generated
+   * accessors return the same values, with the same boxing, as the reflective API except for:
+   *
+   * <ul>
+   *   <li>extensions, which have no generated accessor,
+   *   <li>map fields, whose accessors return a {@code Map} rather than the list of entries that
+   *       the interpreters expect, and
+   *   <li>enum fields, whose accessors can't represent unknown values of open enums.
+   * </ul>
+   */
+  @Nullable
+  private static FieldGetter findGetter(Class<?> messageClass, FieldDescriptor field) {
+    if (field.isExtension() || field.isMapField() || field.getJavaType() == JavaType.ENUM) {
+      return null;
+    }
+    String name =
+        "get" + JavaQualifiedNames.getFieldName(field, true) + (field.isRepeated() ? "List" : "");
+    Method method;
+    try {
+      method = messageClass.getMethod(name);
+    } catch (NoSuchMethodException e) {
+      // protoc renames accessors that would conflict with other fields, just use reflection.
+      return null;
+    }
+    if (!hasExpectedReturnType(method, field)) {
+      return null;
+    }
+    try {
+      MethodType getType = MethodType.methodType(Object.class, Message.class);
+      return (FieldGetter)
+          LambdaMetafactory.metafactory(
+                  MethodHandles.lookup(),
+                  "get",
+                  MethodType.methodType(FieldGetter.class),
+                  getType,
+                  MethodHandles.publicLookup().unreflect(method),
+                  getType.changeParameterType(0, messageClass))
+              .getTarget()
+              .invokeExact();
+    } catch (Throwable t) {
+      // The accessor isn't usable from here, e.g. because the message class isn't public.
+      return null;
+    }
+  }
+
+  private static boolean hasExpectedReturnType(Method method, FieldDescriptor field) {
+    Class<?> returnType = method.getReturnType();
+    if (field.isRepeated()) {
+      return List.class.isAssignableFrom(returnType);
+    }
+    switch (field.getJavaType()) {
+      case INT:
+        return returnType == int.class;
+      case LONG:
+        return returnType == long.class;
+      case FLOAT:
+        return returnType == float.class;
+      case DOUBLE:
+        return returnType == double.class;
+      case BOOLEAN:
+        return returnType == boolean.class;
+      case STRING:
+        return returnType == String.class;
+      case BYTE_STRING:
+        return returnType == ByteString.class;
+      case MESSAGE:
+        return Message.class.isAssignableFrom(returnType);
+      case ENUM:
+        return false;
+    }
+    throw new AssertionError(field.getJavaType());
+  }
+
   private static final LoadingCache<Descriptor, ProtoClass> classCache =
       CacheBuilder.newBuilder()
           .weakKeys()
           .build(
               new CacheLoader<Descriptor, ProtoClass>() {
-                final Field.Factory<FieldWithInterpreter> factory = FieldWithInterpreter::new;
-
                 @Override
                 public ProtoClass load(Descriptor descriptor) throws Exception {
                   Set<FieldDescriptor> extensions = new LinkedHashSet<>();
+                  Message defaultInstance = getDefaultInstance(descriptor);
+                  Class<?> messageClass = defaultInstance.getClass();
                   return new ProtoClass(
-                      getDefaultInstance(descriptor),
-                      Field.getFieldsForType(descriptor, extensions, factory));
+                      defaultInstance,
+                      Field.getFieldsForType(
+                          descriptor,
+                          extensions,
+                          fieldDesc -> new FieldWithInterpreter(fieldDesc, messageClass)));
                 }
               });
 
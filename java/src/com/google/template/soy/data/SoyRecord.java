@@ -17,6 +17,7 @@
 package com.google.template.soy.data;
 
 import com.google.common.collect.ImmutableMap;
+import java.util.function.BiConsumer;
 import javax.annotation.ParametersAreNonnullByDefault;
 
 /**
@@ -56,4 +57,13 @@ public interface SoyRecord extends SoyValue {
 
   /** Returns a view of this object as a java map. */
   ImmutableMap<String, SoyValueProvider> recordAsMap();
+
+  /**
+   * Calls the given action with the name and provider of each field of this SoyRecord.
+   *
+   * <p>Unlike {@link #recordAsMap}, this doesn't copy the fields into a new map.
+   */
+  default void forEachField(BiConsumer<? super String, ? super SoyValueProvider> action) {
+    recordAsMap().forEach(action);
+  }
 }
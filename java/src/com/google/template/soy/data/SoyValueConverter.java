@@ -43,6 +43,8 @@ import com.google.protobuf.Message;
 import com.google.protobuf.ProtocolMessageEnum;
 import com.google.template.soy.data.internal.DictImpl;
 import com.google.template.soy.data.internal.EasyListImpl;
+import com.google.template.soy.data.internal.LazyProviderList;
+import com.google.template.soy.data.internal.LazyProviderMap;
 import com.google.template.soy.data.internal.ListImpl;
 import com.google.template.soy.data.internal.RuntimeMapTypeTracker;
 import com.google.template.soy.data.internal.SoyMapImpl;
@@ -130,19 +132,30 @@ public final class SoyValueConverter {
   // Creating.
 
   /**
-   * Creates a Soy dictionary from a Java string map. While this is O(n) in the map's shallow size,
-   * the Java values are converted into Soy values lazily and only once.
+   * Creates a Soy dictionary from a Java string map. The Java values are converted into Soy values
+   * lazily and only once.
+   *
+   * <p>An {@link ImmutableMap} is wrapped in O(1), and a value provider is only created for entries
+   * that are accessed. Any other map may change after this call, so it is copied, which is O(n) in
+   * the map's shallow size.
    */
   SoyDict newDictFromMap(Map<String, ?> javaStringMap) {
-    // Create a dictionary backed by a map which has eagerly converted each value into a lazy
-    // value provider. Specifically, the map iteration is done eagerly so that the lazy value
-    // provider can cache its value.
-    ImmutableMap.Builder<String, SoyValueProvider> builder = ImmutableMap.builder();
-    for (Map.Entry<String, ?> entry : javaStringMap.entrySet()) {
-      builder.put(entry.getKey(), convertLazy(entry.getValue()));
+    Map<String, SoyValueProvider> providerMap;
+    if (javaStringMap instanceof ImmutableMap) {
+      providerMap =
+          LazyProviderMap.forMap((ImmutableMap<String, ?>) javaStringMap, this::convertLazy);
+    } else {
+      // Create a dictionary backed by a map which has eagerly converted each value into a lazy
+      // value provider. Specifically, the map iteration is done eagerly so that the lazy value
+      // provider can cache its value.
+      ImmutableMap.Builder<String, SoyValueProvider> builder = ImmutableMap.builder();
+      for (Map.Entry<String, ?> entry : javaStringMap.entrySet()) {
+        builder.put(entry.getKey(), convertLazy(entry.getValue()));
+      }
+      providerMap = builder.build();
     }
     return DictImpl.forProviderMap(
-        builder.build(),
+        providerMap,
         // This Java map could represent a Soy legacy_object_map, a Soy map, or a Soy record.
         // We don't know which until one of the SoyMap, SoyLegacyObjectMap, or SoyRecord methods
         // is invoked on it.
@@ -150,10 +163,17 @@ public final class SoyValueConverter {
   }
 
   /**
-   * Creates a Soy map from a Java map. While this is O(n) in the map's shallow size, the Java
-   * values are converted into Soy values lazily and only once. The keys are converted eagerly.
+   * Creates a Soy map from a Java map. The Java values are converted into Soy values lazily and
+   * only once, while all the keys are converted as soon as the map is first accessed.
+   *
+   * <p>An {@link ImmutableMap} is wrapped in O(1), so the keys are not converted until then. Any
+   * other map may change after this call, so its keys are converted right away.
    */
   private SoyMap newSoyMapFromJavaMap(Map<?, ?> javaMap) {
+    if (javaMap instanceof ImmutableMap) {
+      return SoyMapImpl.forProviderMap(
+          LazyProviderMap.forLazyMap(() -> convertKeys(javaMap), this::convertLazy));
+    }
     Map<SoyValue, SoyValueProvider> map = Maps.newHashMapWithExpectedSize(javaMap.size());
     for (Map.Entry<?, ?> entry : javaMap.entrySet()) {
       map.put(convert(entry.getKey()).resolve(), convertLazy(entry.getValue()));
@@ -161,6 +181,14 @@ public final class SoyValueConverter {
     return SoyMapImpl.forProviderMap(map);
   }
 
+  private Map<SoyValue, Object> convertKeys(Map<?, ?> javaMap) {
+    Map<SoyValue, Object> map = Maps.newHashMapWithExpectedSize(javaMap.size());
+    for (Map.Entry<?, ?> entry : javaMap.entrySet()) {
+      map.put(convert(entry.getKey()).resolve(), entry.getValue());
+    }
+    return map;
+  }
+
   /**
    * Signals to the Java rendering API that the wrapped {@code java.util.Map} represents a Soy
    * {@code map}, and not a {@code legacy_object_map} or record. In particular, this allows the map
@@ -198,12 +226,18 @@ public final class SoyValueConverter {
   /**
    * Creates a SoyList from a Java Iterable.
    *
-   * <p>Values are converted into Soy types lazily and only once.
+   * <p>Values are converted into Soy types lazily and only once. An {@link ImmutableList} is
+   * wrapped in O(1), and a value provider is only created for elements that are accessed. Any other
+   * iterable may change after this call, so it is copied.
    *
    * @param items The collection of Java values
    * @return A new SoyList initialized from the given Java Collection.
    */
   private SoyList newListFromIterable(Iterable<?> items) {
+    if (items instanceof ImmutableList) {
+      return ListImpl.forProviderListView(
+          LazyProviderList.forList((ImmutableList<?>) items, this::convertLazy));
+    }
     // Create a list backed by a Java list which has eagerly converted each value into a lazy
     // value provider. Specifically, the list iteration is done eagerly so that the lazy value
     // provider can cache its value.
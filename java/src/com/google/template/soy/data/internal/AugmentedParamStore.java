@@ -22,6 +22,7 @@ import com.google.common.collect.Maps;
 import com.google.template.soy.data.SoyRecord;
 import com.google.template.soy.data.SoyValueProvider;
 import java.util.Map;
+import java.util.function.BiConsumer;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
@@ -70,4 +71,15 @@ public final class AugmentedParamStore extends ParamStore {
         .putAll(backingStore.recordAsMap())
         .build();
   }
+
+  @Override
+  public void forEachField(BiConsumer<? super String, ? super SoyValueProvider> action) {
+    localStore.forEach(action);
+    backingStore.forEachField(
+        (name, provider) -> {
+          if (!localStore.containsKey(name)) {
+            action.accept(name, provider);
+          }
+        });
+  }
 }
@@ -21,6 +21,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import com.google.template.soy.data.SoyValueProvider;
 import java.util.Map;
+import java.util.function.BiConsumer;
 import javax.annotation.Nonnull;
 
 /**
@@ -59,4 +60,9 @@ public final class BasicParamStore extends ParamStore {
   public ImmutableMap<String, SoyValueProvider> recordAsMap() {
     return ImmutableMap.copyOf(localStore);
   }
+
+  @Override
+  public void forEachField(BiConsumer<? super String, ? super SoyValueProvider> action) {
+    localStore.forEach(action);
+  }
 }
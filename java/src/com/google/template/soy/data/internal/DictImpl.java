@@ -32,6 +32,7 @@ import com.google.template.soy.data.restricted.StringData;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.Map;
+import java.util.function.BiConsumer;
 import javax.annotation.Nonnull;
 import javax.annotation.ParametersAreNonnullByDefault;
 
@@ -131,6 +132,12 @@ public final class DictImpl extends SoyAbstractValue implements SoyDict, SoyMap
     return ImmutableMap.copyOf(providerMap);
   }
 
+  @Override
+  public final void forEachField(BiConsumer<? super String, ? super SoyValueProvider> action) {
+    typeTracker.maybeSetLegacyObjectMapOrRecordType();
+    providerMap.forEach(action);
+  }
+
   @Override
   public final int getItemCnt() {
     typeTracker.maybeSetLegacyObjectMapOrRecordType();
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.template.soy.data.internal;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.errorprone.annotations.concurrent.LazyInit;
+import com.google.template.soy.data.SoyValueProvider;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+import java.util.function.Function;
+
+/**
+ * A read-only view of an immutable Java list as a list of {@link SoyValueProvider}s, that converts
+ * each element the first time it is accessed and then remembers the result.
+ *
+ * <p>Creating the view is O(1), and elements that are never accessed are never converted.
+ *
+ * <p>Like {@link LazyProtoToSoyValueList}, the memoization is racy but idempotent: concurrent
+ * readers may each convert the same element, and will get equivalent values.
+ *
+ * <p>Important: Do not use outside of Soy code (treat as superpackage-private).
+ */
+public final class LazyProviderList extends AbstractList<SoyValueProvider>
+    implements RandomAccess {
+
+  /** Returns a view of {@code items} whose elements are converted with {@code converter}. */
+  public static LazyProviderList forList(
+      ImmutableList<?> items, Function<Object, ? extends SoyValueProvider> converter) {
+    return new LazyProviderList(items, converter);
+  }
+
+  private final ImmutableList<?> items;
+  private final Function<Object, ? extends SoyValueProvider> converter;
+
+  /** The converted elements, by index. A null slot hasn't been converted yet. */
+  @LazyInit private SoyValueProvider[] converted;
+
+  private LazyProviderList(
+      ImmutableList<?> items, Function<Object, ? extends SoyValueProvider> converter) {
+    this.items = checkNotNull(items);
+    this.converter = checkNotNull(converter);
+  }
+
+  @Override
+  public int size() {
+    return items.size();
+  }
+
+  @Override
+  public SoyValueProvider get(int index) {
+    SoyValueProvider[] localConverted = converted;
+    if (localConverted == null) {
+      localConverted = new SoyValueProvider[items.size()];
+      converted = localConverted;
+    }
+    SoyValueProvider provider = localConverted[index];
+    if (provider == null) {
+      provider = converter.apply(items.get(index));
+      localConverted[index] = provider;
+    }
+    return provider;
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.template.soy.data.internal;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterators;
+import com.google.errorprone.annotations.concurrent.GuardedBy;
+import com.google.template.soy.data.SoyValueProvider;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+
+/**
+ * A read-only view of an immutable Java map as a map of {@link SoyValueProvider}s, that converts
+ * each value the first time it is accessed and then remembers the result.
+ *
+ * <p>Creating the view is O(1) and entries that are never accessed are never converted, so passing
+ * a large map to a template that only reads a few of its entries is cheap.
+ *
+ * <p>Important: Do not use outside of Soy code (treat as superpackage-private).
+ */
+public final class LazyProviderMap<K> extends AbstractMap<K, SoyValueProvider> {
+
+  /** Returns a view of {@code map} whose values are converted with {@code converter}. */
+  public static <K> LazyProviderMap<K> forMap(
+      ImmutableMap<K, ?> map, Function<Object, ? extends SoyValueProvider> converter) {
+    return new LazyProviderMap<>(Suppliers.ofInstance(map), converter);
+  }
+
+  /**
+   * Returns a view of the map produced by {@code map}, whose values are converted with {@code
+   * converter}. The supplier is called at most once, the first time the view is accessed, and the
+   * map it returns must not be modified afterwards. This is useful when the keys themselves need
+   * converting.
+   */
+  public static <K> LazyProviderMap<K> forLazyMap(
+      Supplier<? extends Map<K, ?>> map, Function<Object, ? extends SoyValueProvider> converter) {
+    return new LazyProviderMap<>(Suppliers.memoize(map), converter);
+  }
+
+  private final Supplier<? extends Map<K, ?>> delegate;
+  private final Function<Object, ? extends SoyValueProvider> converter;
+
+  /** The values converted so far, allocated on first use. */
+  @GuardedBy("this")
+  @Nullable
+  private Map<K, SoyValueProvider> converted;
+
+  private LazyProviderMap(
+      Supplier<? extends Map<K, ?>> delegate,
+      Function<Object, ? extends SoyValueProvider> converter) {
+    this.delegate = checkNotNull(delegate);
+    this.converter = checkNotNull(converter);
+  }
+
+  @Override
+  public int size() {
+    return delegate.get().size();
+  }
+
+  @Override
+  public boolean containsKey(@Nullable Object key) {
+    // Null keys are never converted, so don't force the delegate just to answer this.
+    return key != null && delegate.get().containsKey(key);
+  }
+
+  @Override
+  @Nullable
+  public SoyValueProvider get(@Nullable Object key) {
+    if (key == null) {
+      return null;
+    }
+    Map<K, ?> map = delegate.get();
+    Object value = map.get(key);
+    if (value == null && !map.containsKey(key)) {
+      return null;
+    }
+    @SuppressWarnings("unchecked") // the key is in the map, so it is a K
+    K typedKey = (K) key;
+    return convert(typedKey, value);
+  }
+
+  private synchronized SoyValueProvider convert(K key, @Nullable Object value) {
+    if (converted == null) {
+      converted = new HashMap<>();
+    }
+    SoyValueProvider provider = converted.get(key);
+    if (provider == null) {
+      provider = converter.apply(value);
+      converted.put(key, provider);
+    }
+    return provider;
+  }
+
+  @Override
+  public Set<K> keySet() {
+    return Collections.unmodifiableSet(delegate.get().keySet());
+  }
+
+  @Override
+  public Set<Map.Entry<K, SoyValueProvider>> entrySet() {
+    return new AbstractSet<Map.Entry<K, SoyValueProvider>>() {
+      @Override
+      public int size() {
+        return LazyProviderMap.this.size();
+      }
+
+      @Override
+      public Iterator<Map.Entry<K, SoyValueProvider>> iterator() {
+        return Iterators.transform(
+            delegate.get().entrySet().iterator(),
+            entry ->
+                new AbstractMap.SimpleImmutableEntry<>(
+                    entry.getKey(), convert(entry.getKey(), entry.getValue())));
+      }
+    };
+  }
+}
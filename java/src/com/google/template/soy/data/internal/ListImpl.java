@@ -42,7 +42,15 @@ public final class ListImpl extends ListBackedList {
     return new ListImpl(providerList);
   }
 
-  private ListImpl(ImmutableList<? extends SoyValueProvider> providerList) {
+  /**
+   * Creates a Soy list implementation that is a view of the given list, without copying it. The
+   * list must not be modified afterwards.
+   */
+  public static ListImpl forProviderListView(List<? extends SoyValueProvider> providerList) {
+    return new ListImpl(providerList);
+  }
+
+  private ListImpl(List<? extends SoyValueProvider> providerList) {
     super(providerList);
   }
 }
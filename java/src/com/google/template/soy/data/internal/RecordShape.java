@@ -0,0 +1,98 @@
+/*
+ * Copyright 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.template.soy.data.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import javax.annotation.Nullable;
+
+/**
+ * An ordered set of field names describing the layout of a {@link ShapedParamStore}.
+ *
+ * <p>Shapes are immutable and are intended to be computed once (e.g. per call site in generated
+ * code) and shared by all records with the same layout.
+ *
+ * <p>Important: Do not use outside of Soy code (treat as superpackage-private).
+ */
+public final class RecordShape {
+  /**
+   * Shapes with at most this many fields are searched linearly. Field names are almost always
+   * string constants so the identity comparison usually succeeds and is cheaper than hashing.
+   */
+  private static final int MAX_LINEAR_SCAN_SIZE = 8;
+
+  public static RecordShape create(ImmutableList<String> names) {
+    return new RecordShape(names);
+  }
+
+  private final String[] names;
+  @Nullable private final ImmutableMap<String, Integer> indexes;
+
+  private RecordShape(ImmutableList<String> names) {
+    checkArgument(
+        ImmutableSet.copyOf(names).size() == names.size(), "duplicate field names in %s", names);
+    this.names = names.toArray(new String[0]);
+    if (names.size() > MAX_LINEAR_SCAN_SIZE) {
+      ImmutableMap.Builder<String, Integer> indexes =
+          ImmutableMap.builderWithExpectedSize(names.size());
+      for (int i = 0; i < this.names.length; i++) {
+        indexes.put(this.names[i], i);
+      }
+      this.indexes = indexes.build();
+    } else {
+      this.indexes = null;
+    }
+  }
+
+  /** Returns the number of fields. */
+  public int size() {
+    return names.length;
+  }
+
+  /** Returns the name of the field at the given index. */
+  public String getName(int index) {
+    return names[index];
+  }
+
+  /** Returns the index of the given field, or {@code -1} if it is not part of this shape. */
+  public int indexOf(String name) {
+    if (indexes != null) {
+      Integer index = indexes.get(name);
+      return index == null ? -1 : index;
+    }
+    String[] names = this.names;
+    for (int i = 0; i < names.length; i++) {
+      if (names[i] == name) {
+        return i;
+      }
+    }
+    for (int i = 0; i < names.length; i++) {
+      if (names[i].equals(name)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public String toString() {
+    return "RecordShape" + ImmutableList.copyOf(names);
+  }
+}
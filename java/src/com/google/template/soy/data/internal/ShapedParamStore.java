@@ -0,0 +1,110 @@
+/*
+ * Copyright 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.template.soy.data.internal;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.template.soy.data.SoyValueProvider;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Implementation of ParamStore with a fixed set of fields described by a {@link RecordShape}.
+ *
+ * <p>Values are stored in a flat array indexed by the position of the field in the shape, so
+ * records built by generated code don't need to allocate a hash table. Fields that aren't part of
+ * the shape can still be set by name, they are kept in a map that is allocated on first use.
+ *
+ * <p>Important: Do not use outside of Soy code (treat as superpackage-private).
+ */
+public final class ShapedParamStore extends ParamStore {
+
+  private final RecordShape shape;
+  /** The field values, {@code null} entries are unset. */
+  private final SoyValueProvider[] values;
+  /** Fields that aren't part of the shape, or {@code null} if there are none. */
+  @Nullable private Map<String, SoyValueProvider> extraFields;
+
+  public ShapedParamStore(RecordShape shape) {
+    this.shape = shape;
+    this.values = new SoyValueProvider[shape.size()];
+  }
+
+  /** Sets the field at the given index of the shape. */
+  public ShapedParamStore setFieldAt(int index, @Nonnull SoyValueProvider valueProvider) {
+    values[index] = Preconditions.checkNotNull(valueProvider);
+    return this;
+  }
+
+  @Override
+  public ShapedParamStore setField(String name, @Nonnull SoyValueProvider valueProvider) {
+    int index = shape.indexOf(name);
+    if (index >= 0) {
+      return setFieldAt(index, valueProvider);
+    }
+    if (extraFields == null) {
+      extraFields = new LinkedHashMap<>();
+    }
+    extraFields.put(name, Preconditions.checkNotNull(valueProvider));
+    return this;
+  }
+
+  @Override
+  public boolean hasField(String name) {
+    return getFieldProvider(name) != null;
+  }
+
+  @Override
+  public SoyValueProvider getFieldProvider(String name) {
+    int index = shape.indexOf(name);
+    if (index >= 0) {
+      return values[index];
+    }
+    return extraFields == null ? null : extraFields.get(name);
+  }
+
+  @Override
+  public ImmutableMap<String, SoyValueProvider> recordAsMap() {
+    ImmutableMap.Builder<String, SoyValueProvider> map =
+        ImmutableMap.builderWithExpectedSize(
+            values.length + (extraFields == null ? 0 : extraFields.size()));
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] != null) {
+        map.put(shape.getName(i), values[i]);
+      }
+    }
+    if (extraFields != null) {
+      map.putAll(extraFields);
+    }
+    return map.build();
+  }
+
+  @Override
+  public void forEachField(BiConsumer<? super String, ? super SoyValueProvider> action) {
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] != null) {
+        action.accept(shape.getName(i), values[i]);
+      }
+    }
+    if (extraFields != null) {
+      extraFields.forEach(action);
+    }
+  }
+}
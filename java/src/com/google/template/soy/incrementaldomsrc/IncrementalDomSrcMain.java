@@ -24,13 +24,15 @@ import com.google.template.soy.internal.i18n.SoyBidiUtils;
 import com.google.template.soy.jssrc.SoyJsSrcOptions;
 import com.google.template.soy.jssrc.internal.CanInitOutputVarVisitor;
 import com.google.template.soy.jssrc.internal.JavaScriptValueFactoryImpl;
+import com.google.template.soy.jssrc.internal.PerFileCodeGenerator;
 import com.google.template.soy.passes.CombineConsecutiveRawTextNodesPass;
 import com.google.template.soy.shared.internal.SoyScopedData;
 import com.google.template.soy.soytree.SoyFileSetNode;
 import com.google.template.soy.soytree.TemplateRegistry;
 import com.google.template.soy.types.SoyTypeRegistry;
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Main entry point for the Incremental DOM JS Src backend (output target).
@@ -65,6 +67,25 @@ public class IncrementalDomSrcMain {
       TemplateRegistry registry,
       SoyIncrementalDomSrcOptions options,
       ErrorReporter errorReporter) {
+    List<String> jsFiles = new ArrayList<>();
+    genJsSrc(soyTree, registry, options, errorReporter, jsFiles::add);
+    return jsFiles;
+  }
+
+  /**
+   * Generates Incremental DOM JS source code given a Soy parse tree and an options object, passing
+   * each file to {@code sink} as soon as it has been generated.
+   *
+   * <p>Files are generated on up to {@link SoyIncrementalDomSrcOptions#getCodegenThreads} threads,
+   * but are always passed to {@code sink} on the calling thread and in the order of the Soy source
+   * files. Nothing is passed to {@code sink} if the HTML context analysis reports errors.
+   */
+  public void genJsSrc(
+      SoyFileSetNode soyTree,
+      TemplateRegistry registry,
+      SoyIncrementalDomSrcOptions options,
+      ErrorReporter errorReporter,
+      Consumer<String> sink) {
 
     SoyJsSrcOptions incrementalJSSrcOptions = options.toJsSrcOptions();
 
@@ -77,9 +98,9 @@ public class IncrementalDomSrcMain {
 
       new HtmlContextVisitor().exec(soyTree);
       // If any errors are reported in {@code HtmlContextVisitor}, we should not continue.
-      // Return an empty list here, {@code SoyFileSet} will throw an exception.
+      // Generate nothing here, {@code SoyFileSet} will throw an exception.
       if (errorReporter.hasErrors()) {
-        return Collections.emptyList();
+        return;
       }
 
       UnescapingVisitor.unescapeRawTextInHtml(soyTree);
@@ -88,14 +109,26 @@ public class IncrementalDomSrcMain {
       new RemoveUnnecessaryEscapingDirectives(bidiGlobalDir).run(soyTree);
       // some of the above passes may slice up raw text nodes, recombine them.
       new CombineConsecutiveRawTextNodesPass().run(soyTree);
-      return createVisitor(
-              incrementalJSSrcOptions,
-              registry,
-              typeRegistry,
-              inScope.getBidiGlobalDir(),
-              errorReporter)
-          .gen(soyTree, registry, errorReporter);
     }
+    PerFileCodeGenerator.generate(
+        soyTree.getChildren(),
+        incrementalJSSrcOptions.getCodegenThreads(),
+        errorReporter,
+        (file, fileReporter) -> {
+          // The bidi directives read the global directionality from the scope, which is per
+          // thread.
+          try (SoyScopedData.InScope inScope =
+              apiCallScope.enter(/* msgBundle= */ null, bidiGlobalDir)) {
+            return createVisitor(
+                    incrementalJSSrcOptions,
+                    registry,
+                    typeRegistry,
+                    inScope.getBidiGlobalDir(),
+                    fileReporter)
+                .genFile(file, registry, fileReporter);
+          }
+        },
+        sink);
   }
 
   static GenIncrementalDomCodeVisitor createVisitor(
@@ -16,15 +16,36 @@
 
 package com.google.template.soy.incrementaldomsrc;
 
+import com.google.common.base.Preconditions;
 import com.google.template.soy.jssrc.SoyJsSrcOptions;
 
-/**
- * Compilation options for incrementaldomsrc.
- *
- * <p>Currently there are no options, this object exists for future expansion.
- */
-public final class SoyIncrementalDomSrcOptions {
-  public SoyIncrementalDomSrcOptions() {}
+/** Compilation options for incrementaldomsrc. */
+public final class SoyIncrementalDomSrcOptions implements Cloneable {
+  /** The maximum number of threads to use when generating code for the individual files. */
+  private int codegenThreads;
+
+  public SoyIncrementalDomSrcOptions() {
+    codegenThreads = 1;
+  }
+
+  private SoyIncrementalDomSrcOptions(SoyIncrementalDomSrcOptions orig) {
+    this.codegenThreads = orig.codegenThreads;
+  }
+
+  /**
+   * Sets the maximum number of threads to use when generating code. See {@link
+   * SoyJsSrcOptions#setCodegenThreads}.
+   */
+  public void setCodegenThreads(int codegenThreads) {
+    Preconditions.checkArgument(
+        codegenThreads > 0, "codegenThreads must be positive, got %s", codegenThreads);
+    this.codegenThreads = codegenThreads;
+  }
+
+  /** Returns the maximum number of threads to use when generating code. */
+  public int getCodegenThreads() {
+    return codegenThreads;
+  }
 
   /**
    * Convert to {@link SoyJsSrcOptions}. This is necessary since {@code incrementaldomsrc} reuses
@@ -38,13 +59,12 @@ public final class SoyIncrementalDomSrcOptions {
     jsSrcOptions.setGoogMsgsAreExternal(true);
     jsSrcOptions.setBidiGlobalDir(0);
     jsSrcOptions.setUseGoogIsRtlForBidiGlobalDir(true);
+    jsSrcOptions.setCodegenThreads(codegenThreads);
     return jsSrcOptions;
   }
 
   @Override
   public SoyIncrementalDomSrcOptions clone() {
-    // this object is currently immutable.  Change this to return a new instance if we ever add real
-    // options
-    return this;
+    return new SoyIncrementalDomSrcOptions(this);
   }
 }
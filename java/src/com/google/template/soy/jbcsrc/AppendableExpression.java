@@ -20,6 +20,7 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.template.soy.jbcsrc.restricted.BytecodeUtils.LOGGING_ADVISING_APPENDABLE_TYPE;
 import static com.google.template.soy.jbcsrc.restricted.BytecodeUtils.LOGGING_ADVISING_BUILDER_TYPE;
 import static com.google.template.soy.jbcsrc.restricted.BytecodeUtils.constant;
+import static com.google.template.soy.jbcsrc.restricted.BytecodeUtils.constantUtf8;
 
 import com.google.common.collect.ImmutableList;
 import com.google.template.soy.base.internal.SanitizedContentKind;
@@ -46,6 +47,11 @@ final class AppendableExpression extends Expression {
       MethodRef.create(LoggingAdvisingAppendable.class, "append", CharSequence.class)
           .asNonNullable();
 
+  private static final MethodRef APPEND_RAW_TEXT =
+      MethodRef.create(
+              LoggingAdvisingAppendable.class, "appendRawText", String.class, byte[].class)
+          .asNonNullable();
+
   private static final MethodRef APPEND_CHAR =
       MethodRef.create(LoggingAdvisingAppendable.class, "append", char.class).asNonNullable();
 
@@ -139,6 +145,21 @@ final class AppendableExpression extends Expression {
     return withNewDelegate(delegate.invoke(APPEND, exp), true);
   }
 
+  /**
+   * Returns a similar {@link AppendableExpression} but with the given static text appended to it.
+   *
+   * <p>When rendering to the output appendable we also pass the pre-encoded UTF-8 form of the text
+   * so that byte oriented sinks don't need to encode it. Buffers (which are the only appendables
+   * that don't support soft limiting) would just ignore the bytes, so we skip them there.
+   */
+  AppendableExpression appendRawText(String text) {
+    if (!supportsSoftLimiting) {
+      return appendString(constant(text));
+    }
+    return withNewDelegate(
+        delegate.invoke(APPEND_RAW_TEXT, constant(text), constantUtf8(text)), true);
+  }
+
   /**
    * Returns a similar {@link AppendableExpression} but with the given (char valued) expression
    * appended to it.
@@ -170,7 +191,7 @@ final class AppendableExpression extends Expression {
       String functionName,
       String placeholderValue,
       List<SoyExpression> args,
-      List<Expression> escapingDirectives) {
+      Expression escapingDirectives) {
     return withNewDelegate(
         delegate.invoke(
             APPEND_LOGGING_FUNCTION_INVOCATION,
@@ -178,7 +199,7 @@ final class AppendableExpression extends Expression {
                 constant(functionName),
                 constant(placeholderValue),
                 SoyExpression.asBoxedList(args)),
-            BytecodeUtils.asImmutableList(escapingDirectives)),
+            escapingDirectives),
         true);
   }
 
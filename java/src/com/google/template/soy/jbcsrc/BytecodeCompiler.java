@@ -16,12 +16,18 @@
 
 package com.google.template.soy.jbcsrc;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.collect.ImmutableSet.toImmutableSet;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
+import com.google.auto.value.AutoValue;
 import com.google.common.base.Joiner;
+import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Sets;
 import com.google.common.io.ByteSink;
 import com.google.common.io.ByteSource;
 import com.google.template.soy.base.SourceFilePath;
@@ -34,8 +40,12 @@ import com.google.template.soy.jbcsrc.internal.ClassData;
 import com.google.template.soy.jbcsrc.restricted.Flags;
 import com.google.template.soy.jbcsrc.shared.CompiledTemplates;
 import com.google.template.soy.jbcsrc.shared.Names;
+import com.google.template.soy.jbcsrc.shared.TemplateMetadataIndex;
+import com.google.template.soy.msgs.SoyMsgBundle;
 import com.google.template.soy.plugin.java.internal.PluginAnalyzer;
 import com.google.template.soy.plugin.java.restricted.SoyJavaSourceFunction;
+import com.google.template.soy.shared.SoyCssRenamingMap;
+import com.google.template.soy.shared.SoyIdRenamingMap;
 import com.google.template.soy.soytree.SoyFileNode;
 import com.google.template.soy.soytree.SoyFileSetNode;
 import com.google.template.soy.soytree.SoyTreeUtils;
@@ -46,16 +56,107 @@ import com.google.template.soy.soytree.TemplateRegistry;
 import com.google.template.soy.types.SoyTypeRegistry;
 import com.google.template.soy.types.TemplateType;
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 
 /** The entry point to the {@code jbcsrc} compiler. */
 public final class BytecodeCompiler {
 
+  /** Options for {@link #compileToJar}. */
+  @AutoValue
+  public abstract static class JarOptions {
+    /** Returns options that compile every template, and rename and translate at render time. */
+    public static JarOptions defaults() {
+      return builder().build();
+    }
+
+    public static Builder builder() {
+      return new AutoValue_BytecodeCompiler_JarOptions.Builder().setConcurrentCalls(false);
+    }
+
+    /**
+     * The CSS renaming map to apply at compile time, or null to rename at render time.
+     *
+     * <p>The renamed selectors passed to {@code css()} are compiled in as constants and any CSS
+     * renaming map supplied at render time is ignored. This is only appropriate when the renaming
+     * map is fixed for every server that will load the jar.
+     */
+    @Nullable
+    public abstract SoyCssRenamingMap cssRenamingMap();
+
+    /**
+     * The xid renaming map to apply at compile time, or null to rename at render time. Like {@link
+     * #cssRenamingMap}, any xid renaming map supplied at render time is then ignored.
+     */
+    @Nullable
+    public abstract SoyIdRenamingMap xidRenamingMap();
+
+    /**
+     * The translations to compile in, or null to translate at render time.
+     *
+     * <p>Messages without placeholders become constant strings and the others skip the bundle
+     * lookup. Messages missing from the bundle fall back to their source text, as they would at
+     * render time, and any bundle supplied at render time is only used for its locale. This
+     * produces a jar that is specialized for the bundle's locale, so a server needs one jar per
+     * locale it serves. The locale is recorded in the jar and rendering with a bundle for any other
+     * locale fails.
+     */
+    @Nullable
+    public abstract SoyMsgBundle msgBundle();
+
+    /**
+     * The full names of the templates that will be rendered from the jar, or null to compile every
+     * template.
+     *
+     * <p>Only the templates that the entry points transitively reference are compiled, along with
+     * their messages and metadata. Deltemplates are handled conservatively: a call to a deltemplate
+     * name makes every implementation of it reachable, regardless of package or variant. Rendering
+     * any other template from the resulting jar will fail as if it didn't exist.
+     */
+    @Nullable
+    public abstract ImmutableSet<String> entryPoints();
+
+    /**
+     * Whether runs of independent sibling calls are compiled so that they can render concurrently.
+     *
+     * <p>Such calls are only rendered concurrently if an executor is supplied at render time, see
+     * {@link com.google.template.soy.jbcsrc.shared.RenderContext#getConcurrentRenderExecutor}, but
+     * they give up the direct call and never detaching optimizations even when it isn't.
+     */
+    public abstract boolean concurrentCalls();
+
+    public abstract Builder toBuilder();
+
+    /** Builder for {@link JarOptions}. */
+    @AutoValue.Builder
+    public abstract static class Builder {
+      public abstract Builder setCssRenamingMap(@Nullable SoyCssRenamingMap cssRenamingMap);
+
+      public abstract Builder setXidRenamingMap(@Nullable SoyIdRenamingMap xidRenamingMap);
+
+      public abstract Builder setMsgBundle(@Nullable SoyMsgBundle msgBundle);
+
+      public abstract Builder setEntryPoints(@Nullable ImmutableSet<String> entryPoints);
+
+      public abstract Builder setConcurrentCalls(boolean concurrentCalls);
+
+      public abstract JarOptions build();
+    }
+  }
+
   /**
    * Compiles all the templates in the given registry.
    *
@@ -70,17 +171,42 @@ public final class BytecodeCompiler {
       ErrorReporter reporter,
       ImmutableMap<SourceFilePath, SoyFileSupplier> filePathsToSuppliers,
       SoyTypeRegistry typeRegistry) {
+    return compile(
+        registry,
+        fileSet,
+        reporter,
+        filePathsToSuppliers,
+        typeRegistry,
+        /* concurrentCalls= */ false);
+  }
+
+  /**
+   * Compiles all the templates in the given registry.
+   *
+   * @param concurrentCalls Whether runs of independent calls are compiled so that they can render
+   *     concurrently, see {@link JarOptions#concurrentCalls}.
+   * @return CompiledTemplates or {@code absent()} if compilation fails, in which case errors will
+   *     have been reported to the error reporter.
+   */
+  public static Optional<CompiledTemplates> compile(
+      final TemplateRegistry registry,
+      final SoyFileSetNode fileSet,
+      ErrorReporter reporter,
+      ImmutableMap<SourceFilePath, SoyFileSupplier> filePathsToSuppliers,
+      SoyTypeRegistry typeRegistry,
+      boolean concurrentCalls) {
     ErrorReporter.Checkpoint checkpoint = reporter.checkpoint();
     CompiledTemplates templates =
         new CompiledTemplates(
             /* delTemplateNames=*/ registry.getAllTemplates().stream()
                 .filter(
                     template ->
-                        template.getTemplateType().getTemplateKind()
+                        template.getTemplateKind()
                             == TemplateType.TemplateKind.DELTEMPLATE)
                 .map(TemplateMetadata::getTemplateName)
                 .collect(toImmutableSet()),
-            new CompilingClassLoader(fileSet, filePathsToSuppliers, typeRegistry));
+            new CompilingClassLoader(
+                fileSet, filePathsToSuppliers, typeRegistry, concurrentCalls));
     if (reporter.errorsSince(checkpoint)) {
       return Optional.empty();
     }
@@ -105,8 +231,30 @@ public final class BytecodeCompiler {
       SoyTypeRegistry typeRegistry,
       ByteSink sink)
       throws IOException {
+    compileToJar(registry, fileSet, reporter, typeRegistry, sink, JarOptions.defaults());
+  }
+
+  /**
+   * Compiles the templates in the given registry to a jar file written to the given output stream,
+   * configured by {@code options}.
+   *
+   * @throws IllegalArgumentException If an entry point isn't a template in the file set.
+   */
+  public static void compileToJar(
+      TemplateRegistry registry,
+      SoyFileSetNode fileSet,
+      ErrorReporter reporter,
+      SoyTypeRegistry typeRegistry,
+      ByteSink sink,
+      JarOptions options)
+      throws IOException {
+    ImmutableSet<String> entryPoints = options.entryPoints();
+    Predicate<TemplateNode> shouldCompile =
+        entryPoints == null ? template -> true : reachableFrom(fileSet, entryPoints)::contains;
     try (final SoyJarFileWriter writer = new SoyJarFileWriter(sink.openStream())) {
       final Set<String> delTemplates = new TreeSet<>();
+      // Sorted by template name for determinism.
+      Map<String, String> templateIndex = new TreeMap<>();
 
       // A map of plugin names -> info about the required instance class (only for plugins that
       // require a runtime class).
@@ -116,6 +264,8 @@ public final class BytecodeCompiler {
           fileSet,
           reporter,
           typeRegistry,
+          options,
+          shouldCompile,
           new CompilerListener<Void, IOException>() {
             @Override
             void onCompile(ClassData clazz) throws IOException {
@@ -128,6 +278,11 @@ public final class BytecodeCompiler {
               delTemplates.add(name);
             }
 
+            @Override
+            void onTemplateIndexEntry(String name, String entry) {
+              templateIndex.put(name, entry);
+            }
+
             @Override
             void onFunctionCallFound(FunctionNode fnNode) {
               // For each function call, check if the plugin needs an instance class. If so, add an
@@ -164,6 +319,22 @@ public final class BytecodeCompiler {
             Names.META_INF_DELTEMPLATE_PATH, ByteSource.wrap(delData.getBytes(UTF_8)));
       }
 
+      // Index the metadata of all the templates so that the runtime can answer call graph queries
+      // (e.g. transitive ij params) without loading every template class.
+      if (!templateIndex.isEmpty()) {
+        writer.writeEntry(
+            Names.META_INF_TEMPLATE_INDEX_PATH,
+            ByteSource.wrap(String.join("", templateIndex.values()).getBytes(UTF_8)));
+      }
+
+      // Record the locale of the compiled in messages so that the runtime can reject renders that
+      // ask for a different one.
+      if (options.msgBundle() != null && options.msgBundle().getLocaleString() != null) {
+        writer.writeEntry(
+            Names.META_INF_MSG_LOCALE_PATH,
+            ByteSource.wrap(options.msgBundle().getLocaleString().getBytes(UTF_8)));
+      }
+
       // If there were required plugin runtime instances, write a meta-inf file containing each
       // plugin's name, it's runtime class name, and the locations in soy where the function is
       // used.
@@ -224,6 +395,15 @@ public final class BytecodeCompiler {
      */
     void onCompileTemplate(String name) {}
 
+    /**
+     * Callback to notify a template was compiled, with the template index entry describing the
+     * metadata written to its class.
+     *
+     * @param name The full name as would be returned by SoyTemplateInfo.getName()
+     * @param entry The entry as returned by {@link TemplateMetadataIndex#toMetaInfEntry}
+     */
+    void onTemplateIndexEntry(String name, String entry) {}
+
     /**
      * Callback to notify that a function call was found.
      *
@@ -240,36 +420,134 @@ public final class BytecodeCompiler {
       SoyFileSetNode fileSet,
       ErrorReporter errorReporter,
       SoyTypeRegistry typeRegistry,
+      JarOptions options,
+      Predicate<TemplateNode> shouldCompile,
       CompilerListener<T, E> listener)
       throws E {
     JavaSourceFunctionCompiler javaSourceFunctionCompiler =
         new JavaSourceFunctionCompiler(typeRegistry, errorReporter);
+    // The templates in this file set that were compiled without any detach points.  Since callees
+    // are compiled first, calls to them can skip generating detach logic.
+    Set<String> neverDetachingTemplates = new HashSet<>();
+    for (TemplateNode template : calleesFirst(fileSet)) {
+      if (!shouldCompile.test(template)) {
+        continue;
+      }
+      TemplateCompiler templateCompiler =
+          new TemplateCompiler(
+              CompiledTemplateMetadata.create(template.getTemplateName()),
+              template,
+              javaSourceFunctionCompiler,
+              options.cssRenamingMap(),
+              options.xidRenamingMap(),
+              options.msgBundle(),
+              neverDetachingTemplates::contains,
+              options.concurrentCalls());
+      for (ClassData clazz : templateCompiler.compile()) {
+        if (Flags.DEBUG) {
+          clazz.checkClass();
+        }
+        listener.onCompile(clazz);
+      }
+      if (!templateCompiler.canDetach()) {
+        neverDetachingTemplates.add(template.getTemplateName());
+      }
+      listener.onTemplateIndexEntry(
+          template.getTemplateName(),
+          TemplateMetadataIndex.toMetaInfEntry(
+              template.getTemplateName(), templateCompiler.getTemplateMetadata()));
+      if (template instanceof TemplateDelegateNode) {
+        listener.onCompileDelTemplate(template.getTemplateName());
+      } else {
+        listener.onCompileTemplate(template.getTemplateName());
+      }
+
+      /** For each function call in the template, trigger the function call listener. */
+      for (FunctionNode fnNode : SoyTreeUtils.getAllNodesOfType(template, FunctionNode.class)) {
+        listener.onFunctionCallFound(fnNode);
+      }
+    }
+    return listener.getResult();
+  }
+
+  /**
+   * Returns all the templates in the file set, ordered so that templates come before their callers
+   * unless they are part of a cycle of calls.
+   */
+  private static List<TemplateNode> calleesFirst(SoyFileSetNode fileSet) {
+    Map<String, TemplateNode> templatesByName = new LinkedHashMap<>();
+    for (SoyFileNode file : fileSet.getChildren()) {
+      for (TemplateNode template : file.getTemplates()) {
+        templatesByName.put(template.getTemplateName(), template);
+      }
+    }
+    List<TemplateNode> ordered = new ArrayList<>();
+    Set<TemplateNode> visited = Sets.newIdentityHashSet();
+    for (TemplateNode template : templatesByName.values()) {
+      addCalleesFirst(template, templatesByName, visited, ordered);
+    }
+    return ordered;
+  }
+
+  private static void addCalleesFirst(
+      TemplateNode template,
+      Map<String, TemplateNode> templatesByName,
+      Set<TemplateNode> visited,
+      List<TemplateNode> ordered) {
+    if (!visited.add(template)) {
+      return;
+    }
+    for (String callee : TemplateCompiler.getCallees(template)) {
+      TemplateNode calleeNode = templatesByName.get(callee);
+      if (calleeNode != null) {
+        addCalleesFirst(calleeNode, templatesByName, visited, ordered);
+      }
+    }
+    ordered.add(template);
+  }
+
+  /**
+   * Returns the templates transitively referenced from the given entry points, following the same
+   * edges as the {@code callees} and {@code delCallees} of the generated template metadata.
+   */
+  private static Set<TemplateNode> reachableFrom(
+      SoyFileSetNode fileSet, ImmutableSet<String> entryPoints) {
+    Map<String, TemplateNode> templatesByName = new HashMap<>();
+    SetMultimap<String, TemplateNode> delTemplatesByName = HashMultimap.create();
     for (SoyFileNode file : fileSet.getChildren()) {
       for (TemplateNode template : file.getTemplates()) {
-        TemplateCompiler templateCompiler =
-            new TemplateCompiler(
-                CompiledTemplateMetadata.create(template.getTemplateName()),
-                template,
-                javaSourceFunctionCompiler);
-        for (ClassData clazz : templateCompiler.compile()) {
-          if (Flags.DEBUG) {
-            clazz.checkClass();
-          }
-          listener.onCompile(clazz);
-        }
         if (template instanceof TemplateDelegateNode) {
-          listener.onCompileDelTemplate(template.getTemplateName());
+          delTemplatesByName.put(
+              ((TemplateDelegateNode) template).getDelTemplateName(), template);
         } else {
-          listener.onCompileTemplate(template.getTemplateName());
+          templatesByName.put(template.getTemplateName(), template);
         }
-
-        /** For each function call in the template, trigger the function call listener. */
-        for (FunctionNode fnNode : SoyTreeUtils.getAllNodesOfType(template, FunctionNode.class)) {
-          listener.onFunctionCallFound(fnNode);
+      }
+    }
+    Set<TemplateNode> reachable = Sets.newIdentityHashSet();
+    Deque<TemplateNode> worklist = new ArrayDeque<>();
+    for (String entryPoint : entryPoints) {
+      TemplateNode template = templatesByName.get(entryPoint);
+      checkArgument(template != null, "Unknown entry point template: %s", entryPoint);
+      worklist.add(template);
+    }
+    while (!worklist.isEmpty()) {
+      TemplateNode template = worklist.remove();
+      if (!reachable.add(template)) {
+        continue;
+      }
+      for (String callee : TemplateCompiler.getCallees(template)) {
+        // There is nothing to compile for references to templates outside of the file set.
+        TemplateNode calleeNode = templatesByName.get(callee);
+        if (calleeNode != null) {
+          worklist.add(calleeNode);
         }
       }
+      for (String delCallee : TemplateCompiler.getDelCallees(template)) {
+        worklist.addAll(delTemplatesByName.get(delCallee));
+      }
     }
-    return listener.getResult();
+    return reachable;
   }
 
   private BytecodeCompiler() {}
@@ -48,11 +48,13 @@ final class CompilingClassLoader extends AbstractMemoryClassLoader {
   private final ImmutableMap<SourceFilePath, SoyFileSupplier> filePathsToSuppliers;
   private final ImmutableMap<String, TemplateNode> templateNameToTemplateNode;
   private final SoyTypeRegistry typeRegistry;
+  private final boolean concurrentCalls;
 
   CompilingClassLoader(
       SoyFileSetNode fileSet,
       ImmutableMap<SourceFilePath, SoyFileSupplier> filePathsToSuppliers,
-      SoyTypeRegistry typeRegistry) {
+      SoyTypeRegistry typeRegistry,
+      boolean concurrentCalls) {
     ImmutableMap.Builder<String, TemplateNode> templateNameToTemplateNode = ImmutableMap.builder();
     for (SoyFileNode file : fileSet.getChildren()) {
       for (TemplateNode template : file.getTemplates()) {
@@ -62,6 +64,7 @@ final class CompilingClassLoader extends AbstractMemoryClassLoader {
     this.templateNameToTemplateNode = templateNameToTemplateNode.build();
     this.typeRegistry = typeRegistry;
     this.filePathsToSuppliers = filePathsToSuppliers;
+    this.concurrentCalls = concurrentCalls;
   }
 
   @Override
@@ -88,7 +91,8 @@ final class CompilingClassLoader extends AbstractMemoryClassLoader {
     ClassData clazzToLoad = null;
     ErrorReporter reporter = ErrorReporter.create(filePathsToSuppliers);
     for (ClassData clazz :
-        new TemplateCompiler(meta, node, new JavaSourceFunctionCompiler(typeRegistry, reporter))
+        new TemplateCompiler(
+                meta, node, new JavaSourceFunctionCompiler(typeRegistry, reporter), concurrentCalls)
             .compile()) {
       String className = clazz.type().className();
       if (className.equals(name)) {
@@ -1418,14 +1418,8 @@ final class ExpressionCompiler {
           .asNonNullable();
     }
 
-    // TODO(lukes):  The RenderVisitor optimizes css/xid renaming by stashing a one element cache in
-    // the CSS node itself (keyed off the identity of the renaming map).  We could easily add such
-    // an optimization via a static field in the Template class. Though im not sure it makes sense
-    // as an optimization... this should just be an immutable map lookup keyed off of a constant
-    // string. If we cared a lot, we could employ a simpler (and more compact) optimization by
-    // assigning each selector a unique integer id and then instead of hashing we can just reference
-    // an array (aka perfect hashing).  This could be part of our runtime library and ids could be
-    // assigned at startup.
+    // css() and xid() calls are either renamed at compile time or looked up through an
+    // invokedynamic call site, see RenderContextExpression.renameCss.
 
     @Override
     SoyExpression visitCssFunction(FunctionNode node) {
@@ -566,7 +566,8 @@ final class LazyClosureCompiler {
               lookup,
               fields,
               constantCompiler,
-              parent.javaSourceFunctionCompiler);
+              parent.javaSourceFunctionCompiler,
+              parent.concurrentCalls);
       CompiledMethodBody compileChildren = soyNodeCompiler.compile(renderUnit, prefix, suffix);
       writer.setNumDetachStates(compileChildren.numberOfDetachStates());
       final Statement nodeBody = compileChildren.body();
@@ -795,7 +796,8 @@ final class LazyClosureCompiler {
                     StandardNames.RENDER_CONTEXT, BytecodeUtils.RENDER_CONTEXT_TYPE),
                 parentParameterLookup.getRenderContext());
       }
-      return new RenderContextExpression(renderContextCapture.field().accessor(thisVar));
+      return ((RenderContextExpression) renderContextCapture.parentExpression())
+          .withDelegate(renderContextCapture.field().accessor(thisVar));
     }
   }
 }
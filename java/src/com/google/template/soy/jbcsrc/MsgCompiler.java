@@ -35,6 +35,7 @@ import com.google.template.soy.jbcsrc.restricted.FieldRef;
 import com.google.template.soy.jbcsrc.restricted.MethodRef;
 import com.google.template.soy.jbcsrc.restricted.SoyExpression;
 import com.google.template.soy.jbcsrc.restricted.Statement;
+import com.google.template.soy.jbcsrc.runtime.JbcSrcRuntime;
 import com.google.template.soy.msgs.internal.MsgUtils.MsgPartsAndIds;
 import com.google.template.soy.msgs.restricted.SoyMsgPart;
 import com.google.template.soy.msgs.restricted.SoyMsgPart.Case;
@@ -161,18 +162,47 @@ final class MsgCompiler {
    */
   Statement compileMessage(
       MsgPartsAndIds partsAndId, MsgNode msg, ImmutableList<SoyPrintDirective> escapingDirectives) {
-    Expression soyMsgDefaultParts = compileDefaultMessagePartsConstant(partsAndId);
+    RenderContextExpression renderContext = parameterLookup.getRenderContext();
+    Statement printMsg;
+    if (renderContext.hasCompileTimeMsgBundle()) {
+      // The translation is known, so compile it in rather than looking it up on every render.
+      ImmutableList<SoyMsgPart> translation =
+          renderContext.getCompileTimeMsgParts(
+              partsAndId.id, msg.getAlternateId(), partsAndId.parts);
+      if (msg.isRawTextMsg()) {
+        printMsg =
+            handleBasicTranslation(
+                escapingDirectives,
+                constant(
+                    msg.getEscapingMode() == EscapingMode.ESCAPE_HTML
+                        ? JbcSrcRuntime.handleBasicTranslationAndEscapeHtml(translation)
+                        : JbcSrcRuntime.handleBasicTranslation(translation)));
+      } else {
+        printMsg =
+            handleTranslationWithPlaceholders(
+                msg,
+                escapingDirectives,
+                compileMessagePartsConstant(partsAndId.id, translation),
+                parameterLookup.getPluginContext().getULocale(),
+                partsAndId);
+      }
+      return printMsg.withSourceLocation(msg.getSourceLocation());
+    }
+    Expression soyMsgDefaultParts = compileMessagePartsConstant(partsAndId.id, partsAndId.parts);
     Expression soyMsgParts =
         msg.getAlternateId().isPresent()
-            ? parameterLookup
-                .getRenderContext()
-                .getSoyMsgPartsWithAlternateId(
-                    partsAndId.id, soyMsgDefaultParts, msg.getAlternateId().getAsLong())
-            : parameterLookup.getRenderContext().getSoyMsgParts(partsAndId.id, soyMsgDefaultParts);
-    Statement printMsg;
+            ? renderContext.getSoyMsgPartsWithAlternateId(
+                partsAndId.id, soyMsgDefaultParts, msg.getAlternateId().getAsLong())
+            : renderContext.getSoyMsgParts(partsAndId.id, soyMsgDefaultParts);
     if (msg.isRawTextMsg()) {
       // Simplest case, just a static string translation
-      printMsg = handleBasicTranslation(msg, escapingDirectives, soyMsgParts);
+      printMsg =
+          handleBasicTranslation(
+              escapingDirectives,
+              (msg.getEscapingMode() == EscapingMode.ESCAPE_HTML
+                      ? MethodRef.HANDLE_BASIC_TRANSLATION_AND_ESCAPE_HTML
+                      : MethodRef.HANDLE_BASIC_TRANSLATION)
+                  .invoke(soyMsgParts));
     } else {
       // String translation + placeholders
       printMsg =
@@ -187,18 +217,16 @@ final class MsgCompiler {
   }
 
   /**
-   * Returns an expression that evaluates to a constant {@code ImmutableList<SoyMsgPart>} used as
-   * the default message for when translations don't exist.
+   * Returns an expression that evaluates to a constant {@code ImmutableList<SoyMsgPart>}, either
+   * the default message for when translations don't exist or a translation known at compile time.
    *
    * <p>For each msg we generate a static final field that holds an {@code
    * ImmutableList<SoyMsgPart>} which means we have to go through the somewhat awkward process of
    * generating code to construct objects we have at compile time. We could do something like use
    * java serialization, but just invoking the SoyMsgPart constructors isn't too hard.
    */
-  private Expression compileDefaultMessagePartsConstant(MsgPartsAndIds partsAndId) {
-    return fields
-        .addStaticField("msg_parts_" + partsAndId.id, partsToPartsList(partsAndId.parts))
-        .accessor();
+  private Expression compileMessagePartsConstant(long id, ImmutableList<SoyMsgPart> parts) {
+    return fields.addStaticField("msg_parts_" + id, partsToPartsList(parts)).accessor();
   }
 
   private Expression partsToPartsList(ImmutableList<SoyMsgPart> parts) {
@@ -256,15 +284,11 @@ final class MsgCompiler {
 
   /** Handles a translation consisting of a single raw text node. */
   private Statement handleBasicTranslation(
-      MsgNode msg, List<SoyPrintDirective> escapingDirectives, Expression soyMsgParts) {
+      List<SoyPrintDirective> escapingDirectives, Expression translatedText) {
     // optimize for simple constant translations (very common)
-    // this becomes: renderContext.getSoyMessge(<id>).getParts().get(0).getRawText()
-    SoyExpression text =
-        SoyExpression.forString(
-            (msg.getEscapingMode() == EscapingMode.ESCAPE_HTML
-                    ? MethodRef.HANDLE_BASIC_TRANSLATION_AND_ESCAPE_HTML
-                    : MethodRef.HANDLE_BASIC_TRANSLATION)
-                .invoke(soyMsgParts));
+    // this becomes: renderContext.getSoyMessge(<id>).getParts().get(0).getRawText(), or just the
+    // text if it was translated at compile time.
+    SoyExpression text = SoyExpression.forString(translatedText);
     // Note: there is no point in trying to stream here, since we are starting with a constant
     // string.
     for (SoyPrintDirective directive : escapingDirectives) {
@@ -283,6 +307,30 @@ final class MsgCompiler {
       Expression locale,
       MsgPartsAndIds partsAndId) {
     Label reattachPoint = new Label();
+    // Each placeholder gets an index into the renderer's value array, so that rendering doesn't
+    // need to look placeholders up by name.
+    List<Expression> placeholderNames = new ArrayList<>();
+    List<Expression> endPlaceholderNames = new ArrayList<>();
+    List<Expression> placeholderValues = new ArrayList<>();
+    boolean requiresDetachLogic = false;
+    for (Map.Entry<String, MsgSubstUnitNode> entry : msg.getVarNameToRepNodeMap().entrySet()) {
+      String phName = entry.getKey();
+      PlaceholderAndEndTag placeholder =
+          compilePlaceholder(
+              msg, phName, entry.getValue(), detachState.createExpressionDetacher(reattachPoint));
+      requiresDetachLogic = requiresDetachLogic || placeholder.requiresDetachLogic();
+      placeholderNames.add(constant(phName));
+      endPlaceholderNames.add(constant(placeholder.endTagToMatch().orElse("")));
+      placeholderValues.add(placeholder.expression());
+    }
+    Expression layout =
+        fields
+            .addStaticField(
+                "msg_layout_" + partsAndId.id,
+                MethodRef.MSG_LAYOUT_CREATE.invoke(
+                    BytecodeUtils.asImmutableList(placeholderNames),
+                    BytecodeUtils.asImmutableList(endPlaceholderNames)))
+            .accessor();
     ConstructorRef cstruct =
         msg.isPlrselMsg() ? ConstructorRef.PLRSEL_MSG_RENDERER : ConstructorRef.MSG_RENDERER;
     Expression renderer =
@@ -290,27 +338,12 @@ final class MsgCompiler {
             constant(partsAndId.id),
             soyMsgParts,
             locale,
-            constant(msg.getVarNameToRepNodeMap().size()),
+            layout,
             constant(msg.getEscapingMode() == EscapingMode.ESCAPE_HTML));
-    boolean requiresDetachLogic = false;
-    for (Map.Entry<String, MsgSubstUnitNode> entry : msg.getVarNameToRepNodeMap().entrySet()) {
-      String phName = entry.getKey();
-      PlaceholderAndEndTag placeholder =
-          compilePlaceholder(
-              msg, phName, entry.getValue(), detachState.createExpressionDetacher(reattachPoint));
-      requiresDetachLogic = requiresDetachLogic || placeholder.requiresDetachLogic();
-      if (placeholder.endTagToMatch().isPresent()) {
-        renderer =
-            renderer.invoke(
-                MethodRef.MSG_RENDERER_SET_PLACEHOLDER_AND_ORDERING,
-                constant(phName),
-                placeholder.expression(),
-                constant(placeholder.endTagToMatch().get()));
-      } else {
-        renderer =
-            renderer.invoke(
-                MethodRef.MSG_RENDERER_SET_PLACEHOLDER, constant(phName), placeholder.expression());
-      }
+    for (int i = 0; i < placeholderValues.size(); i++) {
+      renderer =
+          renderer.invoke(
+              MethodRef.MSG_RENDERER_SET_PLACEHOLDER, constant(i), placeholderValues.get(i));
     }
     TemplateVariableManager.Scope scope = variableManager.enterScope();
     TemplateVariableManager.Variable msgRendererVar =
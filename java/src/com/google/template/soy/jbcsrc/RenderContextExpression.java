@@ -15,19 +15,32 @@
  */
 package com.google.template.soy.jbcsrc;
 
+import static com.google.common.base.Preconditions.checkState;
 import static com.google.template.soy.jbcsrc.restricted.BytecodeUtils.constant;
 
 import com.google.common.collect.ImmutableList;
+import com.google.template.soy.jbcsrc.restricted.BytecodeUtils;
 import com.google.template.soy.jbcsrc.restricted.CodeBuilder;
 import com.google.template.soy.jbcsrc.restricted.Expression;
 import com.google.template.soy.jbcsrc.restricted.JbcSrcPluginContext;
 import com.google.template.soy.jbcsrc.restricted.MethodRef;
 import com.google.template.soy.jbcsrc.restricted.SoyExpression;
 import com.google.template.soy.jbcsrc.restricted.SoyJbcSrcPrintDirective;
+import com.google.template.soy.jbcsrc.shared.RenamingCallFactory;
 import com.google.template.soy.jbcsrc.shared.RenderContext;
+import com.google.template.soy.msgs.SoyMsgBundle;
+import com.google.template.soy.msgs.restricted.SoyMsgPart;
+import com.google.template.soy.shared.SoyCssRenamingMap;
+import com.google.template.soy.shared.SoyIdRenamingMap;
 import com.google.template.soy.shared.restricted.SoyPrintDirective;
 import com.google.template.soy.types.UnknownType;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.List;
+import java.util.OptionalLong;
+import javax.annotation.Nullable;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Type;
 
 /** An expression for a {@link RenderContext} object. */
 final class RenderContextExpression extends Expression implements JbcSrcPluginContext {
@@ -55,11 +68,28 @@ final class RenderContextExpression extends Expression implements JbcSrcPluginCo
           ImmutableList.class,
           long.class);
 
-  private static final MethodRef RENAME_CSS_SELECTOR =
-      MethodRef.create(RenderContext.class, "renameCssSelector", String.class).asNonNullable();
+  private static final Handle RENAME_CSS_HANDLE =
+      MethodRef.create(
+              RenamingCallFactory.class,
+              "bootstrapRenameCss",
+              MethodHandles.Lookup.class,
+              String.class,
+              MethodType.class,
+              String.class)
+          .asHandle();
+
+  private static final Handle RENAME_XID_HANDLE =
+      MethodRef.create(
+              RenamingCallFactory.class,
+              "bootstrapRenameXid",
+              MethodHandles.Lookup.class,
+              String.class,
+              MethodType.class,
+              String.class)
+          .asHandle();
 
-  private static final MethodRef RENAME_XID =
-      MethodRef.create(RenderContext.class, "renameXid", String.class).asNonNullable();
+  private static final String RENAME_SIGNATURE =
+      Type.getMethodDescriptor(BytecodeUtils.STRING_TYPE, BytecodeUtils.RENDER_CONTEXT_TYPE);
 
   private static final MethodRef USE_PRIMARY_MSG_IF_FALLBACK =
       MethodRef.create(RenderContext.class, "usePrimaryMsgIfFallback", long.class, long.class);
@@ -108,10 +138,42 @@ final class RenderContextExpression extends Expression implements JbcSrcPluginCo
   private static final MethodRef POP_FRAME = MethodRef.create(RenderContext.class, "popFrame");
 
   private final Expression delegate;
+  @Nullable private final SoyCssRenamingMap cssRenamingMap;
+  @Nullable private final SoyIdRenamingMap xidRenamingMap;
+  @Nullable private final SoyMsgBundle msgBundle;
 
   RenderContextExpression(Expression renderContext) {
+    this(
+        renderContext,
+        /* cssRenamingMap= */ null,
+        /* xidRenamingMap= */ null,
+        /* msgBundle= */ null);
+  }
+
+  /**
+   * @param cssRenamingMap If non-null, {@code css()} calls are renamed with this map at compile
+   *     time, ignoring any map supplied at render time.
+   * @param xidRenamingMap If non-null, {@code xid()} calls are renamed with this map at compile
+   *     time, ignoring any map supplied at render time.
+   * @param msgBundle If non-null, messages are translated with this bundle at compile time,
+   *     ignoring any bundle supplied at render time. The render time bundle still supplies the
+   *     locale.
+   */
+  RenderContextExpression(
+      Expression renderContext,
+      @Nullable SoyCssRenamingMap cssRenamingMap,
+      @Nullable SoyIdRenamingMap xidRenamingMap,
+      @Nullable SoyMsgBundle msgBundle) {
     super(renderContext.resultType(), renderContext.features());
     this.delegate = renderContext;
+    this.cssRenamingMap = cssRenamingMap;
+    this.xidRenamingMap = xidRenamingMap;
+    this.msgBundle = msgBundle;
+  }
+
+  /** Returns an expression for the same render context, read from {@code renderContext}. */
+  RenderContextExpression withDelegate(Expression renderContext) {
+    return new RenderContextExpression(renderContext, cssRenamingMap, xidRenamingMap, msgBundle);
   }
 
   @Override
@@ -138,11 +200,31 @@ final class RenderContextExpression extends Expression implements JbcSrcPluginCo
   }
 
   Expression renameXid(String value) {
-    return delegate.invoke(RENAME_XID, constant(value));
+    if (xidRenamingMap != null) {
+      // Same as RenderContext.renameXid
+      String renamed = xidRenamingMap.get(value);
+      return constant(renamed == null ? value + "_" : renamed);
+    }
+    return renameAtRuntime(RENAME_XID_HANDLE, value);
   }
 
   Expression renameCss(String value) {
-    return delegate.invoke(RENAME_CSS_SELECTOR, constant(value));
+    if (cssRenamingMap != null) {
+      // Same as RenderContext.renameCssSelector
+      String renamed = cssRenamingMap.get(value);
+      return constant(renamed == null ? value : renamed);
+    }
+    return renameAtRuntime(RENAME_CSS_HANDLE, value);
+  }
+
+  private Expression renameAtRuntime(Handle bootstrap, String value) {
+    return new Expression(BytecodeUtils.STRING_TYPE, Feature.NON_NULLABLE) {
+      @Override
+      protected void doGen(CodeBuilder adapter) {
+        delegate.gen(adapter);
+        adapter.visitInvokeDynamicInsn("rename", RENAME_SIGNATURE, bootstrap, value);
+      }
+    };
   }
 
   Expression getDeltemplate(
@@ -156,6 +238,43 @@ final class RenderContextExpression extends Expression implements JbcSrcPluginCo
     return delegate.invoke(GET_LOCALE);
   }
 
+  /** Returns true if messages are translated at compile time. */
+  boolean hasCompileTimeMsgBundle() {
+    return msgBundle != null;
+  }
+
+  /**
+   * Returns the translation of the given message from the compile time bundle, falling back to the
+   * alternate id and then to {@code defaultParts}. Same as {@link
+   * RenderContext#getSoyMsgPartsWithAlternateId}.
+   */
+  ImmutableList<SoyMsgPart> getCompileTimeMsgParts(
+      long id, OptionalLong alternateId, ImmutableList<SoyMsgPart> defaultParts) {
+    checkState(msgBundle != null);
+    ImmutableList<SoyMsgPart> msgParts = msgBundle.getMsgParts(id);
+    if (msgParts.isEmpty() && alternateId.isPresent()) {
+      msgParts = msgBundle.getMsgParts(alternateId.getAsLong());
+    }
+    return msgParts.isEmpty() ? defaultParts : msgParts;
+  }
+
+  /**
+   * Returns true if the primary message (or its alternate) should be rendered instead of the
+   * {@code fallbackmsg} (or its alternate), according to the compile time bundle. Same as {@link
+   * RenderContext#usePrimaryOrAlternateIfFallbackOrFallbackAlternate}.
+   */
+  boolean usePrimaryMsgAtCompileTime(
+      long msgId, OptionalLong alternateId, long fallbackId, OptionalLong fallbackAlternateId) {
+    checkState(msgBundle != null);
+    return hasCompileTimeMsg(msgId, alternateId)
+        || !hasCompileTimeMsg(fallbackId, fallbackAlternateId);
+  }
+
+  private boolean hasCompileTimeMsg(long id, OptionalLong alternateId) {
+    return !msgBundle.getMsgParts(id).isEmpty()
+        || (alternateId.isPresent() && !msgBundle.getMsgParts(alternateId.getAsLong()).isEmpty());
+  }
+
   Expression getSoyMsgParts(long id, Expression defaultParts) {
     return delegate.invoke(GET_SOY_MSG_PARTS, constant(id), defaultParts);
   }
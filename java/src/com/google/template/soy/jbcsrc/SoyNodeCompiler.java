@@ -30,17 +30,22 @@ import static com.google.template.soy.jbcsrc.restricted.BytecodeUtils.constant;
 import static org.objectweb.asm.commons.GeneratorAdapter.EQ;
 
 import com.google.auto.value.AutoValue;
+import com.google.common.base.Function;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.primitives.Ints;
 import com.google.template.soy.base.internal.SanitizedContentKind;
 import com.google.template.soy.basetree.Node;
 import com.google.template.soy.data.SoyRecord;
 import com.google.template.soy.data.SoyValueProvider;
 import com.google.template.soy.data.internal.ParamStore;
+import com.google.template.soy.data.internal.ShapedParamStore;
 import com.google.template.soy.exprtree.ExprNode;
 import com.google.template.soy.exprtree.ExprRootNode;
 import com.google.template.soy.exprtree.FunctionNode;
 import com.google.template.soy.exprtree.IntegerNode;
+import com.google.template.soy.exprtree.VarDefn;
+import com.google.template.soy.exprtree.VarRefNode;
 import com.google.template.soy.jbcsrc.ControlFlow.IfBlock;
 import com.google.template.soy.jbcsrc.ExpressionCompiler.BasicExpressionCompiler;
 import com.google.template.soy.jbcsrc.LazyClosureCompiler.LazyClosure;
@@ -56,6 +61,7 @@ import com.google.template.soy.jbcsrc.restricted.Expression.Feature;
 import com.google.template.soy.jbcsrc.restricted.FieldRef;
 import com.google.template.soy.jbcsrc.restricted.MethodRef;
 import com.google.template.soy.jbcsrc.restricted.SoyExpression;
+import com.google.template.soy.jbcsrc.restricted.SoyJbcSrcPrintDirective;
 import com.google.template.soy.jbcsrc.restricted.SoyRuntimeType;
 import com.google.template.soy.jbcsrc.restricted.Statement;
 import com.google.template.soy.jbcsrc.runtime.JbcSrcRuntime;
@@ -107,7 +113,9 @@ import com.google.template.soy.soytree.defn.TemplateParam;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import org.objectweb.asm.Handle;
 import org.objectweb.asm.Label;
@@ -141,7 +149,8 @@ final class SoyNodeCompiler extends AbstractReturningSoyNodeVisitor<Statement> {
       TemplateParameterLookup parameterLookup,
       FieldManager fields,
       BasicExpressionCompiler constantCompiler,
-      JavaSourceFunctionCompiler javaSourceFunctionCompiler) {
+      JavaSourceFunctionCompiler javaSourceFunctionCompiler,
+      boolean concurrentCalls) {
     // We pass a lazy supplier of render context so that lazy closure compiler classes that don't
     // generate detach logic don't trigger capturing this value into a field.
     DetachState detachState = new DetachState(variables, parameterLookup::getRenderContext);
@@ -160,7 +169,8 @@ final class SoyNodeCompiler extends AbstractReturningSoyNodeVisitor<Statement> {
         expressionCompiler,
         soyValueProviderCompiler,
         constantCompiler,
-        javaSourceFunctionCompiler);
+        javaSourceFunctionCompiler,
+        concurrentCalls);
   }
 
   final TemplateAnalysis analysis;
@@ -174,7 +184,13 @@ final class SoyNodeCompiler extends AbstractReturningSoyNodeVisitor<Statement> {
   final ExpressionToSoyValueProviderCompiler expressionToSoyValueProviderCompiler;
   final BasicExpressionCompiler constantCompiler;
   final JavaSourceFunctionCompiler javaSourceFunctionCompiler;
+  // Whether runs of independent calls are started ahead of time, see startConcurrentCalls()
+  final boolean concurrentCalls;
   private Scope currentScope;
+  // The handles for calls that are started ahead of time because they are part of a run of
+  // independent calls, see startConcurrentCalls()
+  private final Map<CallBasicNode, TemplateVariableManager.Variable> startedCalls =
+      new IdentityHashMap<>();
 
   SoyNodeCompiler(
       TemplateAnalysis analysis,
@@ -187,7 +203,8 @@ final class SoyNodeCompiler extends AbstractReturningSoyNodeVisitor<Statement> {
       ExpressionCompiler exprCompiler,
       ExpressionToSoyValueProviderCompiler expressionToSoyValueProviderCompiler,
       BasicExpressionCompiler constantCompiler,
-      JavaSourceFunctionCompiler javaSourceFunctionCompiler) {
+      JavaSourceFunctionCompiler javaSourceFunctionCompiler,
+      boolean concurrentCalls) {
     this.analysis = checkNotNull(analysis);
     this.innerClasses = innerClasses;
     this.detachState = checkNotNull(detachState);
@@ -199,23 +216,28 @@ final class SoyNodeCompiler extends AbstractReturningSoyNodeVisitor<Statement> {
     this.expressionToSoyValueProviderCompiler = checkNotNull(expressionToSoyValueProviderCompiler);
     this.constantCompiler = constantCompiler;
     this.javaSourceFunctionCompiler = javaSourceFunctionCompiler;
+    this.concurrentCalls = concurrentCalls;
   }
 
   @AutoValue
   abstract static class CompiledMethodBody {
-    static CompiledMethodBody create(Statement body, int numDetaches) {
-      return new AutoValue_SoyNodeCompiler_CompiledMethodBody(body, numDetaches);
+    static CompiledMethodBody create(Statement body, int numDetaches, boolean checksSoftLimit) {
+      return new AutoValue_SoyNodeCompiler_CompiledMethodBody(body, numDetaches, checksSoftLimit);
     }
 
     abstract Statement body();
 
     abstract int numberOfDetachStates();
+
+    /** Whether the body may return early because the output limit has been reached. */
+    abstract boolean checksSoftLimit();
   }
 
   CompiledMethodBody compile(
       RenderUnitNode node, ExtraCodeCompiler prefix, ExtraCodeCompiler suffix) {
     List<Statement> statements = new ArrayList<>();
-    if (shouldCheckForSoftLimit(node)) {
+    boolean checksSoftLimit = shouldCheckForSoftLimit(node);
+    if (checksSoftLimit) {
       statements.add(detachState.detachLimited(appendableExpression));
     }
     statements.add(doCompile(node, prefix, suffix));
@@ -223,7 +245,7 @@ final class SoyNodeCompiler extends AbstractReturningSoyNodeVisitor<Statement> {
         // needs to go at the beginning but can only be generated after the whole method body.
         0, detachState.generateReattachTable());
     return CompiledMethodBody.create(
-        Statement.concat(statements), detachState.getNumberOfDetaches());
+        Statement.concat(statements), detachState.getNumberOfDetaches(), checksSoftLimit);
   }
 
   Statement compileWithoutDetaches(
@@ -327,7 +349,16 @@ final class SoyNodeCompiler extends AbstractReturningSoyNodeVisitor<Statement> {
   private Statement visitChildrenInNewScope(BlockNode node) {
     Scope prev = currentScope;
     currentScope = variables.enterScope();
-    List<Statement> children = visitChildren(node);
+    Map<StandaloneNode, List<CallBasicNode>> runsOfConcurrentCalls =
+        concurrentCalls ? findRunsOfIndependentCalls(node) : ImmutableMap.of();
+    List<Statement> children = new ArrayList<>();
+    for (StandaloneNode child : node.getChildren()) {
+      List<CallBasicNode> run = runsOfConcurrentCalls.get(child);
+      if (run != null) {
+        children.add(startConcurrentCalls(run));
+      }
+      children.add(visit(child));
+    }
     Statement leave = currentScope.exitScope();
     children.add(leave);
     currentScope = prev;
@@ -679,10 +710,23 @@ final class SoyNodeCompiler extends AbstractReturningSoyNodeVisitor<Statement> {
   private Statement visitLoggingFunction(
       PrintNode node, FunctionNode fn, LoggingFunction loggingFunction) {
     List<Expression> printDirectives = new ArrayList<>(node.numChildren());
+    boolean allEscapersAreStatic = true;
     for (PrintDirectiveNode child : node.getChildren()) {
       checkState(child.getArgs().isEmpty()); // sanity
-      printDirectives.add(
-          parameterLookup.getRenderContext().getEscapingDirectiveAsFunction(child.getName()));
+      SoyPrintDirective directive = child.getPrintDirective();
+      if (directive instanceof SoyJbcSrcPrintDirective.Escaper) {
+        printDirectives.add(
+            escaperAsFunction(((SoyJbcSrcPrintDirective.Escaper) directive).escaperMethod()));
+      } else {
+        allEscapersAreStatic = false;
+        printDirectives.add(
+            parameterLookup.getRenderContext().getEscapingDirectiveAsFunction(child.getName()));
+      }
+    }
+    Expression escapers = BytecodeUtils.asImmutableList(printDirectives);
+    if (allEscapersAreStatic) {
+      // The list doesn't depend on the render, so build it once per class.
+      escapers = fields.addStaticField("loggingEscapers", escapers).accessor();
     }
     Label reattachPoint = new Label();
     SoyFunctionSignature functionSignature =
@@ -698,11 +742,39 @@ final class SoyNodeCompiler extends AbstractReturningSoyNodeVisitor<Statement> {
             exprCompiler
                 .asBasicCompiler(detachState.createExpressionDetacher(reattachPoint))
                 .compileToList(fn.getChildren()),
-            printDirectives)
+            escapers)
         .labelStart(reattachPoint)
         .toStatement();
   }
 
+  private static final Type FUNCTION_TYPE = Type.getType(Function.class);
+  private static final String ESCAPER_FUNCTION_FACTORY_DESCRIPTOR =
+      Type.getMethodDescriptor(FUNCTION_TYPE);
+  private static final Type FUNCTION_APPLY_TYPE =
+      Type.getMethodType(BytecodeUtils.OBJECT.type(), BytecodeUtils.OBJECT.type());
+  private static final Type ESCAPER_TYPE =
+      Type.getMethodType(BytecodeUtils.STRING_TYPE, BytecodeUtils.STRING_TYPE);
+
+  /**
+   * Returns a non-capturing {@code Function<String, String>} lambda that calls the given static
+   * escaper method. The JVM links this to a single constant instance.
+   */
+  private static Expression escaperAsFunction(MethodRef escaperMethod) {
+    Handle handle = escaperMethod.asHandle();
+    return new Expression(FUNCTION_TYPE, Feature.CHEAP, Feature.NON_NULLABLE) {
+      @Override
+      protected void doGen(CodeBuilder cb) {
+        cb.visitInvokeDynamicInsn(
+            "apply",
+            ESCAPER_FUNCTION_FACTORY_DESCRIPTOR,
+            TemplateCompiler.METAFACTORY_HANDLE,
+            FUNCTION_APPLY_TYPE,
+            handle,
+            ESCAPER_TYPE);
+      }
+    };
+  }
+
   private SoyExpression compilePrintNodeAsExpression(PrintNode node, Label reattachPoint) {
     BasicExpressionCompiler basic =
         exprCompiler.asBasicCompiler(detachState.createExpressionDetacher(reattachPoint));
@@ -824,7 +896,7 @@ final class SoyNodeCompiler extends AbstractReturningSoyNodeVisitor<Statement> {
     if (node.getRawText().length() == 1) {
       render = appendableExpression.appendChar(constant(node.getRawText().charAt(0)));
     } else {
-      render = appendableExpression.appendString(constant(node.getRawText()));
+      render = appendableExpression.appendRawText(node.getRawText());
     }
     return render.toStatement();
   }
@@ -864,13 +936,23 @@ final class SoyNodeCompiler extends AbstractReturningSoyNodeVisitor<Statement> {
     MsgNode msg = node.getMsg();
     MsgPartsAndIds idAndParts = MsgUtils.buildMsgPartsAndComputeMsgIdForDualFormat(msg);
     ImmutableList<SoyPrintDirective> escapingDirectives = node.getEscapingDirectives();
-    Statement renderDefault = getMsgCompiler().compileMessage(idAndParts, msg, escapingDirectives);
     // fallback groups have 1 or 2 children.  if there are 2 then the second is a fallback and we
     // need to check for presence.
     if (node.hasFallbackMsg()) {
       MsgNode fallback = node.getFallbackMsg();
       MsgPartsAndIds fallbackIdAndParts =
           MsgUtils.buildMsgPartsAndComputeMsgIdForDualFormat(fallback);
+      RenderContextExpression renderContext = parameterLookup.getRenderContext();
+      if (renderContext.hasCompileTimeMsgBundle()) {
+        // The translations are known, so just compile whichever message would be chosen.
+        return renderContext.usePrimaryMsgAtCompileTime(
+                idAndParts.id,
+                msg.getAlternateId(),
+                fallbackIdAndParts.id,
+                fallback.getAlternateId())
+            ? getMsgCompiler().compileMessage(idAndParts, msg, escapingDirectives)
+            : getMsgCompiler().compileMessage(fallbackIdAndParts, fallback, escapingDirectives);
+      }
       // TODO(lukes): consider changing the control flow here by 'inlining' the usePrimaryMsg logic
       // it would save some lookups.  Right now we will do to 2- 3 calls to
       // SoyMsgBundle.getMsgParts (each of which requires a binary search).  We could reduce that
@@ -903,13 +985,15 @@ final class SoyNodeCompiler extends AbstractReturningSoyNodeVisitor<Statement> {
                   : parameterLookup
                       .getRenderContext()
                       .usePrimaryMsgIfFallback(idAndParts.id, fallbackIdAndParts.id));
-      IfBlock ifAvailableRenderDefault = IfBlock.create(cond, renderDefault);
+      IfBlock ifAvailableRenderDefault =
+          IfBlock.create(
+              cond, getMsgCompiler().compileMessage(idAndParts, msg, escapingDirectives));
       return ControlFlow.ifElseChain(
           ImmutableList.of(ifAvailableRenderDefault),
           Optional.of(
               getMsgCompiler().compileMessage(fallbackIdAndParts, fallback, escapingDirectives)));
     } else {
-      return renderDefault;
+      return getMsgCompiler().compileMessage(idAndParts, msg, escapingDirectives);
     }
   }
 
@@ -1075,6 +1159,9 @@ final class SoyNodeCompiler extends AbstractReturningSoyNodeVisitor<Statement> {
 
   @Override
   protected Statement visitCallBasicNode(CallBasicNode node) {
+    if (startedCalls.containsKey(node)) {
+      return renderConcurrentCall(node);
+    }
     if (node.isStaticCall()) {
       // Use invokedynamic to bind to the method.  This allows applications using complex
       // classloader setups to have {call} commands cross classloader boundaries.
@@ -1085,18 +1172,7 @@ final class SoyNodeCompiler extends AbstractReturningSoyNodeVisitor<Statement> {
           new CallGenerator() {
             @Override
             public Expression asCompiledTemplate() {
-              Expression renderContext = parameterLookup.getRenderContext();
-              return new Expression(BytecodeUtils.COMPILED_TEMPLATE_TYPE, Feature.NON_NULLABLE) {
-                @Override
-                protected void doGen(CodeBuilder adapter) {
-                  renderContext.gen(adapter);
-                  adapter.visitInvokeDynamicInsn(
-                      "template",
-                      TEMPLATE_METHOD_DESCRIPTOR,
-                      STATIC_TEMPLATE_HANDLE,
-                      node.getCalleeName());
-                }
-              };
+              return staticCompiledTemplate(node);
             }
 
             @Override
@@ -1130,6 +1206,113 @@ final class SoyNodeCompiler extends AbstractReturningSoyNodeVisitor<Statement> {
     }
   }
 
+  /** Returns an expression that looks up the template called by the given static call. */
+  private Expression staticCompiledTemplate(CallBasicNode node) {
+    Expression renderContext = parameterLookup.getRenderContext();
+    return new Expression(BytecodeUtils.COMPILED_TEMPLATE_TYPE, Feature.NON_NULLABLE) {
+      @Override
+      protected void doGen(CodeBuilder adapter) {
+        renderContext.gen(adapter);
+        adapter.visitInvokeDynamicInsn(
+            "template", TEMPLATE_METHOD_DESCRIPTOR, STATIC_TEMPLATE_HANDLE, node.getCalleeName());
+      }
+    };
+  }
+
+  /**
+   * Finds runs of sibling calls that can be rendered concurrently, keyed by the first node of the
+   * run.
+   *
+   * <p>A run is a sequence of at least two independent calls, possibly separated by raw text. A
+   * call is independent if nothing it depends on can be affected by rendering the surrounding
+   * template: its callee is a static template and its params are constants or plain references to
+   * the caller's own params. In particular, it can't reference any local variables, since those
+   * are lazily evaluated by the caller and are not safe to share across threads. Param values are
+   * still checked at render time, see {@link
+   * com.google.template.soy.jbcsrc.runtime.ConcurrentCall#start}.
+   */
+  private static Map<StandaloneNode, List<CallBasicNode>> findRunsOfIndependentCalls(
+      BlockNode node) {
+    Map<StandaloneNode, List<CallBasicNode>> runs = new IdentityHashMap<>();
+    StandaloneNode runStart = null;
+    List<CallBasicNode> run = new ArrayList<>();
+    for (StandaloneNode child : node.getChildren()) {
+      if (child instanceof CallBasicNode && isIndependentCall((CallBasicNode) child)) {
+        if (run.isEmpty()) {
+          runStart = child;
+        }
+        run.add((CallBasicNode) child);
+      } else if (!(child instanceof RawTextNode)) {
+        if (run.size() > 1) {
+          runs.put(runStart, run);
+        }
+        run = new ArrayList<>();
+      }
+    }
+    if (run.size() > 1) {
+      runs.put(runStart, run);
+    }
+    return runs;
+  }
+
+  private static boolean isIndependentCall(CallBasicNode node) {
+    // data="all" is excluded too, the caller's param record may contain arbitrary providers
+    if (!node.isStaticCall()
+        || !node.getEscapingDirectives().isEmpty()
+        || node.getKeyExpr() != null
+        || node.isPassingData()) {
+      return false;
+    }
+    for (CallParamNode param : node.getChildren()) {
+      if (!(param instanceof CallParamValueNode)) {
+        return false;
+      }
+      ExprNode value = ((CallParamValueNode) param).getExpr().getRoot();
+      boolean isParamRef =
+          value instanceof VarRefNode
+              && ((VarRefNode) value).getDefnDecl().kind() == VarDefn.Kind.PARAM;
+      if (!isParamRef && !(value instanceof ExprNode.PrimitiveNode)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Starts all the calls in a run of independent calls, storing a {@link
+   * com.google.template.soy.jbcsrc.runtime.ConcurrentCall} for each of them in the current scope.
+   * If concurrent rendering is enabled, the calls all start rendering on the executor now,
+   * otherwise each call is just rendered when it is reached.
+   */
+  private Statement startConcurrentCalls(List<CallBasicNode> run) {
+    List<Statement> statements = new ArrayList<>();
+    for (CallBasicNode call : run) {
+      TemplateVariableManager.Variable handle =
+          currentScope.createSynthetic(
+              SyntheticVarName.concurrentCall(call),
+              MethodRef.CONCURRENT_CALL_START.invoke(
+                  constant(call.getCalleeName()),
+                  staticCompiledTemplate(call),
+                  prepareParamsHelper(call),
+                  parameterLookup.getIjRecord(),
+                  parameterLookup.getRenderContext()),
+              TemplateVariableManager.SaveStrategy.STORE);
+      startedCalls.put(call, handle);
+      statements.add(handle.initializer().withSourceLocation(call.getSourceLocation()));
+    }
+    return Statement.concat(statements);
+  }
+
+  /** Splices the output of a call started by {@link #startConcurrentCalls} into the output. */
+  private Statement renderConcurrentCall(CallBasicNode node) {
+    return detachState.detachForRender(
+        startedCalls
+            .get(node)
+            .accessor()
+            .invoke(MethodRef.CONCURRENT_CALL_RENDER_TO, appendableExpression)
+            .withSourceLocation(node.getSourceLocation()));
+  }
+
   private static DirectCallGenerator simpleCall(Expression compiledTemplateExpression) {
     return (params, ij, output, context) ->
         compiledTemplateExpression.invoke(
@@ -1166,6 +1349,8 @@ final class SoyNodeCompiler extends AbstractReturningSoyNodeVisitor<Statement> {
     AppendableExpression appendable = appendableExpression;
 
     DirectCallGenerator directCallGenerator;
+    // Whether the callee is invoked directly, rather than through a wrapper that applies escapers.
+    boolean isDirectCall = false;
     Expression paramsExpression = prepareParamsHelper(node);
     Statement initParams = Statement.NULL_STATEMENT;
     TemplateVariableManager.Scope renderScope = variables.enterScope();
@@ -1197,6 +1382,7 @@ final class SoyNodeCompiler extends AbstractReturningSoyNodeVisitor<Statement> {
       Optional<DirectCallGenerator> asDirectCall = callGenerator.asDirectCall();
       if (asDirectCall.isPresent()) {
         directCallGenerator = asDirectCall.get();
+        isDirectCall = true;
       } else {
         TemplateVariableManager.Variable calleeVariable =
             renderScope.createSynthetic(
@@ -1235,7 +1421,14 @@ final class SoyNodeCompiler extends AbstractReturningSoyNodeVisitor<Statement> {
             // make sure to tag this expression with the source location to ensure stack traces are
             // accurate.
             .withSourceLocation(node.getSourceLocation());
-    Statement callCallee = detachState.detachForRender(callRender);
+    // Calls to templates that never detach always complete, so there is no need to generate a
+    // reattach point and save the state of this template around them.
+    Statement callCallee =
+        isDirectCall
+                && node instanceof CallBasicNode
+                && analysis.calleeNeverDetaches((CallBasicNode) node)
+            ? detachState.assertFullyRenderered(callRender)
+            : detachState.detachForRender(callRender);
     // We need to init the appendable after the parmas because initializing the params may require
     // rendering params into temporary buffers which may themselves use the currentAppendable local.
     return Statement.concat(
@@ -1273,39 +1466,63 @@ final class SoyNodeCompiler extends AbstractReturningSoyNodeVisitor<Statement> {
           .orElse(paramsRecord);
     }
 
+    if (!node.isPassingData()) {
+      return prepareShapedParams(node);
+    }
     Expression paramStoreExpression = getParamStoreExpression(node);
     for (CallParamNode child : node.getChildren()) {
       String paramKey = child.getKey().identifier();
-      Expression valueExpr;
-      if (child instanceof CallParamContentNode) {
-        valueExpr =
-            new LazyClosureCompiler(this)
-                .compileLazyContent("param", (CallParamContentNode) child, paramKey)
-                .soyValueProvider();
-      } else {
-        valueExpr =
-            new LazyClosureCompiler(this)
-                .compileLazyExpression(
-                    "param", child, paramKey, ((CallParamValueNode) child).getExpr())
-                .soyValueProvider();
-      }
       // ParamStore.setField return 'this' so we can just chain the invocations together.
       paramStoreExpression =
           MethodRef.PARAM_STORE_SET_FIELD.invoke(
-              paramStoreExpression, BytecodeUtils.constant(paramKey), valueExpr);
+              paramStoreExpression, BytecodeUtils.constant(paramKey), compileParamValue(child));
+    }
+    return paramStoreExpression;
+  }
+
+  /**
+   * Returns an expression that creates a {@link ShapedParamStore} holding exactly the params
+   * passed by the call. The shape is computed once per call site and stored in a static field.
+   */
+  private Expression prepareShapedParams(CallNode node) {
+    List<Expression> keys = new ArrayList<>(node.numChildren());
+    for (CallParamNode child : node.getChildren()) {
+      keys.add(BytecodeUtils.constant(child.getKey().identifier()));
+    }
+    Expression shape =
+        fields
+            .addStaticField(
+                "paramShape",
+                MethodRef.RECORD_SHAPE_CREATE.invoke(BytecodeUtils.asImmutableList(keys)))
+            .accessor();
+    Expression paramStoreExpression = ConstructorRef.SHAPED_PARAM_STORE.construct(shape);
+    int index = 0;
+    for (CallParamNode child : node.getChildren()) {
+      // ShapedParamStore.setFieldAt return 'this' so we can just chain the invocations together.
+      paramStoreExpression =
+          MethodRef.SHAPED_PARAM_STORE_SET_FIELD_AT.invoke(
+              paramStoreExpression, constant(index++), compileParamValue(child));
     }
     return paramStoreExpression;
   }
 
+  private Expression compileParamValue(CallParamNode child) {
+    String paramKey = child.getKey().identifier();
+    if (child instanceof CallParamContentNode) {
+      return new LazyClosureCompiler(this)
+          .compileLazyContent("param", (CallParamContentNode) child, paramKey)
+          .soyValueProvider();
+    }
+    return new LazyClosureCompiler(this)
+        .compileLazyExpression("param", child, paramKey, ((CallParamValueNode) child).getExpr())
+        .soyValueProvider();
+  }
+
   /**
    * Returns an expression that creates a new {@link ParamStore} suitable for holding all the
    * parameters.
    */
   private Expression getParamStoreExpression(CallNode node) {
-    if (!node.isPassingData()) {
-      return ConstructorRef.BASIC_PARAM_STORE.construct(constant(node.numChildren()));
-    }
-
     Label reattachDataLabel = new Label();
     Expression dataExpression;
     if (node.isPassingAllData()) {
@@ -1459,6 +1676,7 @@ final class SoyNodeCompiler extends AbstractReturningSoyNodeVisitor<Statement> {
         exprCompiler,
         expressionToSoyValueProviderCompiler,
         constantCompiler,
-        javaSourceFunctionCompiler);
+        javaSourceFunctionCompiler,
+        concurrentCalls);
   }
 }
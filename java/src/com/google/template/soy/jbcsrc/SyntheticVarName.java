@@ -18,6 +18,7 @@ package com.google.template.soy.jbcsrc;
 
 import com.google.auto.value.AutoValue;
 import com.google.template.soy.basetree.Node;
+import com.google.template.soy.soytree.CallNode;
 import com.google.template.soy.soytree.ForNonemptyNode;
 import com.google.template.soy.soytree.SwitchNode;
 import javax.annotation.Nullable;
@@ -42,6 +43,10 @@ abstract class SyntheticVarName {
     return new AutoValue_SyntheticVarName(StandardNames.CURRENT_PARAMS, null);
   }
 
+  static SyntheticVarName concurrentCall(CallNode node) {
+    return new AutoValue_SyntheticVarName("concurrentCall", node);
+  }
+
   static SyntheticVarName forSwitch(SwitchNode node) {
     return new AutoValue_SyntheticVarName("switch", node);
   }
@@ -64,6 +64,7 @@ import com.google.template.soy.msgs.restricted.SoyMsgSelectPart;
 import com.google.template.soy.shared.RangeArgs;
 import com.google.template.soy.shared.internal.BuiltinFunction;
 import com.google.template.soy.soytree.AbstractSoyNodeVisitor;
+import com.google.template.soy.soytree.CallBasicNode;
 import com.google.template.soy.soytree.CallNode;
 import com.google.template.soy.soytree.CallParamContentNode;
 import com.google.template.soy.soytree.CallParamNode;
@@ -108,6 +109,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Predicate;
 
 /**
  * A static analyzer for how templates will access variables.
@@ -122,6 +124,9 @@ import java.util.Set;
  *       field reference has already been referenced at a given point and therefore {code
  *       SoyValueProvider#status()} has already returned {@link
  *       com.google.template.soy.jbcsrc.api.RenderResult#done()}.
+ *   <li>{@link #calleeNeverDetaches(CallBasicNode)} can tell us whether a call is to a template
+ *       that was compiled without any detach points, based on summaries of the other templates in
+ *       the same compilation.
  * </ul>
  *
  * <p>TODO(lukes): consider adding the following
@@ -137,16 +142,26 @@ import java.util.Set;
 final class TemplateAnalysis {
 
   static TemplateAnalysis analyze(TemplateNode node) {
+    return analyze(node, templateName -> false);
+  }
+
+  /**
+   * @param neverDetachingTemplates Identifies the templates that are known to never detach, no
+   *     matter what they are passed. Templates that are not identified are assumed to detach.
+   */
+  static TemplateAnalysis analyze(TemplateNode node, Predicate<String> neverDetachingTemplates) {
     AccessGraph templateGraph = new PseudoEvaluatorVisitor().evaluate(node);
-    return new TemplateAnalysis(templateGraph);
+    return new TemplateAnalysis(templateGraph, neverDetachingTemplates);
   }
 
   private final AccessGraph templateGraph;
   private final ImmutableSet<ExprNode> resolvedExpressions;
+  private final Predicate<String> neverDetachingTemplates;
 
-  private TemplateAnalysis(AccessGraph templateGraph) {
+  private TemplateAnalysis(AccessGraph templateGraph, Predicate<String> neverDetachingTemplates) {
     this.templateGraph = templateGraph;
     this.resolvedExpressions = ImmutableSet.copyOf(templateGraph.getResolvedExpressions());
+    this.neverDetachingTemplates = neverDetachingTemplates;
   }
 
   /** Prints the access graph in .dot format */
@@ -171,6 +186,14 @@ final class TemplateAnalysis {
     return resolvedExpressions.contains(ref);
   }
 
+  /**
+   * Returns true if this call is to a template that never detaches, so rendering it always
+   * completes and the caller doesn't need to be able to save and restore its state around it.
+   */
+  boolean calleeNeverDetaches(CallBasicNode call) {
+    return call.isStaticCall() && neverDetachingTemplates.test(call.getCalleeName());
+  }
+
   /**
    * This visitor (and the {@link PseudoEvaluatorExprVisitor}) visits every Soy node in the order
    * that the code generated from those node would execute and contructs an {@link AccessGraph}.
@@ -16,6 +16,7 @@
 
 package com.google.template.soy.jbcsrc;
 
+import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Strings.nullToEmpty;
 import static com.google.common.collect.ImmutableSet.toImmutableSet;
@@ -23,6 +24,7 @@ import static com.google.template.soy.soytree.SoyTreeUtils.allNodesOfType;
 
 import com.google.auto.value.AutoAnnotation;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 import com.google.template.soy.data.SanitizedContent.ContentKind;
 import com.google.template.soy.data.internal.Converters;
@@ -48,12 +50,16 @@ import com.google.template.soy.jbcsrc.restricted.SoyRuntimeType;
 import com.google.template.soy.jbcsrc.restricted.Statement;
 import com.google.template.soy.jbcsrc.shared.CompiledTemplate;
 import com.google.template.soy.jbcsrc.shared.TemplateMetadata;
+import com.google.template.soy.msgs.SoyMsgBundle;
+import com.google.template.soy.shared.SoyCssRenamingMap;
+import com.google.template.soy.shared.SoyIdRenamingMap;
 import com.google.template.soy.soytree.CallDelegateNode;
 import com.google.template.soy.soytree.CallParamContentNode;
 import com.google.template.soy.soytree.CallParamValueNode;
 import com.google.template.soy.soytree.LetContentNode;
 import com.google.template.soy.soytree.LetValueNode;
 import com.google.template.soy.soytree.SoyNode;
+import com.google.template.soy.soytree.TemplateBasicNode;
 import com.google.template.soy.soytree.TemplateDelegateNode;
 import com.google.template.soy.soytree.TemplateNode;
 import com.google.template.soy.soytree.Visibility;
@@ -68,6 +74,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Predicate;
 import javax.annotation.Nullable;
 import org.objectweb.asm.Handle;
 import org.objectweb.asm.Label;
@@ -89,17 +96,62 @@ final class TemplateCompiler {
   private final InnerClasses innerClasses;
   private SoyClassWriter writer;
   private TemplateAnalysis analysis;
+  private TemplateMetadata metadata;
   private final JavaSourceFunctionCompiler javaSourceFunctionCompiler;
+  @Nullable private final SoyCssRenamingMap cssRenamingMap;
+  @Nullable private final SoyIdRenamingMap xidRenamingMap;
+  @Nullable private final SoyMsgBundle msgBundle;
+  private final Predicate<String> neverDetachingTemplates;
+  private final boolean concurrentCalls;
+  private boolean canDetach = true;
 
   TemplateCompiler(
       CompiledTemplateMetadata template,
       TemplateNode templateNode,
-      JavaSourceFunctionCompiler javaSourceFunctionCompiler) {
+      JavaSourceFunctionCompiler javaSourceFunctionCompiler,
+      boolean concurrentCalls) {
+    this(
+        template,
+        templateNode,
+        javaSourceFunctionCompiler,
+        /* cssRenamingMap= */ null,
+        /* xidRenamingMap= */ null,
+        /* msgBundle= */ null,
+        /* neverDetachingTemplates= */ templateName -> false,
+        concurrentCalls);
+  }
+
+  /**
+   * @param cssRenamingMap A CSS renaming map to apply at compile time, or null to rename at render
+   *     time.
+   * @param xidRenamingMap An xid renaming map to apply at compile time, or null to rename at render
+   *     time.
+   * @param msgBundle A message bundle to translate messages with at compile time, or null to
+   *     translate at render time.
+   * @param neverDetachingTemplates Identifies the callees that are known to never detach, calls to
+   *     them are compiled without detach logic. See {@link #canDetach()}.
+   * @param concurrentCalls Whether runs of independent calls are compiled so that they can render
+   *     concurrently.
+   */
+  TemplateCompiler(
+      CompiledTemplateMetadata template,
+      TemplateNode templateNode,
+      JavaSourceFunctionCompiler javaSourceFunctionCompiler,
+      @Nullable SoyCssRenamingMap cssRenamingMap,
+      @Nullable SoyIdRenamingMap xidRenamingMap,
+      @Nullable SoyMsgBundle msgBundle,
+      Predicate<String> neverDetachingTemplates,
+      boolean concurrentCalls) {
     this.template = template;
     this.templateNode = templateNode;
     this.innerClasses = new InnerClasses(template.typeInfo());
     this.fields = new FieldManager(template.typeInfo());
     this.javaSourceFunctionCompiler = javaSourceFunctionCompiler;
+    this.cssRenamingMap = cssRenamingMap;
+    this.xidRenamingMap = xidRenamingMap;
+    this.msgBundle = msgBundle;
+    this.neverDetachingTemplates = neverDetachingTemplates;
+    this.concurrentCalls = concurrentCalls;
   }
 
   /**
@@ -120,7 +172,7 @@ final class TemplateCompiler {
    *       ultimately loads the returned classes.
    */
   Iterable<ClassData> compile() {
-    analysis = TemplateAnalysis.analyze(templateNode);
+    analysis = TemplateAnalysis.analyze(templateNode, neverDetachingTemplates);
     List<ClassData> classes = new ArrayList<>();
 
     // TODO(lukes): change the flow of this method so these methods return method bodies and we only
@@ -134,6 +186,9 @@ final class TemplateCompiler {
     generateTemplateMetadata();
 
     generateRenderMethod();
+    if (isCacheable()) {
+      generateCachedRenderMethod();
+    }
 
     innerClasses.registerAllInnerClasses(writer);
     fields.defineFields(writer);
@@ -148,7 +203,7 @@ final class TemplateCompiler {
     return classes;
   }
 
-  private static final Handle METAFACTORY_HANDLE =
+  static final Handle METAFACTORY_HANDLE =
       MethodRef.create(
               LambdaMetafactory.class,
               "metafactory",
@@ -171,6 +226,80 @@ final class TemplateCompiler {
           BytecodeUtils.LOGGING_ADVISING_APPENDABLE_TYPE,
           BytecodeUtils.RENDER_CONTEXT_TYPE);
 
+  private boolean isCacheable() {
+    return templateNode instanceof TemplateBasicNode
+        && ((TemplateBasicNode) templateNode).isCacheable();
+  }
+
+  /**
+   * Returns the method containing the template body. For cacheable templates this is a private
+   * method that is wrapped by the cache lookup in the {@code render} method.
+   */
+  private Method uncachedRenderMethod() {
+    Method render = template.renderMethod().method();
+    return isCacheable() ? new Method("renderUncached", render.getDescriptor()) : render;
+  }
+
+  /** Returns an expression that creates a {@link CompiledTemplate} for the given static method. */
+  private Expression compiledTemplateForMethod(Method method) {
+    Handle handle =
+        new Handle(
+            Opcodes.H_INVOKESTATIC,
+            template.typeInfo().internalName(),
+            method.getName(),
+            method.getDescriptor(),
+            /* itf= */ false);
+    return new Expression(BytecodeUtils.COMPILED_TEMPLATE_TYPE) {
+      @Override
+      protected void doGen(CodeBuilder cb) {
+        cb.visitInvokeDynamicInsn(
+            "render",
+            COMPILED_TEMPLATE_INIT_DESCRIPTOR,
+            METAFACTORY_HANDLE,
+            COMPILED_TEMPLATE_RENDER_DESCRIPTOR,
+            handle,
+            COMPILED_TEMPLATE_RENDER_DESCRIPTOR);
+      }
+    };
+  }
+
+  /**
+   * Generates the {@code render} method for a cacheable template. The code here is identical to:
+   *
+   * <pre>{@code
+   * public static RenderResult render(
+   *     SoyRecord params, SoyRecord ij, LoggingAdvisingAppendable appendable, RenderContext ctx) {
+   *   return JbcSrcRuntime.renderCached(
+   *       foo::renderUncached, "ns.foo", PARAM_NAMES, params, ij, appendable, ctx);
+   * }
+   * }</pre>
+   */
+  private void generateCachedRenderMethod() {
+    List<Expression> paramNames = new ArrayList<>();
+    for (TemplateParam param : templateNode.getAllParams()) {
+      if (!param.isInjected()) {
+        paramNames.add(BytecodeUtils.constant(param.name()));
+      }
+    }
+    Expression paramNamesField =
+        fields.addStaticField("PARAM_NAMES", BytecodeUtils.asImmutableList(paramNames)).accessor();
+    Expression uncached = compiledTemplateForMethod(uncachedRenderMethod());
+    Expression templateName = BytecodeUtils.constant(templateNode.getTemplateName());
+    Statement body =
+        new Statement() {
+          @Override
+          protected void doGen(CodeBuilder adapter) {
+            uncached.gen(adapter);
+            templateName.gen(adapter);
+            paramNamesField.gen(adapter);
+            adapter.loadArgs();
+            MethodRef.RUNTIME_RENDER_CACHED.invokeUnchecked(adapter);
+            adapter.returnValue();
+          }
+        };
+    body.writeIOExceptionMethod(methodAccess(), template.renderMethod().method(), writer);
+  }
+
   private void generateTemplateMethod() {
     // use invoke dynamic to lazily allocate the template instance.
     // templates are needed for direct java->soy calls, references to template literals and
@@ -184,20 +313,7 @@ final class TemplateCompiler {
     //  return foo::render;
     // }
     // assuming foo is the name of the template class.
-    Handle renderHandle = template.renderMethod().asHandle();
-    Statement.returnExpression(
-            new Expression(BytecodeUtils.COMPILED_TEMPLATE_TYPE) {
-              @Override
-              protected void doGen(CodeBuilder cb) {
-                cb.visitInvokeDynamicInsn(
-                    "render",
-                    COMPILED_TEMPLATE_INIT_DESCRIPTOR,
-                    METAFACTORY_HANDLE,
-                    COMPILED_TEMPLATE_RENDER_DESCRIPTOR,
-                    renderHandle,
-                    COMPILED_TEMPLATE_RENDER_DESCRIPTOR);
-              }
-            })
+    Statement.returnExpression(compiledTemplateForMethod(template.renderMethod().method()))
         .writeMethod(methodAccess(), template.templateMethod().method(), writer);
   }
 
@@ -217,15 +333,8 @@ final class TemplateCompiler {
             .map(VarRefNode::getNameWithoutLeadingDollar)
             .collect(toImmutableSet());
 
-    Set<String> callees =
-        allNodesOfType(templateNode, TemplateLiteralNode.class)
-            .map(TemplateLiteralNode::getResolvedName)
-            .collect(toImmutableSet());
-
-    Set<String> delCallees =
-        allNodesOfType(templateNode, CallDelegateNode.class)
-            .map(CallDelegateNode::getDelCalleeName)
-            .collect(toImmutableSet());
+    Set<String> callees = getCallees(templateNode);
+    Set<String> delCallees = getDelCallees(templateNode);
 
     TemplateMetadata.DelTemplateMetadata deltemplateMetadata;
     if (templateNode.getKind() == SoyNode.Kind.TEMPLATE_DELEGATE_NODE) {
@@ -242,12 +351,34 @@ final class TemplateCompiler {
     // This ordering is critical to preserve css hierarchy.
     namespaces.addAll(templateNode.getParent().getRequiredCssNamespaces());
     namespaces.addAll(templateNode.getRequiredCssNamespaces());
-    TemplateMetadata metadata =
+    metadata =
         createTemplateMetadata(
             kind, namespaces, uniqueIjs, callees, delCallees, deltemplateMetadata);
     TEMPLATE_METADATA_REF.write(metadata, writer);
   }
 
+  /**
+   * Returns the names of the templates referenced by the given template, either by a call or as a
+   * template value.
+   */
+  static ImmutableSet<String> getCallees(TemplateNode templateNode) {
+    return allNodesOfType(templateNode, TemplateLiteralNode.class)
+        .map(TemplateLiteralNode::getResolvedName)
+        .collect(toImmutableSet());
+  }
+
+  /** Returns the deltemplate names called by the given template. */
+  static ImmutableSet<String> getDelCallees(TemplateNode templateNode) {
+    return allNodesOfType(templateNode, CallDelegateNode.class)
+        .map(CallDelegateNode::getDelCalleeName)
+        .collect(toImmutableSet());
+  }
+
+  /** Returns the {@link TemplateMetadata} written to the template class by {@link #compile}. */
+  TemplateMetadata getTemplateMetadata() {
+    return checkNotNull(metadata, "compile() has not been called");
+  }
+
   @AutoAnnotation
   static TemplateMetadata createTemplateMetadata(
       ContentKind contentKind,
@@ -286,7 +417,7 @@ final class TemplateCompiler {
             StandardNames.IJ,
             StandardNames.APPENDABLE,
             StandardNames.RENDER_CONTEXT);
-    Method method = template.renderMethod().method();
+    Method method = uncachedRenderMethod();
     final TemplateVariableManager variableSet =
         new TemplateVariableManager(
             template.typeInfo().type(), method, paramNames, start, end, /*isStatic=*/ true);
@@ -297,7 +428,11 @@ final class TemplateCompiler {
             variableSet,
             paramsVar,
             ijVar,
-            new RenderContextExpression(variableSet.getVariable(StandardNames.RENDER_CONTEXT)));
+            new RenderContextExpression(
+                variableSet.getVariable(StandardNames.RENDER_CONTEXT),
+                cssRenamingMap,
+                xidRenamingMap,
+                msgBundle));
     AppendableExpression appendable =
         AppendableExpression.forExpression(
             variableSet.getVariable(StandardNames.APPENDABLE).asNonNullable());
@@ -310,7 +445,8 @@ final class TemplateCompiler {
             variables,
             fields,
             constantCompiler,
-            javaSourceFunctionCompiler);
+            javaSourceFunctionCompiler,
+            concurrentCalls);
     // Allocate local variables for all declared parameters.
     // NOTE: we initialize the parameters prior to where the jump table is initialized, this means
     // that all variables will be re-initialized ever time we re-enter the template.
@@ -341,7 +477,8 @@ final class TemplateCompiler {
                 variables,
                 fields,
                 constantCompiler,
-                javaSourceFunctionCompiler)
+                javaSourceFunctionCompiler,
+                concurrentCalls)
             .compile(
                 templateNode,
                 /* prefix= */ ExtraCodeCompiler.NO_OP,
@@ -362,8 +499,27 @@ final class TemplateCompiler {
 
         variableSet.generateTableEntries(adapter);
       }
-    }.writeIOExceptionMethod(methodAccess(), method, writer);
+    }.writeIOExceptionMethod(
+        isCacheable() ? Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC : methodAccess(), method, writer);
     writer.setNumDetachStates(methodBody.numberOfDetachStates());
+    // The cache lookup in the render method of cacheable templates is opaque, so assume that it
+    // may detach.
+    canDetach =
+        methodBody.numberOfDetachStates() > 0
+            || methodBody.checksSoftLimit()
+            || isCacheable();
+  }
+
+  /**
+   * Returns whether the {@code render} method of the compiled template may return before
+   * rendering is complete, for any params. Only valid after {@link #compile()} has been called.
+   *
+   * <p>Templates that can't detach have no reattach points and never check the output limit, so
+   * their callers can invoke them without saving and restoring their own state.
+   */
+  boolean canDetach() {
+    checkState(metadata != null, "compile() has not been called");
+    return canDetach;
   }
 
   // TODO(lukes): it seems like this should actually compile params to SoyValueProvider instances
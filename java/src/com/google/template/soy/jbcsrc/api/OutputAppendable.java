@@ -43,9 +43,15 @@ public final class OutputAppendable extends AbstractLoggingAdvisingAppendable {
 
   private final SoyLogger logger;
   private final AdvisingAppendable outputAppendable;
+  /** Non-null if {@link #outputAppendable} can accept pre-encoded bytes. */
+  private final Utf8AdvisingAppendable utf8Appendable;
 
   private OutputAppendable(AdvisingAppendable outputAppendable, SoyLogger logger) {
     this.outputAppendable = checkNotNull(outputAppendable);
+    this.utf8Appendable =
+        outputAppendable instanceof Utf8AdvisingAppendable
+            ? (Utf8AdvisingAppendable) outputAppendable
+            : null;
     this.logger = checkNotNull(logger);
   }
 
@@ -69,6 +75,15 @@ public final class OutputAppendable extends AbstractLoggingAdvisingAppendable {
     outputAppendable.append(c);
   }
 
+  @Override
+  protected void doAppendRawText(String text, byte[] utf8) throws IOException {
+    if (utf8Appendable != null) {
+      utf8Appendable.appendBytes(utf8, 0, utf8.length);
+    } else {
+      outputAppendable.append(text);
+    }
+  }
+
   @Override
   protected void doAppendLoggingFunctionInvocation(
       LoggingFunctionInvocation funCall, ImmutableList<Function<String, String>> escapers)
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.template.soy.jbcsrc.api;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A thread-safe pool of {@link Utf8RenderBuffer}s, so that the output buffers of renders can be
+ * recycled across requests instead of being reallocated and grown for every render.
+ *
+ * <p>Typical usage:
+ *
+ * <pre>{@code
+ * Utf8RenderBuffer buffer = pool.acquire();
+ * try {
+ *   WriteContinuation continuation = renderer.renderHtml(buffer);
+ *   ... // handle detaches
+ *   buffer.writeTo(response.getOutputStream());
+ * } finally {
+ *   pool.release(buffer);
+ * }
+ * }</pre>
+ *
+ * <p>The pool never blocks: {@link #acquire} allocates a new buffer when none are available, and
+ * {@link #release} drops buffers when the pool is full or when they have grown larger than the
+ * configured maximum, so that one unusually large render doesn't pin its memory forever.
+ */
+public final class RenderBufferPool {
+  private final BlockingQueue<Utf8RenderBuffer> buffers;
+  private final int initialCapacity;
+  private final int maxRetainedCapacity;
+
+  /**
+   * @param maxPooledBuffers The maximum number of idle buffers to keep.
+   * @param initialCapacity The initial size in bytes of newly allocated buffers.
+   * @param maxRetainedCapacity Buffers that have grown beyond this many bytes are not pooled.
+   */
+  public RenderBufferPool(int maxPooledBuffers, int initialCapacity, int maxRetainedCapacity) {
+    checkArgument(maxPooledBuffers > 0, "maxPooledBuffers must be positive: %s", maxPooledBuffers);
+    checkArgument(
+        initialCapacity >= 0 && initialCapacity <= maxRetainedCapacity,
+        "initialCapacity must be in [0, maxRetainedCapacity]: %s",
+        initialCapacity);
+    this.buffers = new ArrayBlockingQueue<>(maxPooledBuffers);
+    this.initialCapacity = initialCapacity;
+    this.maxRetainedCapacity = maxRetainedCapacity;
+  }
+
+  /** Returns an empty buffer, reusing an idle one if possible. */
+  public Utf8RenderBuffer acquire() {
+    Utf8RenderBuffer buffer = buffers.poll();
+    return buffer != null ? buffer : new Utf8RenderBuffer(initialCapacity);
+  }
+
+  /**
+   * Returns a buffer to the pool. The caller must not use the buffer, or any view of it, after
+   * releasing it.
+   */
+  public void release(Utf8RenderBuffer buffer) {
+    if (buffer.capacity() > maxRetainedCapacity) {
+      return;
+    }
+    buffer.reset();
+    buffers.offer(buffer);
+  }
+}
@@ -33,6 +33,7 @@ import com.google.template.soy.shared.SoyCssRenamingMap;
 import com.google.template.soy.shared.SoyIdRenamingMap;
 import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.function.Predicate;
 import javax.annotation.CheckReturnValue;
 
@@ -132,6 +133,35 @@ public interface SoySauce {
     /** Configures the {@link SoyLogger} to use. */
     Renderer setSoyLogger(SoyLogger logger);
 
+    /**
+     * Configures the cache used for the output of templates declared with {@code
+     * cacheable="true"}. By default no cache is used.
+     */
+    Renderer setFragmentCache(TemplateFragmentCache cache);
+
+    /**
+     * When passing a value of true, all the futures passed directly as params or ij params are
+     * waited for before rendering starts. The first continuation then detaches on a single future
+     * that completes once all of them have, rather than detaching once per future as rendering
+     * reaches them. By default futures are only waited for when they are read.
+     */
+    Renderer setPrefetchFutures(boolean prefetchFutures);
+
+    /**
+     * Opts in to concurrent rendering: independent sibling {@code {call}}s are rendered
+     * speculatively on the given executor into buffers, and spliced into the output in document
+     * order. This allows a render that is waiting on one future to make progress on the rest of the
+     * page.
+     *
+     * <p>This only has an effect on templates compiled with the {@code jbcsrc_concurrent_calls}
+     * experimental feature. Only calls to static templates whose params are plain references to the
+     * caller's params or constants are rendered concurrently, and only once those params and the
+     * callee's injected params have been resolved on the rendering thread. The resolved values
+     * must still be safe to read from multiple threads. By default rendering is strictly
+     * sequential.
+     */
+    Renderer setConcurrentRenderExecutor(Executor executor);
+
     /**
      * Renders the configured html template to the given appendable, returning a continuation (more
      * details below). Verifies that the content type is {@link ContentKind.HTML} (corresponding to
@@ -162,6 +192,10 @@ public interface SoySauce {
      * <p>It is safe to call this method multiple times, but each call will initiate a new render of
      * the configured template. To continue rendering a template you must use the returned
      * continuation.
+     *
+     * <p>Unlike the value returning variants, these methods never copy the output into a {@code
+     * String}. Rendering into a {@link Utf8RenderBuffer} obtained from a {@link RenderBufferPool}
+     * encodes the output to UTF-8 once and lets the buffer be reused across requests.
      */
     @CheckReturnValue
     WriteContinuation renderHtml(AdvisingAppendable out) throws IOException;
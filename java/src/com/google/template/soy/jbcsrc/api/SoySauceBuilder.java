@@ -25,7 +25,6 @@ import com.google.common.collect.ImmutableSet;
 import com.google.template.soy.jbcsrc.shared.CompiledTemplates;
 import com.google.template.soy.jbcsrc.shared.Names;
 import com.google.template.soy.shared.internal.InternalPlugins;
-import com.google.template.soy.shared.internal.SoyScopedData;
 import com.google.template.soy.shared.internal.SoySimpleScope;
 import com.google.template.soy.shared.restricted.SoyFunction;
 import com.google.template.soy.shared.restricted.SoyPrintDirective;
@@ -42,7 +41,8 @@ public final class SoySauceBuilder {
   private ImmutableList<SoyFunction> userFunctions = ImmutableList.of();
   private ImmutableList<SoyPrintDirective> userDirectives = ImmutableList.of();
   private ImmutableMap<String, Supplier<Object>> userPluginInstances = ImmutableMap.of();
-  private CompiledTemplates.Factory compiledTemplatesFactory = CompiledTemplates::new;
+  // If null, templates are loaded with the metadata index from the classpath.
+  private CompiledTemplates.Factory compiledTemplatesFactory;
   private ClassLoader loader;
 
   public SoySauceBuilder() {}
@@ -103,18 +103,25 @@ public final class SoySauceBuilder {
 
   /** Creates a SoySauce. */
   public SoySauce build() {
-    SoyScopedData scopedData = new SoySimpleScope();
     if (loader == null) {
       loader = SoySauceBuilder.class.getClassLoader();
     }
+    ImmutableSet<String> delTemplates = readDelTemplatesFromMetaInf(loader);
+    CompiledTemplates templates =
+        compiledTemplatesFactory == null
+            ? new CompiledTemplates(
+                delTemplates,
+                loader,
+                readTemplateIndexFromMetaInf(loader),
+                readMsgLocalesFromMetaInf(loader))
+            : compiledTemplatesFactory.create(delTemplates, loader);
     return new SoySauceImpl(
-        compiledTemplatesFactory.create(readDelTemplatesFromMetaInf(loader), loader),
-        scopedData.enterable(),
+        templates,
         userFunctions, // We don't need internal functions because they only matter at compile time
         ImmutableList.<SoyPrintDirective>builder()
             // but internal directives are still required at render time.
             // in order to handle escaping logging function invocations.
-            .addAll(InternalPlugins.internalDirectives(scopedData))
+            .addAll(InternalPlugins.internalDirectives(new SoySimpleScope()))
             .addAll(userDirectives)
             .build(),
         userPluginInstances);
@@ -123,20 +130,43 @@ public final class SoySauceBuilder {
   /** Walks all resources with the META_INF_DELTEMPLATE_PATH and collects the deltemplates. */
   private static ImmutableSet<String> readDelTemplatesFromMetaInf(ClassLoader loader) {
     try {
-      ImmutableSet.Builder<String> builder = ImmutableSet.builder();
-      Enumeration<URL> resources = loader.getResources(Names.META_INF_DELTEMPLATE_PATH);
-      while (resources.hasMoreElements()) {
-        URL url = resources.nextElement();
-        try (InputStream in = url.openStream()) {
-          BufferedReader reader = new BufferedReader(new InputStreamReader(in, UTF_8));
-          for (String line = reader.readLine(); line != null; line = reader.readLine()) {
-            builder.add(line);
-          }
-        }
-      }
-      return builder.build();
+      return ImmutableSet.copyOf(readLinesFromMetaInf(loader, Names.META_INF_DELTEMPLATE_PATH));
     } catch (IOException iox) {
       throw new RuntimeException("Unable to read deltemplate listing", iox);
     }
   }
+
+  /** Walks all resources with the META_INF_TEMPLATE_INDEX_PATH and collects the entries. */
+  private static ImmutableList<String> readTemplateIndexFromMetaInf(ClassLoader loader) {
+    try {
+      return readLinesFromMetaInf(loader, Names.META_INF_TEMPLATE_INDEX_PATH);
+    } catch (IOException iox) {
+      throw new RuntimeException("Unable to read template index", iox);
+    }
+  }
+
+  /** Walks all resources with the META_INF_MSG_LOCALE_PATH and collects the locales. */
+  private static ImmutableList<String> readMsgLocalesFromMetaInf(ClassLoader loader) {
+    try {
+      return readLinesFromMetaInf(loader, Names.META_INF_MSG_LOCALE_PATH);
+    } catch (IOException iox) {
+      throw new RuntimeException("Unable to read compiled message locales", iox);
+    }
+  }
+
+  private static ImmutableList<String> readLinesFromMetaInf(ClassLoader loader, String path)
+      throws IOException {
+    ImmutableList.Builder<String> builder = ImmutableList.builder();
+    Enumeration<URL> resources = loader.getResources(path);
+    while (resources.hasMoreElements()) {
+      URL url = resources.nextElement();
+      try (InputStream in = url.openStream()) {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, UTF_8));
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+          builder.add(line);
+        }
+      }
+    }
+    return builder.build();
+  }
 }
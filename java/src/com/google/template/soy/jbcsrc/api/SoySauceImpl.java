@@ -19,6 +19,7 @@ package com.google.template.soy.jbcsrc.api;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
 import static com.google.template.soy.jbcsrc.api.AppendableAsAdvisingAppendable.asAdvisingAppendable;
 import static com.google.template.soy.jbcsrc.shared.Names.rewriteStackTrace;
 
@@ -29,9 +30,12 @@ import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.errorprone.annotations.concurrent.GuardedBy;
 import com.google.template.soy.data.SanitizedContent;
 import com.google.template.soy.data.SanitizedContent.ContentKind;
+import com.google.template.soy.data.SoyFutureValueProvider;
 import com.google.template.soy.data.SoyRecord;
 import com.google.template.soy.data.SoyTemplate;
 import com.google.template.soy.data.SoyTemplateData;
@@ -40,7 +44,8 @@ import com.google.template.soy.data.SoyValueProvider;
 import com.google.template.soy.data.UnsafeSanitizedContentOrdainer;
 import com.google.template.soy.data.internal.BasicParamStore;
 import com.google.template.soy.data.internal.ParamStore;
-import com.google.template.soy.internal.i18n.BidiGlobalDir;
+import com.google.template.soy.data.internal.SoyRecordImpl;
+import com.google.template.soy.data.restricted.NullData;
 import com.google.template.soy.jbcsrc.shared.CompiledTemplate;
 import com.google.template.soy.jbcsrc.shared.CompiledTemplates;
 import com.google.template.soy.jbcsrc.shared.LegacyFunctionAdapter;
@@ -49,13 +54,18 @@ import com.google.template.soy.logging.SoyLogger;
 import com.google.template.soy.msgs.SoyMsgBundle;
 import com.google.template.soy.shared.SoyCssRenamingMap;
 import com.google.template.soy.shared.SoyIdRenamingMap;
-import com.google.template.soy.shared.internal.SoyScopedData;
 import com.google.template.soy.shared.restricted.SoyFunction;
 import com.google.template.soy.shared.restricted.SoyJavaFunction;
 import com.google.template.soy.shared.restricted.SoyJavaPrintDirective;
 import com.google.template.soy.shared.restricted.SoyPrintDirective;
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import javax.annotation.Nullable;
@@ -63,18 +73,15 @@ import javax.annotation.Nullable;
 /** Main entry point for rendering Soy templates on the server. */
 public final class SoySauceImpl implements SoySauce {
   private final CompiledTemplates templates;
-  private final SoyScopedData.Enterable apiCallScope;
   private final ImmutableMap<String, Supplier<Object>> pluginInstances;
   private final ImmutableMap<String, SoyJavaPrintDirective> printDirectives;
 
   public SoySauceImpl(
       CompiledTemplates templates,
-      SoyScopedData.Enterable apiCallScope,
       ImmutableList<? extends SoyFunction> functions,
       ImmutableList<? extends SoyPrintDirective> printDirectives,
       ImmutableMap<String, Supplier<Object>> pluginInstances) {
     this.templates = checkNotNull(templates);
-    this.apiCallScope = checkNotNull(apiCallScope);
     ImmutableMap.Builder<String, Supplier<Object>> pluginInstanceBuilder = ImmutableMap.builder();
     pluginInstanceBuilder.putAll(pluginInstances);
 
@@ -146,6 +153,7 @@ public final class SoySauceImpl implements SoySauce {
     private SoyRecord data;
     private SoyRecord ij;
     private boolean dataSetInConstructor;
+    private boolean prefetchFutures;
 
     RendererImpl(
         String templateName,
@@ -162,10 +170,17 @@ public final class SoySauceImpl implements SoySauce {
       }
     }
 
-    private BasicParamStore soyValueProviderMapAsParamStore(Map<String, ?> source) {
+    @SuppressWarnings("unchecked")
+    private SoyRecord soyValueProviderMapAsParamStore(Map<String, ?> source) {
+      if (source instanceof ImmutableMap) {
+        // Generated template param classes already hold an immutable map of providers, which
+        // can't contain nulls, so it can be wrapped rather than copied into a new hash table.
+        return new SoyRecordImpl((ImmutableMap<String, SoyValueProvider>) source);
+      }
       BasicParamStore dest = new BasicParamStore(source.size());
       for (Map.Entry<String, ?> entry : source.entrySet()) {
-        dest.setField(entry.getKey(), (SoyValueProvider) entry.getValue());
+        SoyValueProvider value = (SoyValueProvider) entry.getValue();
+        dest.setField(entry.getKey(), value == null ? NullData.INSTANCE : value);
       }
       return dest;
     }
@@ -255,6 +270,24 @@ public final class SoySauceImpl implements SoySauce {
       return this;
     }
 
+    @Override
+    public RendererImpl setFragmentCache(TemplateFragmentCache cache) {
+      contextBuilder.withFragmentCache(checkNotNull(cache));
+      return this;
+    }
+
+    @Override
+    public RendererImpl setPrefetchFutures(boolean prefetchFutures) {
+      this.prefetchFutures = prefetchFutures;
+      return this;
+    }
+
+    @Override
+    public RendererImpl setConcurrentRenderExecutor(Executor executor) {
+      contextBuilder.withConcurrentRenderExecutor(checkNotNull(executor));
+      return this;
+    }
+
     @Override
     public WriteContinuation renderHtml(AdvisingAppendable out) throws IOException {
       return startRender(out, ContentKind.HTML);
@@ -350,8 +383,11 @@ public final class SoySauceImpl implements SoySauce {
       RenderContext context = contextBuilder.build();
       OutputAppendable output = OutputAppendable.create(out, context.getLogger());
       RendererClosure renderer = () -> template.render(params, injectedParams, output, context);
+      if (prefetchFutures) {
+        renderer = new PrefetchingRenderer(ImmutableList.of(params, injectedParams), renderer);
+      }
 
-      return doRender(renderer, new Scoper(apiCallScope, context.getBidiGlobalDir()));
+      return doRender(renderer);
     }
 
     private void enforceContentKind(ContentKind expectedContentKind) {
@@ -377,10 +413,85 @@ public final class SoySauceImpl implements SoySauce {
     RenderResult render() throws IOException;
   }
 
-  private static WriteContinuation doRender(RendererClosure renderer, Scoper scoper)
-      throws IOException {
+  /**
+   * Waits for all the futures passed as top level params or ij params before rendering starts.
+   *
+   * <p>Without this the render discovers futures one at a time as it reads them, detaching and
+   * being resumed once per future. Instead we detach on a single future that completes when all of
+   * them have, so callers wait once. Futures nested inside of other values are still discovered
+   * during rendering, since finding them would mean eagerly converting every value.
+   */
+  private static final class PrefetchingRenderer implements RendererClosure {
+    final ImmutableList<SoyRecord> records;
+    final RendererClosure delegate;
+    // The futures still to wait for, computed on the first render.
+    Deque<Future<?>> pending;
+
+    PrefetchingRenderer(ImmutableList<SoyRecord> records, RendererClosure delegate) {
+      this.records = records;
+      this.delegate = delegate;
+    }
+
+    @Override
+    public RenderResult render() throws IOException {
+      if (pending == null) {
+        pending = pendingFutures(records);
+      }
+      while (!pending.isEmpty()) {
+        Future<?> next = pending.peek();
+        if (!next.isDone()) {
+          return RenderResult.continueAfter(next);
+        }
+        pending.remove();
+      }
+      return delegate.render();
+    }
+
+    /**
+     * Returns the futures to wait for before rendering the given records. The pending {@link
+     * ListenableFuture}s are combined into a single future that completes when all of them have.
+     * Other futures can't be combined without a thread to wait on them, so they are returned
+     * individually.
+     */
+    static Deque<Future<?>> pendingFutures(ImmutableList<SoyRecord> records) {
+      List<ListenableFuture<?>> listenableFutures = new ArrayList<>();
+      Deque<Future<?>> pending = new ArrayDeque<>();
+      for (SoyRecord record : records) {
+        record.forEachField(
+            (name, provider) -> {
+              if (!(provider instanceof SoyFutureValueProvider)) {
+                return;
+              }
+              RenderResult status = provider.status();
+              if (status.isDone()) {
+                return;
+              }
+              if (status.future() instanceof ListenableFuture) {
+                listenableFutures.add((ListenableFuture<?>) status.future());
+              } else {
+                pending.add(status.future());
+              }
+            });
+      }
+      if (listenableFutures.size() == 1) {
+        pending.addFirst(listenableFutures.get(0));
+      } else if (listenableFutures.size() > 1) {
+        pending.addFirst(
+            Futures.whenAllComplete(listenableFutures).call(() -> null, directExecutor()));
+      }
+      return pending;
+    }
+  }
+
+  /**
+   * Renders until the template completes or detaches.
+   *
+   * <p>No thread-local scope is entered here: the bidi global dir and all other render state are
+   * carried by the {@link RenderContext}, so a detached render may be resumed on any thread.
+   */
+  private static WriteContinuation doRender(RendererClosure renderer) throws IOException {
     RenderResult result;
-    try (SoyScopedData.InScope scope = scoper.enter()) {
+    try {
       result = renderer.render();
     } catch (Throwable t) {
       rewriteStackTrace(t);
@@ -390,27 +501,23 @@ public final class SoySauceImpl implements SoySauce {
     if (result.isDone()) {
       return Continuations.done();
     }
-    return new WriteContinuationImpl(result, renderer, scoper);
+    return new WriteContinuationImpl(result, renderer);
   }
 
   private static final class WriteContinuationImpl implements WriteContinuation {
     final RenderResult result;
     final Object lock = new Object();
 
-    @GuardedBy("lock")
-    final Scoper scoper;
-
     @GuardedBy("lock")
     final RendererClosure renderer;
 
     @GuardedBy("lock")
     boolean hasContinueBeenCalled;
 
-    WriteContinuationImpl(RenderResult result, RendererClosure renderer, Scoper scoper) {
+    WriteContinuationImpl(RenderResult result, RendererClosure renderer) {
       checkArgument(!result.isDone());
       this.result = checkNotNull(result);
       this.renderer = checkNotNull(renderer);
-      this.scoper = checkNotNull(scoper);
     }
 
     @Override
@@ -425,22 +532,8 @@ public final class SoySauceImpl implements SoySauce {
           throw new IllegalStateException("continueRender() has already been called.");
         }
         hasContinueBeenCalled = true;
-        return doRender(renderer, scoper);
+        return doRender(renderer);
       }
     }
   }
-
-  private static final class Scoper {
-    final SoyScopedData.Enterable scope;
-    final BidiGlobalDir dir;
-
-    Scoper(SoyScopedData.Enterable scope, BidiGlobalDir dir) {
-      this.scope = scope;
-      this.dir = dir;
-    }
-
-    SoyScopedData.InScope enter() {
-      return scope.enter(dir);
-    }
-  }
 }
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.template.soy.jbcsrc.api;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.template.soy.data.LoggingAdvisingAppendable.BufferingAppendable;
+import javax.annotation.Nullable;
+
+/**
+ * A bounded cache of rendered output for templates declared with {@code cacheable="true"}.
+ *
+ * <p>Cached fragments are keyed by the template name, the values of the template's declared
+ * params, the message bundle locale and direction, the active delegate packages and the debug
+ * template info setting. The compiler rejects cacheable templates that use {@code @inject} params
+ * or functions that aren't pure.
+ *
+ * <p>The renaming maps, print directives and plugin instances are not part of the key, so a cache
+ * must only be shared by renderers that are configured with the same ones. Use a separate cache
+ * for each configuration.
+ *
+ * <p>Rendered fragments retain any logging statements they produced, so {@code {velog}} commands
+ * are replayed on the configured {@link com.google.template.soy.logging.SoyLogger} when a fragment
+ * is served from the cache.
+ *
+ * <p>Renders that pass params with values that cannot be used as keys (e.g. maps, records or
+ * unresolved futures) bypass the cache.
+ *
+ * <p>Instances are thread safe and are intended to be shared across renders.
+ */
+public final class TemplateFragmentCache {
+
+  /**
+   * Creates a cache that holds at most approximately {@code maximumChars} chars of rendered
+   * content.
+   */
+  public static TemplateFragmentCache create(long maximumChars) {
+    checkArgument(maximumChars > 0, "maximumChars must be positive, got %s", maximumChars);
+    return new TemplateFragmentCache(maximumChars);
+  }
+
+  private final Cache<Object, BufferingAppendable> cache;
+
+  private TemplateFragmentCache(long maximumChars) {
+    this.cache =
+        CacheBuilder.newBuilder()
+            .maximumWeight(maximumChars)
+            .weigher((Object key, BufferingAppendable value) -> value.length())
+            .recordStats()
+            .build();
+  }
+
+  /** Returns the statistics for this cache. */
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  /** Removes all cached fragments. */
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  /**
+   * Returns the cached fragment for the given key, or {@code null} if there is none.
+   *
+   * <p>For soy internal use only.
+   */
+  @Nullable
+  public BufferingAppendable get(Object key) {
+    return cache.getIfPresent(key);
+  }
+
+  /**
+   * Stores a completely rendered fragment. The fragment must have already been replayed at least
+   * once and must not be written to afterwards, so that concurrent replays are read only.
+   *
+   * <p>For soy internal use only.
+   */
+  public void put(Object key, BufferingAppendable fragment) {
+    cache.put(key, fragment);
+  }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.template.soy.jbcsrc.api;
+
+import java.io.IOException;
+
+/**
+ * An {@link AdvisingAppendable} that can also accept pre-encoded UTF-8 bytes.
+ *
+ * <p>Compiled templates encode their static text to UTF-8 once, so byte oriented sinks (e.g. a
+ * servlet output buffer) that implement this interface can copy template text directly rather than
+ * re-encoding it on every render.
+ *
+ * <p>Implementations must treat the passed arrays as read-only, they are shared across renders.
+ */
+public interface Utf8AdvisingAppendable extends AdvisingAppendable {
+  /**
+   * Appends the given range of UTF-8 encoded bytes. This must have the same effect as appending
+   * the decoded text via {@link #append(CharSequence)}.
+   */
+  Utf8AdvisingAppendable appendBytes(byte[] utf8, int start, int end) throws IOException;
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.template.soy.jbcsrc.api;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A growable, reusable UTF-8 byte buffer that templates can be rendered into directly.
+ *
+ * <p>Text is encoded as it is appended, and static template text arrives pre-encoded via {@link
+ * #appendBytes}, so rendering into this buffer and then calling {@link #writeTo} never materializes
+ * the output as a {@code String}. Call {@link #reset} to reuse the buffer for another render, or
+ * obtain buffers from a {@link RenderBufferPool}.
+ *
+ * <p>Unpaired surrogates are encoded as {@code '?'}, matching {@link String#getBytes}. A high
+ * surrogate at the end of the buffer is still paired with a low surrogate appended later; until
+ * then, reading the buffer shows it as {@code '?'} without encoding it.
+ *
+ * <p>This class is not thread safe.
+ */
+public final class Utf8RenderBuffer implements Utf8AdvisingAppendable {
+  private static final int DEFAULT_INITIAL_CAPACITY = 1024;
+
+  private byte[] bytes;
+  private int size;
+  /** A high surrogate whose low surrogate hasn't been appended yet, or 0. */
+  private char pendingHighSurrogate;
+
+  public Utf8RenderBuffer() {
+    this(DEFAULT_INITIAL_CAPACITY);
+  }
+
+  public Utf8RenderBuffer(int initialCapacity) {
+    checkArgument(initialCapacity >= 0, "negative capacity: %s", initialCapacity);
+    this.bytes = new byte[initialCapacity];
+  }
+
+  @Override
+  public Utf8RenderBuffer appendBytes(byte[] utf8, int start, int end) {
+    checkPositionIndexes(start, end, utf8.length);
+    flushPendingSurrogate();
+    int length = end - start;
+    ensureCapacity(length);
+    System.arraycopy(utf8, start, bytes, size, length);
+    size += length;
+    return this;
+  }
+
+  @Override
+  public Utf8RenderBuffer append(CharSequence csq) {
+    return append(csq, 0, csq.length());
+  }
+
+  @Override
+  public Utf8RenderBuffer append(CharSequence csq, int start, int end) {
+    checkPositionIndexes(start, end, csq.length());
+    // Most text is ASCII, so reserve one byte per char up front and only grow further as needed.
+    ensureCapacity(end - start);
+    for (int i = start; i < end; i++) {
+      encode(csq.charAt(i));
+    }
+    return this;
+  }
+
+  @Override
+  public Utf8RenderBuffer append(char c) {
+    encode(c);
+    return this;
+  }
+
+  @Override
+  public boolean softLimitReached() {
+    return false;
+  }
+
+  private void encode(char c) {
+    if (pendingHighSurrogate != 0) {
+      char high = pendingHighSurrogate;
+      pendingHighSurrogate = 0;
+      if (Character.isLowSurrogate(c)) {
+        int codePoint = Character.toCodePoint(high, c);
+        ensureCapacity(4);
+        bytes[size++] = (byte) (0xF0 | (codePoint >>> 18));
+        bytes[size++] = (byte) (0x80 | ((codePoint >>> 12) & 0x3F));
+        bytes[size++] = (byte) (0x80 | ((codePoint >>> 6) & 0x3F));
+        bytes[size++] = (byte) (0x80 | (codePoint & 0x3F));
+        return;
+      }
+      writeByte('?');
+    }
+    if (c < 0x80) {
+      writeByte(c);
+    } else if (c < 0x800) {
+      ensureCapacity(2);
+      bytes[size++] = (byte) (0xC0 | (c >>> 6));
+      bytes[size++] = (byte) (0x80 | (c & 0x3F));
+    } else if (Character.isHighSurrogate(c)) {
+      pendingHighSurrogate = c;
+    } else if (Character.isLowSurrogate(c)) {
+      writeByte('?');
+    } else {
+      ensureCapacity(3);
+      bytes[size++] = (byte) (0xE0 | (c >>> 12));
+      bytes[size++] = (byte) (0x80 | ((c >>> 6) & 0x3F));
+      bytes[size++] = (byte) (0x80 | (c & 0x3F));
+    }
+  }
+
+  private void writeByte(int b) {
+    ensureCapacity(1);
+    bytes[size++] = (byte) b;
+  }
+
+  private void flushPendingSurrogate() {
+    if (pendingHighSurrogate != 0) {
+      pendingHighSurrogate = 0;
+      writeByte('?');
+    }
+  }
+
+  private void ensureCapacity(int additional) {
+    int required = size + additional;
+    if (required > bytes.length) {
+      bytes = Arrays.copyOf(bytes, Math.max(required, bytes.length * 2));
+    }
+  }
+
+  /**
+   * Writes the placeholder for a trailing high surrogate past the end of the content, without
+   * consuming it, and returns the length of the content including it.
+   */
+  private int contentSize() {
+    if (pendingHighSurrogate == 0) {
+      return size;
+    }
+    ensureCapacity(1);
+    bytes[size] = '?';
+    return size + 1;
+  }
+
+  /** Returns the number of encoded bytes in the buffer. */
+  public int size() {
+    return pendingHighSurrogate == 0 ? size : size + 1;
+  }
+
+  /** Returns the size of the backing array, which is retained across {@link #reset} calls. */
+  public int capacity() {
+    return bytes.length;
+  }
+
+  /** Writes the encoded content to {@code out}. */
+  public void writeTo(OutputStream out) throws IOException {
+    out.write(bytes, 0, contentSize());
+  }
+
+  /**
+   * Returns a read-only view of the encoded content. The view is only valid until the buffer is
+   * next modified or reset.
+   */
+  public ByteBuffer asByteBuffer() {
+    return ByteBuffer.wrap(bytes, 0, contentSize()).asReadOnlyBuffer();
+  }
+
+  /** Returns a copy of the encoded content. */
+  public byte[] toByteArray() {
+    return Arrays.copyOf(bytes, contentSize());
+  }
+
+  /** Empties the buffer, keeping the backing array for reuse. */
+  public void reset() {
+    size = 0;
+    pendingHighSurrogate = 0;
+  }
+
+  /** Decodes the content. Prefer {@link #writeTo} or {@link #asByteBuffer} to avoid the copy. */
+  @Override
+  public String toString() {
+    return new String(bytes, 0, contentSize(), UTF_8);
+  }
+}
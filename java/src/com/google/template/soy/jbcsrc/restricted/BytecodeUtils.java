@@ -50,6 +50,7 @@ import com.google.template.soy.jbcsrc.shared.LargeStringConstantFactory;
 import com.google.template.soy.jbcsrc.shared.Names;
 import com.google.template.soy.jbcsrc.shared.RenderContext;
 import com.google.template.soy.jbcsrc.shared.StackFrame;
+import com.google.template.soy.jbcsrc.shared.Utf8ConstantFactory;
 import com.google.template.soy.logging.LoggableElementMetadata;
 import java.io.Closeable;
 import java.lang.invoke.MethodHandles;
@@ -77,6 +78,7 @@ public final class BytecodeUtils {
 
   public static final TypeInfo OBJECT = TypeInfo.create(Object.class);
   private static final Type OBJECT_ARRAY_TYPE = Type.getType(Object[].class);
+  private static final Type BYTE_ARRAY_TYPE = Type.getType(byte[].class);
 
   public static final Type LOGGING_ADVISING_APPENDABLE_TYPE =
       Type.getType(LoggingAdvisingAppendable.class);
@@ -302,13 +304,55 @@ public final class BytecodeUtils {
 
   /** Returns an {@link Expression} that can load the given String constant. */
   public static Expression constant(String value) {
-    // string constants use a "modified UTF8" encoding
-    // https://en.wikipedia.org/wiki/UTF-8#Modified_UTF-8
-    // and are limited by the classfile format to contain no more than 65535 bytes
-    // https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.4.7
-    // In soy we often have large constants that can exceed these limits, which is annoying since
-    // it is difficult to predict whether a given string constant will exceed these limits (since it
-    // needs to be encoded first).
+    List<String> stringConstants = splitStringConstant(value);
+    return new Expression(STRING_TYPE, Feature.CHEAP, Feature.NON_NULLABLE) {
+      @Override
+      protected void doGen(CodeBuilder cb) {
+        if (stringConstants.size() == 1) {
+          cb.pushString(stringConstants.get(0));
+        } else {
+          cb.visitInvokeDynamicInsn(
+              "constantString",
+              Type.getMethodDescriptor(STRING_TYPE),
+              LARGE_STRING_CONSTANT_HANDLE,
+              stringConstants.toArray());
+        }
+      }
+    };
+  }
+
+  /**
+   * Returns an {@link Expression} that evaluates to the UTF-8 encoding of the given String.
+   *
+   * <p>The array is computed once, the first time the expression is evaluated, and the same
+   * instance is returned every time after that. Callers must not modify it.
+   */
+  public static Expression constantUtf8(String value) {
+    List<String> stringConstants = splitStringConstant(value);
+    return new Expression(BYTE_ARRAY_TYPE, Feature.CHEAP, Feature.NON_NULLABLE) {
+      @Override
+      protected void doGen(CodeBuilder cb) {
+        cb.visitInvokeDynamicInsn(
+            "constantUtf8",
+            Type.getMethodDescriptor(BYTE_ARRAY_TYPE),
+            UTF8_CONSTANT_HANDLE,
+            stringConstants.toArray());
+      }
+    };
+  }
+
+  /**
+   * Splits the string into parts that can each be stored in the constant pool.
+   *
+   * <p>String constants use a "modified UTF8" encoding
+   * (https://en.wikipedia.org/wiki/UTF-8#Modified_UTF-8) and are limited by the classfile format
+   * to contain no more than 65535 bytes
+   * (https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.4.7). In soy we often
+   * have large constants that can exceed these limits, which is annoying since it is difficult to
+   * predict whether a given string constant will exceed these limits (since it needs to be encoded
+   * first).
+   */
+  private static List<String> splitStringConstant(String value) {
     int previousStart = 0;
     List<String> stringConstants = new ArrayList<>();
     int byteCount = 0;
@@ -335,20 +379,7 @@ public final class BytecodeUtils {
       index++;
     }
     stringConstants.add(value.substring(previousStart));
-    return new Expression(STRING_TYPE, Feature.CHEAP, Feature.NON_NULLABLE) {
-      @Override
-      protected void doGen(CodeBuilder cb) {
-        if (stringConstants.size() == 1) {
-          cb.pushString(stringConstants.get(0));
-        } else {
-          cb.visitInvokeDynamicInsn(
-              "constantString",
-              Type.getMethodDescriptor(STRING_TYPE),
-              LARGE_STRING_CONSTANT_HANDLE,
-              stringConstants.toArray());
-        }
-      }
-    };
+    return stringConstants;
   }
 
   /** Returns an {@link Expression} that evaluates to the given ContentKind, or null. */
@@ -384,6 +415,16 @@ public final class BytecodeUtils {
               String[].class)
           .asHandle();
 
+  private static final Handle UTF8_CONSTANT_HANDLE =
+      MethodRef.create(
+              Utf8ConstantFactory.class,
+              "bootstrapUtf8Constant",
+              MethodHandles.Lookup.class,
+              String.class,
+              MethodType.class,
+              String[].class)
+          .asHandle();
+
   /**
    * Returns an {@link Expression} that evaluates to the {@link ContentKind} value that is
    * equivalent to the given {@link SanitizedContentKind}, or null.
@@ -23,7 +23,8 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.template.soy.data.SoyRecord;
 import com.google.template.soy.data.internal.AugmentedParamStore;
-import com.google.template.soy.data.internal.BasicParamStore;
+import com.google.template.soy.data.internal.RecordShape;
+import com.google.template.soy.data.internal.ShapedParamStore;
 import com.google.template.soy.jbcsrc.restricted.Expression.Feature;
 import com.google.template.soy.jbcsrc.runtime.JbcSrcRuntime;
 import com.ibm.icu.util.ULocale;
@@ -82,7 +83,8 @@ public abstract class ConstructorRef {
       create(LinkedHashMap.class, int.class);
   public static final ConstructorRef AUGMENTED_PARAM_STORE =
       create(AugmentedParamStore.class, SoyRecord.class, int.class);
-  public static final ConstructorRef BASIC_PARAM_STORE = create(BasicParamStore.class, int.class);
+  public static final ConstructorRef SHAPED_PARAM_STORE =
+      create(ShapedParamStore.class, RecordShape.class);
 
   public static final ConstructorRef MSG_RENDERER =
       create(
@@ -90,7 +92,7 @@ public abstract class ConstructorRef {
           long.class,
           ImmutableList.class,
           ULocale.class,
-          int.class,
+          JbcSrcRuntime.MsgLayout.class,
           boolean.class);
   public static final ConstructorRef PLRSEL_MSG_RENDERER =
       create(
@@ -98,7 +100,7 @@ public abstract class ConstructorRef {
           long.class,
           ImmutableList.class,
           ULocale.class,
-          int.class,
+          JbcSrcRuntime.MsgLayout.class,
           boolean.class);
 
   public abstract TypeInfo instanceClass();
@@ -49,7 +49,9 @@ import com.google.template.soy.data.internal.LazyProtoToSoyValueList;
 import com.google.template.soy.data.internal.LazyProtoToSoyValueMap;
 import com.google.template.soy.data.internal.ListImpl;
 import com.google.template.soy.data.internal.ParamStore;
+import com.google.template.soy.data.internal.RecordShape;
 import com.google.template.soy.data.internal.RuntimeMapTypeTracker;
+import com.google.template.soy.data.internal.ShapedParamStore;
 import com.google.template.soy.data.internal.SoyMapImpl;
 import com.google.template.soy.data.restricted.BooleanData;
 import com.google.template.soy.data.restricted.FloatData;
@@ -59,6 +61,7 @@ import com.google.template.soy.jbcsrc.api.RenderResult;
 import com.google.template.soy.jbcsrc.restricted.Expression.Feature;
 import com.google.template.soy.jbcsrc.restricted.Expression.Features;
 import com.google.template.soy.jbcsrc.runtime.BufferedSoyValueProvider;
+import com.google.template.soy.jbcsrc.runtime.ConcurrentCall;
 import com.google.template.soy.jbcsrc.runtime.JbcSrcRuntime;
 import com.google.template.soy.jbcsrc.shared.CompiledTemplate;
 import com.google.template.soy.jbcsrc.shared.LegacyFunctionAdapter;
@@ -252,6 +255,17 @@ public abstract class MethodRef {
       create(
           JbcSrcRuntime.class, "setField", ParamStore.class, String.class, SoyValueProvider.class);
 
+  public static final MethodRef SHAPED_PARAM_STORE_SET_FIELD_AT =
+      create(
+          JbcSrcRuntime.class,
+          "setFieldAt",
+          ShapedParamStore.class,
+          int.class,
+          SoyValueProvider.class);
+
+  public static final MethodRef RECORD_SHAPE_CREATE =
+      create(RecordShape.class, "create", ImmutableList.class).asNonNullable();
+
   public static final MethodRef PRINT_STREAM_PRINTLN = create(PrintStream.class, "println");
 
   public static final MethodRef SOY_PROTO_VALUE_CREATE =
@@ -269,6 +283,32 @@ public abstract class MethodRef {
   public static final MethodRef RUNTIME_APPLY_ESCAPERS =
       create(JbcSrcRuntime.class, "applyEscapers", CompiledTemplate.class, ImmutableList.class);
 
+  public static final MethodRef RUNTIME_RENDER_CACHED =
+      create(
+          JbcSrcRuntime.class,
+          "renderCached",
+          CompiledTemplate.class,
+          String.class,
+          ImmutableList.class,
+          SoyRecord.class,
+          SoyRecord.class,
+          LoggingAdvisingAppendable.class,
+          RenderContext.class);
+
+  public static final MethodRef CONCURRENT_CALL_START =
+      create(
+              ConcurrentCall.class,
+              "start",
+              String.class,
+              CompiledTemplate.class,
+              SoyRecord.class,
+              SoyRecord.class,
+              RenderContext.class)
+          .asNonNullable();
+
+  public static final MethodRef CONCURRENT_CALL_RENDER_TO =
+      create(ConcurrentCall.class, "renderTo", LoggingAdvisingAppendable.class).asNonNullable();
+
   public static final MethodRef RUNTIME_CHECK_RESOLVED_LIST =
       create(JbcSrcRuntime.class, "checkResolved", List.class);
 
@@ -392,8 +432,11 @@ public abstract class MethodRef {
       create(SharedRuntime.class, "mod", SoyValue.class, SoyValue.class).asNonNullable();
 
   public static final MethodRef MSG_RENDERER_SET_PLACEHOLDER =
-      create(
-          JbcSrcRuntime.MsgRenderer.class, "setPlaceholder", String.class, SoyValueProvider.class);
+      create(JbcSrcRuntime.MsgRenderer.class, "setPlaceholder", int.class, SoyValueProvider.class);
+
+  public static final MethodRef MSG_LAYOUT_CREATE =
+      create(JbcSrcRuntime.MsgLayout.class, "create", ImmutableList.class, ImmutableList.class)
+          .asNonNullable();
 
   public static final MethodRef HANDLE_BASIC_TRANSLATION =
       create(JbcSrcRuntime.class, "handleBasicTranslation", List.class).asNonNullable();
@@ -401,14 +444,6 @@ public abstract class MethodRef {
       create(JbcSrcRuntime.class, "handleBasicTranslationAndEscapeHtml", List.class)
           .asNonNullable();
 
-  public static final MethodRef MSG_RENDERER_SET_PLACEHOLDER_AND_ORDERING =
-      create(
-          JbcSrcRuntime.MsgRenderer.class,
-          "setPlaceholderAndOrdering",
-          String.class,
-          SoyValueProvider.class,
-          String.class);
-
   public static final MethodRef RUNTIME_STRING_EQUALS_AS_NUMBER =
       create(JbcSrcRuntime.class, "stringEqualsAsNumber", String.class, double.class)
           .asNonNullable();
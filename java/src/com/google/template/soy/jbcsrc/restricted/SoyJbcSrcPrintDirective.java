@@ -45,6 +45,18 @@ public interface SoyJbcSrcPrintDirective extends SoyPrintDirective {
   SoyExpression applyForJbcSrc(
       JbcSrcPluginContext context, SoyExpression value, List<SoyExpression> args);
 
+  /**
+   * An escaping print directive that is implemented by a static {@code String -> String} method.
+   *
+   * <p>This allows the compiler to reference the escaper directly as a {@code Function<String,
+   * String>} (for example, to escape the placeholders of logging functions) rather than adapting
+   * the {@link com.google.template.soy.shared.restricted.SoyJavaPrintDirective} at runtime.
+   */
+  interface Escaper extends SoyJbcSrcPrintDirective {
+    /** Returns a static method with the signature {@code String(String)} that escapes its input. */
+    MethodRef escaperMethod();
+  }
+
   /**
    * A print directive that supports streaming.
    *
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.template.soy.jbcsrc.runtime;
+
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.JdkFutureAdapters;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.template.soy.data.LoggingAdvisingAppendable;
+import com.google.template.soy.data.LoggingAdvisingAppendable.BufferingAppendable;
+import com.google.template.soy.data.SoyRecord;
+import com.google.template.soy.data.SoyValueProvider;
+import com.google.template.soy.jbcsrc.api.RenderResult;
+import com.google.template.soy.jbcsrc.shared.CompiledTemplate;
+import com.google.template.soy.jbcsrc.shared.RenderContext;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+/**
+ * A {@code {call}} that may be rendered concurrently with the template that contains it.
+ *
+ * <p>When concurrent calls are enabled at compile time, the compiler starts all the calls in a run
+ * of independent sibling calls before rendering the first one. If the {@link RenderContext} has a
+ * {@linkplain RenderContext#getConcurrentRenderExecutor concurrent render executor}, each call is
+ * rendered on it into a {@link BufferingAppendable} and {@link #renderTo} splices the buffer into
+ * the output, including any logging statements, once the call is complete. Otherwise {@link
+ * #renderTo} simply renders the call directly, exactly as a normal call would.
+ */
+public abstract class ConcurrentCall {
+
+  /**
+   * Starts a call to the given template.
+   *
+   * <p>The call is only handed off to the executor if all of its params, and all the injected
+   * params that the callee might read, can be resolved on this thread without detaching. Resolving
+   * them here means the other thread only ever reads already computed values, since lazily
+   * evaluated providers are not safe to resolve concurrently. Otherwise the call is rendered in
+   * place.
+   */
+  public static ConcurrentCall start(
+      String templateName,
+      CompiledTemplate template,
+      SoyRecord params,
+      SoyRecord ij,
+      RenderContext context) {
+    Executor executor = context.getConcurrentRenderExecutor();
+    if (executor == null
+        || !resolveAll(params.recordAsMap().values())
+        || !resolveIjParams(ij, context.getTransitiveIjParams(templateName))) {
+      return new SequentialCall(template, params, ij, context);
+    }
+    SpeculativeCall call =
+        new SpeculativeCall(template, params, ij, context.forkForConcurrentRender(), executor);
+    executor.execute(call);
+    return call;
+  }
+
+  private static boolean resolveIjParams(SoyRecord ij, Iterable<String> names) {
+    for (String name : names) {
+      SoyValueProvider provider = ij.getFieldProvider(name);
+      if (provider != null && !resolve(provider)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean resolveAll(Iterable<SoyValueProvider> providers) {
+    for (SoyValueProvider provider : providers) {
+      if (!resolve(provider)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Resolves the provider if it can be done without detaching, returning whether it was. */
+  private static boolean resolve(SoyValueProvider provider) {
+    if (!provider.status().isDone()) {
+      return false;
+    }
+    provider.resolve();
+    return true;
+  }
+
+  /**
+   * Renders the call into the given appendable, returning a detach result if it isn't complete
+   * yet.
+   */
+  public abstract RenderResult renderTo(LoggingAdvisingAppendable appendable) throws IOException;
+
+  private ConcurrentCall() {}
+
+  private static final class SequentialCall extends ConcurrentCall {
+    final CompiledTemplate template;
+    final SoyRecord params;
+    final SoyRecord ij;
+    final RenderContext context;
+
+    SequentialCall(
+        CompiledTemplate template, SoyRecord params, SoyRecord ij, RenderContext context) {
+      this.template = template;
+      this.params = params;
+      this.ij = ij;
+      this.context = context;
+    }
+
+    @Override
+    public RenderResult renderTo(LoggingAdvisingAppendable appendable) throws IOException {
+      return template.render(params, ij, appendable, context);
+    }
+  }
+
+  private static final class SpeculativeCall extends ConcurrentCall implements Runnable {
+    final CompiledTemplate template;
+    final SoyRecord params;
+    final SoyRecord ij;
+    final RenderContext context;
+    final Executor executor;
+    final BufferingAppendable buffer = LoggingAdvisingAppendable.buffering();
+    final SettableFuture<Void> done = SettableFuture.create();
+
+    SpeculativeCall(
+        CompiledTemplate template,
+        SoyRecord params,
+        SoyRecord ij,
+        RenderContext context,
+        Executor executor) {
+      this.template = template;
+      this.params = params;
+      this.ij = ij;
+      this.context = context;
+      this.executor = executor;
+    }
+
+    /** Renders as much as possible, rescheduling when the template detaches. */
+    @Override
+    public void run() {
+      try {
+        RenderResult result = template.render(params, ij, buffer, context);
+        switch (result.type()) {
+          case DONE:
+            done.set(null);
+            return;
+          case DETACH:
+            listen(result.future()).addListener(this, executor);
+            return;
+          case LIMITED:
+            // buffers have no limit, but resume anyway rather than hanging
+            executor.execute(this);
+            return;
+        }
+        throw new AssertionError(result.type());
+      } catch (Throwable t) {
+        done.setException(t);
+      }
+    }
+
+    @Override
+    public RenderResult renderTo(LoggingAdvisingAppendable appendable) throws IOException {
+      if (!done.isDone()) {
+        return RenderResult.continueAfter(done);
+      }
+      try {
+        Futures.getDone(done);
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        Throwables.throwIfInstanceOf(cause, IOException.class);
+        Throwables.throwIfUnchecked(cause);
+        throw new IllegalStateException(cause);
+      }
+      buffer.replayOn(appendable);
+      return RenderResult.done();
+    }
+
+    private ListenableFuture<?> listen(Future<?> future) {
+      return future instanceof ListenableFuture
+          ? (ListenableFuture<?>) future
+          : JdkFutureAdapters.listenInPoolThread(future, executor);
+    }
+  }
+}
@@ -18,18 +18,16 @@ package com.google.template.soy.jbcsrc.runtime;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.collect.ImmutableMap.toImmutableMap;
 import static java.lang.invoke.MethodType.methodType;
 
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.HashMultiset;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.MapMaker;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Multiset;
-import com.google.common.collect.SetMultimap;
 import com.google.errorprone.annotations.Immutable;
 import com.google.protobuf.ExtensionLite;
 import com.google.protobuf.GeneratedMessage.ExtendableMessage;
@@ -42,7 +40,9 @@ import com.google.template.soy.data.ProtoFieldInterpreter;
 import com.google.template.soy.data.SanitizedContent;
 import com.google.template.soy.data.SanitizedContent.ContentKind;
 import com.google.template.soy.data.SoyLegacyObjectMap;
+import com.google.template.soy.data.SoyList;
 import com.google.template.soy.data.SoyMap;
+import com.google.template.soy.data.SoyProtoValue;
 import com.google.template.soy.data.SoyRecord;
 import com.google.template.soy.data.SoyRecords;
 import com.google.template.soy.data.SoyValue;
@@ -52,15 +52,18 @@ import com.google.template.soy.data.SoyVisualElementData;
 import com.google.template.soy.data.UnsafeSanitizedContentOrdainer;
 import com.google.template.soy.data.internal.LazyProtoToSoyValueList;
 import com.google.template.soy.data.internal.ParamStore;
+import com.google.template.soy.data.internal.ShapedParamStore;
 import com.google.template.soy.data.internal.SoyLegacyObjectMapImpl;
 import com.google.template.soy.data.internal.SoyMapImpl;
 import com.google.template.soy.data.internal.SoyRecordImpl;
 import com.google.template.soy.data.restricted.NullData;
 import com.google.template.soy.data.restricted.NumberData;
+import com.google.template.soy.data.restricted.PrimitiveData;
 import com.google.template.soy.data.restricted.StringData;
 import com.google.template.soy.data.restricted.UndefinedData;
 import com.google.template.soy.jbcsrc.api.OutputAppendable;
 import com.google.template.soy.jbcsrc.api.RenderResult;
+import com.google.template.soy.jbcsrc.api.TemplateFragmentCache;
 import com.google.template.soy.jbcsrc.shared.CompiledTemplate;
 import com.google.template.soy.jbcsrc.shared.LegacyFunctionAdapter;
 import com.google.template.soy.jbcsrc.shared.RenderContext;
@@ -79,11 +82,11 @@ import java.io.IOException;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
@@ -188,6 +191,11 @@ public final class JbcSrcRuntime {
     return store.setField(field, provider == null ? NullData.INSTANCE : provider);
   }
 
+  public static ShapedParamStore setFieldAt(
+      ShapedParamStore store, int index, SoyValueProvider provider) {
+    return store.setFieldAt(index, provider == null ? NullData.INSTANCE : provider);
+  }
+
   /**
    * Helper function to make SoyRecord.getFieldProvider a non-nullable function by returning {@link
    * #NULL_PROVIDER} for missing fields.
@@ -334,6 +342,148 @@ public final class JbcSrcRuntime {
     return MsgRenderer.escapeHtml(handleBasicTranslation(parts));
   }
 
+  /**
+   * The placeholders of a message, as assigned by the compiler. Each placeholder has an index into
+   * the value array of a {@link MsgRenderer}, and translations have their placeholder names
+   * resolved to these indices once, rather than on every render.
+   *
+   * <p>Some placeholders have ordering constraints. This is necessary for the velog to function
+   * correctly in the face of translators reordering things. The constraints are simply that an end
+   * tag must come after a start tag, and they are stored as bitsets over the placeholder indices.
+   */
+  public static final class MsgLayout {
+    private static final int NOT_A_PLACEHOLDER = -1;
+    private static final int UNKNOWN_PLACEHOLDER = -2;
+
+    /**
+     * Creates a layout.
+     *
+     * @param placeholderNames The placeholder names, in index order.
+     * @param endPlaceholderNames For each placeholder, the name of another placeholder that _must_
+     *     come _after_ it, or the empty string if there is no such constraint.
+     */
+    public static MsgLayout create(
+        ImmutableList<String> placeholderNames, ImmutableList<String> endPlaceholderNames) {
+      return new MsgLayout(placeholderNames, endPlaceholderNames);
+    }
+
+    final ImmutableList<String> placeholderNames;
+    private final ImmutableMap<String, Integer> indexByName;
+    // The placeholders that have an end placeholder, or null if there are no ordering constraints.
+    @Nullable private final BitSet startPlaceholders;
+    // For each end placeholder, the start placeholders that must precede it.
+    @Nullable private final BitSet[] endToStartPlaceholders;
+
+    // The placeholder indices of each translation, keyed by the identity of its parts so that each
+    // locale's translation is resolved once and the lookup never compares parts.
+    private final Map<ImmutableList<SoyMsgPart>, int[]> resolved =
+        new MapMaker().weakKeys().makeMap();
+
+    private MsgLayout(
+        ImmutableList<String> placeholderNames, ImmutableList<String> endPlaceholderNames) {
+      Preconditions.checkArgument(placeholderNames.size() == endPlaceholderNames.size());
+      this.placeholderNames = placeholderNames;
+      ImmutableMap.Builder<String, Integer> indexByName = ImmutableMap.builder();
+      for (int i = 0; i < placeholderNames.size(); i++) {
+        indexByName.put(placeholderNames.get(i), i);
+      }
+      this.indexByName = indexByName.build();
+      BitSet startPlaceholders = null;
+      BitSet[] endToStartPlaceholders = null;
+      for (int i = 0; i < placeholderNames.size(); i++) {
+        String endPlaceholder = endPlaceholderNames.get(i);
+        if (endPlaceholder.isEmpty()) {
+          continue;
+        }
+        if (startPlaceholders == null) {
+          startPlaceholders = new BitSet(placeholderNames.size());
+          endToStartPlaceholders = new BitSet[placeholderNames.size()];
+        }
+        addOrdering(i, indexOf(endPlaceholder), startPlaceholders, endToStartPlaceholders);
+      }
+      this.startPlaceholders = startPlaceholders;
+      this.endToStartPlaceholders = endToStartPlaceholders;
+    }
+
+    private void addOrdering(
+        int start, int end, BitSet startPlaceholders, BitSet[] endToStartPlaceholders) {
+      // We need to check that our ordering constraints make sense.
+      // the start placeholder shouldn't be the 'after' node of any other node and the end
+      // placeholder shouldn't be the before node of any other node.
+      // The edges in this ordering graph should create a forest of trees of depth 1.
+      if (endToStartPlaceholders[start] != null) {
+        throw new IllegalArgumentException(
+            String.format(
+                "%s is supposed to come after %s but before %s. Order contraints should not be "
+                    + "transitive.",
+                placeholderNames.get(start),
+                // just use one of them, there is normally only one
+                placeholderNames.get(endToStartPlaceholders[start].nextSetBit(0)),
+                placeholderNames.get(end)));
+      }
+      if (startPlaceholders.get(end)) {
+        String beforePlaceholder = null;
+        // scan to find the placeholder that is supposed to come after this one.
+        for (int i = 0; i < endToStartPlaceholders.length; i++) {
+          if (endToStartPlaceholders[i] != null && endToStartPlaceholders[i].get(end)) {
+            beforePlaceholder = placeholderNames.get(i);
+            break;
+          }
+        }
+        throw new IllegalArgumentException(
+            String.format(
+                "%s is supposed to come after %s but before %s. Order contraints should not be "
+                    + "transitive.",
+                placeholderNames.get(end), placeholderNames.get(start), beforePlaceholder));
+      }
+      if (endToStartPlaceholders[end] == null) {
+        endToStartPlaceholders[end] = new BitSet(placeholderNames.size());
+      }
+      endToStartPlaceholders[end].set(start);
+      startPlaceholders.set(start);
+    }
+
+    int indexOf(String placeholderName) {
+      Integer index = indexByName.get(placeholderName);
+      if (index == null) {
+        throw new IllegalArgumentException(
+            "Unknown placeholder: '" + placeholderName + "', expected one of " + placeholderNames);
+      }
+      return index;
+    }
+
+    /**
+     * Returns, for each of the given parts, the index of its placeholder, {@link
+     * #NOT_A_PLACEHOLDER} if it isn't a placeholder part or {@link #UNKNOWN_PLACEHOLDER} if this
+     * message has no such placeholder.
+     */
+    int[] placeholderIndices(ImmutableList<SoyMsgPart> parts) {
+      int[] indices = resolved.get(parts);
+      if (indices == null) {
+        indices = resolved.computeIfAbsent(parts, this::resolve);
+      }
+      return indices;
+    }
+
+    private int[] resolve(ImmutableList<SoyMsgPart> parts) {
+      int[] indices = new int[parts.size()];
+      for (int i = 0; i < parts.size(); i++) {
+        SoyMsgPart part = parts.get(i);
+        if (part instanceof SoyMsgPlaceholderPart) {
+          Integer index = indexByName.get(((SoyMsgPlaceholderPart) part).getPlaceholderName());
+          indices[i] = index == null ? UNKNOWN_PLACEHOLDER : index;
+        } else {
+          indices[i] = NOT_A_PLACEHOLDER;
+        }
+      }
+      return indices;
+    }
+
+    private List<String> namesOf(BitSet placeholders) {
+      return placeholders.stream().mapToObj(placeholderNames::get).collect(toImmutableList());
+    }
+  }
+
   /**
    * A Message renderer represents a message to be rendered. It encapsulates the placeholders and
    * message parts and can dynamically render them. This manages a small state machine that allows
@@ -344,15 +494,11 @@ public final class JbcSrcRuntime {
     final ULocale locale;
     private int partIndex;
     private SoyValueProvider pendingRender;
-    final Map<String, SoyValueProvider> placeholders;
-
-    // Some placeholders have ordering constraints.  This is necessary for the velog to function
-    // correctly in the face of translators reordering things.
-    // The constraints are simply that an end tag must come after a start tag
-    @Nullable Set<String> startPlaceholders;
-    @Nullable Multiset<String> startPlaceholderRenderCount;
-    // an optional map from a placeholder to another placeholder that must precede it.
-    @Nullable SetMultimap<String, String> endPlaceholderToStartPlaceholder;
+    final MsgLayout layout;
+    final SoyValueProvider[] placeholders;
+    // How many times each start placeholder has been rendered without its end placeholder, only
+    // allocated if the message has ordering constraints.
+    @Nullable private int[] startPlaceholderRenderCount;
     private final long msgId;
     private final boolean htmlEscape;
 
@@ -360,32 +506,24 @@ public final class JbcSrcRuntime {
         long msgId,
         ImmutableList<SoyMsgPart> msgParts,
         @Nullable ULocale locale,
-        int numPlaceholders,
+        MsgLayout layout,
         boolean htmlEscape) {
       this.msgId = msgId;
       this.msgParts = msgParts;
       this.locale = locale;
-      this.placeholders = Maps.newLinkedHashMapWithExpectedSize(numPlaceholders);
+      this.layout = layout;
+      this.placeholders = new SoyValueProvider[layout.placeholderNames.size()];
       this.htmlEscape = htmlEscape;
     }
 
     /**
      * Sets a placeholder value.
      *
-     * @param placeholderName The placeholder name
+     * @param placeholderIndex The index of the placeholder in the {@link MsgLayout}
      * @param placeholderValue The placeholder value.
      */
-    public MsgRenderer setPlaceholder(String placeholderName, SoyValueProvider placeholderValue) {
-      Object prev = placeholders.put(placeholderName, placeholderValue);
-      if (prev != null) {
-        throw new IllegalArgumentException(
-            "found multiple placeholders: "
-                + prev
-                + " and "
-                + placeholderValue
-                + " for key "
-                + placeholderName);
-      }
+    public MsgRenderer setPlaceholder(int placeholderIndex, SoyValueProvider placeholderValue) {
+      placeholders[placeholderIndex] = placeholderValue;
       return this;
     }
 
@@ -394,58 +532,6 @@ public final class JbcSrcRuntime {
       return s.replace("<", "&lt;");
     }
 
-    /**
-     * Sets a placeholder and declares that it must come before {@code endPlaceholder}.
-     *
-     * <p>This is necessary to enforce the constraints of the velogging system.
-     *
-     * @param placeholderName The placeholder name
-     * @param placeholderValue The placeholder value. For a normal placeholder this will be a
-     *     SoyValueProvider
-     * @param endPlaceholder The name of another placeholder that _must_ come _after_ this one.
-     */
-    public MsgRenderer setPlaceholderAndOrdering(
-        String placeholderName, SoyValueProvider placeholderValue, String endPlaceholder) {
-      if (endPlaceholderToStartPlaceholder == null) {
-        startPlaceholders = new HashSet<>();
-        endPlaceholderToStartPlaceholder = HashMultimap.create();
-        startPlaceholderRenderCount = HashMultiset.create();
-      }
-      // We need to check that our ordering constraints make sense.
-      // the placeholderName shouldn't be the 'after' node of any other node and the endPlaceholder
-      // shouldn't be the before node of any other node.
-      // The edges in this ordering graph should create a forest of trees of depth 1.
-      if (endPlaceholderToStartPlaceholder.containsKey(placeholderName)) {
-        throw new IllegalArgumentException(
-            String.format(
-                "%s is supposed to come after %s but before %s. Order contraints should not be "
-                    + "transitive.",
-                placeholderName,
-                // just use one of them, there is normally only one
-                endPlaceholderToStartPlaceholder.get(placeholderName).iterator().next(),
-                endPlaceholder));
-      }
-      if (startPlaceholders.contains(endPlaceholder)) {
-        String beforePlaceholder = null;
-        // scan to find the placeholder that is supposed to come after this one.
-        for (Map.Entry<String, String> entry : endPlaceholderToStartPlaceholder.entries()) {
-          if (endPlaceholder.equals(entry.getValue())) {
-            beforePlaceholder = entry.getKey();
-            break;
-          }
-        }
-        throw new IllegalArgumentException(
-            String.format(
-                "%s is supposed to come after %s but before %s. Order contraints should not be "
-                    + "transitive.",
-                endPlaceholder, placeholderName, beforePlaceholder));
-      }
-      setPlaceholder(placeholderName, placeholderValue);
-      endPlaceholderToStartPlaceholder.put(endPlaceholder, placeholderName);
-      startPlaceholders.add(placeholderName);
-      return this;
-    }
-
     /**
      * Renders the message to the given output stream incrementally.
      *
@@ -463,6 +549,7 @@ public final class JbcSrcRuntime {
         }
         pendingRender = null;
       }
+      int[] placeholderIndices = layout.placeholderIndices(msgParts);
       for (int i = partIndex; i < msgParts.size(); i++) {
         SoyMsgPart msgPart = msgParts.get(i);
         if (msgPart instanceof SoyMsgRawTextPart) {
@@ -472,40 +559,18 @@ public final class JbcSrcRuntime {
           }
           out.append(s);
         } else if (msgPart instanceof SoyMsgPlaceholderPart) {
-          String placeholderName = ((SoyMsgPlaceholderPart) msgPart).getPlaceholderName();
-          if (endPlaceholderToStartPlaceholder != null) {
-            if (startPlaceholders.contains(placeholderName)) {
-              startPlaceholderRenderCount.add(placeholderName);
-            } else {
-              // check if it is an end tag
-              Set<String> startPlaceholders = endPlaceholderToStartPlaceholder.get(placeholderName);
-              if (!startPlaceholders.isEmpty()) {
-                // make sure the start tag has been rendered
-                boolean matched = false;
-                for (String startPlaceholder : startPlaceholders) {
-                  if (startPlaceholderRenderCount.remove(startPlaceholder)) {
-                    matched = true;
-                    break;
-                  }
-                }
-                if (!matched) {
-                  // uhoh
-                  throw new IllegalStateException(
-                      String.format(
-                          "Expected placeholder '%s' to come after one of %s, in message %d",
-                          placeholderName, startPlaceholders, msgId));
-                }
-              }
-            }
-          }
-          SoyValueProvider placeholderValue = placeholders.get(placeholderName);
-          if (placeholderValue == null) {
+          int placeholderIndex = placeholderIndices[i];
+          if (placeholderIndex == MsgLayout.UNKNOWN_PLACEHOLDER) {
             throw new IllegalStateException(
                 "No value provided for placeholder: '"
-                    + placeholderValue
+                    + ((SoyMsgPlaceholderPart) msgPart).getPlaceholderName()
                     + "', expected one of "
-                    + placeholders.keySet());
+                    + layout.placeholderNames);
+          }
+          if (layout.startPlaceholders != null) {
+            checkOrdering(placeholderIndex);
           }
+          SoyValueProvider placeholderValue = placeholders[placeholderIndex];
           try {
             // TODO(lukes): we could set the isLast flag by scanning forward in msgParts for more
             // occurrences of this placeholder
@@ -518,7 +583,7 @@ public final class JbcSrcRuntime {
               return result;
             }
           } catch (IllegalStateException e) {
-            throw new IllegalStateException(placeholderName, e);
+            throw new IllegalStateException(layout.placeholderNames.get(placeholderIndex), e);
           }
         } else if (msgPart instanceof SoyMsgPluralRemainderPart) {
           // this is weird... shouldn't this be using a number format?
@@ -527,16 +592,55 @@ public final class JbcSrcRuntime {
           throw new AssertionError("unexpected part: " + msgPart);
         }
       }
-      if (startPlaceholderRenderCount != null && !startPlaceholderRenderCount.isEmpty()) {
-        throw new IllegalStateException(
-            String.format(
-                "The following placeholders never had their matching placeholders rendered in"
-                    + " message %d: %s",
-                msgId, startPlaceholderRenderCount.elementSet()));
+      if (startPlaceholderRenderCount != null) {
+        BitSet unmatched = new BitSet();
+        for (int i = 0; i < startPlaceholderRenderCount.length; i++) {
+          if (startPlaceholderRenderCount[i] > 0) {
+            unmatched.set(i);
+          }
+        }
+        if (!unmatched.isEmpty()) {
+          throw new IllegalStateException(
+              String.format(
+                  "The following placeholders never had their matching placeholders rendered in"
+                      + " message %d: %s",
+                  msgId, layout.namesOf(unmatched)));
+        }
       }
       return RenderResult.done();
     }
 
+    private void checkOrdering(int placeholderIndex) {
+      if (startPlaceholderRenderCount == null) {
+        startPlaceholderRenderCount = new int[placeholders.length];
+      }
+      if (layout.startPlaceholders.get(placeholderIndex)) {
+        startPlaceholderRenderCount[placeholderIndex]++;
+        return;
+      }
+      // check if it is an end tag
+      BitSet startPlaceholders = layout.endToStartPlaceholders[placeholderIndex];
+      if (startPlaceholders == null) {
+        return;
+      }
+      // make sure the start tag has been rendered
+      for (int start = startPlaceholders.nextSetBit(0);
+          start >= 0;
+          start = startPlaceholders.nextSetBit(start + 1)) {
+        if (startPlaceholderRenderCount[start] > 0) {
+          startPlaceholderRenderCount[start]--;
+          return;
+        }
+      }
+      // uhoh
+      throw new IllegalStateException(
+          String.format(
+              "Expected placeholder '%s' to come after one of %s, in message %d",
+              layout.placeholderNames.get(placeholderIndex),
+              layout.namesOf(startPlaceholders),
+              msgId));
+    }
+
     double getPluralRemainder() {
       throw new UnsupportedOperationException(
           "this is not a plural message so remainder don't make sense");
@@ -553,9 +657,9 @@ public final class JbcSrcRuntime {
         long msgId,
         ImmutableList<SoyMsgPart> msgParts,
         @Nullable ULocale locale,
-        int numPlaceholders,
+        MsgLayout layout,
         boolean htmlEscape) {
-      super(msgId, msgParts, locale, numPlaceholders, htmlEscape);
+      super(msgId, msgParts, locale, layout, htmlEscape);
     }
 
     @Override
@@ -573,7 +677,8 @@ public final class JbcSrcRuntime {
           SoyMsgPart first = parts.get(0);
           if (first instanceof SoyMsgSelectPart) {
             SoyMsgSelectPart selectPart = (SoyMsgSelectPart) first;
-            SoyValueProvider selectPlaceholder = placeholders.get(selectPart.getSelectVarName());
+            SoyValueProvider selectPlaceholder =
+                placeholders[layout.indexOf(selectPart.getSelectVarName())];
             caseSelectionResult = selectPlaceholder.status();
             if (caseSelectionResult.isDone()) {
               // Handle null results by coercing to 'null' for compatibility with javascript
@@ -583,7 +688,8 @@ public final class JbcSrcRuntime {
             }
           } else if (first instanceof SoyMsgPluralPart) {
             SoyMsgPluralPart pluralPart = (SoyMsgPluralPart) first;
-            SoyValueProvider pluralPlaceholder = placeholders.get(pluralPart.getPluralVarName());
+            SoyValueProvider pluralPlaceholder =
+                placeholders[layout.indexOf(pluralPart.getPluralVarName())];
             caseSelectionResult = pluralPlaceholder.status();
             if (caseSelectionResult.isDone()) {
               double pluralValue = pluralPlaceholder.resolve().numberValue();
@@ -789,6 +895,189 @@ public final class JbcSrcRuntime {
     }
   }
 
+  /**
+   * Renders a {@code cacheable} template, serving the output from the {@link
+   * TemplateFragmentCache} configured on the context if possible.
+   *
+   * <p>This is called by the generated {@code render} method of cacheable templates, {@code
+   * uncached} renders the actual template body.
+   */
+  public static RenderResult renderCached(
+      CompiledTemplate uncached,
+      String templateName,
+      ImmutableList<String> paramNames,
+      SoyRecord params,
+      SoyRecord ij,
+      LoggingAdvisingAppendable appendable,
+      RenderContext context)
+      throws IOException {
+    TemplateFragmentCache cache = context.getFragmentCache();
+    if (cache == null) {
+      return uncached.render(params, ij, appendable, context);
+    }
+    StackFrame frame = context.popFrame();
+    BufferingAppendable buffer;
+    Object key;
+    switch (frame.stateNumber) {
+      case 0:
+        key = fragmentCacheKey(templateName, paramNames, params, ij, context);
+        if (key == null) {
+          return renderUncachedFragment(uncached, params, ij, appendable, context);
+        }
+        buffer = cache.get(key);
+        if (buffer != null) {
+          buffer.replayOn(appendable);
+          return RenderResult.done();
+        }
+        buffer = LoggingAdvisingAppendable.buffering();
+        break;
+      case 1:
+        try {
+          buffer = (BufferingAppendable) FragmentCacheState.restoreBufferHandle.invokeExact(frame);
+          key = (Object) FragmentCacheState.restoreKeyHandle.invokeExact(frame);
+        } catch (Throwable t) {
+          throw new AssertionError(t);
+        }
+        break;
+      case 2:
+        return renderUncachedFragment(uncached, params, ij, appendable, context);
+      default:
+        throw unexpectedStateError(frame);
+    }
+    RenderResult result = uncached.render(params, ij, buffer, context);
+    if (result.isDone()) {
+      // Replay before publishing, the first replay flushes any pending text so subsequent replays
+      // from other threads only read the buffer.
+      buffer.replayOn(appendable);
+      cache.put(key, buffer);
+    } else {
+      try {
+        FragmentCacheState.saveStateHandle.invokeExact(context, buffer, key);
+      } catch (Throwable t) {
+        throw new AssertionError(t);
+      }
+    }
+    return result;
+  }
+
+  private static RenderResult renderUncachedFragment(
+      CompiledTemplate uncached,
+      SoyRecord params,
+      SoyRecord ij,
+      LoggingAdvisingAppendable appendable,
+      RenderContext context)
+      throws IOException {
+    RenderResult result = uncached.render(params, ij, appendable, context);
+    if (!result.isDone()) {
+      context.pushFrame(new StackFrame(2));
+    }
+    return result;
+  }
+
+  private static final class FragmentCacheState {
+    static final MethodHandle saveStateHandle;
+    static final MethodHandle restoreBufferHandle;
+    static final MethodHandle restoreKeyHandle;
+
+    static {
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      MethodType saveMethodType =
+          methodType(void.class, RenderContext.class, BufferingAppendable.class, Object.class);
+      saveStateHandle =
+          SaveStateMetaFactory.bootstrapSaveState(lookup, "saveState", saveMethodType, 1)
+              .getTarget();
+      restoreBufferHandle =
+          SaveStateMetaFactory.bootstrapRestoreState(
+                  lookup,
+                  "restoreLocal",
+                  methodType(BufferingAppendable.class, StackFrame.class),
+                  saveMethodType,
+                  0)
+              .getTarget();
+      restoreKeyHandle =
+          SaveStateMetaFactory.bootstrapRestoreState(
+                  lookup,
+                  "restoreLocal",
+                  methodType(Object.class, StackFrame.class),
+                  saveMethodType,
+                  1)
+              .getTarget();
+    }
+  }
+
+  /**
+   * Returns the cache key for rendering the given template, or {@code null} if any of the values
+   * that could affect the output are not usable as keys.
+   */
+  @Nullable
+  private static Object fragmentCacheKey(
+      String templateName,
+      ImmutableList<String> paramNames,
+      SoyRecord params,
+      SoyRecord ij,
+      RenderContext context) {
+    ImmutableList<String> ijNames = context.getTransitiveIjParams(templateName);
+    Object[] key = new Object[2 + paramNames.size() + ijNames.size()];
+    int i = 0;
+    key[i++] = templateName;
+    key[i++] = context.getFragmentCacheEnvironmentKey();
+    for (String name : paramNames) {
+      Object valueKey = fragmentCacheValueKey(params.getFieldProvider(name));
+      if (valueKey == null) {
+        return null;
+      }
+      key[i++] = valueKey;
+    }
+    for (String name : ijNames) {
+      Object valueKey = fragmentCacheValueKey(ij.getFieldProvider(name));
+      if (valueKey == null) {
+        return null;
+      }
+      key[i++] = valueKey;
+    }
+    return Arrays.asList(key);
+  }
+
+  /**
+   * Returns a value with the same equality semantics as the rendered form of the given value, or
+   * {@code null} if there isn't one.
+   */
+  @Nullable
+  private static Object fragmentCacheValueKey(@Nullable SoyValueProvider provider) {
+    if (provider == null) {
+      return UndefinedData.INSTANCE;
+    }
+    if (!provider.status().isDone()) {
+      return null;
+    }
+    SoyValue value = provider.resolve();
+    if (value == null) {
+      return NullData.INSTANCE;
+    }
+    // Tag values with their class, the equals() methods of the primitive types consider values
+    // equal that may render differently (e.g. 1 and 1.0).
+    if (value instanceof PrimitiveData || value instanceof SanitizedContent) {
+      return Arrays.asList(value.getClass(), value);
+    }
+    if (value instanceof SoyProtoValue) {
+      return Arrays.asList(SoyProtoValue.class, ((SoyProtoValue) value).getProto());
+    }
+    if (value instanceof SoyList) {
+      List<? extends SoyValueProvider> items = ((SoyList) value).asJavaList();
+      Object[] itemKeys = new Object[items.size() + 1];
+      itemKeys[0] = SoyList.class;
+      for (int i = 0; i < items.size(); i++) {
+        Object itemKey = fragmentCacheValueKey(items.get(i));
+        if (itemKey == null) {
+          return null;
+        }
+        itemKeys[i + 1] = itemKey;
+      }
+      return Arrays.asList(itemKeys);
+    }
+    return null;
+  }
+
   public static LogStatement createLogStatement(boolean logOnly, SoyVisualElementData veData) {
     return LogStatement.create(veData.ve().id(), veData.data(), logOnly);
   }
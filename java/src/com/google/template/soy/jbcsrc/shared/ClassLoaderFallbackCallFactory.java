@@ -147,11 +147,11 @@ public final class ClassLoaderFallbackCallFactory {
     try {
       MethodHandle handle =
           lookup.findStatic(
-              ClassLoaderFallbackCallFactory.class, "slowpathTemplate", SLOWPATH_TEMPLATE_TYPE);
+              ClassLoaderFallbackCallFactory.class, "slowPathTemplate", SLOWPATH_TEMPLATE_TYPE);
       handle = insertArguments(handle, 0, templateName);
       return new ConstantCallSite(handle);
     } catch (ReflectiveOperationException roe) {
-      throw new AssertionError("impossible, can't find our slowPathTemplateValue method", roe);
+      throw new AssertionError("impossible, can't find our slowPathTemplate method", roe);
     }
   }
 
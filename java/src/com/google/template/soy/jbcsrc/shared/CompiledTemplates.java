@@ -19,15 +19,21 @@ package com.google.template.soy.jbcsrc.shared;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
 import com.google.errorprone.annotations.Immutable;
 import com.google.errorprone.annotations.concurrent.LazyInit;
 import com.google.template.soy.data.SanitizedContent.ContentKind;
 import com.google.template.soy.jbcsrc.shared.TemplateMetadata.DelTemplateMetadata;
+import com.google.template.soy.logging.LoggableElementMetadata;
 import com.google.template.soy.shared.internal.DelTemplateSelector;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
@@ -43,6 +49,10 @@ public class CompiledTemplates {
   private final ConcurrentHashMap<String, TemplateData> templateNameToFactory =
       new ConcurrentHashMap<>();
   private final DelTemplateSelector<TemplateData> selector;
+  private final ImmutableSortedSet<String> delPackageNames;
+  @Nullable private final String compiledMsgLocale;
+  private final ConcurrentHashMap<String, MethodHandle> veMetadataGetters =
+      new ConcurrentHashMap<>();
 
   /** Interface for constructor. */
   public interface Factory {
@@ -55,9 +65,59 @@ public class CompiledTemplates {
    * @param loader The classloader that contains the classes
    */
   public CompiledTemplates(ImmutableSet<String> delTemplateNames, ClassLoader loader) {
+    this(delTemplateNames, loader, ImmutableList.of());
+  }
+
+  /**
+   * @param delTemplateNames The names of all the compiled deltemplates (the mangled names). This is
+   *     needed to construct a valid deltemplate selector.
+   * @param loader The classloader that contains the classes
+   * @param templateIndex The lines of the {@link Names#META_INF_TEMPLATE_INDEX_PATH} files found in
+   *     {@code loader}. Metadata for the templates listed there is read from the index rather than
+   *     by loading their classes, which are then only loaded when they are rendered.
+   */
+  public CompiledTemplates(
+      ImmutableSet<String> delTemplateNames, ClassLoader loader, Iterable<String> templateIndex) {
+    this(delTemplateNames, loader, templateIndex, ImmutableList.of());
+  }
+
+  /**
+   * @param delTemplateNames The names of all the compiled deltemplates (the mangled names). This is
+   *     needed to construct a valid deltemplate selector.
+   * @param loader The classloader that contains the classes
+   * @param templateIndex The lines of the {@link Names#META_INF_TEMPLATE_INDEX_PATH} files found in
+   *     {@code loader}.
+   * @param compiledMsgLocales The lines of the {@link Names#META_INF_MSG_LOCALE_PATH} files found
+   *     in {@code loader}. These must all name the same locale, and renders must use a message
+   *     bundle for it.
+   */
+  public CompiledTemplates(
+      ImmutableSet<String> delTemplateNames,
+      ClassLoader loader,
+      Iterable<String> templateIndex,
+      Iterable<String> compiledMsgLocales) {
     this.loader = checkNotNull(loader);
+    Set<String> locales = new LinkedHashSet<>();
+    for (String locale : compiledMsgLocales) {
+      if (!locale.isEmpty()) {
+        locales.add(locale);
+      }
+    }
+    if (locales.size() > 1) {
+      throw new IllegalArgumentException(
+          "Found templates compiled with the messages for more than one locale: " + locales);
+    }
+    this.compiledMsgLocale = Iterables.getFirst(locales, null);
+    for (String entry : templateIndex) {
+      if (!entry.isEmpty()) {
+        TemplateData data = TemplateMetadataIndex.fromMetaInfEntry(entry, loader);
+        // Like the classloader, the first entry for a template wins.
+        templateNameToFactory.putIfAbsent(data.soyTemplateName(), data);
+      }
+    }
     // We need to build the deltemplate selector eagerly.
     DelTemplateSelector.Builder<TemplateData> builder = new DelTemplateSelector.Builder<>();
+    ImmutableSortedSet.Builder<String> delPackageNames = ImmutableSortedSet.naturalOrder();
     for (String delTemplateImplName : delTemplateNames) {
       TemplateData data = getTemplateData(delTemplateImplName);
       if (!data.delTemplateName.isPresent()) {
@@ -67,6 +127,7 @@ public class CompiledTemplates {
       String delTemplateName = data.delTemplateName.get();
       if (data.delPackage.isPresent()) {
         String delpackage = data.delPackage.get();
+        delPackageNames.add(delpackage);
         TemplateData prev = builder.add(delTemplateName, delpackage, data.variant, data);
         if (prev != null) {
           throw new IllegalArgumentException(
@@ -85,12 +146,56 @@ public class CompiledTemplates {
       }
     }
     this.selector = builder.build();
+    this.delPackageNames = delPackageNames.build();
+  }
+
+  /**
+   * Returns the locale of the messages that were compiled into the templates, or {@code null} if
+   * they are translated at render time.
+   */
+  @Nullable
+  public String getCompiledMsgLocale() {
+    return compiledMsgLocale;
+  }
+
+  /** Returns the names of the delpackages that contain at least one deltemplate. */
+  ImmutableSortedSet<String> getDelPackageNames() {
+    return delPackageNames;
   }
 
   ClassLoader getClassLoader() {
     return loader;
   }
 
+  /**
+   * Returns the VE metadata for the given VE id from the given metadata class.
+   *
+   * <p>The metadata class and its accessor are resolved once and then reused, since VE logging can
+   * request metadata many times per render.
+   */
+  LoggableElementMetadata getVeMetadata(String metadataClassName, long veId) {
+    MethodHandle getter =
+        veMetadataGetters.computeIfAbsent(metadataClassName, this::findVeMetadataGetter);
+    try {
+      return (LoggableElementMetadata) getter.invokeExact(veId);
+    } catch (Throwable t) {
+      Throwables.throwIfUnchecked(t);
+      throw new AssertionError(t);
+    }
+  }
+
+  private MethodHandle findVeMetadataGetter(String metadataClassName) {
+    try {
+      return MethodHandles.publicLookup()
+          .findStatic(
+              Class.forName(metadataClassName, /* initialize= */ true, loader),
+              "getMetadata",
+              MethodType.methodType(LoggableElementMetadata.class, long.class));
+    } catch (ReflectiveOperationException e) {
+      throw new AssertionError(e);
+    }
+  }
+
   /** Returns a factory for the given fully qualified template name. */
   public CompiledTemplate getTemplate(String name) {
     return getTemplateData(name).template();
@@ -170,15 +275,17 @@ public class CompiledTemplates {
   }
 
   private static TemplateData loadTemplate(String name, ClassLoader loader) {
-    Class<?> templateClass;
+    return new TemplateData(loadTemplateClass(name, loader));
+  }
+
+  private static Class<?> loadTemplateClass(String name, ClassLoader loader) {
     try {
       String templateName = Names.javaClassNameFromSoyTemplateName(name);
-      templateClass = Class.forName(templateName, /* initialize= */ true, loader);
+      return Class.forName(templateName, /* initialize= */ true, loader);
     } catch (ClassNotFoundException e) {
       String format = "No class was compiled for template: %s.";
       throw new IllegalArgumentException(String.format(format, name), e);
     }
-    return new TemplateData(templateClass);
   }
 
   /**
@@ -247,7 +354,13 @@ public class CompiledTemplates {
   /** This is mostly a copy of the {@link TemplateMetadata} annotation. */
   @Immutable
   public static final class TemplateData {
-    final Class<?> templateClass;
+    private final String soyTemplateName;
+    // The loader to lazily load templateClass from, null if the class was provided up front.
+    @SuppressWarnings("Immutable") // only used to load templateClass
+    @Nullable
+    private final ClassLoader loader;
+    // lazily initialized when created from the template index
+    @LazyInit Class<?> templateClass;
     // lazily initialized since it is not always needed
     @LazyInit CompiledTemplate template;
 
@@ -268,6 +381,8 @@ public class CompiledTemplates {
     @LazyInit ImmutableSortedSet<String> transitiveIjParams;
 
     public TemplateData(Class<?> template) {
+      this.soyTemplateName = Names.soyTemplateNameFromJavaClassName(template.getName());
+      this.loader = null;
       this.templateClass = template;
       // We pull the content kind off the templatemetadata eagerly since the parsing+reflection each
       // time is expensive.
@@ -291,9 +406,38 @@ public class CompiledTemplates {
       }
     }
 
+    /** Creates the data for a template from its index entry, see {@link TemplateMetadataIndex}. */
+    TemplateData(
+        String soyTemplateName,
+        ClassLoader loader,
+        ContentKind kind,
+        ImmutableSet<String> callees,
+        ImmutableSet<String> delCallees,
+        ImmutableSet<String> injectedParams,
+        ImmutableSet<String> requiredCssNamespaces,
+        Optional<String> delTemplateName,
+        Optional<String> delPackage,
+        String variant) {
+      this.soyTemplateName = soyTemplateName;
+      this.loader = loader;
+      this.kind = kind;
+      this.callees = callees;
+      this.delCallees = delCallees;
+      this.injectedParams = injectedParams;
+      this.requiredCssNamespaces = requiredCssNamespaces;
+      this.delTemplateName = delTemplateName;
+      this.delPackage = delPackage;
+      this.variant = variant;
+    }
+
     @VisibleForTesting
     public Class<?> templateClass() {
-      return templateClass;
+      Class<?> local = templateClass;
+      if (local == null) {
+        local = loadTemplateClass(soyTemplateName, loader);
+        templateClass = local;
+      }
+      return local;
     }
 
     public ContentKind kind() {
@@ -310,7 +454,7 @@ public class CompiledTemplates {
       if (local == null) {
         Method method;
         try {
-          method = templateClass.getMethod("template");
+          method = templateClass().getMethod("template");
         } catch (NoSuchMethodException nsme) {
           // for private templates the factory() method is package private and so getMethod will
           // fail.
@@ -333,7 +477,7 @@ public class CompiledTemplates {
     }
 
     String soyTemplateName() {
-      return Names.soyTemplateNameFromJavaClassName(templateClass.getName());
+      return soyTemplateName;
     }
   }
 }
@@ -34,6 +34,13 @@ public final class Names {
   public static final String META_INF_PLUGIN_PATH =
       "META-INF/services/com.google.template.soy.plugins";
 
+  public static final String META_INF_TEMPLATE_INDEX_PATH =
+      "META-INF/services/com.google.template.soy.templates";
+
+  /** Holds the locale of the messages compiled into a jar, if any. */
+  public static final String META_INF_MSG_LOCALE_PATH =
+      "META-INF/services/com.google.template.soy.msglocale";
+
   public static final String CLASS_PREFIX = "com.google.template.soy.jbcsrc.gen.";
   public static final String INTERNAL_CLASS_PREFIX = CLASS_PREFIX.replace('.', '/');
 
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.template.soy.jbcsrc.shared;
+
+import static java.lang.invoke.MethodType.methodType;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.ConstantCallSite;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * An {@code invokedynamic} bootstrap for the {@code css()} and {@code xid()} functions.
+ *
+ * <p>Each call site is linked once to a lookup of its constant selector in the render context's
+ * renaming map. The map itself is consulted on every render, since renaming maps may be mutable or
+ * record which selectors were used.
+ */
+public final class RenamingCallFactory {
+  private static final MethodHandle RENAME_CSS_SELECTOR;
+  private static final MethodHandle RENAME_XID;
+
+  static {
+    MethodHandles.Lookup lookup = MethodHandles.lookup();
+    MethodType renameType = methodType(String.class, String.class);
+    try {
+      RENAME_CSS_SELECTOR =
+          lookup.findVirtual(RenderContext.class, "renameCssSelector", renameType);
+      RENAME_XID = lookup.findVirtual(RenderContext.class, "renameXid", renameType);
+    } catch (ReflectiveOperationException e) {
+      throw new LinkageError(e.getMessage(), e);
+    }
+  }
+
+  public static CallSite bootstrapRenameCss(
+      MethodHandles.Lookup lookup, String name, MethodType type, String selector) {
+    return new ConstantCallSite(MethodHandles.insertArguments(RENAME_CSS_SELECTOR, 1, selector));
+  }
+
+  public static CallSite bootstrapRenameXid(
+      MethodHandles.Lookup lookup, String name, MethodType type, String id) {
+    return new ConstantCallSite(MethodHandles.insertArguments(RENAME_XID, 1, id));
+  }
+
+  private RenamingCallFactory() {}
+}
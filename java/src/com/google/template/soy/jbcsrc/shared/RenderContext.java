@@ -17,6 +17,8 @@
 package com.google.template.soy.jbcsrc.shared;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.ImmutableSortedSet.toImmutableSortedSet;
+import static java.util.Comparator.naturalOrder;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
@@ -28,6 +30,7 @@ import com.google.template.soy.data.SoyRecord;
 import com.google.template.soy.data.restricted.StringData;
 import com.google.template.soy.internal.i18n.BidiGlobalDir;
 import com.google.template.soy.jbcsrc.api.RenderResult;
+import com.google.template.soy.jbcsrc.api.TemplateFragmentCache;
 import com.google.template.soy.logging.LoggableElementMetadata;
 import com.google.template.soy.logging.SoyLogger;
 import com.google.template.soy.msgs.SoyMsgBundle;
@@ -37,6 +40,7 @@ import com.google.template.soy.shared.SoyCssRenamingMap;
 import com.google.template.soy.shared.SoyIdRenamingMap;
 import com.google.template.soy.shared.restricted.SoyJavaPrintDirective;
 import com.ibm.icu.util.ULocale;
+import java.util.concurrent.Executor;
 import java.util.function.Predicate;
 import javax.annotation.Nullable;
 
@@ -67,6 +71,10 @@ public final class RenderContext {
 
   private final boolean debugSoyTemplateInfo;
   private final SoyLogger logger;
+  @Nullable private final TemplateFragmentCache fragmentCache;
+  @Nullable private final Executor concurrentRenderExecutor;
+  // Lazily computed, see getFragmentCacheEnvironmentKey()
+  @Nullable private ImmutableList<Object> fragmentCacheEnvironmentKey;
 
   // This stores the stack frame for restoring state after a detach operation.  It is initialised to
   // a special state 0 that represents the first call to any detachable method.
@@ -85,7 +93,9 @@ public final class RenderContext {
       @Nullable SoyIdRenamingMap xidRenamingMap,
       @Nullable SoyMsgBundle msgBundle,
       boolean debugSoyTemplateInfo,
-      @Nullable SoyLogger logger) {
+      @Nullable SoyLogger logger,
+      @Nullable TemplateFragmentCache fragmentCache,
+      @Nullable Executor concurrentRenderExecutor) {
     this.templates = templates;
     this.soyJavaDirectivesMap = soyJavaDirectivesMap;
     this.pluginInstances = pluginInstances;
@@ -96,6 +106,8 @@ public final class RenderContext {
     this.msgBundle = msgBundle == null ? SoyMsgBundle.EMPTY : msgBundle;
     this.debugSoyTemplateInfo = debugSoyTemplateInfo;
     this.logger = logger == null ? SoyLogger.NO_OP : logger;
+    this.fragmentCache = fragmentCache;
+    this.concurrentRenderExecutor = concurrentRenderExecutor;
   }
 
   @Nullable
@@ -174,6 +186,43 @@ public final class RenderContext {
     return logger;
   }
 
+  /** Returns the cache for {@code cacheable} templates, or {@code null} if none is configured. */
+  @Nullable
+  public TemplateFragmentCache getFragmentCache() {
+    return fragmentCache;
+  }
+
+  /**
+   * Returns a key capturing all the parts of this context that can affect the output of a template
+   * given the same params.
+   *
+   * <p>The key only holds values (the locale, the bidi direction, the active delpackages and the
+   * debug setting) so that cached fragments don't retain any of the objects passed to a render. The
+   * renaming maps, print directives and plugin instances are not part of the key, they are assumed
+   * to be fixed for all the renderers that share a {@link TemplateFragmentCache}.
+   */
+  public Object getFragmentCacheEnvironmentKey() {
+    ImmutableList<Object> key = fragmentCacheEnvironmentKey;
+    if (key == null) {
+      String localeString = msgBundle.getLocaleString();
+      key =
+          ImmutableList.of(
+              localeString == null ? "" : localeString,
+              msgBundle.isRtl(),
+              templates.getDelPackageNames().stream()
+                  .filter(activeDelPackageSelector)
+                  .collect(toImmutableSortedSet(naturalOrder())),
+              debugSoyTemplateInfo);
+      fragmentCacheEnvironmentKey = key;
+    }
+    return key;
+  }
+
+  /** Returns the names of all the {@code @inject} params used by the template or its callees. */
+  public ImmutableList<String> getTransitiveIjParams(String templateName) {
+    return templates.getTransitiveIjParamsForTemplate(templateName).asList();
+  }
+
   public CompiledTemplate getTemplate(String calleeName) {
     return templates.getTemplate(calleeName);
   }
@@ -278,14 +327,7 @@ public final class RenderContext {
    * ClassLoader as is used to load template references.
    */
   public LoggableElementMetadata getVeMetadata(String metadataClassName, long veId) {
-    try {
-      return (LoggableElementMetadata)
-          Class.forName(metadataClassName, /* initialize= */ true, templates.getClassLoader())
-              .getMethod("getMetadata", long.class)
-              .invoke(null, veId);
-    } catch (ReflectiveOperationException e) {
-      throw new AssertionError(e);
-    }
+    return templates.getVeMetadata(metadataClassName, veId);
   }
 
   /**
@@ -320,7 +362,37 @@ public final class RenderContext {
         .withPluginInstances(pluginInstances)
         .withCssRenamingMap(cssRenamingMap)
         .withXidRenamingMap(xidRenamingMap)
-        .withMessageBundle(msgBundle);
+        .withMessageBundle(msgBundle)
+        .withFragmentCache(fragmentCache)
+        .withConcurrentRenderExecutor(concurrentRenderExecutor);
+  }
+
+  /**
+   * Returns the executor that independent {@code {call}}s may be rendered on concurrently, or null
+   * if rendering is strictly sequential.
+   */
+  @Nullable
+  public Executor getConcurrentRenderExecutor() {
+    return concurrentRenderExecutor;
+  }
+
+  /**
+   * Returns a context with the same configuration as this one that can be used to render a
+   * template on another thread. The two contexts don't share any detach state.
+   */
+  public RenderContext forkForConcurrentRender() {
+    return new RenderContext(
+        templates,
+        soyJavaDirectivesMap,
+        pluginInstances,
+        activeDelPackageSelector,
+        cssRenamingMap,
+        xidRenamingMap,
+        msgBundle,
+        debugSoyTemplateInfo,
+        logger,
+        fragmentCache,
+        concurrentRenderExecutor);
   }
 
   /** A builder for configuring the context. */
@@ -334,6 +406,8 @@ public final class RenderContext {
     private SoyMsgBundle msgBundle;
     private boolean debugSoyTemplateInfo;
     private SoyLogger logger;
+    private TemplateFragmentCache fragmentCache;
+    private Executor concurrentRenderExecutor;
 
     public Builder(
         CompiledTemplates templates,
@@ -379,7 +453,28 @@ public final class RenderContext {
       return this;
     }
 
+    public Builder withFragmentCache(@Nullable TemplateFragmentCache fragmentCache) {
+      this.fragmentCache = fragmentCache;
+      return this;
+    }
+
+    public Builder withConcurrentRenderExecutor(@Nullable Executor concurrentRenderExecutor) {
+      this.concurrentRenderExecutor = concurrentRenderExecutor;
+      return this;
+    }
+
     public RenderContext build() {
+      String compiledMsgLocale = templates.getCompiledMsgLocale();
+      if (compiledMsgLocale != null) {
+        String localeString = msgBundle == null ? null : msgBundle.getLocaleString();
+        if (!compiledMsgLocale.equals(localeString)) {
+          throw new IllegalStateException(
+              String.format(
+                  "The templates were compiled with the messages for '%s' and can't be rendered"
+                      + " with messages for '%s'.",
+                  compiledMsgLocale, localeString));
+        }
+      }
       return new RenderContext(
           templates,
           soyJavaDirectivesMap,
@@ -389,7 +484,9 @@ public final class RenderContext {
           xidRenamingMap,
           msgBundle,
           debugSoyTemplateInfo,
-          logger);
+          logger,
+          fragmentCache,
+          concurrentRenderExecutor);
     }
   }
 }
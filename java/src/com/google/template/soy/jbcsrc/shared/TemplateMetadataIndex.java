@@ -0,0 +1,175 @@
+/*
+ * Copyright 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.template.soy.jbcsrc.shared;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.template.soy.data.SanitizedContent.ContentKind;
+import com.google.template.soy.jbcsrc.shared.CompiledTemplates.TemplateData;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Reads and writes entries of the {@link Names#META_INF_TEMPLATE_INDEX_PATH} file.
+ *
+ * <p>The file copies the {@link TemplateMetadata} of every template in a jar, so that the call
+ * graph queries in {@link CompiledTemplates} (transitive ij params, css namespaces, deltemplate
+ * selection) can be answered without loading every reachable template class. Each line describes
+ * one template with {@code |} separated fields: the template name, content kind, callees,
+ * delcallees, injected params, required css names, deltemplate name, delpackage and variant. List
+ * fields are {@code ,} separated. Delimiters, backslashes and line breaks inside of values are
+ * escaped with a backslash.
+ */
+public final class TemplateMetadataIndex {
+  private static final char FIELD_DELIMITER = '|';
+  private static final char LIST_DELIMITER = ',';
+  private static final char ESCAPE = '\\';
+  private static final int NUM_FIELDS = 9;
+
+  /** Returns the index entry, including the trailing newline, for the given template. */
+  public static String toMetaInfEntry(String templateName, TemplateMetadata metadata) {
+    TemplateMetadata.DelTemplateMetadata delTemplate = metadata.deltemplateMetadata();
+    StringBuilder entry = new StringBuilder();
+    appendField(entry, templateName);
+    appendField(entry, metadata.contentKind().name());
+    appendListField(entry, metadata.callees());
+    appendListField(entry, metadata.delCallees());
+    appendListField(entry, metadata.injectedParams());
+    appendListField(entry, metadata.requiredCssNames());
+    appendField(entry, delTemplate.name());
+    appendField(entry, delTemplate.delPackage());
+    appendField(entry, delTemplate.variant());
+    // Replace the trailing field delimiter.
+    entry.setCharAt(entry.length() - 1, '\n');
+    return entry.toString();
+  }
+
+  private static void appendField(StringBuilder entry, String value) {
+    escape(entry, value);
+    entry.append(FIELD_DELIMITER);
+  }
+
+  private static void appendListField(StringBuilder entry, String[] values) {
+    for (int i = 0; i < values.length; i++) {
+      if (i > 0) {
+        entry.append(LIST_DELIMITER);
+      }
+      escape(entry, values[i]);
+    }
+    entry.append(FIELD_DELIMITER);
+  }
+
+  private static void escape(StringBuilder entry, String value) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '\n':
+          entry.append(ESCAPE).append('n');
+          break;
+        case '\r':
+          entry.append(ESCAPE).append('r');
+          break;
+        case FIELD_DELIMITER:
+        case LIST_DELIMITER:
+        case ESCAPE:
+          entry.append(ESCAPE).append(c);
+          break;
+        default:
+          entry.append(c);
+      }
+    }
+  }
+
+  /**
+   * Parses an entry written by {@link #toMetaInfEntry}. The template class is only loaded from
+   * {@code loader} once it is needed for rendering.
+   */
+  static TemplateData fromMetaInfEntry(String entry, ClassLoader loader) {
+    List<String> fields = split(entry, FIELD_DELIMITER);
+    checkState(
+        fields.size() == NUM_FIELDS,
+        "Entry [%s] is expected to have exactly %s fields but found %s.",
+        entry,
+        NUM_FIELDS,
+        fields.size());
+    String delTemplateName = unescape(fields.get(6));
+    String delPackage = unescape(fields.get(7));
+    return new TemplateData(
+        unescape(fields.get(0)),
+        loader,
+        ContentKind.valueOf(unescape(fields.get(1))),
+        parseList(fields.get(2)),
+        parseList(fields.get(3)),
+        parseList(fields.get(4)),
+        parseList(fields.get(5)),
+        delTemplateName.isEmpty() ? Optional.empty() : Optional.of(delTemplateName),
+        delPackage.isEmpty() ? Optional.empty() : Optional.of(delPackage),
+        unescape(fields.get(8)));
+  }
+
+  private static ImmutableSet<String> parseList(String field) {
+    ImmutableSet.Builder<String> values = ImmutableSet.builder();
+    for (String value : split(field, LIST_DELIMITER)) {
+      if (!value.isEmpty()) {
+        values.add(unescape(value));
+      }
+    }
+    return values.build();
+  }
+
+  /** Splits {@code value} on the unescaped occurrences of {@code delimiter}, keeping escapes. */
+  private static List<String> split(String value, char delimiter) {
+    List<String> parts = new ArrayList<>();
+    int start = 0;
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == ESCAPE) {
+        i++;
+      } else if (c == delimiter) {
+        parts.add(value.substring(start, i));
+        start = i + 1;
+      }
+    }
+    parts.add(value.substring(start));
+    return parts;
+  }
+
+  private static String unescape(String value) {
+    if (value.indexOf(ESCAPE) < 0) {
+      return value;
+    }
+    StringBuilder unescaped = new StringBuilder(value.length());
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == ESCAPE) {
+        checkState(i + 1 < value.length(), "Dangling escape in [%s].", value);
+        c = value.charAt(++i);
+        if (c == 'n') {
+          c = '\n';
+        } else if (c == 'r') {
+          c = '\r';
+        }
+      }
+      unescaped.append(c);
+    }
+    return unescaped.toString();
+  }
+
+  private TemplateMetadataIndex() {}
+}
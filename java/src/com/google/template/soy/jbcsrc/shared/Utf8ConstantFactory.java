@@ -0,0 +1,55 @@
+/*
+ * Copyright 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.template.soy.jbcsrc.shared;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.ConstantCallSite;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * An {@code invokedynamic} bootstrap for UTF-8 encoded string constants.
+ *
+ * <p>The class file format has no {@code byte[]} constants, so instead we pass the string (split
+ * into parts, like {@link LargeStringConstantFactory}) as bootstrap arguments and encode it once,
+ * lazily, the first time the call site is linked. All future invocations return the same array.
+ */
+public final class Utf8ConstantFactory {
+
+  public static CallSite bootstrapUtf8Constant(
+      MethodHandles.Lookup lookup, String name, MethodType type, String... parts) {
+    String value;
+    if (parts.length == 1) {
+      value = parts[0];
+    } else {
+      int size = 0;
+      for (String part : parts) {
+        size += part.length();
+      }
+      StringBuilder sb = new StringBuilder(size);
+      for (String part : parts) {
+        sb.append(part);
+      }
+      value = sb.toString();
+    }
+    return new ConstantCallSite(MethodHandles.constant(byte[].class, value.getBytes(UTF_8)));
+  }
+
+  private Utf8ConstantFactory() {}
+}
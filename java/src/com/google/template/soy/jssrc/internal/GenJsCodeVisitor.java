@@ -45,6 +45,7 @@ import static com.google.template.soy.jssrc.internal.JsRuntime.sanitizedContentO
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.SetMultimap;
 import com.google.common.collect.TreeMultimap;
 import com.google.template.soy.base.internal.Identifier;
@@ -214,6 +215,22 @@ public class GenJsCodeVisitor extends AbstractSoyNodeVisitor<List<String>> {
 
   public List<String> gen(
       SoyFileSetNode node, TemplateRegistry registry, ErrorReporter errorReporter) {
+    return genInternal(node, registry, errorReporter);
+  }
+
+  /**
+   * Generates the JS source for a single file.
+   *
+   * <p>Files are independent once the file set passes have run, so callers may generate different
+   * files concurrently as long as each thread uses its own visitor.
+   */
+  public String genFile(
+      SoyFileNode file, TemplateRegistry registry, ErrorReporter errorReporter) {
+    return Iterables.getOnlyElement(genInternal(file, registry, errorReporter));
+  }
+
+  private List<String> genInternal(
+      SoyNode node, TemplateRegistry registry, ErrorReporter errorReporter) {
     this.templateRegistry = checkNotNull(registry);
     this.errorReporter = checkNotNull(errorReporter);
     try {
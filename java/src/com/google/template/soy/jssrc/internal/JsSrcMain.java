@@ -30,7 +30,9 @@ import com.google.template.soy.shared.internal.SoyScopedData;
 import com.google.template.soy.soytree.SoyFileSetNode;
 import com.google.template.soy.soytree.TemplateRegistry;
 import com.google.template.soy.types.SoyTypeRegistry;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 import javax.annotation.Nullable;
 
 /**
@@ -70,6 +72,25 @@ public class JsSrcMain {
       SoyJsSrcOptions jsSrcOptions,
       @Nullable SoyMsgBundle msgBundle,
       ErrorReporter errorReporter) {
+    List<String> jsFiles = new ArrayList<>();
+    genJsSrc(soyTree, templateRegistry, jsSrcOptions, msgBundle, errorReporter, jsFiles::add);
+    return jsFiles;
+  }
+
+  /**
+   * Generates JS source code given a Soy parse tree, an options object, and an optional bundle of
+   * translated messages, passing each file to {@code sink} as soon as it has been generated.
+   *
+   * <p>Files are generated on up to {@link SoyJsSrcOptions#getCodegenThreads} threads, but are
+   * always passed to {@code sink} on the calling thread and in the order of the Soy source files.
+   */
+  public void genJsSrc(
+      SoyFileSetNode soyTree,
+      TemplateRegistry templateRegistry,
+      SoyJsSrcOptions jsSrcOptions,
+      @Nullable SoyMsgBundle msgBundle,
+      ErrorReporter errorReporter,
+      Consumer<String> sink) {
 
     // VeLogInstrumentationVisitor add html attributes for {velog} commands and also run desugaring
     // pass since code generator does not understand html nodes (yet).
@@ -91,14 +112,25 @@ public class JsSrcMain {
       }
       // Combine raw text nodes before codegen.
       new CombineConsecutiveRawTextNodesPass().run(soyTree);
-      return createVisitor(
-              jsSrcOptions,
-              templateRegistry,
-              typeRegistry,
-              inScope.getBidiGlobalDir(),
-              errorReporter)
-          .gen(soyTree, templateRegistry, errorReporter);
     }
+    PerFileCodeGenerator.generate(
+        soyTree.getChildren(),
+        jsSrcOptions.getCodegenThreads(),
+        errorReporter,
+        (file, fileReporter) -> {
+          // The bidi directives read the global directionality from the scope, which is per
+          // thread.
+          try (SoyScopedData.InScope inScope = apiCallScope.enter(msgBundle, bidiGlobalDir)) {
+            return createVisitor(
+                    jsSrcOptions,
+                    templateRegistry,
+                    typeRegistry,
+                    inScope.getBidiGlobalDir(),
+                    fileReporter)
+                .genFile(file, templateRegistry, fileReporter);
+          }
+        },
+        sink);
   }
 
   static GenJsCodeVisitor createVisitor(
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.template.soy.jssrc.internal;
+
+import static com.google.template.soy.base.internal.Parallel.parallelMap;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.template.soy.error.ErrorReporter;
+import com.google.template.soy.soytree.SoyFileNode;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Runs the per-file part of the JS backends, optionally on several threads.
+ *
+ * <p>Important: Do not use outside of Soy code (treat as superpackage-private).
+ */
+public final class PerFileCodeGenerator {
+
+  /** Generates the code for a single file. */
+  public interface FileGenerator {
+    /**
+     * Returns the generated code for {@code file}. May be called concurrently for different files,
+     * so implementations must not share mutable state (such as a code visitor) between calls.
+     */
+    String gen(SoyFileNode file, ErrorReporter errorReporter);
+  }
+
+  /**
+   * Generates code for all the given files, using up to {@code parallelism} threads.
+   *
+   * <p>The results are passed to {@code sink} on the calling thread, in file order. Errors are
+   * likewise reported to {@code errorReporter} in file order, so the output does not depend on the
+   * parallelism.
+   */
+  public static void generate(
+      List<SoyFileNode> files,
+      int parallelism,
+      ErrorReporter errorReporter,
+      FileGenerator generator,
+      Consumer<String> sink) {
+    ImmutableList<FileResult> results =
+        parallelMap(
+            files,
+            parallelism,
+            file -> {
+              ErrorReporter fileReporter = ErrorReporter.create(ImmutableMap.of());
+              return new FileResult(generator.gen(file, fileReporter), fileReporter);
+            });
+    for (FileResult result : results) {
+      result.errorReporter.copyTo(errorReporter);
+      sink.accept(result.code);
+    }
+  }
+
+  private static final class FileResult {
+    final String code;
+    final ErrorReporter errorReporter;
+
+    FileResult(String code, ErrorReporter errorReporter) {
+      this.code = code;
+      this.errorReporter = errorReporter;
+    }
+  }
+
+  private PerFileCodeGenerator() {}
+}
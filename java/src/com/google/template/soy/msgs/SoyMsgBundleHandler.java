@@ -16,16 +16,22 @@
 
 package com.google.template.soy.msgs;
 
+import static com.google.template.soy.base.internal.Parallel.parallelMap;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.io.ByteSink;
 import com.google.common.io.Files;
 import com.google.common.io.Resources;
 import com.google.errorprone.annotations.Immutable;
 import com.google.template.soy.error.ErrorReporter;
+import com.google.template.soy.msgs.restricted.SoyMsg;
+import com.google.template.soy.msgs.restricted.SoyMsgBundleCompactor;
 import java.io.File;
 import java.io.IOException;
+import java.io.Writer;
 import java.net.URL;
+import java.util.List;
 import java.util.regex.Pattern;
 
 /**
@@ -151,6 +157,31 @@ public class SoyMsgBundleHandler {
     }
   }
 
+  /**
+   * Reads several translated messages files, typically one per locale, and creates a compacted
+   * SoyMsgBundle for each of them.
+   *
+   * <p>Files are read, parsed and compacted on up to {@code parallelism} threads. All the bundles
+   * are compacted with {@code compactor}, so parts that are identical across locales are only
+   * stored once; pass the same compactor to later loads to keep sharing with the bundles returned
+   * here. As with {@link SoyMsgBundleCompactor#compact}, the bundles only retain enough
+   * information for rendering.
+   *
+   * @param inputFiles The input files to read from.
+   * @param compactor The compactor that interns parts across all the bundles.
+   * @param parallelism The maximum number of files to process at once.
+   * @return The message bundles created from the messages files, in the order of {@code
+   *     inputFiles}.
+   * @throws IOException If there's an error while accessing a file.
+   * @throws SoyMsgException If there's an error while processing the messages.
+   */
+  public ImmutableList<SoyMsgBundle> createCompactedFromFiles(
+      List<File> inputFiles, SoyMsgBundleCompactor compactor, int parallelism)
+      throws IOException {
+    return parallelMap(
+        inputFiles, parallelism, inputFile -> compactor.compact(createFromFile(inputFile)));
+  }
+
   // -----------------------------------------------------------------------------------------------
   // Soy internal methods.
 
@@ -178,4 +209,41 @@ public class SoyMsgBundleHandler {
     CharSequence cs = msgPlugin.generateExtractedMsgsFile(msgBundle, options, errorReporter);
     output.asCharSink(UTF_8).write(cs);
   }
+
+  /**
+   * Writes extracted messages (source messages to be translated) that are produced incrementally.
+   *
+   * <p>The messages are streamed through a buffered writer to a temporary file, which is only
+   * copied to {@code output} if no errors were reported while producing them, so {@code output} is
+   * never left partially written.
+   *
+   * <p>Important: Do not use outside of Soy code (treat as superpackage-private).
+   *
+   * @param msgs The messages to write, in output order.
+   * @param options The options for generating the output extracted messages (depending on the
+   *     message plugin being used, none or some of the options may be applicable).
+   * @param output The output to write to.
+   * @param errorReporter For reporting errors.
+   * @throws SoyMsgException If there's an error while processing the messages.
+   * @throws IOException If there's an error writing the messages.
+   */
+  public void streamExtractedMsgs(
+      Iterable<SoyMsg> msgs,
+      OutputFileOptions options,
+      ByteSink output,
+      ErrorReporter errorReporter)
+      throws IOException {
+    ErrorReporter.Checkpoint checkpoint = errorReporter.checkpoint();
+    File tempFile = File.createTempFile("soy-msgs", ".tmp");
+    try {
+      try (Writer writer = Files.asCharSink(tempFile, UTF_8).openBufferedStream()) {
+        msgPlugin.writeExtractedMsgsFile(msgs, options, errorReporter, writer);
+      }
+      if (!errorReporter.errorsSince(checkpoint)) {
+        Files.asByteSource(tempFile).copyTo(output);
+      }
+    } finally {
+      tempFile.delete();
+    }
+  }
 }
@@ -16,9 +16,13 @@
 
 package com.google.template.soy.msgs;
 
+import com.google.common.collect.ImmutableList;
 import com.google.errorprone.annotations.Immutable;
 import com.google.template.soy.error.ErrorReporter;
 import com.google.template.soy.msgs.SoyMsgBundleHandler.OutputFileOptions;
+import com.google.template.soy.msgs.restricted.SoyMsg;
+import com.google.template.soy.msgs.restricted.SoyMsgBundleImpl;
+import java.io.IOException;
 
 /**
  * Plugin for implementing a specific message file format.
@@ -41,6 +45,30 @@ public interface SoyMsgPlugin {
   public CharSequence generateExtractedMsgsFile(
       SoyMsgBundle msgBundle, OutputFileOptions options, ErrorReporter errorReporter);
 
+  /**
+   * Writes the content of an extracted messages file to {@code output} for messages that are
+   * produced incrementally (for example, merged from on-disk runs during bounded-memory
+   * extraction). Plugins that can emit one message at a time should override this so the whole
+   * file never has to be held in memory; the default collects the messages into a bundle and
+   * delegates to {@link #generateExtractedMsgsFile}.
+   *
+   * @param msgs The extracted messages, in the order they should be written. Ids are unique.
+   * @param options The options to use for generating the extracted messages file.
+   * @param errorReporter For reporting errors.
+   * @param output Where to write the file content.
+   * @throws IOException If there are errors writing to the output.
+   */
+  default void writeExtractedMsgsFile(
+      Iterable<SoyMsg> msgs,
+      OutputFileOptions options,
+      ErrorReporter errorReporter,
+      Appendable output)
+      throws IOException {
+    output.append(
+        generateExtractedMsgsFile(
+            new SoyMsgBundleImpl(null, ImmutableList.copyOf(msgs)), options, errorReporter));
+  }
+
   /**
    * Parses the content of a translated messages file and builds a message bundle object.
    *
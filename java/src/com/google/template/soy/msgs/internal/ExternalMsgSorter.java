@@ -0,0 +1,464 @@
+/*
+ * Copyright 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.template.soy.msgs.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Comparator.comparingLong;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.template.soy.base.SourceFilePath;
+import com.google.template.soy.base.SourceLocation;
+import com.google.template.soy.error.ErrorReporter;
+import com.google.template.soy.msgs.restricted.SoyMsg;
+import com.google.template.soy.msgs.restricted.SoyMsg.SourceLocationAndTemplate;
+import com.google.template.soy.msgs.restricted.SoyMsgPart;
+import com.google.template.soy.msgs.restricted.SoyMsgPart.Case;
+import com.google.template.soy.msgs.restricted.SoyMsgPlaceholderPart;
+import com.google.template.soy.msgs.restricted.SoyMsgPluralCaseSpec;
+import com.google.template.soy.msgs.restricted.SoyMsgPluralPart;
+import com.google.template.soy.msgs.restricted.SoyMsgPluralRemainderPart;
+import com.google.template.soy.msgs.restricted.SoyMsgRawTextPart;
+import com.google.template.soy.msgs.restricted.SoyMsgSelectPart;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import javax.annotation.Nullable;
+
+/**
+ * Collects extracted messages and produces them sorted by id with duplicates merged, while holding
+ * at most a fixed number of messages in memory.
+ *
+ * <p>Messages are buffered until the limit is reached, at which point the buffer is sorted and
+ * spilled to a temporary file (a "run"). {@link #sortedMsgs} then performs a k-way merge of all the
+ * runs and whatever is still buffered. Messages with the same id are merged with {@link
+ * ExtractMsgsVisitor#merge} in the order of the files they were added for, so the result does not
+ * depend on how the messages were spilled or on the order the files were extracted in.
+ *
+ * <p>Adding messages is thread safe; reading them back is not, and may only be done once.
+ */
+public final class ExternalMsgSorter implements Closeable {
+
+  /** Sorts by id, then by file set order, and then by source location within a file. */
+  private static final Comparator<IndexedMsg> MSG_ORDER =
+      comparingLong((IndexedMsg m) -> m.msg.getId())
+          .thenComparingInt(m -> m.fileIndex)
+          .thenComparing(m -> m.msg.getExampleSourceLocation());
+
+  private static final byte RAW_TEXT_PART = 0;
+  private static final byte PLACEHOLDER_PART = 1;
+  private static final byte PLURAL_REMAINDER_PART = 2;
+  private static final byte PLURAL_PART = 3;
+  private static final byte SELECT_PART = 4;
+
+  private final int maxMsgsInMemory;
+  private final ErrorReporter errorReporter;
+  private final List<IndexedMsg> buffer = new ArrayList<>();
+  private final List<Path> runs = new ArrayList<>();
+  private final List<Closeable> openRuns = new ArrayList<>();
+  private boolean consumed;
+
+  /**
+   * @param maxMsgsInMemory The maximum number of messages to buffer before spilling to disk.
+   * @param errorReporter For reporting inconsistent duplicate messages.
+   */
+  public ExternalMsgSorter(int maxMsgsInMemory, ErrorReporter errorReporter) {
+    checkArgument(maxMsgsInMemory > 0, "maxMsgsInMemory must be positive: %s", maxMsgsInMemory);
+    this.maxMsgsInMemory = maxMsgsInMemory;
+    this.errorReporter = errorReporter;
+  }
+
+  /**
+   * Adds the messages of a file, spilling the buffer to disk if it grows past the limit.
+   *
+   * @param fileIndex The index of the file in the file set, which decides the merge order of
+   *     messages with the same id.
+   * @param msgs The messages extracted from the file.
+   */
+  public synchronized void addAll(int fileIndex, Iterable<SoyMsg> msgs) throws IOException {
+    checkState(!consumed, "messages have already been read");
+    for (SoyMsg msg : msgs) {
+      buffer.add(new IndexedMsg(fileIndex, msg));
+      if (buffer.size() >= maxMsgsInMemory) {
+        spill();
+      }
+    }
+  }
+
+  /** The number of runs that have been written to disk. */
+  @VisibleForTesting
+  synchronized int numSpilledRuns() {
+    return runs.size();
+  }
+
+  private void spill() throws IOException {
+    buffer.sort(MSG_ORDER);
+    Path run = Files.createTempFile("soy-msgs", ".run");
+    runs.add(run);
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run)))) {
+      for (IndexedMsg msg : buffer) {
+        out.writeBoolean(true);
+        out.writeInt(msg.fileIndex);
+        writeMsg(out, msg.msg);
+      }
+      out.writeBoolean(false);
+    }
+    buffer.clear();
+  }
+
+  /**
+   * Returns all added messages sorted by id, with duplicate ids merged. The returned iterable may
+   * only be iterated once, and messages are read lazily from the spilled runs.
+   */
+  public synchronized Iterable<SoyMsg> sortedMsgs() throws IOException {
+    checkState(!consumed, "messages have already been read");
+    consumed = true;
+    buffer.sort(MSG_ORDER);
+    List<Iterator<IndexedMsg>> sources = new ArrayList<>();
+    for (Path run : runs) {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run)));
+      openRuns.add(in);
+      sources.add(new RunIterator(in));
+    }
+    sources.add(buffer.iterator());
+    Iterator<SoyMsg> merged = new MergingIterator(sources);
+    return () -> merged;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    buffer.clear();
+    IOException failure = null;
+    for (Closeable run : openRuns) {
+      try {
+        run.close();
+      } catch (IOException e) {
+        failure = e;
+      }
+    }
+    for (Path run : runs) {
+      try {
+        Files.deleteIfExists(run);
+      } catch (IOException e) {
+        failure = e;
+      }
+    }
+    openRuns.clear();
+    runs.clear();
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /** A message along with the index of the file it was extracted from. */
+  private static final class IndexedMsg {
+    final int fileIndex;
+    final SoyMsg msg;
+
+    IndexedMsg(int fileIndex, SoyMsg msg) {
+      this.fileIndex = fileIndex;
+      this.msg = msg;
+    }
+  }
+
+  /** The head of one sorted source in the k-way merge. */
+  private static final class Cursor {
+    final Iterator<IndexedMsg> source;
+    final int index;
+    IndexedMsg head;
+
+    Cursor(Iterator<IndexedMsg> source, int index) {
+      this.source = source;
+      this.index = index;
+      this.head = source.next();
+    }
+  }
+
+  private final class MergingIterator extends AbstractIterator<SoyMsg> {
+    final PriorityQueue<Cursor> queue =
+        new PriorityQueue<>(
+            Comparator.<Cursor, IndexedMsg>comparing(c -> c.head, MSG_ORDER)
+                .thenComparingInt(c -> c.index));
+
+    MergingIterator(List<Iterator<IndexedMsg>> sources) {
+      for (int i = 0; i < sources.size(); i++) {
+        if (sources.get(i).hasNext()) {
+          queue.add(new Cursor(sources.get(i), i));
+        }
+      }
+    }
+
+    @Override
+    protected SoyMsg computeNext() {
+      SoyMsg current = poll();
+      if (current == null) {
+        return endOfData();
+      }
+      while (!queue.isEmpty() && queue.peek().head.msg.getId() == current.getId()) {
+        SoyMsg next = poll();
+        Optional<SoyMsg> merged = ExtractMsgsVisitor.merge(current, next, errorReporter);
+        if (merged.isPresent()) {
+          current = merged.get();
+        }
+      }
+      return current;
+    }
+
+    @Nullable
+    private SoyMsg poll() {
+      Cursor cursor = queue.poll();
+      if (cursor == null) {
+        return null;
+      }
+      SoyMsg msg = cursor.head.msg;
+      if (cursor.source.hasNext()) {
+        cursor.head = cursor.source.next();
+        queue.add(cursor);
+      }
+      return msg;
+    }
+  }
+
+  /** Reads back the messages of a single spilled run. */
+  private static final class RunIterator extends AbstractIterator<IndexedMsg> {
+    final DataInputStream in;
+
+    RunIterator(DataInputStream in) {
+      this.in = in;
+    }
+
+    @Override
+    protected IndexedMsg computeNext() {
+      try {
+        if (!in.readBoolean()) {
+          in.close();
+          return endOfData();
+        }
+        return new IndexedMsg(in.readInt(), readMsg(in));
+      } catch (EOFException e) {
+        throw new IllegalStateException("Truncated message run", e);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  // -----------------------------------------------------------------------------------------------
+  // Run encoding.
+
+  private static void writeMsg(DataOutputStream out, SoyMsg msg) throws IOException {
+    out.writeLong(msg.getId());
+    out.writeBoolean(msg.getAlternateId().isPresent());
+    if (msg.getAlternateId().isPresent()) {
+      out.writeLong(msg.getAlternateId().getAsLong());
+    }
+    writeNullableString(out, msg.getLocaleString());
+    writeNullableString(out, msg.getMeaning());
+    writeNullableString(out, msg.getDesc());
+    writeNullableString(out, msg.getContentType());
+    out.writeBoolean(msg.isHidden());
+    out.writeBoolean(msg.isPlrselMsg());
+    out.writeBoolean(msg.hasFallback());
+    out.writeInt(msg.getSourceLocations().size());
+    for (SourceLocationAndTemplate location : msg.getSourceLocations()) {
+      SourceLocation sourceLocation = location.sourceLocation();
+      writeString(out, sourceLocation.getFilePath().path());
+      out.writeInt(sourceLocation.getBeginLine());
+      out.writeInt(sourceLocation.getBeginColumn());
+      out.writeInt(sourceLocation.getEndLine());
+      out.writeInt(sourceLocation.getEndColumn());
+      writeString(out, location.template());
+    }
+    writeParts(out, msg.getParts());
+  }
+
+  private static SoyMsg readMsg(DataInputStream in) throws IOException {
+    SoyMsg.Builder builder = SoyMsg.builder().setId(in.readLong());
+    if (in.readBoolean()) {
+      builder.setAlternateId(in.readLong());
+    }
+    String localeString = readNullableString(in);
+    if (localeString != null) {
+      builder.setLocaleString(localeString);
+    }
+    String meaning = readNullableString(in);
+    if (meaning != null) {
+      builder.setMeaning(meaning);
+    }
+    String desc = readNullableString(in);
+    if (desc != null) {
+      builder.setDesc(desc);
+    }
+    String contentType = readNullableString(in);
+    if (contentType != null) {
+      builder.setContentType(contentType);
+    }
+    builder.setIsHidden(in.readBoolean());
+    builder.setIsPlrselMsg(in.readBoolean());
+    builder.setHasFallback(in.readBoolean());
+    int numLocations = in.readInt();
+    for (int i = 0; i < numLocations; i++) {
+      SourceFilePath path = SourceFilePath.create(readString(in));
+      SourceLocation sourceLocation =
+          new SourceLocation(path, in.readInt(), in.readInt(), in.readInt(), in.readInt());
+      builder.addSourceLocation(sourceLocation, readString(in));
+    }
+    return builder.setParts(readParts(in)).build();
+  }
+
+  private static void writeParts(DataOutputStream out, List<SoyMsgPart> parts)
+      throws IOException {
+    out.writeInt(parts.size());
+    for (SoyMsgPart part : parts) {
+      if (part instanceof SoyMsgRawTextPart) {
+        out.writeByte(RAW_TEXT_PART);
+        writeString(out, ((SoyMsgRawTextPart) part).getRawText());
+      } else if (part instanceof SoyMsgPlaceholderPart) {
+        SoyMsgPlaceholderPart placeholder = (SoyMsgPlaceholderPart) part;
+        out.writeByte(PLACEHOLDER_PART);
+        writeString(out, placeholder.getPlaceholderName());
+        writeNullableString(out, placeholder.getPlaceholderExample().orElse(null));
+      } else if (part instanceof SoyMsgPluralRemainderPart) {
+        out.writeByte(PLURAL_REMAINDER_PART);
+        writeString(out, ((SoyMsgPluralRemainderPart) part).getPluralVarName());
+      } else if (part instanceof SoyMsgPluralPart) {
+        SoyMsgPluralPart plural = (SoyMsgPluralPart) part;
+        out.writeByte(PLURAL_PART);
+        writeString(out, plural.getPluralVarName());
+        out.writeInt(plural.getOffset());
+        out.writeInt(plural.getCases().size());
+        for (Case<SoyMsgPluralCaseSpec> pluralCase : plural.getCases()) {
+          SoyMsgPluralCaseSpec spec = pluralCase.spec();
+          out.writeInt(spec == null ? -1 : spec.getType().ordinal());
+          out.writeLong(spec == null ? -1 : spec.getExplicitValue());
+          writeParts(out, pluralCase.parts());
+        }
+      } else if (part instanceof SoyMsgSelectPart) {
+        SoyMsgSelectPart select = (SoyMsgSelectPart) part;
+        out.writeByte(SELECT_PART);
+        writeString(out, select.getSelectVarName());
+        out.writeInt(select.getCases().size());
+        for (Case<String> selectCase : select.getCases()) {
+          writeNullableString(out, selectCase.spec());
+          writeParts(out, selectCase.parts());
+        }
+      } else {
+        throw new AssertionError("unexpected part: " + part);
+      }
+    }
+  }
+
+  private static ImmutableList<SoyMsgPart> readParts(DataInputStream in) throws IOException {
+    int numParts = in.readInt();
+    ImmutableList.Builder<SoyMsgPart> parts = ImmutableList.builderWithExpectedSize(numParts);
+    for (int i = 0; i < numParts; i++) {
+      byte kind = in.readByte();
+      switch (kind) {
+        case RAW_TEXT_PART:
+          parts.add(SoyMsgRawTextPart.of(readString(in)));
+          break;
+        case PLACEHOLDER_PART:
+          parts.add(
+              new SoyMsgPlaceholderPart(
+                  readString(in), Optional.ofNullable(readNullableString(in))));
+          break;
+        case PLURAL_REMAINDER_PART:
+          parts.add(new SoyMsgPluralRemainderPart(readString(in)));
+          break;
+        case PLURAL_PART:
+          {
+            String varName = readString(in);
+            int offset = in.readInt();
+            int numCases = in.readInt();
+            List<Case<SoyMsgPluralCaseSpec>> cases = new ArrayList<>(numCases);
+            for (int j = 0; j < numCases; j++) {
+              int type = in.readInt();
+              long explicitValue = in.readLong();
+              SoyMsgPluralCaseSpec spec;
+              if (type == -1) {
+                spec = null;
+              } else if (type == SoyMsgPluralCaseSpec.Type.EXPLICIT.ordinal()) {
+                spec = new SoyMsgPluralCaseSpec(explicitValue);
+              } else {
+                spec = new SoyMsgPluralCaseSpec(SoyMsgPluralCaseSpec.Type.values()[type]);
+              }
+              cases.add(Case.create(spec, readParts(in)));
+            }
+            parts.add(new SoyMsgPluralPart(varName, offset, cases));
+            break;
+          }
+        case SELECT_PART:
+          {
+            String varName = readString(in);
+            int numCases = in.readInt();
+            List<Case<String>> cases = new ArrayList<>(numCases);
+            for (int j = 0; j < numCases; j++) {
+              cases.add(Case.create(readNullableString(in), readParts(in)));
+            }
+            parts.add(new SoyMsgSelectPart(varName, cases));
+            break;
+          }
+        default:
+          throw new IllegalStateException("Corrupt message run, unknown part kind: " + kind);
+      }
+    }
+    return parts.build();
+  }
+
+  // DataOutput.writeUTF is limited to 64K, which large descriptions or raw text can exceed.
+  private static void writeString(DataOutputStream out, String s) throws IOException {
+    byte[] bytes = s.getBytes(UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, UTF_8);
+  }
+
+  private static void writeNullableString(DataOutputStream out, @Nullable String s)
+      throws IOException {
+    out.writeBoolean(s != null);
+    if (s != null) {
+      writeString(out, s);
+    }
+  }
+
+  @Nullable
+  private static String readNullableString(DataInputStream in) throws IOException {
+    return in.readBoolean() ? readString(in) : null;
+  }
+}
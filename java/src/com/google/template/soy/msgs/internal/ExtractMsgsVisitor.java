@@ -16,9 +16,14 @@
 
 package com.google.template.soy.msgs.internal;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.template.soy.base.internal.Parallel.parallelMap;
 import static java.util.Comparator.comparing;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ContiguousSet;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.template.soy.error.ErrorReporter;
@@ -35,6 +40,7 @@ import com.google.template.soy.soytree.SoyNode;
 import com.google.template.soy.soytree.SoyNode.ParentSoyNode;
 import com.google.template.soy.soytree.TemplateDelegateNode;
 import com.google.template.soy.soytree.TemplateNode;
+import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
@@ -81,10 +87,39 @@ public final class ExtractMsgsVisitor extends AbstractSoyNodeVisitor<SoyMsgBundl
     // messages gain extra source locations when merged together in a bundle.
     Collections.sort(
         msgs, comparing(m -> Iterables.getOnlyElement(m.getSourceLocations()).sourceLocation()));
-    return new SoyMsgBundleImpl(null, msgs, this::merge);
+    return new SoyMsgBundleImpl(null, msgs, (m1, m2) -> merge(m1, m2, errorReporter));
   }
 
-  private Optional<SoyMsg> merge(SoyMsg m1, SoyMsg m2) {
+  /**
+   * Extracts the messages from each of the given files into {@code sorter}, using up to {@code
+   * parallelism} threads.
+   *
+   * <p>Messages are deduplicated within each file here, and across files when they are read back
+   * from the sorter. Errors are reported to {@code errorReporter} in file order, so they do not
+   * depend on the parallelism.
+   */
+  public static void extractPerFile(
+      List<SoyFileNode> files,
+      int parallelism,
+      ErrorReporter errorReporter,
+      ExternalMsgSorter sorter)
+      throws IOException {
+    ImmutableList<ErrorReporter> fileReporters =
+        parallelMap(
+            ContiguousSet.closedOpen(0, files.size()).asList(),
+            parallelism,
+            fileIndex -> {
+              ErrorReporter fileReporter = ErrorReporter.create(ImmutableMap.of());
+              sorter.addAll(
+                  fileIndex, new ExtractMsgsVisitor(fileReporter).exec(files.get(fileIndex)));
+              return fileReporter;
+            });
+    for (ErrorReporter fileReporter : fileReporters) {
+      fileReporter.copyTo(errorReporter);
+    }
+  }
+
+  static Optional<SoyMsg> merge(SoyMsg m1, SoyMsg m2, ErrorReporter errorReporter) {
     if (m1.isHidden() != m2.isHidden()) {
       errorReporter.report(
           m1.getExampleSourceLocation(),
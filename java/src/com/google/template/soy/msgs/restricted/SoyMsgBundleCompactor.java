@@ -39,6 +39,10 @@ import java.util.concurrent.ConcurrentMap;
  * <p>This saves an enormous amount of memory, especially since in gender/plural messages, there are
  * many repeated parts.
  *
+ * <p>A single instance may be shared by any number of bundles, including bundles being compacted
+ * concurrently on different threads. Doing so for all the locales of an application lets identical
+ * parts, part lists and case specs be stored once across locales rather than once per locale.
+ *
  */
 public final class SoyMsgBundleCompactor {
 
@@ -73,13 +77,18 @@ public final class SoyMsgBundleCompactor {
     return new RenderOnlySoyMsgBundleImpl(input.getLocaleString(), builder.build());
   }
 
-  /** Compacts a set of message parts. */
+  /**
+   * Compacts a set of message parts.
+   *
+   * <p>The list itself is interned as well, since untranslated and short messages tend to have
+   * identical parts in every locale.
+   */
   private ImmutableList<SoyMsgPart> compactParts(ImmutableList<SoyMsgPart> parts) {
     ImmutableList.Builder<SoyMsgPart> builder = ImmutableList.builder();
     for (SoyMsgPart part : parts) {
       builder.add(compactPart(part));
     }
-    return builder.build();
+    return intern(builder.build());
   }
 
   /**
@@ -156,7 +165,7 @@ public final class SoyMsgBundleCompactor {
               caseAndValue.spec() != null ? intern(caseAndValue.spec()) : null,
               compactParts(caseAndValue.parts())));
     }
-    return builder.build();
+    return intern(builder.build());
   }
 
   /**
@@ -169,7 +178,9 @@ public final class SoyMsgBundleCompactor {
     if (result == null) {
       return input;
     }
-    if (result.getClass() != input.getClass()) {
+    // Equal lists may be different ImmutableList subclasses.
+    if (result.getClass() != input.getClass()
+        && !(result instanceof ImmutableList && input instanceof ImmutableList)) {
       throw new IllegalStateException();
     }
     @SuppressWarnings("unchecked") // safe due to the class check above
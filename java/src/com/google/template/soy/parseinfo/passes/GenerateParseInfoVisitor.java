@@ -692,11 +692,11 @@ public final class GenerateParseInfoVisitor
     StringBuilder resultSb = new StringBuilder();
 
     if (template.getSourceLocation().getFilePath().equals(currSoyFile.getFilePath())
-        && template.getTemplateType().getTemplateKind() != TemplateType.TemplateKind.DELTEMPLATE) {
+        && template.getTemplateKind() != TemplateType.TemplateKind.DELTEMPLATE) {
       resultSb.append(
           template.getTemplateName().substring(template.getTemplateName().lastIndexOf('.')));
     } else {
-      switch (template.getTemplateType().getTemplateKind()) {
+      switch (template.getTemplateKind()) {
         case BASIC:
         case ELEMENT:
           resultSb.append(template.getTemplateName());
@@ -714,7 +714,7 @@ public final class GenerateParseInfoVisitor
     if (template.getVisibility() != Visibility.PUBLIC) {
       resultSb.append(" (private)");
     }
-    if (template.getTemplateType().getTemplateKind() == TemplateType.TemplateKind.DELTEMPLATE) {
+    if (template.getTemplateKind() == TemplateType.TemplateKind.DELTEMPLATE) {
       resultSb.append(" (delegate)");
     }
 
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.template.soy.passes;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.template.soy.base.internal.IdGenerator;
+import com.google.template.soy.error.ErrorReporter;
+import com.google.template.soy.error.SoyErrorKind;
+import com.google.template.soy.exprtree.FunctionNode;
+import com.google.template.soy.exprtree.MethodCallNode;
+import com.google.template.soy.shared.internal.BuiltinFunction;
+import com.google.template.soy.shared.restricted.SoyFunctions;
+import com.google.template.soy.shared.restricted.SoySourceFunctionMethod;
+import com.google.template.soy.soytree.CallBasicNode;
+import com.google.template.soy.soytree.CallDelegateNode;
+import com.google.template.soy.soytree.SoyFileNode;
+import com.google.template.soy.soytree.SoyTreeUtils;
+import com.google.template.soy.soytree.TemplateBasicNode;
+import com.google.template.soy.soytree.TemplateDelegateNode;
+import com.google.template.soy.soytree.TemplateNode;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Checks that templates declared with {@code cacheable="true"} only depend on their params.
+ *
+ * <p>The output of a cacheable template may be served from a cache keyed on its params and the
+ * render locale, so neither it nor any of its callees may read {@code @inject} params or call
+ * functions that aren't pure. Callees that aren't in the file set being compiled can't be checked.
+ */
+@RunAfter(ResolveExpressionTypesCrossTemplatePass.class)
+final class CheckCacheableTemplatesPass implements CompilerFileSetPass {
+
+  private static final SoyErrorKind CACHEABLE_USES_INJECTED_PARAM =
+      SoyErrorKind.of(
+          "Cacheable templates can''t depend on injected params, but ''{0}'' {1} injected param"
+              + " ''{2}''.");
+
+  private static final SoyErrorKind CACHEABLE_USES_IMPURE_FUNCTION =
+      SoyErrorKind.of(
+          "Cacheable templates can''t call functions that aren''t pure, but ''{0}'' {1} ''{2}''.");
+
+  private final ErrorReporter errorReporter;
+
+  CheckCacheableTemplatesPass(ErrorReporter errorReporter) {
+    this.errorReporter = errorReporter;
+  }
+
+  @Override
+  public Result run(ImmutableList<SoyFileNode> sourceFiles, IdGenerator idGenerator) {
+    ImmutableList<TemplateNode> templates =
+        sourceFiles.stream()
+            .flatMap(file -> file.getTemplates().stream())
+            .collect(ImmutableList.toImmutableList());
+    ImmutableMap<String, TemplateNode> basicTemplates =
+        templates.stream()
+            .filter(TemplateBasicNode.class::isInstance)
+            .collect(
+                ImmutableMap.toImmutableMap(
+                    TemplateNode::getTemplateName, Function.identity(), (a, b) -> a));
+    ImmutableListMultimap<String, TemplateNode> delTemplates =
+        templates.stream()
+            .filter(TemplateDelegateNode.class::isInstance)
+            .collect(
+                ImmutableListMultimap.toImmutableListMultimap(
+                    t -> ((TemplateDelegateNode) t).getDelTemplateName(), Function.identity()));
+    for (TemplateNode template : templates) {
+      if (template instanceof TemplateBasicNode && ((TemplateBasicNode) template).isCacheable()) {
+        checkTransitively(template, basicTemplates, delTemplates);
+      }
+    }
+    return Result.CONTINUE;
+  }
+
+  private void checkTransitively(
+      TemplateNode cacheable,
+      ImmutableMap<String, TemplateNode> basicTemplates,
+      ImmutableListMultimap<String, TemplateNode> delTemplates) {
+    Set<TemplateNode> seen = new HashSet<>();
+    Deque<TemplateNode> worklist = new ArrayDeque<>();
+    worklist.add(cacheable);
+    while (!worklist.isEmpty()) {
+      TemplateNode template = worklist.remove();
+      if (!seen.add(template)) {
+        continue;
+      }
+      // Report each problem once, at the cacheable template, naming the template it's in.
+      String uses = template == cacheable ? "uses" : "calls a template that uses";
+      if (!template.getInjectedParams().isEmpty()) {
+        errorReporter.report(
+            cacheable.getSourceLocation(),
+            CACHEABLE_USES_INJECTED_PARAM,
+            cacheable.getTemplateName(),
+            uses,
+            template.getInjectedParams().get(0).name());
+        return;
+      }
+      String impureFunction = findImpureFunction(template);
+      if (impureFunction != null) {
+        errorReporter.report(
+            cacheable.getSourceLocation(),
+            CACHEABLE_USES_IMPURE_FUNCTION,
+            cacheable.getTemplateName(),
+            uses,
+            impureFunction);
+        return;
+      }
+      SoyTreeUtils.allNodesOfType(template, CallBasicNode.class)
+          .filter(CallBasicNode::isStaticCall)
+          .map(call -> basicTemplates.get(call.getCalleeName()))
+          .filter(callee -> callee != null)
+          .forEach(worklist::add);
+      SoyTreeUtils.allNodesOfType(template, CallDelegateNode.class)
+          .forEach(call -> worklist.addAll(delTemplates.get(call.getDelCalleeName())));
+    }
+  }
+
+  /** Returns the name of a function or method used by the template that isn't pure, if any. */
+  private static String findImpureFunction(TemplateNode template) {
+    return SoyTreeUtils.allNodes(template)
+        .map(
+            node -> {
+              if (node instanceof FunctionNode) {
+                FunctionNode function = (FunctionNode) node;
+                // The builtins only depend on their arguments and the render configuration, which
+                // is part of the cache key.
+                boolean pure =
+                    !function.isResolved()
+                        || function.getSoyFunction() instanceof BuiltinFunction
+                        || function.isPure();
+                return pure ? null : function.getFunctionName();
+              }
+              if (node instanceof MethodCallNode) {
+                MethodCallNode method = (MethodCallNode) node;
+                boolean pure =
+                    !method.isMethodResolved()
+                        || !(method.getSoyMethod() instanceof SoySourceFunctionMethod)
+                        || SoyFunctions.isPure(
+                            ((SoySourceFunctionMethod) method.getSoyMethod()).getImpl());
+                return pure ? null : method.getMethodName().identifier();
+              }
+              return null;
+            })
+        .filter(name -> name != null)
+        .findFirst()
+        .orElse(null);
+  }
+}
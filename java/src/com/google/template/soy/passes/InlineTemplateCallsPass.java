@@ -0,0 +1,213 @@
+/*
+ * Copyright 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.template.soy.passes;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.template.soy.base.internal.IdGenerator;
+import com.google.template.soy.basetree.CopyState;
+import com.google.template.soy.exprtree.ExprNode;
+import com.google.template.soy.exprtree.ListComprehensionNode;
+import com.google.template.soy.exprtree.NullNode;
+import com.google.template.soy.exprtree.VarDefn;
+import com.google.template.soy.exprtree.VarRefNode;
+import com.google.template.soy.soytree.CallBasicNode;
+import com.google.template.soy.soytree.CallNode;
+import com.google.template.soy.soytree.CallParamContentNode;
+import com.google.template.soy.soytree.CallParamNode;
+import com.google.template.soy.soytree.CallParamValueNode;
+import com.google.template.soy.soytree.LetContentNode;
+import com.google.template.soy.soytree.LetValueNode;
+import com.google.template.soy.soytree.MsgFallbackGroupNode;
+import com.google.template.soy.soytree.SoyFileNode;
+import com.google.template.soy.soytree.SoyNode;
+import com.google.template.soy.soytree.SoyNode.LocalVarNode;
+import com.google.template.soy.soytree.SoyNode.ParentSoyNode;
+import com.google.template.soy.soytree.SoyNode.StandaloneNode;
+import com.google.template.soy.soytree.SoyTreeUtils;
+import com.google.template.soy.soytree.TemplateBasicNode;
+import com.google.template.soy.soytree.TemplateNode;
+import com.google.template.soy.soytree.Visibility;
+import com.google.template.soy.soytree.defn.TemplateParam;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inlines calls to small private templates into their callers.
+ *
+ * <p>A call to a tiny helper template is surprisingly expensive in the server side backends: the
+ * callee needs its own parameter record, its own template instance and its own detach state
+ * machine. For private templates that are only a handful of nodes long it is cheaper to copy the
+ * body of the callee into the caller, binding each parameter to a {@code let} variable. The
+ * optimizer then gets a chance to simplify the result in the context of the caller.
+ *
+ * <p>Only calls that are trivially safe to inline are rewritten:
+ *
+ * <ul>
+ *   <li>The callee is a basic private template in the same file, so that source locations (and
+ *       therefore stack traces) still point at the right file.
+ *   <li>The call doesn't pass {@code data=}, doesn't have a {@code key} and doesn't require any
+ *       escaping directives.
+ *   <li>The call is not a message placeholder.
+ *   <li>The callee doesn't make any calls and doesn't declare any local variables, so copying it
+ *       cannot introduce recursion or variable name collisions.
+ *   <li>Every parameter can be bound without changing semantics: passed params must not have
+ *       defaults and must have assignable types.
+ * </ul>
+ *
+ * <p>This runs after desugaring so the callee bodies are already in the form the backends expect.
+ */
+final class InlineTemplateCallsPass implements CompilerFileSetPass {
+
+  /** The maximum number of soy nodes in a callee body for it to be considered for inlining. */
+  private static final int MAX_INLINED_TEMPLATE_SIZE = 10;
+
+  @Override
+  public Result run(ImmutableList<SoyFileNode> sourceFiles, IdGenerator idGenerator) {
+    for (SoyFileNode file : sourceFiles) {
+      run(file, idGenerator);
+    }
+    return Result.CONTINUE;
+  }
+
+  private static void run(SoyFileNode file, IdGenerator nodeIdGen) {
+    // Inlinable callees never contain calls, so inlining never modifies them and it is fine to
+    // compute this set up front.
+    ImmutableMap.Builder<String, TemplateBasicNode> inlinableBuilder = ImmutableMap.builder();
+    for (TemplateNode template : file.getTemplates()) {
+      if (isInlinable(template)) {
+        inlinableBuilder.put(template.getTemplateName(), (TemplateBasicNode) template);
+      }
+    }
+    ImmutableMap<String, TemplateBasicNode> inlinable = inlinableBuilder.build();
+    if (inlinable.isEmpty()) {
+      return;
+    }
+    for (TemplateNode template : file.getTemplates()) {
+      for (CallBasicNode call : SoyTreeUtils.getAllNodesOfType(template, CallBasicNode.class)) {
+        if (!call.isStaticCall()) {
+          continue;
+        }
+        TemplateBasicNode callee = inlinable.get(call.getCalleeName());
+        if (callee != null && isInlinableCall(call)) {
+          maybeInline(call, callee, nodeIdGen);
+        }
+      }
+    }
+  }
+
+  private static boolean isInlinable(TemplateNode template) {
+    return template instanceof TemplateBasicNode
+        && template.getVisibility() == Visibility.PRIVATE
+        && template.getInjectedParams().isEmpty()
+        && template.getRequiredCssNamespaces().isEmpty()
+        && template.getCssBaseNamespace() == null
+        && !SoyTreeUtils.hasNodesOfType(
+            template, CallNode.class, LocalVarNode.class, ListComprehensionNode.class)
+        && SoyTreeUtils.allNodesOfType(template, SoyNode.class).count()
+            <= MAX_INLINED_TEMPLATE_SIZE + 1;
+  }
+
+  private static boolean isInlinableCall(CallBasicNode call) {
+    return !call.isPassingData()
+        && call.getKeyExpr() == null
+        && call.getEscapingDirectives().isEmpty()
+        && call.getNearestAncestor(MsgFallbackGroupNode.class) == null;
+  }
+
+  private static void maybeInline(
+      CallBasicNode call, TemplateBasicNode callee, IdGenerator nodeIdGen) {
+    Map<String, CallParamNode> passedParams = new HashMap<>();
+    for (CallParamNode param : call.getChildren()) {
+      passedParams.put(param.getKey().identifier(), param);
+    }
+    // Build the bindings first so that we can bail out without modifying anything. Passed values
+    // are copied and content is only moved once every param has been checked.
+    Map<TemplateParam, VarDefn> bindings = new IdentityHashMap<>();
+    Map<LetContentNode, CallParamContentNode> contentParams = new LinkedHashMap<>();
+    List<StandaloneNode> replacement = new ArrayList<>();
+    for (TemplateParam param : callee.getParams()) {
+      String varName = "$__internal_soy_inlined_" + param.name() + "_" + call.getId();
+      CallParamNode passed = passedParams.get(param.name());
+      LocalVarNode binding;
+      if (passed == null) {
+        ExprNode value =
+            param.hasDefault()
+                ? param.defaultValue().getRoot().copy(new CopyState())
+                : new NullNode(call.getSourceLocation());
+        binding = newLetValue(nodeIdGen.genId(), call, varName, value, param);
+      } else if (param.hasDefault()) {
+        // The default would apply if the passed value is null or undefined at runtime, preserve
+        // that by just not inlining.
+        return;
+      } else if (passed instanceof CallParamValueNode) {
+        ExprNode value = ((CallParamValueNode) passed).getExpr().getRoot();
+        if (!param.type().isAssignableFromStrict(value.getType())) {
+          return;
+        }
+        binding =
+            newLetValue(nodeIdGen.genId(), passed, varName, value.copy(new CopyState()), param);
+      } else {
+        CallParamContentNode content = (CallParamContentNode) passed;
+        LetContentNode let =
+            LetContentNode.forVariable(
+                nodeIdGen.genId(),
+                content.getSourceLocation(),
+                varName,
+                content.getSourceLocation(),
+                content.getContentKind());
+        if (!param.type().isAssignableFromStrict(let.getVar().type())) {
+          return;
+        }
+        contentParams.put(let, content);
+        binding = let;
+      }
+      bindings.put(param, binding.getVar());
+      replacement.add((StandaloneNode) binding);
+    }
+    // Now that we know the call can be inlined, move the content params over.
+    contentParams.forEach(
+        (let, content) -> let.addChildren(ImmutableList.copyOf(content.getChildren())));
+    List<StandaloneNode> body = SoyTreeUtils.cloneListWithNewIds(callee.getChildren(), nodeIdGen);
+    for (StandaloneNode node : body) {
+      for (VarRefNode ref : SoyTreeUtils.getAllNodesOfType(node, VarRefNode.class)) {
+        VarDefn binding = bindings.get(ref.getDefnDecl());
+        if (binding != null) {
+          ref.setDefn(binding);
+        }
+      }
+    }
+    replacement.addAll(body);
+    ParentSoyNode<StandaloneNode> parent = call.getParent();
+    int index = parent.getChildIndex(call);
+    parent.removeChild(index);
+    parent.addChildren(index, replacement);
+  }
+
+  private static LetValueNode newLetValue(
+      int id, SoyNode location, String varName, ExprNode value, TemplateParam param) {
+    LetValueNode let =
+        new LetValueNode(
+            id, location.getSourceLocation(), varName, location.getSourceLocation(), value);
+    let.getVar().setType(param.type());
+    return let;
+  }
+}
@@ -16,6 +16,7 @@
 
 package com.google.template.soy.passes;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static java.util.stream.Collectors.joining;
 
@@ -223,7 +224,9 @@ public final class PassManager {
     private boolean disableAllTypeChecking;
     private boolean desugarHtmlAndStateNodes = true;
     private boolean optimize = true;
+    private boolean inlineTemplateCalls = false;
     private ValidatedConformanceConfig conformanceConfig = ValidatedConformanceConfig.EMPTY;
+    private int conformanceParallelism = 1;
     private ValidatedLoggingConfig loggingConfig = ValidatedLoggingConfig.EMPTY;
     private boolean insertEscapingDirectives = true;
     private boolean addHtmlAttributesForDebugging = true;
@@ -328,6 +331,18 @@ public final class PassManager {
       return this;
     }
 
+    /**
+     * Whether to inline calls to small private templates into their callers. This only has an
+     * effect if {@link #optimize} is enabled and is only appropriate for backends that don't need
+     * the call structure of the original templates, like jbcsrc.
+     *
+     * <p>The default is {@code false}.
+     */
+    public Builder inlineTemplateCalls(boolean inlineTemplateCalls) {
+      this.inlineTemplateCalls = inlineTemplateCalls;
+      return this;
+    }
+
     public Builder addHtmlAttributesForDebugging(boolean addHtmlAttributesForDebugging) {
       this.addHtmlAttributesForDebugging = addHtmlAttributesForDebugging;
       return this;
@@ -339,6 +354,18 @@ public final class PassManager {
       return this;
     }
 
+    /**
+     * Configures the number of threads the conformance pass may use to check files concurrently.
+     *
+     * <p>The default is {@code 1}. All configured conformance rules must be thread safe to use a
+     * higher value.
+     */
+    public Builder setConformanceParallelism(int conformanceParallelism) {
+      checkArgument(conformanceParallelism > 0);
+      this.conformanceParallelism = conformanceParallelism;
+      return this;
+    }
+
     public Builder setLoggingConfig(ValidatedLoggingConfig loggingConfig) {
       this.loggingConfig = checkNotNull(loggingConfig);
       return this;
@@ -525,7 +552,7 @@ public final class PassManager {
             crossTemplateCheckingPassesBuilder);
       }
       addPass(
-          new SoyConformancePass(conformanceConfig, errorReporter),
+          new SoyConformancePass(conformanceConfig, errorReporter, conformanceParallelism),
           crossTemplateCheckingPassesBuilder);
       if (!disableAllTypeChecking) {
         addPass(
@@ -542,6 +569,7 @@ public final class PassManager {
         addPass(new CheckTemplateCallsPass(errorReporter), crossTemplateCheckingPassesBuilder);
         addPass(
             new ElementCheckCrossTemplatePass(errorReporter), crossTemplateCheckingPassesBuilder);
+        addPass(new CheckCacheableTemplatesPass(errorReporter), crossTemplateCheckingPassesBuilder);
         if (astRewrites.atLeast(AstRewrites.ALL)) {
 
           addPass(
@@ -579,6 +607,11 @@ public final class PassManager {
         addPass(new DesugarStateNodesPass(), crossTemplateCheckingPassesBuilder);
       }
       if (optimize) {
+        if (inlineTemplateCalls) {
+          // Runs before the optimizer so that it can simplify inlined template bodies in the
+          // context of their callers.
+          addPass(new InlineTemplateCallsPass(), crossTemplateCheckingPassesBuilder);
+        }
         addPass(new OptimizationPass(errorReporter), crossTemplateCheckingPassesBuilder);
       }
       // DesugarHtmlNodesPass may chop up RawTextNodes, and OptimizationPass may produce additional
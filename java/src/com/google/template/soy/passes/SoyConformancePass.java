@@ -16,6 +16,7 @@
 
 package com.google.template.soy.passes;
 
+import com.google.common.collect.ImmutableList;
 import com.google.template.soy.base.internal.IdGenerator;
 import com.google.template.soy.conformance.SoyConformance;
 import com.google.template.soy.conformance.ValidatedConformanceConfig;
@@ -27,10 +28,19 @@ import com.google.template.soy.soytree.SoyFileNode;
 public final class SoyConformancePass implements CompilerFilePass {
   private final SoyConformance conformance;
   private final ErrorReporter errorReporter;
+  private final int parallelism;
 
-  SoyConformancePass(ValidatedConformanceConfig conformanceConfig, ErrorReporter errorReporter) {
+  SoyConformancePass(
+      ValidatedConformanceConfig conformanceConfig, ErrorReporter errorReporter, int parallelism) {
     this.conformance = SoyConformance.create(conformanceConfig);
     this.errorReporter = errorReporter;
+    this.parallelism = parallelism;
+  }
+
+  @Override
+  public Result run(ImmutableList<SoyFileNode> sourceFiles, IdGenerator idGenerator) {
+    conformance.check(sourceFiles, errorReporter, parallelism);
+    return Result.CONTINUE;
   }
 
   @Override
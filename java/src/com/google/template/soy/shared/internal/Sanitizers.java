@@ -117,13 +117,21 @@ public final class Sanitizers {
   }
 
   private static final class CleanHtmlAppendable extends AbstractStreamingHtmlEscaper {
-    private final Collection<? extends OptionalSafeTag> optionalSafeTags;
+    private final StreamingTagStripper stripper;
 
     CleanHtmlAppendable(
         LoggingAdvisingAppendable delegate,
         Collection<? extends OptionalSafeTag> optionalSafeTags) {
-      super(delegate, new StringBuilder());
-      this.optionalSafeTags = optionalSafeTags;
+      this(
+          delegate,
+          new StreamingTagStripper(
+              delegate, TagWhitelist.FORMATTING.withOptionalSafeTags(optionalSafeTags)));
+    }
+
+    private CleanHtmlAppendable(
+        LoggingAdvisingAppendable delegate, StreamingTagStripper stripper) {
+      super(delegate, stripper);
+      this.stripper = stripper;
     }
 
     @Override
@@ -132,6 +140,10 @@ public final class Sanitizers {
       if (isInHtml()) {
         activeAppendable = delegate;
         delegate.setKindAndDirectionality(kind, contentDir);
+      } else {
+        // The stripper writes cleaned html directly to the delegate, so mark it before any content
+        // is written.
+        delegate.setKindAndDirectionality(ContentKind.HTML, contentDir);
       }
     }
 
@@ -170,12 +182,7 @@ public final class Sanitizers {
     @Override
     public void flushBuffers(int depth) throws IOException {
       if (!isInHtml()) {
-        StringBuilder buffer = (StringBuilder) activeAppendable;
-        if (buffer.length() > 0) {
-          cleanHtml(buffer.toString(), getSanitizedContentDirectionality(), optionalSafeTags)
-              .render(delegate);
-          buffer.setLength(0);
-        }
+        stripper.finish();
       }
       super.flushBuffers(depth);
     }
@@ -969,13 +976,7 @@ public final class Sanitizers {
 
     StringBuilder out = new StringBuilder(value.length() - matcher.end() + matcher.start());
     Appendable normalizedOut = normalizer.escape(out);
-    // We do some very simple tag balancing by dropping any close tags for unopened tags and at the
-    // end emitting close tags for any still open tags.
-    // This is sufficient (in HTML) to prevent embedded content with safe tags from breaking layout
-    // when, for example, stripHtmlTags("</table>") is embedded in a page that uses tables for
-    // formatting.
-    List<String> openTags = null;
-    int openListTagCount = 0;
+    TagBalancer balancer = new TagBalancer(safeTags);
     try {
       int pos = 0; // Such that value[:pos] has been sanitized onto out.
       do {
@@ -991,99 +992,348 @@ public final class Sanitizers {
           }
         }
 
-        if (safeTags != null) {
-          String tagName = matcher.group(1);
-          if (tagName != null) {
-            // Use locale so that <I> works when the default locale is Turkish
-            tagName = Ascii.toLowerCase(tagName);
-            if (safeTags.isSafeTag(tagName)) {
-              boolean isClose = value.charAt(start + 1) == '/';
-              if (isClose) {
-                if (openTags != null) {
-                  int lastIdx = openTags.lastIndexOf(tagName);
-                  if (lastIdx >= 0) {
-                    // Close contained tags as well.
-                    // If we didn't, then we would convert "<ul><li></ul>" to "<ul><li></ul></li>"
-                    // which could lead to broken layout for embedding HTML that uses lists for
-                    // formatting.
-                    // This leads to observably different behavior for adoption-agency dependent
-                    // tag combinations like "<b><i>Foo</b> Bar</b>" but fails safe.
-                    // http://www.whatwg.org/specs/web-apps/current-work/multipage/the-end.html#misnested-tags:-b-i-/b-/i
-                    List<String> tagsToClose = openTags.subList(lastIdx, openTags.size());
-                    for (String tagToClose : tagsToClose) {
-                      if (isListTag(tagToClose)) {
-                        openListTagCount--;
-                      }
-                    }
-                    closeTags(tagsToClose, out);
-                  }
+        balancer.appendTag(matcher.group(), matcher.group(1), out);
+        pos = matcher.end();
+      } while (matcher.find());
+      normalizedOut.append(value, pos, value.length());
+      balancer.closeOpenTags(out);
+    } catch (IOException ex) {
+      // Writing to a StringBuilder should not throw.
+      throw new AssertionError(ex);
+    }
+    return out.toString();
+  }
+
+  /**
+   * Tracks the whitelisted tags emitted by {@link #stripHtmlTags} and its streaming equivalent.
+   *
+   * <p>We do some very simple tag balancing by dropping any close tags for unopened tags and at the
+   * end emitting close tags for any still open tags. This is sufficient (in HTML) to prevent
+   * embedded content with safe tags from breaking layout when, for example,
+   * stripHtmlTags("</table>") is embedded in a page that uses tables for formatting.
+   */
+  private static final class TagBalancer {
+    @Nullable private final TagWhitelist safeTags;
+    private List<String> openTags;
+    private int openListTagCount;
+
+    TagBalancer(@Nullable TagWhitelist safeTags) {
+      this.safeTags = safeTags;
+    }
+
+    /**
+     * Appends the sanitized form of a tag matched by {@link EscapingConventions#HTML_TAG_CONTENT},
+     * which is nothing unless it is a whitelisted tag.
+     *
+     * @param tag the full text of the tag
+     * @param tagName the name of the tag as written, or {@code null} for comments and doctypes
+     */
+    void appendTag(CharSequence tag, @Nullable String tagName, Appendable out)
+        throws IOException {
+      if (safeTags == null || tagName == null) {
+        return;
+      }
+      // Use locale so that <I> works when the default locale is Turkish
+      tagName = Ascii.toLowerCase(tagName);
+      if (!safeTags.isSafeTag(tagName)) {
+        return;
+      }
+      boolean isClose = tag.charAt(1) == '/';
+      if (isClose) {
+        if (openTags != null) {
+          int lastIdx = openTags.lastIndexOf(tagName);
+          if (lastIdx >= 0) {
+            // Close contained tags as well.
+            // If we didn't, then we would convert "<ul><li></ul>" to "<ul><li></ul></li>"
+            // which could lead to broken layout for embedding HTML that uses lists for
+            // formatting.
+            // This leads to observably different behavior for adoption-agency dependent
+            // tag combinations like "<b><i>Foo</b> Bar</b>" but fails safe.
+            // http://www.whatwg.org/specs/web-apps/current-work/multipage/the-end.html#misnested-tags:-b-i-/b-/i
+            List<String> tagsToClose = openTags.subList(lastIdx, openTags.size());
+            for (String tagToClose : tagsToClose) {
+              if (isListTag(tagToClose)) {
+                openListTagCount--;
+              }
+            }
+            closeTags(tagsToClose, out);
+          }
+        }
+      } else {
+        // Only allow whitelisted <li> through if it is nested in a parent <ol> or <ul>.
+        if (openListTagCount > 0 || !"li".equals(tagName)) {
+          if (isListTag(tagName)) {
+            openListTagCount++;
+          }
+
+          // Emit beginning of the opening tag and tag name on the un-normalized channel.
+          out.append('<').append(tagName);
+
+          // Most attributes are dropped, but the dir attribute is preserved if it exists.
+          // The attribute matching could be made more generic if more attributes need to be
+          // whitelisted in the future. There are also probably other utilities in common to
+          // do such parsing of HTML, but this seemed simple enough and keeps with the
+          // current spirit of this function of doing custom parsing.
+          Matcher attributeMatcher = HTML_ATTRIBUTE_PATTERN.matcher(tag);
+          while (attributeMatcher.find()) {
+            String attributeName = attributeMatcher.group(1);
+            if (!Strings.isNullOrEmpty(attributeName)
+                && Ascii.equalsIgnoreCase(attributeName, "dir")) {
+              String dir = attributeMatcher.group(2);
+              if (!Strings.isNullOrEmpty(dir)) {
+                // Strip quotes if the attribute value was quoted.
+                if (dir.charAt(0) == '\'' || dir.charAt(0) == '"') {
+                  dir = dir.substring(1, dir.length() - 1);
                 }
-              } else {
-                // Only allow whitelisted <li> through if it is nested in a parent <ol> or <ul>.
-                if (openListTagCount > 0 || !"li".equals(tagName)) {
-                  if (isListTag(tagName)) {
-                    openListTagCount++;
-                  }
-
-                  // Emit beginning of the opening tag and tag name on the un-normalized channel.
-                  out.append('<').append(tagName);
-
-                  // Most attributes are dropped, but the dir attribute is preserved if it exists.
-                  // The attribute matching could be made more generic if more attributes need to be
-                  // whitelisted in the future. There are also probably other utilities in common to
-                  // do such parsing of HTML, but this seemed simple enough and keeps with the
-                  // current spirit of this function of doing custom parsing.
-                  Matcher attributeMatcher = HTML_ATTRIBUTE_PATTERN.matcher(matcher.group());
-                  while (attributeMatcher.find()) {
-                    String attributeName = attributeMatcher.group(1);
-                    if (!Strings.isNullOrEmpty(attributeName)
-                        && Ascii.equalsIgnoreCase(attributeName, "dir")) {
-                      String dir = attributeMatcher.group(2);
-                      if (!Strings.isNullOrEmpty(dir)) {
-                        // Strip quotes if the attribute value was quoted.
-                        if (dir.charAt(0) == '\'' || dir.charAt(0) == '"') {
-                          dir = dir.substring(1, dir.length() - 1);
-                        }
-                        dir = Ascii.toLowerCase(dir);
-                        if ("ltr".equals(dir) || "rtl".equals(dir) || "auto".equals(dir)) {
-                          out.append(" dir=\"").append(dir).append("\"");
-                        }
-                      }
-                      break;
-                    }
-                  }
-
-                  // Emit the end of the opening tag
-                  out.append('>');
-
-                  // Keep track of tags that need closing.
-                  if (!HTML5_VOID_ELEMENTS.contains(tagName)) {
-                    if (openTags == null) {
-                      openTags = Lists.newArrayList();
-                    }
-                    openTags.add(tagName);
-                  }
+                dir = Ascii.toLowerCase(dir);
+                if ("ltr".equals(dir) || "rtl".equals(dir) || "auto".equals(dir)) {
+                  out.append(" dir=\"").append(dir).append("\"");
                 }
               }
+              break;
             }
           }
+
+          // Emit the end of the opening tag
+          out.append('>');
+
+          // Keep track of tags that need closing.
+          if (!HTML5_VOID_ELEMENTS.contains(tagName)) {
+            if (openTags == null) {
+              openTags = Lists.newArrayList();
+            }
+            openTags.add(tagName);
+          }
         }
-        pos = matcher.end();
-      } while (matcher.find());
-      normalizedOut.append(value, pos, value.length());
-      // Emit close tags, so that safeTags("<table>") can't break the layout of embedding HTML that
-      // uses tables for layout.
+      }
+    }
+
+    /**
+     * Emits close tags, so that safeTags("<table>") can't break the layout of embedding HTML that
+     * uses tables for layout.
+     */
+    void closeOpenTags(Appendable out) throws IOException {
       if (openTags != null) {
         closeTags(openTags, out);
       }
-    } catch (IOException ex) {
-      // Writing to a StringBuilder should not throw.
-      throw new AssertionError(ex);
+      openListTagCount = 0;
+    }
+  }
+
+  /**
+   * An appendable that writes the same output as {@link #stripHtmlTags} with {@code
+   * rawSpacesAllowed} set, while the input is being appended.
+   *
+   * <p>Text is normalized and written through immediately. Only a potential tag, from a {@code <}
+   * up to the matching {@code >}, is buffered until it is known whether it matches {@link
+   * EscapingConventions#HTML_TAG_CONTENT}. This implements the same grammar as that pattern as a
+   * state machine.
+   *
+   * <p>A potential tag longer than {@link #MAX_PENDING_TAG_LENGTH} is written out as text, like an
+   * unterminated tag, so that the buffer stays bounded. This is the only case where the output can
+   * differ from {@link #stripHtmlTags}, and then only by escaping a very long tag instead of
+   * keeping it.
+   */
+  private static final class StreamingTagStripper implements Appendable {
+    private static final int MAX_PENDING_TAG_LENGTH = 64 * 1024;
+
+    /** Not in a tag. */
+    private static final int TEXT = 0;
+    /** After a {@code <}. */
+    private static final int TAG_START = 1;
+    /** After a {@code </}. */
+    private static final int CLOSE_TAG_START = 2;
+    /** In the tag name. */
+    private static final int TAG_NAME = 3;
+    /** In the rest of the tag, outside of quotes. */
+    private static final int TAG_BODY = 4;
+    /** In a double quoted string in a tag. */
+    private static final int DOUBLE_QUOTED = 5;
+    /** In a single quoted string in a tag. */
+    private static final int SINGLE_QUOTED = 6;
+
+    private final Appendable out;
+    private final Appendable normalizedOut;
+    private final TagBalancer balancer;
+    /** The potential tag being matched. Empty in the {@link #TEXT} state. */
+    private final StringBuilder pendingTag = new StringBuilder();
+
+    private int state = TEXT;
+    private int tagNameStart;
+    @Nullable private String tagName;
+    /** Whether the last thing written was text ending with {@code &}. */
+    private boolean textEndsWithAmpersand;
+
+    StreamingTagStripper(Appendable out, TagWhitelist safeTags) {
+      this.out = out;
+      this.normalizedOut = EscapingConventions.NormalizeHtml.INSTANCE.escape(out);
+      this.balancer = new TagBalancer(safeTags);
+    }
+
+    @Override
+    public Appendable append(CharSequence csq) throws IOException {
+      return append(csq, 0, csq.length());
+    }
+
+    @Override
+    public Appendable append(CharSequence csq, int start, int end) throws IOException {
+      int i = start;
+      while (i < end) {
+        if (state == TEXT) {
+          int textEnd = i;
+          while (textEnd < end && csq.charAt(textEnd) != '<') {
+            textEnd++;
+          }
+          appendText(csq, i, textEnd);
+          if (textEnd < end) {
+            pendingTag.append('<');
+            state = TAG_START;
+            textEnd++;
+          }
+          i = textEnd;
+        } else {
+          appendTagChar(csq.charAt(i++));
+        }
+      }
+      return this;
+    }
+
+    @Override
+    public Appendable append(char c) throws IOException {
+      if (state != TEXT) {
+        appendTagChar(c);
+      } else if (c == '<') {
+        pendingTag.append('<');
+        state = TAG_START;
+      } else {
+        normalizedOut.append(c);
+        textEndsWithAmpersand = c == '&';
+      }
+      return this;
+    }
+
+    private void appendText(CharSequence csq, int start, int end) throws IOException {
+      if (start < end) {
+        normalizedOut.append(csq, start, end);
+        textEndsWithAmpersand = csq.charAt(end - 1) == '&';
+      }
+    }
+
+    private void appendTagChar(char c) throws IOException {
+      if (pendingTag.length() >= MAX_PENDING_TAG_LENGTH) {
+        flushPendingTagAsText();
+        append(c);
+        return;
+      }
+      pendingTag.append(c);
+      switch (state) {
+        case TAG_START:
+          if (c == '!') {
+            state = TAG_BODY;
+          } else if (c == '/') {
+            state = CLOSE_TAG_START;
+          } else if (isTagNameStart(c)) {
+            tagNameStart = pendingTag.length() - 1;
+            state = TAG_NAME;
+          } else {
+            rejectPendingTag();
+          }
+          break;
+        case CLOSE_TAG_START:
+          if (isTagNameStart(c)) {
+            tagNameStart = pendingTag.length() - 1;
+            state = TAG_NAME;
+          } else {
+            rejectPendingTag();
+          }
+          break;
+        case TAG_NAME:
+          if (isTagNamePart(c)) {
+            break;
+          }
+          tagName = pendingTag.substring(tagNameStart, pendingTag.length() - 1);
+          state = TAG_BODY;
+          appendTagBodyChar(c);
+          break;
+        case TAG_BODY:
+          appendTagBodyChar(c);
+          break;
+        case DOUBLE_QUOTED:
+          if (c == '"') {
+            state = TAG_BODY;
+          }
+          break;
+        case SINGLE_QUOTED:
+          if (c == '\'') {
+            state = TAG_BODY;
+          }
+          break;
+        default:
+          throw new AssertionError("unexpected state: " + state);
+      }
+    }
+
+    private void appendTagBodyChar(char c) throws IOException {
+      if (c == '>') {
+        // More aggressively normalize ampersands at the end of a chunk so that
+        //   "&<b>amp;</b>" -> "&amp;amp;" instead of "&amp;".
+        if (textEndsWithAmpersand) {
+          out.append("amp;");
+          textEndsWithAmpersand = false;
+        }
+        balancer.appendTag(pendingTag, tagName, out);
+        resetPendingTag();
+      } else if (c == '"') {
+        state = DOUBLE_QUOTED;
+      } else if (c == '\'') {
+        state = SINGLE_QUOTED;
+      }
+    }
+
+    /**
+     * Called when the pending text can't be a tag. The {@code <} is written as text and the rest
+     * is reprocessed since it may contain the start of a real tag.
+     */
+    private void rejectPendingTag() throws IOException {
+      String rest = pendingTag.substring(1);
+      resetPendingTag();
+      normalizedOut.append('<');
+      textEndsWithAmpersand = false;
+      append(rest, 0, rest.length());
+    }
+
+    /** Writes the pending text out as text, without looking for tags in it. */
+    private void flushPendingTagAsText() throws IOException {
+      normalizedOut.append(pendingTag);
+      textEndsWithAmpersand = pendingTag.charAt(pendingTag.length() - 1) == '&';
+      resetPendingTag();
+    }
+
+    private void resetPendingTag() {
+      pendingTag.setLength(0);
+      tagName = null;
+      state = TEXT;
+    }
+
+    /** Writes out any incomplete tag as text and closes any open tags. */
+    void finish() throws IOException {
+      while (state != TEXT) {
+        rejectPendingTag();
+      }
+      balancer.closeOpenTags(out);
+      textEndsWithAmpersand = false;
+    }
+
+    private static boolean isTagNameStart(char c) {
+      return ('a' <= c && c <= 'z') || ('A' <= c && c <= 'Z');
+    }
+
+    private static boolean isTagNamePart(char c) {
+      return isTagNameStart(c) || ('0' <= c && c <= '9') || c == ':' || c == '-';
     }
-    return out.toString();
   }
 
-  private static void closeTags(List<String> openTags, StringBuilder out) {
+  private static void closeTags(List<String> openTags, Appendable out) throws IOException {
     for (int i = openTags.size(); --i >= 0; ) {
       out.append("</").append(openTags.get(i)).append('>');
     }
@@ -18,7 +18,6 @@ package com.google.template.soy.shared.internal;
 
 import com.google.template.soy.internal.i18n.BidiGlobalDir;
 import com.google.template.soy.msgs.SoyMsgBundle;
-import java.util.ArrayDeque;
 import javax.annotation.CheckReturnValue;
 import javax.annotation.Nullable;
 
@@ -31,16 +30,16 @@ public final class SoySimpleScope implements SoyScopedData, SoyScopedData.Entera
   /**
    * An autoclosable object that can be used to seed and exit scopes.
    *
-   * <p>Obtain an instance with {@link SoySimpleScope#enter}.
+   * <p>Obtain an instance with {@link SoySimpleScope#enter}. Open scopes form a linked stack
+   * through {@link #previous}, so entering a scope doesn't need any other per-thread storage.
    */
   private static final class InScope implements SoyScopedData.InScope {
     private boolean isClosed;
-    private final Thread openThread = Thread.currentThread();
-    private final ArrayDeque<BidiGlobalDir> deque;
+    @Nullable private final InScope previous;
     private final BidiGlobalDir dir;
 
-    InScope(BidiGlobalDir dir, ArrayDeque<BidiGlobalDir> deque) {
-      this.deque = deque;
+    InScope(BidiGlobalDir dir, @Nullable InScope previous) {
+      this.previous = previous;
       this.dir = dir;
     }
 
@@ -52,23 +51,24 @@ public final class SoySimpleScope implements SoyScopedData, SoyScopedData.Entera
     /** Exits the scope */
     @Override
     public void close() {
-      checkOpenAndOnCorrectThread();
-      isClosed = true;
-      deque.pop();
-    }
-
-    private void checkOpenAndOnCorrectThread() {
       if (isClosed) {
         throw new IllegalStateException("called close() more than once!");
       }
-      if (Thread.currentThread() != openThread) {
-        throw new IllegalStateException("cannot move the scope to another thread");
+      if (currentScope.get() != this) {
+        throw new IllegalStateException(
+            "scopes must be closed in reverse order and cannot move to another thread");
+      }
+      isClosed = true;
+      if (previous == null) {
+        currentScope.remove();
+      } else {
+        currentScope.set(previous);
       }
     }
   }
 
-  /** The ThreadLocal holding all the values in scope. */
-  private static final ThreadLocal<ArrayDeque<BidiGlobalDir>> scopedValuesTl = new ThreadLocal<>();
+  /** The ThreadLocal holding the innermost open scope. */
+  private static final ThreadLocal<InScope> currentScope = new ThreadLocal<>();
 
   @Override
   @CheckReturnValue
@@ -88,13 +88,9 @@ public final class SoySimpleScope implements SoyScopedData, SoyScopedData.Entera
   @Override
   @CheckReturnValue
   public InScope enter(BidiGlobalDir bidiGlobalDir) {
-    ArrayDeque<BidiGlobalDir> stack = scopedValuesTl.get();
-    if (stack == null) {
-      stack = new ArrayDeque<>();
-      scopedValuesTl.set(stack);
-    }
-    stack.push(bidiGlobalDir);
-    return new InScope(bidiGlobalDir, stack);
+    InScope scope = new InScope(bidiGlobalDir, currentScope.get());
+    currentScope.set(scope);
+    return scope;
   }
 
   @Override
@@ -104,10 +100,10 @@ public final class SoySimpleScope implements SoyScopedData, SoyScopedData.Entera
 
   @Override
   public BidiGlobalDir getBidiGlobalDir() {
-    ArrayDeque<BidiGlobalDir> arrayDeque = scopedValuesTl.get();
-    if (arrayDeque == null || arrayDeque.isEmpty()) {
+    InScope scope = currentScope.get();
+    if (scope == null) {
       throw new IllegalStateException("Cannot access scoped data outside of a scoping block");
     }
-    return arrayDeque.peek();
+    return scope.dir;
   }
 }
@@ -116,7 +116,7 @@ public final class FileSetTemplateRegistry implements TemplateRegistry {
       addTemplateToPerFileRegistry(filePath, template);
       allTemplatesBuilder.put(template.getTemplateName(), template);
 
-      switch (template.getTemplateType().getTemplateKind()) {
+      switch (template.getTemplateKind()) {
         case BASIC:
         case ELEMENT:
           // Case 1: Basic Template or Element node
@@ -29,6 +29,9 @@ import javax.annotation.Nullable;
  */
 public final class TemplateBasicNode extends TemplateNode {
 
+  /** Whether the rendered output of this template may be cached by the server side renderer. */
+  private final boolean cacheable;
+
   /**
    * Main constructor. This is package-private because TemplateBasicNode instances should be built
    * using TemplateBasicNodeBuilder.
@@ -36,14 +39,17 @@ public final class TemplateBasicNode extends TemplateNode {
    * @param nodeBuilder builder containing template initialization params
    * @param soyFileHeaderInfo info from the containing Soy file's header declarations
    * @param visibility visibility of this template
+   * @param cacheable whether the rendered output of this template may be cached
    * @param params the params from template header or SoyDoc. Null if no decls and no SoyDoc.
    */
   TemplateBasicNode(
       TemplateBasicNodeBuilder nodeBuilder,
       SoyFileHeaderInfo soyFileHeaderInfo,
       Visibility visibility,
+      boolean cacheable,
       @Nullable ImmutableList<TemplateHeaderVarDefn> params) {
     super(nodeBuilder, "template", soyFileHeaderInfo, visibility, params);
+    this.cacheable = cacheable;
   }
 
   @Override
@@ -58,6 +64,19 @@ public final class TemplateBasicNode extends TemplateNode {
    */
   private TemplateBasicNode(TemplateBasicNode orig, CopyState copyState) {
     super(orig, copyState);
+    this.cacheable = orig.cacheable;
+  }
+
+  /**
+   * Returns whether the template was declared with {@code cacheable="true"}, meaning that its
+   * output depends only on its params and the render configuration (locale, renaming maps, etc.)
+   * and so may be served from a cache.
+   *
+   * <p>Only the jbcsrc backend caches output, the other backends render cacheable templates like
+   * any other.
+   */
+  public boolean isCacheable() {
+    return cacheable;
   }
 
   @Override
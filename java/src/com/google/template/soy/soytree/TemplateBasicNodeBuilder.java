@@ -32,6 +32,9 @@ import java.util.List;
  */
 public class TemplateBasicNodeBuilder extends TemplateNodeBuilder<TemplateBasicNodeBuilder> {
 
+  /** Whether the rendered output of the template may be cached. */
+  private boolean cacheable;
+
   /** @param soyFileHeaderInfo Info from the containing Soy file's header declarations. */
   public TemplateBasicNodeBuilder(
       SoyFileHeaderInfo soyFileHeaderInfo, ErrorReporter errorReporter) {
@@ -54,13 +57,19 @@ public class TemplateBasicNodeBuilder extends TemplateNodeBuilder<TemplateBasicN
         case "visibility":
           visibility = attribute.valueAsVisibility(errorReporter);
           break;
+        case "cacheable":
+          cacheable = attribute.valueAsEnabled(errorReporter);
+          break;
         default:
           errorReporter.report(
               name.location(),
               CommandTagAttribute.UNSUPPORTED_ATTRIBUTE_KEY,
               name.identifier(),
               "template",
-              ImmutableList.builder().add("visibility").addAll(COMMON_ATTRIBUTE_NAMES).build());
+              ImmutableList.builder()
+                  .add("visibility", "cacheable")
+                  .addAll(COMMON_ATTRIBUTE_NAMES)
+                  .build());
       }
     }
 
@@ -71,7 +80,7 @@ public class TemplateBasicNodeBuilder extends TemplateNodeBuilder<TemplateBasicN
   @Override
   public TemplateBasicNode build() {
     Preconditions.checkState(id != null && cmdText != null);
-    return new TemplateBasicNode(this, soyFileHeaderInfo, visibility, params);
+    return new TemplateBasicNode(this, soyFileHeaderInfo, visibility, cacheable, params);
   }
 
   @Override
@@ -22,6 +22,8 @@ import static com.google.common.primitives.Booleans.trueFirst;
 import static java.util.Comparator.comparing;
 
 import com.google.auto.value.AutoValue;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.template.soy.base.SourceLocation;
@@ -179,7 +181,71 @@ public abstract class TemplateMetadata {
   @Nullable
   public abstract String getDelTemplateVariant();
 
-  public abstract TemplateType getTemplateType();
+  /**
+   * The signature of the template.
+   *
+   * <p>For templates deserialized from dependency headers this is only built on first access,
+   * since most dependency templates are never referenced by the templates being compiled.
+   */
+  public TemplateType getTemplateType() {
+    return getLazyTemplateType().get();
+  }
+
+  /** The kind of the template, available without building the full {@link TemplateType}. */
+  public abstract TemplateType.TemplateKind getTemplateKind();
+
+  abstract LazyTemplateType getLazyTemplateType();
+
+  /**
+   * Holds a possibly lazily computed {@link TemplateType}.
+   *
+   * <p>Equality is defined by the source the type is built from (the type itself for eager types),
+   * so that comparing or hashing metadata doesn't build the type.
+   */
+  static final class LazyTemplateType {
+    private final Object source;
+    @Nullable private Supplier<TemplateType> supplier;
+    @Nullable private TemplateType type;
+
+    LazyTemplateType(TemplateType type) {
+      this.source = type;
+      this.type = type;
+    }
+
+    LazyTemplateType(Object source, Supplier<TemplateType> supplier) {
+      this.source = source;
+      this.supplier = supplier;
+    }
+
+    synchronized TemplateType get() {
+      if (type == null) {
+        type = supplier.get();
+        supplier = null;
+      }
+      return type;
+    }
+
+    /** Returns whether the type has been built. */
+    @VisibleForTesting
+    synchronized boolean isBuilt() {
+      return type != null;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof LazyTemplateType && ((LazyTemplateType) other).source.equals(source);
+    }
+
+    @Override
+    public int hashCode() {
+      return source.hashCode();
+    }
+
+    @Override
+    public String toString() {
+      return source.toString();
+    }
+  }
 
   public abstract Visibility getVisibility();
 
@@ -207,7 +273,29 @@ public abstract class TemplateMetadata {
 
     public abstract Builder setDelTemplateVariant(String delTemplateVariant);
 
-    public abstract Builder setTemplateType(TemplateType templateType);
+    public Builder setTemplateType(TemplateType templateType) {
+      return setTemplateKind(templateType.getTemplateKind())
+          .setLazyTemplateType(new LazyTemplateType(templateType));
+    }
+
+    /**
+     * Sets a template type that is only computed when first requested. The supplier must produce a
+     * type of the given {@code templateKind}.
+     *
+     * @param source The value the type is built from (e.g. a proto), metadata with equal names and
+     *     sources are equal
+     */
+    public Builder setTemplateTypeLazily(
+        TemplateType.TemplateKind templateKind,
+        Object source,
+        Supplier<TemplateType> templateTypeSupplier) {
+      return setTemplateKind(templateKind)
+          .setLazyTemplateType(new LazyTemplateType(source, templateTypeSupplier));
+    }
+
+    abstract Builder setTemplateKind(TemplateType.TemplateKind templateKind);
+
+    abstract Builder setLazyTemplateType(LazyTemplateType templateType);
 
     public abstract Builder setDelPackageName(@Nullable String delPackageName);
 
@@ -217,7 +305,7 @@ public abstract class TemplateMetadata {
 
     public final TemplateMetadata build() {
       TemplateMetadata built = autobuild();
-      if (built.getTemplateType().getTemplateKind() == TemplateType.TemplateKind.DELTEMPLATE) {
+      if (built.getTemplateKind() == TemplateType.TemplateKind.DELTEMPLATE) {
         checkState(built.getDelTemplateName() != null, "Deltemplates must have a deltemplateName");
         checkState(
             built.getDelTemplateVariant() != null, "Deltemplates must have a deltemplateName");
@@ -25,6 +25,7 @@ import com.google.template.soy.msgs.restricted.SoyMsg;
 import com.google.template.soy.msgs.restricted.SoyMsgPart;
 import com.google.template.soy.msgs.restricted.SoyMsgPlaceholderPart;
 import com.google.template.soy.msgs.restricted.SoyMsgRawTextPart;
+import java.io.IOException;
 import java.util.Optional;
 import javax.annotation.Nullable;
 
@@ -63,9 +64,29 @@ class XliffGenerator {
    */
   static CharSequence generateXliff(
       SoyMsgBundle msgBundle, String sourceLocaleString, @Nullable String targetLocaleString) {
+    StringBuilder sb = new StringBuilder();
+    try {
+      writeXliff(msgBundle, sourceLocaleString, targetLocaleString, sb);
+    } catch (IOException e) {
+      throw new AssertionError("StringBuilder doesn't throw IOExceptions", e);
+    }
+    return sb;
+  }
+
+  /**
+   * Writes the XLIFF file content for the given messages to {@code output}, one 'trans-unit' at a
+   * time, so that the whole file never needs to be held in memory.
+   *
+   * @see #generateXliff
+   */
+  static void writeXliff(
+      Iterable<SoyMsg> msgs,
+      String sourceLocaleString,
+      @Nullable String targetLocaleString,
+      Appendable output)
+      throws IOException {
 
     Escaper attributeEscaper = XmlEscapers.xmlAttributeEscaper();
-    Escaper contentEscaper = XmlEscapers.xmlContentEscaper();
 
     boolean hasTarget = targetLocaleString != null && targetLocaleString.length() > 0;
 
@@ -85,78 +106,87 @@ class XliffGenerator {
     ilb.appendLineEnd(">");
     ilb.increaseIndent();
     ilb.appendLine("<body>");
-    ilb.increaseIndent();
-
-    for (SoyMsg msg : msgBundle) {
-
-      // Begin 'trans-unit'.
-      ilb.appendLineStart("<trans-unit id=\"", Long.toString(msg.getId()), "\"");
-      String contentType = msg.getContentType();
-      if (contentType != null && contentType.length() > 0) {
-        String xliffDatatype = CONTENT_TYPE_TO_XLIFF_DATATYPE_MAP.get(contentType);
-        if (xliffDatatype == null) {
-          xliffDatatype = contentType; // just use the contentType string
-        }
-        ilb.appendParts(" datatype=\"", attributeEscaper.escape(xliffDatatype), "\"");
-      }
-      ilb.appendLineEnd(">");
-      ilb.increaseIndent();
-
-      // Source.
-      ilb.appendLineStart("<source>");
-      for (SoyMsgPart msgPart : msg.getParts()) {
-        if (msgPart instanceof SoyMsgRawTextPart) {
-          String rawText = ((SoyMsgRawTextPart) msgPart).getRawText();
-          ilb.append(contentEscaper.escape(rawText));
-        } else if (msgPart instanceof SoyMsgPlaceholderPart) {
-          SoyMsgPlaceholderPart placeholder = (SoyMsgPlaceholderPart) msgPart;
-          Optional<String> example = placeholder.getPlaceholderExample();
-          ilb.appendParts(
-              "<x id=\"",
-              attributeEscaper.escape(placeholder.getPlaceholderName()),
-              "\""
-                  // placeholder examples are not part of the xliff standard. It is an android
-                  // convention so we add it in the hope that tools will support it anyway.
-                  + (example.isPresent()
-                      ? " example=\"" + attributeEscaper.escape(example.get()) + "\""
-                      : "")
-                  + "/>");
-        } else {
-          throw new RuntimeException(
-              "Xliff doesn't support plurals or genders. " + msg.getSourceLocations());
-        }
-      }
-      ilb.appendLineEnd("</source>");
+    output.append(ilb);
 
-      // Target.
-      if (hasTarget) {
-        ilb.appendLine("<target/>");
-      }
-
-      // Description and meaning.
-      String desc = msg.getDesc();
-      if (desc != null && desc.length() > 0) {
-        ilb.appendLine(
-            "<note priority=\"1\" from=\"description\">", contentEscaper.escape(desc), "</note>");
-      }
-      String meaning = msg.getMeaning();
-      if (meaning != null && meaning.length() > 0) {
-        ilb.appendLine(
-            "<note priority=\"1\" from=\"meaning\">", contentEscaper.escape(meaning), "</note>");
-      }
-
-      // End 'trans-unit'.
-      ilb.decreaseIndent();
-      ilb.appendLine("</trans-unit>");
+    int transUnitIndentLen = ilb.getCurrIndentLen() + 2;
+    for (SoyMsg msg : msgs) {
+      ilb = new IndentedLinesBuilder(2, transUnitIndentLen);
+      appendTransUnit(ilb, msg, hasTarget);
+      output.append(ilb);
     }
 
-    ilb.decreaseIndent();
+    ilb = new IndentedLinesBuilder(2, transUnitIndentLen - 2);
     ilb.appendLine("</body>");
     ilb.decreaseIndent();
     ilb.appendLine("</file>");
     ilb.decreaseIndent();
     ilb.appendLine("</xliff>");
+    output.append(ilb);
+  }
 
-    return ilb;
+  /** Appends the 'trans-unit' element for a single message. */
+  private static void appendTransUnit(IndentedLinesBuilder ilb, SoyMsg msg, boolean hasTarget) {
+    Escaper attributeEscaper = XmlEscapers.xmlAttributeEscaper();
+    Escaper contentEscaper = XmlEscapers.xmlContentEscaper();
+
+    // Begin 'trans-unit'.
+    ilb.appendLineStart("<trans-unit id=\"", Long.toString(msg.getId()), "\"");
+    String contentType = msg.getContentType();
+    if (contentType != null && contentType.length() > 0) {
+      String xliffDatatype = CONTENT_TYPE_TO_XLIFF_DATATYPE_MAP.get(contentType);
+      if (xliffDatatype == null) {
+        xliffDatatype = contentType; // just use the contentType string
+      }
+      ilb.appendParts(" datatype=\"", attributeEscaper.escape(xliffDatatype), "\"");
+    }
+    ilb.appendLineEnd(">");
+    ilb.increaseIndent();
+
+    // Source.
+    ilb.appendLineStart("<source>");
+    for (SoyMsgPart msgPart : msg.getParts()) {
+      if (msgPart instanceof SoyMsgRawTextPart) {
+        String rawText = ((SoyMsgRawTextPart) msgPart).getRawText();
+        ilb.append(contentEscaper.escape(rawText));
+      } else if (msgPart instanceof SoyMsgPlaceholderPart) {
+        SoyMsgPlaceholderPart placeholder = (SoyMsgPlaceholderPart) msgPart;
+        Optional<String> example = placeholder.getPlaceholderExample();
+        ilb.appendParts(
+            "<x id=\"",
+            attributeEscaper.escape(placeholder.getPlaceholderName()),
+            "\""
+                // placeholder examples are not part of the xliff standard. It is an android
+                // convention so we add it in the hope that tools will support it anyway.
+                + (example.isPresent()
+                    ? " example=\"" + attributeEscaper.escape(example.get()) + "\""
+                    : "")
+                + "/>");
+      } else {
+        throw new RuntimeException(
+            "Xliff doesn't support plurals or genders. " + msg.getSourceLocations());
+      }
+    }
+    ilb.appendLineEnd("</source>");
+
+    // Target.
+    if (hasTarget) {
+      ilb.appendLine("<target/>");
+    }
+
+    // Description and meaning.
+    String desc = msg.getDesc();
+    if (desc != null && desc.length() > 0) {
+      ilb.appendLine(
+          "<note priority=\"1\" from=\"description\">", contentEscaper.escape(desc), "</note>");
+    }
+    String meaning = msg.getMeaning();
+    if (meaning != null && meaning.length() > 0) {
+      ilb.appendLine(
+          "<note priority=\"1\" from=\"meaning\">", contentEscaper.escape(meaning), "</note>");
+    }
+
+    // End 'trans-unit'.
+    ilb.decreaseIndent();
+    ilb.appendLine("</trans-unit>");
   }
 }
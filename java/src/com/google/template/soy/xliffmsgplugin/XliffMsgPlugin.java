@@ -22,6 +22,8 @@ import com.google.template.soy.msgs.SoyMsgBundle;
 import com.google.template.soy.msgs.SoyMsgBundleHandler.OutputFileOptions;
 import com.google.template.soy.msgs.SoyMsgException;
 import com.google.template.soy.msgs.SoyMsgPlugin;
+import com.google.template.soy.msgs.restricted.SoyMsg;
+import java.io.IOException;
 import org.xml.sax.SAXException;
 
 /**
@@ -39,6 +41,17 @@ public final class XliffMsgPlugin implements SoyMsgPlugin {
         msgBundle, options.getSourceLocaleString(), options.getTargetLocaleString());
   }
 
+  @Override
+  public void writeExtractedMsgsFile(
+      Iterable<SoyMsg> msgs,
+      OutputFileOptions options,
+      ErrorReporter errorReporter,
+      Appendable output)
+      throws IOException {
+    XliffGenerator.writeXliff(
+        msgs, options.getSourceLocaleString(), options.getTargetLocaleString(), output);
+  }
+
   @Override
   public SoyMsgBundle parseTranslatedMsgsFile(String translatedMsgsFileContent) {
 
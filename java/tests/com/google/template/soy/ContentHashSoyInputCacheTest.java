@@ -0,0 +1,142 @@
+/*
+ * Copyright 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.template.soy;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.io.Files;
+import com.google.template.soy.base.SourceFilePath;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class ContentHashSoyInputCacheTest {
+  @Rule public final TemporaryFolder temp = new TemporaryFolder();
+
+  /** Reads the file contents and records reads and evictions. */
+  private static final class RecordingLoader implements SoyInputCache.CacheLoader<String> {
+    final List<String> reads = new ArrayList<>();
+    final List<String> evictions = new ArrayList<>();
+
+    @Override
+    public String read(File file, SoyCompilerFileReader reader, SoyInputCache cache)
+        throws IOException {
+      String contents = reader.read(file).asCharSource(UTF_8).read();
+      reads.add(contents);
+      return contents;
+    }
+
+    @Override
+    public void onEvict(String item) {
+      evictions.add(item);
+    }
+  }
+
+  private final ContentHashSoyInputCache cache = new ContentHashSoyInputCache();
+  private final RecordingLoader loader = new RecordingLoader();
+
+  @Test
+  public void testRead_cachedUntilContentsChange() throws Exception {
+    File file = newFile("a.txt", "a");
+
+    assertThat(read(file)).isEqualTo("a");
+    assertThat(read(file)).isEqualTo("a");
+    assertThat(loader.reads).containsExactly("a");
+
+    write(file, "b");
+    assertThat(read(file)).isEqualTo("b");
+    assertThat(loader.reads).containsExactly("a", "b").inOrder();
+    assertThat(loader.evictions).containsExactly("a");
+  }
+
+  @Test
+  public void testRead_dependencyChangeEvictsDependents() throws Exception {
+    File file = newFile("a.txt", "a");
+    File dependency = newFile("b.txt", "b");
+    read(file);
+    read(dependency);
+    cache.declareDependency(file, dependency);
+
+    write(dependency, "c");
+    // Reading the dependent notices the change to its dependency.
+    assertThat(read(file)).isEqualTo("a");
+    assertThat(loader.evictions).containsExactly("a", "b");
+    assertThat(loader.reads).containsExactly("a", "b", "a").inOrder();
+  }
+
+  @Test
+  public void testRead_evictsLeastRecentlyUsed() throws Exception {
+    ContentHashSoyInputCache smallCache = new ContentHashSoyInputCache(/* maxEntries= */ 2);
+    File a = newFile("a.txt", "a");
+    File b = newFile("b.txt", "b");
+    File c = newFile("c.txt", "c");
+    read(smallCache, a);
+    read(smallCache, b);
+    read(smallCache, a);
+    read(smallCache, c);
+    assertThat(loader.evictions).containsExactly("b");
+
+    read(smallCache, a);
+    read(smallCache, b);
+    assertThat(loader.reads).containsExactly("a", "b", "c", "b").inOrder();
+    assertThat(loader.evictions).containsExactly("b", "c").inOrder();
+  }
+
+  @Test
+  public void testCreateFileSupplier_versionedByContent() throws Exception {
+    File file = newFile("a.soy", "{namespace ns}");
+    SourceFilePath path = SourceFilePath.create(file.getPath());
+
+    assertThat(createFileSupplierVersion(file, path))
+        .isEqualTo(createFileSupplierVersion(file, path));
+
+    Object original = createFileSupplierVersion(file, path);
+    write(file, "{namespace ns2}");
+    assertThat(createFileSupplierVersion(file, path)).isNotEqualTo(original);
+    assertThat(cache.astCache()).isNotNull();
+  }
+
+  private Object createFileSupplierVersion(File file, SourceFilePath path) throws IOException {
+    return cache.createFileSupplier(file, path, FileSystemSoyFileReader.INSTANCE).getVersion();
+  }
+
+  private String read(File file) throws IOException {
+    return read(cache, file);
+  }
+
+  private String read(ContentHashSoyInputCache inputCache, File file) throws IOException {
+    return inputCache.read(file, loader, FileSystemSoyFileReader.INSTANCE);
+  }
+
+  private File newFile(String name, String contents) throws IOException {
+    File file = temp.newFile(name);
+    write(file, contents);
+    return file;
+  }
+
+  private static void write(File file, String contents) throws IOException {
+    Files.asCharSink(file, UTF_8).write(contents);
+  }
+}
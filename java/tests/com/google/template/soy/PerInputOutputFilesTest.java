@@ -16,12 +16,18 @@
 package com.google.template.soy;
 
 import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.Assert.fail;
 
 import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
 import java.io.File;
+import java.util.function.Consumer;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
@@ -30,6 +36,8 @@ public final class PerInputOutputFilesTest {
   private final PerInputOutputFiles outputFiles =
       new PerInputOutputFiles("soy.js", Joiner.on("\n"));
 
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   private SoyCmdLineParser cmdLineParser;
 
   @Before
@@ -82,4 +90,22 @@ public final class PerInputOutputFilesTest {
     assertThat(outputFiles.getOutputPath(new File("root/foo/bar.soy"), /*locale=*/ null).toString())
         .isEqualTo("foo.js");
   }
+
+  @Test
+  public void testFileWriter_writesEachFileOnceComplete() throws Exception {
+    File out = temporaryFolder.getRoot();
+    cmdLineParser.parseArgument("--outputPathFormat", out + "/{INPUT_FILE_NAME_NO_EXT}.js");
+    Consumer<String> writer =
+        outputFiles.fileWriter(
+            ImmutableList.of(new File("a/x.soy"), new File("y.soy"), new File("b/x.soy")),
+            /*locale=*/ null);
+
+    writer.accept("x1");
+    assertThat(new File(out, "x.js").exists()).isFalse();
+    writer.accept("y");
+    assertThat(Files.asCharSource(new File(out, "y.js"), UTF_8).read()).isEqualTo("y");
+    assertThat(new File(out, "x.js").exists()).isFalse();
+    writer.accept("x2");
+    assertThat(Files.asCharSource(new File(out, "x.js"), UTF_8).read()).isEqualTo("x1\nx2");
+  }
 }
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.template.soy;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class SoyCompilerWorkerTest {
+  @Rule public final TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void testRun() throws Exception {
+    File soyFile = temp.newFile("temp.soy");
+    Files.asCharSink(soyFile, UTF_8)
+        .write("{namespace ns}\n/***/\n{template .a}\n{msg desc=\"a\"}Hello{/msg}\n{/template}");
+    File xmlFile1 = temp.newFile("temp1.xml");
+    File xmlFile2 = temp.newFile("temp2.xml");
+
+    ByteArrayOutputStream requests = new ByteArrayOutputStream();
+    writeRequest(requests, 1, "--outputFile", xmlFile1.toString(), "--srcs", soyFile.toString());
+    writeRequest(requests, 2, "--outputFile", xmlFile2.toString(), "--srcs", soyFile.toString());
+    writeRequest(requests, 3, "--outputFile", xmlFile2.toString(), "--srcs", "missing.soy");
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try {
+      newWorker(executor).run(new ByteArrayInputStream(requests.toByteArray()), output);
+    } finally {
+      executor.shutdown();
+    }
+
+    Map<Integer, Response> responses = readResponses(output.toByteArray());
+    assertThat(Maps.transformValues(responses, r -> r.exitCode)).containsExactly(1, 0, 2, 0, 3, 1);
+    assertThat(responses.get(3).output).contains("missing.soy");
+    assertThat(Files.asCharSource(xmlFile1, UTF_8).read()).contains("<source>Hello</source>");
+    assertThat(Files.asCharSource(xmlFile2, UTF_8).read()).contains("<source>Hello</source>");
+  }
+
+  @Test
+  public void testRun_cancel() throws Exception {
+    File soyFile = temp.newFile("temp.soy");
+    Files.asCharSink(soyFile, UTF_8)
+        .write("{namespace ns}\n/***/\n{template .a}\n{msg desc=\"a\"}Hello{/msg}\n{/template}");
+    File xmlFile1 = temp.newFile("temp1.xml");
+    File xmlFile2 = temp.newFile("temp2.xml");
+
+    ByteArrayOutputStream requests = new ByteArrayOutputStream();
+    writeRequest(requests, 1, "--outputFile", xmlFile1.toString(), "--srcs", soyFile.toString());
+    writeRequest(requests, 2, "--outputFile", xmlFile2.toString(), "--srcs", soyFile.toString());
+    writeCancelRequest(requests, 1);
+    // Cancelling an unknown or already completed request is ignored.
+    writeCancelRequest(requests, 3);
+
+    // Hold the compiles back until every request has been read, so the cancellation arrives
+    // before request 1 starts.
+    CountDownLatch requestsRead = new CountDownLatch(1);
+    InputStream in =
+        new SequenceInputStream(
+            new ByteArrayInputStream(requests.toByteArray()),
+            new InputStream() {
+              @Override
+              public int read() {
+                requestsRead.countDown();
+                return -1;
+              }
+            });
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    executor.execute(() -> Uninterruptibles.awaitUninterruptibly(requestsRead));
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try {
+      newWorker(executor).run(in, output);
+    } finally {
+      executor.shutdown();
+    }
+
+    Map<Integer, Response> responses = readResponses(output.toByteArray());
+    assertThat(responses.keySet()).containsExactly(1, 2);
+    assertThat(responses.get(1).wasCancelled).isTrue();
+    assertThat(responses.get(2).wasCancelled).isFalse();
+    assertThat(responses.get(2).exitCode).isEqualTo(0);
+    assertThat(xmlFile1.length()).isEqualTo(0);
+    assertThat(Files.asCharSource(xmlFile2, UTF_8).read()).contains("<source>Hello</source>");
+  }
+
+  private static SoyCompilerWorker newWorker(ExecutorService executor) {
+    return new SoyCompilerWorker(
+        SoyMsgExtractor::new,
+        new PluginLoader.Default(),
+        new ContentHashSoyInputCache(),
+        executor);
+  }
+
+  /** The fields of a {@code WorkResponse}. */
+  private static final class Response {
+    int exitCode;
+    String output = "";
+    boolean wasCancelled;
+  }
+
+  /** Reads length-delimited responses, keyed by request id. */
+  private static Map<Integer, Response> readResponses(byte[] bytes) throws IOException {
+    Map<Integer, Response> responses = new HashMap<>();
+    CodedInputStream in = CodedInputStream.newInstance(bytes);
+    while (!in.isAtEnd()) {
+      int oldLimit = in.pushLimit(in.readRawVarint32());
+      int requestId = 0;
+      Response response = new Response();
+      int tag;
+      while ((tag = in.readTag()) != 0) {
+        switch (WireFormat.getTagFieldNumber(tag)) {
+          case SoyCompilerWorker.WorkResponse.EXIT_CODE_FIELD_NUMBER:
+            response.exitCode = in.readInt32();
+            break;
+          case SoyCompilerWorker.WorkResponse.OUTPUT_FIELD_NUMBER:
+            response.output = in.readString();
+            break;
+          case SoyCompilerWorker.WorkResponse.REQUEST_ID_FIELD_NUMBER:
+            requestId = in.readInt32();
+            break;
+          case SoyCompilerWorker.WorkResponse.WAS_CANCELLED_FIELD_NUMBER:
+            response.wasCancelled = in.readBool();
+            break;
+          default:
+            in.skipField(tag);
+        }
+      }
+      in.popLimit(oldLimit);
+      assertThat(responses.put(requestId, response)).isNull();
+    }
+    return responses;
+  }
+
+  private static void writeCancelRequest(ByteArrayOutputStream out, int requestId)
+      throws IOException {
+    ByteArrayOutputStream message = new ByteArrayOutputStream();
+    CodedOutputStream coded = CodedOutputStream.newInstance(message);
+    coded.writeInt32(SoyCompilerWorker.WorkRequest.REQUEST_ID_FIELD_NUMBER, requestId);
+    coded.writeBool(SoyCompilerWorker.WorkRequest.CANCEL_FIELD_NUMBER, true);
+    coded.flush();
+    writeDelimited(out, message);
+  }
+
+  private static void writeRequest(ByteArrayOutputStream out, int requestId, String... args)
+      throws IOException {
+    ByteArrayOutputStream message = new ByteArrayOutputStream();
+    CodedOutputStream coded = CodedOutputStream.newInstance(message);
+    for (String arg : args) {
+      coded.writeString(SoyCompilerWorker.WorkRequest.ARGUMENTS_FIELD_NUMBER, arg);
+    }
+    coded.writeInt32(SoyCompilerWorker.WorkRequest.REQUEST_ID_FIELD_NUMBER, requestId);
+    coded.flush();
+    writeDelimited(out, message);
+  }
+
+  private static void writeDelimited(ByteArrayOutputStream out, ByteArrayOutputStream message)
+      throws IOException {
+    CodedOutputStream delimited = CodedOutputStream.newInstance(out);
+    delimited.writeUInt32NoTag(message.size());
+    delimited.flush();
+    message.writeTo(out);
+  }
+}
@@ -20,8 +20,13 @@ import static com.google.common.truth.Truth.assertThat;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
 import com.google.common.io.Files;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
@@ -60,4 +65,78 @@ public class SoyMsgExtractorTest {
     assertThat(xmlContent).contains("<source>H\uff49</source>");
     assertThat(xmlContent).contains("<source>World</source>");
   }
+
+  @Test
+  public void testStreaming() throws Exception {
+    File soyFile1 = temp.newFile("temp.soy");
+    Files.asCharSink(soyFile1, UTF_8)
+        .write(
+            "{namespace ns}\n"
+                + "/***/\n{template .a}\n{msg desc=\"a\"}Hello{/msg}\n"
+                + "{msg desc=\"a\"}World{/msg}\n{/template}");
+    File soyFile2 = temp.newFile("temp2.soy");
+    Files.asCharSink(soyFile2, UTF_8)
+        .write(
+            "{namespace ns2}\n"
+                + "/***/\n{template .b}\n{msg desc=\"a\"}World{/msg}\n"
+                + "{msg desc=\"b\"}Goodbye{/msg}\n{/template}");
+    File xmlFile = temp.newFile("temp.xml");
+
+    int exitCode =
+        new SoyMsgExtractor()
+            .run(
+                new String[] {
+                  "--outputFile",
+                  xmlFile.toString(),
+                  "--streaming",
+                  "--extractionThreads",
+                  "2",
+                  "--maxMsgsInMemory",
+                  "1",
+                  "--srcs",
+                  Joiner.on(',').join(soyFile1.toString(), soyFile2.toString())
+                },
+                System.err);
+    assertThat(exitCode).isEqualTo(0);
+    String xmlContent = Files.asCharSource(xmlFile, UTF_8).read();
+    assertThat(xmlContent).startsWith("<?xml");
+    assertThat(xmlContent).endsWith("</xliff>\n");
+    assertThat(Splitter.on("<source>World</source>").split(xmlContent)).hasSize(2);
+    List<Long> ids = new ArrayList<>();
+    Matcher matcher = Pattern.compile("<trans-unit id=\"(\\d+)\"").matcher(xmlContent);
+    while (matcher.find()) {
+      ids.add(Long.parseLong(matcher.group(1)));
+    }
+    assertThat(ids).hasSize(3);
+    assertThat(ids).isInStrictOrder();
+  }
+
+  @Test
+  public void testStreaming_mergeErrorsDoNotWriteOutput() throws Exception {
+    File soyFile1 = temp.newFile("temp.soy");
+    Files.asCharSink(soyFile1, UTF_8)
+        .write(
+            "{namespace ns}\n" + "/***/\n{template .a}\n{msg desc=\"a\"}Hello{/msg}\n{/template}");
+    File soyFile2 = temp.newFile("temp2.soy");
+    Files.asCharSink(soyFile2, UTF_8)
+        .write(
+            "{namespace ns2}\n"
+                + "/***/\n{template .b}\n{msg desc=\"a\" hidden=\"true\"}Hello{/msg}\n"
+                + "{/template}");
+    File xmlFile = temp.newFile("temp.xml");
+
+    int exitCode =
+        new SoyMsgExtractor()
+            .run(
+                new String[] {
+                  "--outputFile",
+                  xmlFile.toString(),
+                  "--streaming",
+                  "--srcs",
+                  Joiner.on(',').join(soyFile1.toString(), soyFile2.toString())
+                },
+                System.err);
+    assertThat(exitCode).isNotEqualTo(0);
+    assertThat(xmlFile.length()).isEqualTo(0);
+  }
 }
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.template.soy.base.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.template.soy.base.internal.Parallel.parallelMap;
+import static org.junit.Assert.assertThrows;
+
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link Parallel}. */
+@RunWith(JUnit4.class)
+public final class ParallelTest {
+  private static final ImmutableList<Integer> ITEMS = ImmutableList.of(1, 2, 3, 4, 5, 6, 7, 8);
+
+  @Test
+  public void testParallelMap_preservesOrder() {
+    for (int threads = 1; threads <= 4; threads++) {
+      assertThat(parallelMap(ITEMS, threads, i -> i * 10))
+          .containsExactly(10, 20, 30, 40, 50, 60, 70, 80)
+          .inOrder();
+    }
+  }
+
+  @Test
+  public void testParallelMap_rethrowsCheckedExceptions() {
+    for (int threads = 1; threads <= 4; threads++) {
+      int threadCount = threads;
+      IOException e =
+          assertThrows(IOException.class, () -> parallelMap(ITEMS, threadCount, this::failOnEven));
+      assertThat(e).hasMessageThat().isEqualTo("2");
+    }
+  }
+
+  @Test
+  public void testParallelMap_rethrowsUncheckedExceptions() {
+    List<String> items = ImmutableList.of("a", "b");
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            parallelMap(
+                items,
+                2,
+                item -> {
+                  throw new IllegalArgumentException(item);
+                }));
+  }
+
+  private int failOnEven(int i) throws IOException {
+    if (i % 2 == 0) {
+      throw new IOException(String.valueOf(i));
+    }
+    return i;
+  }
+}
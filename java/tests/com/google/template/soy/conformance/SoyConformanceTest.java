@@ -29,6 +29,7 @@ import com.google.template.soy.base.internal.StableSoyFileSupplier;
 import com.google.template.soy.error.ErrorReporter;
 import com.google.template.soy.error.SoyError;
 import com.google.template.soy.error.SoyErrorKind;
+import com.google.template.soy.soytree.SoyFileNode;
 import com.google.template.soy.testing.SoyFileSetParserBuilder;
 import java.util.HashSet;
 import java.util.Set;
@@ -759,6 +760,36 @@ public class SoyConformanceTest {
             + "{/template}");
   }
 
+  @Test
+  public void testParallelCheckReportsViolationsInFileOrder() {
+    ValidatedConformanceConfig config =
+        parseConfigProto(
+            "requirement: {\n"
+                + "  banned_function {\n"
+                + "    function: 'checkNotNull'\n"
+                + "  }\n"
+                + "  error_message: 'foo'"
+                + "}");
+    String[] files = new String[8];
+    for (int i = 0; i < files.length; i++) {
+      files[i] =
+          "{namespace ns" + i + "}\n" + "{template .foo}\n" + "{checkNotNull(1)}\n" + "{/template}";
+    }
+    ImmutableList<SoyFileNode> fileNodes =
+        ImmutableList.copyOf(
+            SoyFileSetParserBuilder.forFileContents(files).parse().fileSet().getChildren());
+
+    ErrorReporter serialReporter = ErrorReporter.createForTest();
+    SoyConformance.create(config).check(fileNodes, serialReporter, 1);
+    ErrorReporter parallelReporter = ErrorReporter.createForTest();
+    SoyConformance.create(config).check(fileNodes, parallelReporter, 4);
+
+    assertThat(serialReporter.getErrors()).hasSize(files.length);
+    assertThat(parallelReporter.getErrors())
+        .containsExactlyElementsIn(serialReporter.getErrors())
+        .inOrder();
+  }
+
   private SoyError assertViolation(String textProto, String input) {
     ImmutableList<SoyError> violations = getViolations(textProto, input);
     assertThat(violations).hasSize(1);
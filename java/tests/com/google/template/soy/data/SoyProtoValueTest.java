@@ -0,0 +1,102 @@
+/*
+ * Copyright 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.template.soy.data;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.DynamicMessage;
+import com.google.protobuf.Message;
+import com.google.template.soy.data.restricted.IntegerData;
+import com.google.template.soy.internal.proto.Field;
+import com.google.template.soy.internal.proto.ProtoUtils;
+import com.google.template.soy.testing.ExampleExtendable;
+import com.google.template.soy.testing.ProtoMap;
+import com.google.template.soy.testing.SomeEmbeddedMessage;
+import com.google.template.soy.testing.SomeEnum;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class SoyProtoValueTest {
+
+  @Test
+  public void testGeneratedAccessorsMatchReflection() {
+    ExampleExtendable proto =
+        ExampleExtendable.newBuilder()
+            .setSomeNumNoDefault(7)
+            .setSomeEnum(SomeEnum.SECOND)
+            .setSomeEmbeddedMessage(
+                SomeEmbeddedMessage.newBuilder()
+                    .setSomeEmbeddedString("embedded")
+                    .addSomeEmbeddedRepeatedString("a"))
+            .setCamelCaseField(3)
+            .setByteField(ByteString.copyFromUtf8("bytes"))
+            .setFieldWithMixedCASESAndLeadingAndTrailingUnderscore(5)
+            .addRepeatedLongWithInt52JsType(1L)
+            .addRepeatedLongWithStringJsType(2L)
+            .addRepeatedLongWithNumberJsType(3L)
+            .setBoolField(true)
+            .setFloatField(1.5f)
+            .setDoubleField(2.5)
+            .setStringField("string")
+            .setIntField(-1)
+            .setLongField(1L << 40)
+            .setLongFieldJstypeString(12L)
+            .addRepeatedEmbeddedMessage(SomeEmbeddedMessage.newBuilder().setSomeEmbeddedNum(9))
+            .build();
+    assertSameFieldValues(proto);
+    assertSameFieldValues(ExampleExtendable.getDefaultInstance());
+    assertSameFieldValues(
+        ProtoMap.newBuilder()
+            .putMapField("k", "v")
+            .putMapMessageField(1, ProtoMap.InnerMessage.getDefaultInstance())
+            .build());
+  }
+
+  @Test
+  public void testRepeatedAccess() {
+    SoyProtoValue value =
+        SoyProtoValue.create(ExampleExtendable.newBuilder().setSomeNumNoDefault(42).build());
+    for (int i = 0; i < 3; i++) {
+      assertThat(value.getProtoField("someNumNoDefault")).isEqualTo(IntegerData.forValue(42));
+    }
+  }
+
+  /**
+   * Compares every field read from the generated message, which uses the generated accessors, with
+   * the same field read from an equivalent DynamicMessage, which uses reflection.
+   */
+  private static void assertSameFieldValues(Message proto) {
+    SoyProtoValue generated = SoyProtoValue.create(proto);
+    SoyProtoValue dynamic =
+        SoyProtoValue.create(
+            DynamicMessage.newBuilder(proto.getDescriptorForType()).mergeFrom(proto).build());
+    for (FieldDescriptor field : proto.getDescriptorForType().getFields()) {
+      if (ProtoUtils.shouldJsIgnoreField(field)) {
+        continue;
+      }
+      String name = Field.computeSoyName(field);
+      assertWithMessage(name)
+          .that(generated.getProtoField(name, false).coerceToString())
+          .isEqualTo(dynamic.getProtoField(name, false).coerceToString());
+    }
+  }
+}
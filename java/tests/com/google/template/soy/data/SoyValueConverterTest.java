@@ -25,7 +25,9 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.util.concurrent.Futures;
 import com.google.template.soy.data.restricted.NullData;
 import com.google.template.soy.data.restricted.StringData;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -105,4 +107,73 @@ public class SoyValueConverterTest {
     assertThrows(
         NullPointerException.class, () -> SoyValueConverter.INSTANCE.convert(mapWithNullKey));
   }
+
+  @Test
+  public void testImmutableListConversionIsMemoized() {
+    SoyList list = (SoyList) CONVERTER.convert(ImmutableList.of("a", "b", "c")).resolve();
+
+    SoyValueProvider b = list.getProvider(1);
+    assertThat(b.resolve().stringValue()).isEqualTo("b");
+    assertThat(list.getProvider(1)).isSameInstanceAs(b);
+    assertThat(list.length()).isEqualTo(3);
+    assertThat(list.get(3)).isNull();
+  }
+
+  @Test
+  public void testMutableListConversionIsASnapshot() {
+    List<Object> items = new ArrayList<>(ImmutableList.of("a", "b"));
+    SoyList list = (SoyList) CONVERTER.convert(items).resolve();
+    items.set(0, "z");
+    items.add("c");
+
+    assertThat(list.length()).isEqualTo(2);
+    assertThat(list.get(0).stringValue()).isEqualTo("a");
+  }
+
+  @Test
+  public void testImmutableDictConversionIsLazyAndMemoized() {
+    // This can't be converted, but that's only an error if it is accessed.
+    Map<String, Object> map = ImmutableMap.of("ok", "value", "bad", new Object());
+    SoyDict dict = (SoyDict) CONVERTER.convert(map).resolve();
+
+    SoyValueProvider ok = dict.getFieldProvider("ok");
+    assertThat(ok.resolve().stringValue()).isEqualTo("value");
+    assertThat(dict.getFieldProvider("ok")).isSameInstanceAs(ok);
+    assertThat(dict.hasField("bad")).isTrue();
+    assertThat(dict.getFieldProvider("missing")).isNull();
+    assertThrows(SoyDataException.class, () -> dict.getField("bad"));
+  }
+
+  @Test
+  public void testMutableDictConversionIsASnapshot() {
+    Map<String, Object> map = new HashMap<>();
+    map.put("a", "value");
+    SoyDict dict = (SoyDict) CONVERTER.convert(map).resolve();
+    map.put("a", "changed");
+    map.put("b", "added");
+
+    assertThat(dict.getField("a").stringValue()).isEqualTo("value");
+    assertThat(dict.hasField("b")).isFalse();
+  }
+
+  @Test
+  public void testImmutableSoyMapConversionIsLazy() {
+    Map<Object, Object> javaMap = ImmutableMap.of(1, "one", 2, new Object());
+    SoyMap map = (SoyMap) CONVERTER.convert(SoyValueConverter.markAsSoyMap(javaMap)).resolve();
+
+    assertThat(map.size()).isEqualTo(2);
+    assertThat(map.get(CONVERTER.convert(1).resolve()).stringValue()).isEqualTo("one");
+    assertThat(map.containsKey(CONVERTER.convert(3).resolve())).isFalse();
+  }
+
+  @Test
+  public void testMutableSoyMapConversionIsASnapshot() {
+    Map<Object, Object> javaMap = new HashMap<>();
+    javaMap.put(1, "one");
+    SoyMap map = (SoyMap) CONVERTER.convert(SoyValueConverter.markAsSoyMap(javaMap)).resolve();
+    javaMap.put(2, "two");
+
+    assertThat(map.size()).isEqualTo(1);
+    assertThat(map.containsKey(CONVERTER.convert(2).resolve())).isFalse();
+  }
 }
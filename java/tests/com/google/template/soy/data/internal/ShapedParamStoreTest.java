@@ -0,0 +1,79 @@
+/*
+ * Copyright 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.template.soy.data.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.common.collect.ImmutableList;
+import com.google.template.soy.data.restricted.IntegerData;
+import com.google.template.soy.data.restricted.StringData;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for ShapedParamStore. */
+@RunWith(JUnit4.class)
+public class ShapedParamStoreTest {
+
+  @Test
+  public void testFieldAccess() {
+    RecordShape shape = RecordShape.create(ImmutableList.of("a", "b", "c"));
+    ShapedParamStore store =
+        new ShapedParamStore(shape)
+            .setFieldAt(0, IntegerData.forValue(1))
+            .setField("c", StringData.forValue("see"));
+
+    assertThat(store.hasField("a")).isTrue();
+    assertThat(store.hasField("b")).isFalse();
+    assertThat(store.hasField("d")).isFalse();
+    assertThat(store.getField("a")).isEqualTo(IntegerData.forValue(1));
+    assertThat(store.getFieldProvider("b")).isNull();
+    // Lookups by an equal but not identical name still succeed.
+    assertThat(store.getField(new String("c"))).isEqualTo(StringData.forValue("see"));
+    assertThat(store.recordAsMap().keySet()).containsExactly("a", "c").inOrder();
+
+    // Fields outside of the shape are kept by name
+    store.setField("d", IntegerData.ZERO);
+    assertThat(store.hasField("d")).isTrue();
+    assertThat(store.getField("d")).isEqualTo(IntegerData.ZERO);
+    assertThat(store.recordAsMap().keySet()).containsExactly("a", "c", "d").inOrder();
+    List<String> names = new ArrayList<>();
+    store.forEachField((name, provider) -> names.add(name));
+    assertThat(names).containsExactly("a", "c", "d").inOrder();
+  }
+
+  @Test
+  public void testLargeShape() {
+    ImmutableList.Builder<String> names = ImmutableList.builder();
+    for (int i = 0; i < 20; i++) {
+      names.add("p" + i);
+    }
+    RecordShape shape = RecordShape.create(names.build());
+    assertThat(shape.indexOf("p0")).isEqualTo(0);
+    assertThat(shape.indexOf("p19")).isEqualTo(19);
+    assertThat(shape.indexOf("p20")).isEqualTo(-1);
+  }
+
+  @Test
+  public void testDuplicateNames() {
+    assertThrows(
+        IllegalArgumentException.class, () -> RecordShape.create(ImmutableList.of("a", "a")));
+  }
+}
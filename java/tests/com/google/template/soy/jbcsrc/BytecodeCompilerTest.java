@@ -22,8 +22,11 @@ import static com.google.template.soy.jbcsrc.TemplateTester.asRecord;
 import static com.google.template.soy.jbcsrc.TemplateTester.assertThatElementBody;
 import static com.google.template.soy.jbcsrc.TemplateTester.assertThatFile;
 import static com.google.template.soy.jbcsrc.TemplateTester.assertThatTemplateBody;
+import static com.google.template.soy.jbcsrc.TemplateTester.createDefaultBuilder;
 import static com.google.template.soy.jbcsrc.TemplateTester.getDefaultContext;
 import static com.google.template.soy.jbcsrc.TemplateTester.getDefaultContextWithDebugInfo;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.fail;
 
 import com.google.common.base.Joiner;
@@ -33,6 +36,8 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import com.google.common.io.Files;
+import com.google.common.io.Resources;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.template.soy.SoyFileSetParser;
 import com.google.template.soy.SoyFileSetParser.CompilationUnitAndKind;
@@ -59,14 +64,23 @@ import com.google.template.soy.data.restricted.IntegerData;
 import com.google.template.soy.data.restricted.NullData;
 import com.google.template.soy.data.restricted.StringData;
 import com.google.template.soy.error.ErrorReporter;
+import com.google.template.soy.jbcsrc.BytecodeCompiler.JarOptions;
 import com.google.template.soy.jbcsrc.TemplateTester.CompiledTemplateSubject;
 import com.google.template.soy.jbcsrc.api.RenderResult;
 import com.google.template.soy.jbcsrc.api.SoySauce;
 import com.google.template.soy.jbcsrc.api.SoySauceBuilder;
 import com.google.template.soy.jbcsrc.shared.CompiledTemplate;
 import com.google.template.soy.jbcsrc.shared.CompiledTemplates;
+import com.google.template.soy.jbcsrc.shared.Names;
 import com.google.template.soy.jbcsrc.shared.RenderContext;
 import com.google.template.soy.jbcsrc.shared.TemplateMetadata;
+import com.google.template.soy.msgs.SoyMsgBundle;
+import com.google.template.soy.msgs.internal.MsgUtils;
+import com.google.template.soy.msgs.restricted.SoyMsg;
+import com.google.template.soy.msgs.restricted.SoyMsgBundleImpl;
+import com.google.template.soy.msgs.restricted.SoyMsgPart;
+import com.google.template.soy.msgs.restricted.SoyMsgPlaceholderPart;
+import com.google.template.soy.msgs.restricted.SoyMsgRawTextPart;
 import com.google.template.soy.plugin.java.restricted.JavaPluginContext;
 import com.google.template.soy.plugin.java.restricted.JavaValue;
 import com.google.template.soy.plugin.java.restricted.JavaValueFactory;
@@ -77,12 +91,19 @@ import com.google.template.soy.shared.restricted.Signature;
 import com.google.template.soy.shared.restricted.SoyFunctionSignature;
 import com.google.template.soy.shared.restricted.SoyJavaFunction;
 import com.google.template.soy.soytree.CallDelegateNode;
+import com.google.template.soy.soytree.MsgNode;
 import com.google.template.soy.soytree.SoyFileSetNode;
 import com.google.template.soy.soytree.SoyTreeUtils;
 import com.google.template.soy.soytree.TemplateRegistry;
 import com.google.template.soy.testing.SoyFileSetParserBuilder;
+import java.io.Closeable;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -90,13 +111,23 @@ import java.util.Map;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
 
 /** A test for the template compiler, notably {@link BytecodeCompiler} and its collaborators. */
 @RunWith(JUnit4.class)
 public class BytecodeCompilerTest {
+  @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   public static final SoyList EMPTY_LIST = ListImpl.forProviderList(ImmutableList.of());
 
   @Test
@@ -732,6 +763,366 @@ public class BytecodeCompilerTest {
     assertThatTemplateBody("{xid('foo2')}").withXidRenamingMap(renamingMap).rendersAs("foo2_");
   }
 
+  @Test
+  public void testCssAndXidFunctions_renamingMapChangesBetweenRenders() throws IOException {
+    CompiledTemplates templates =
+        compileFiles("{namespace ns}\n{template .foo}\n{css('foo')} {xid('foo')}\n{/template}");
+    CompiledTemplate template = templates.getTemplate("ns.foo");
+    FakeRenamingMap bar = new FakeRenamingMap(ImmutableMap.of("foo", "bar"));
+    FakeRenamingMap baz = new FakeRenamingMap(ImmutableMap.of("foo", "baz"));
+    RenderContext barContext =
+        getDefaultContext(templates).toBuilder()
+            .withCssRenamingMap(bar)
+            .withXidRenamingMap(bar)
+            .build();
+    RenderContext bazContext =
+        getDefaultContext(templates).toBuilder()
+            .withCssRenamingMap(baz)
+            .withXidRenamingMap(baz)
+            .build();
+
+    assertThat(renderWithContext(template, barContext)).isEqualTo("bar bar");
+    assertThat(renderWithContext(template, bazContext)).isEqualTo("baz baz");
+    assertThat(renderWithContext(template, barContext)).isEqualTo("bar bar");
+    assertThat(renderWithContext(template, getDefaultContext(templates))).isEqualTo("foo foo_");
+  }
+
+  @Test
+  public void testCssAndXidFunctions_renamingMapConsultedOnEveryRender() throws IOException {
+    CompiledTemplates templates =
+        compileFiles("{namespace ns}\n{template .foo}\n{css('foo')} {xid('foo')}\n{/template}");
+    CompiledTemplate template = templates.getTemplate("ns.foo");
+    FakeRenamingMap renamingMap = new FakeRenamingMap(ImmutableMap.of("foo", "bar"));
+    RenderContext context =
+        getDefaultContext(templates).toBuilder()
+            .withCssRenamingMap(renamingMap)
+            .withXidRenamingMap(renamingMap)
+            .build();
+
+    // Renaming maps may record which selectors are used, so lookups must not be cached.
+    assertThat(renderWithContext(template, context)).isEqualTo("bar bar");
+    assertThat(renderWithContext(template, context)).isEqualTo("bar bar");
+    assertThat(renamingMap.lookups).isEqualTo(4);
+  }
+
+  @Test
+  public void testCompileToJar_compileTimeRenamingMaps() throws Exception {
+    SoyFileSetParser parser =
+        SoyFileSetParserBuilder.forFileContents(
+                "{namespace ns}\n{template .foo}\n{css('foo')} {css('foo2')} {xid('foo')}"
+                    + " {xid('foo2')}\n{/template}")
+            .build();
+    JarOptions options =
+        JarOptions.builder()
+            .setCssRenamingMap(new FakeRenamingMap(ImmutableMap.of("foo", "bar")))
+            .setXidRenamingMap(new FakeRenamingMap(ImmutableMap.of("foo", "baz")))
+            .build();
+
+    try (LoadedJar jar = compileJarAndLoad(parser, options)) {
+      FakeRenamingMap runtimeMap = new FakeRenamingMap(ImmutableMap.of("foo", "ignored"));
+      RenderContext context =
+          getDefaultContext(jar.templates).toBuilder()
+              .withCssRenamingMap(runtimeMap)
+              .withXidRenamingMap(runtimeMap)
+              .build();
+      assertThat(jar.render("ns.foo", ParamStore.EMPTY_INSTANCE, context))
+          .isEqualTo("bar foo2 baz foo2_");
+    }
+  }
+
+  @Test
+  public void testCompileToJar_compileTimeMsgBundle() throws Exception {
+    SoyFileSetParser parser =
+        SoyFileSetParserBuilder.forFileContents(
+                Joiner.on("\n")
+                    .join(
+                        "{namespace ns}",
+                        "{template .foo}",
+                        "  {@param name: string}",
+                        "  {msg desc='a'}Hello{/msg}{sp}{msg desc='b'}Hello {$name}{/msg}{sp}"
+                            + "{msg desc='c'}New{fallbackmsg desc='c'}Old{/msg}{sp}"
+                            + "{msg desc='d'}Untranslated{/msg}",
+                        "{/template}"))
+            .build();
+    ParseResult parseResult = parser.parse();
+    List<Long> ids =
+        SoyTreeUtils.getAllNodesOfType(parseResult.fileSet(), MsgNode.class).stream()
+            .map(msg -> MsgUtils.buildMsgPartsAndComputeMsgIdForDualFormat(msg).id)
+            .collect(Collectors.toList());
+    SoyMsgBundle compileTimeBundle =
+        new SoyMsgBundleImpl(
+            "fr",
+            ImmutableList.of(
+                translation(ids.get(0), SoyMsgRawTextPart.of("Bonjour")),
+                translation(
+                    ids.get(1), SoyMsgRawTextPart.of("Salut "), new SoyMsgPlaceholderPart("NAME")),
+                // only the fallback is translated
+                translation(ids.get(3), SoyMsgRawTextPart.of("Vieux"))));
+
+    try (LoadedJar jar =
+        compileJarAndLoad(parser, JarOptions.builder().setMsgBundle(compileTimeBundle).build())) {
+      SoyMsgBundle runtimeBundle =
+          new SoyMsgBundleImpl(
+              "fr",
+              ImmutableList.of(
+                  translation(ids.get(0), SoyMsgRawTextPart.of("ignored")),
+                  translation(ids.get(2), SoyMsgRawTextPart.of("ignored"))));
+      RenderContext context =
+          createDefaultBuilder(jar.templates).withMessageBundle(runtimeBundle).build();
+      assertThat(jar.render("ns.foo", asRecord(ImmutableMap.of("name", "Ada")), context))
+          .isEqualTo("Bonjour Salut Ada Vieux Untranslated");
+
+      assertThat(jar.templates.getCompiledMsgLocale()).isEqualTo("fr");
+      RenderContext.Builder wrongLocale =
+          createDefaultBuilder(jar.templates)
+              .withMessageBundle(new SoyMsgBundleImpl("de", ImmutableList.of()));
+      IllegalStateException e = assertThrows(IllegalStateException.class, wrongLocale::build);
+      assertThat(e)
+          .hasMessageThat()
+          .isEqualTo(
+              "The templates were compiled with the messages for 'fr' and can't be rendered with"
+                  + " messages for 'de'.");
+    }
+  }
+
+  @Test
+  public void testCompileToJar_entryPoints() throws Exception {
+    SoyFileSetParser parser =
+        SoyFileSetParserBuilder.forFileContents(
+                Joiner.on("\n")
+                    .join(
+                        "{namespace ns}",
+                        "{template .entry}",
+                        "  {call .callee /}",
+                        "{/template}",
+                        "{template .callee}",
+                        "  {delcall ns.del /}",
+                        "{/template}",
+                        "{template .unused}",
+                        "  {call .callee /}",
+                        "{/template}",
+                        "{deltemplate ns.del}",
+                        "  default",
+                        "{/deltemplate}",
+                        "{deltemplate ns.del variant=\"'v'\"}",
+                        "  variant",
+                        "{/deltemplate}",
+                        "{deltemplate ns.otherDel}",
+                        "  other",
+                        "{/deltemplate}"))
+            .build();
+
+    try (LoadedJar jar =
+        compileJarAndLoad(
+            parser, JarOptions.builder().setEntryPoints(ImmutableSet.of("ns.entry")).build())) {
+      assertThat(jar.loader.findResource(classFileName("ns.entry"))).isNotNull();
+      assertThat(jar.loader.findResource(classFileName("ns.callee"))).isNotNull();
+      assertThat(jar.loader.findResource(classFileName("ns.unused"))).isNull();
+      // Both implementations of the called deltemplate are kept.
+      assertThat(jar.delTemplates).hasSize(2);
+      assertThat(jar.render("ns.entry")).isEqualTo("default");
+    }
+
+    ParseResult parseResult = parser.parse();
+    try {
+      BytecodeCompiler.compileToJar(
+          parseResult.registry(),
+          parseResult.fileSet(),
+          ErrorReporter.exploding(),
+          parser.typeRegistry(),
+          Files.asByteSink(temporaryFolder.newFile("other.jar")),
+          JarOptions.builder().setEntryPoints(ImmutableSet.of("ns.missing")).build());
+      fail();
+    } catch (IllegalArgumentException expected) {
+      assertThat(expected).hasMessageThat().isEqualTo("Unknown entry point template: ns.missing");
+    }
+  }
+
+  @Test
+  public void testCompileToJar_callsToNeverDetachingTemplates() throws Exception {
+    SoyFileSetParser parser =
+        SoyFileSetParserBuilder.forFileContents(
+                Joiner.on("\n")
+                    .join(
+                        "{namespace ns}",
+                        "{template .callsAttributes kind=\"attributes\"}",
+                        "  {call .attributes /}",
+                        "{/template}",
+                        "{template .attributes kind=\"attributes\"}",
+                        "  class=\"foo\"",
+                        "{/template}",
+                        "{template .callsHtml}",
+                        "  {call .html /}",
+                        "{/template}",
+                        "{template .html}",
+                        "  hello",
+                        "{/template}"))
+            .build();
+    String popFrame = RenderContext.class.getName() + ".popFrame";
+
+    try (LoadedJar jar = compileJarAndLoad(parser, JarOptions.defaults())) {
+      // Attributes templates don't check the output limit, so the callee can never detach and the
+      // caller doesn't need a reattach point for the call.
+      assertThat(jar.invokedMethods("ns.callsAttributes")).doesNotContain(popFrame);
+      // Html templates may detach once the output limit is reached.
+      assertThat(jar.invokedMethods("ns.callsHtml")).contains(popFrame);
+      assertThat(jar.render("ns.callsAttributes")).isEqualTo("class=\"foo\"");
+    }
+  }
+
+  /**
+   * Compiles the parsed files to a jar and loads it in a new class loader, which is closed along
+   * with the returned jar.
+   */
+  private LoadedJar compileJarAndLoad(SoyFileSetParser parser, JarOptions options)
+      throws IOException {
+    ParseResult parseResult = parser.parse();
+    File file = temporaryFolder.newFile();
+    BytecodeCompiler.compileToJar(
+        parseResult.registry(),
+        parseResult.fileSet(),
+        ErrorReporter.exploding(),
+        parser.typeRegistry(),
+        Files.asByteSink(file),
+        options);
+    return new LoadedJar(file);
+  }
+
+  /** A jar written by {@link BytecodeCompiler#compileToJar}, loaded in its own class loader. */
+  private static final class LoadedJar implements Closeable {
+    /** The names of the classes loaded from the jar, in load order. */
+    final List<String> loadedClasses = new ArrayList<>();
+
+    final URLClassLoader loader;
+    final ImmutableSet<String> delTemplates;
+    final CompiledTemplates templates;
+
+    LoadedJar(File file) throws IOException {
+      this.loader =
+          new URLClassLoader(
+              new URL[] {file.toURI().toURL()}, BytecodeCompilerTest.class.getClassLoader()) {
+            @Override
+            protected Class<?> findClass(String name) throws ClassNotFoundException {
+              loadedClasses.add(name);
+              return super.findClass(name);
+            }
+          };
+      this.delTemplates = ImmutableSet.copyOf(readLines(Names.META_INF_DELTEMPLATE_PATH));
+      this.templates =
+          new CompiledTemplates(
+              delTemplates,
+              loader,
+              readLines(Names.META_INF_TEMPLATE_INDEX_PATH),
+              readLines(Names.META_INF_MSG_LOCALE_PATH));
+    }
+
+    private ImmutableList<String> readLines(String resourceName) throws IOException {
+      URL resource = loader.findResource(resourceName);
+      return resource == null
+          ? ImmutableList.of()
+          : Resources.asCharSource(resource, UTF_8).readLines();
+    }
+
+    /** Renders the template without any params in the default context. */
+    String render(String templateName) throws IOException {
+      return render(templateName, ParamStore.EMPTY_INSTANCE, getDefaultContext(templates));
+    }
+
+    /** Renders the template without injected params, asserting that it doesn't detach. */
+    String render(String templateName, SoyRecord params, RenderContext context)
+        throws IOException {
+      BufferingAppendable output = LoggingAdvisingAppendable.buffering();
+      assertThat(
+              templates
+                  .getTemplate(templateName)
+                  .render(params, ParamStore.EMPTY_INSTANCE, output, context))
+          .isEqualTo(RenderResult.done());
+      return output.toString();
+    }
+
+    /**
+     * Returns the methods invoked by the template's class, as the binary name of the owner, a dot
+     * and the method name.
+     */
+    ImmutableSet<String> invokedMethods(String templateName) throws IOException {
+      ClassNode node = new ClassNode();
+      try (InputStream in = loader.findResource(classFileName(templateName)).openStream()) {
+        new ClassReader(in).accept(node, 0);
+      }
+      ImmutableSet.Builder<String> invokedMethods = ImmutableSet.builder();
+      for (MethodNode method : node.methods) {
+        for (AbstractInsnNode instruction : method.instructions.toArray()) {
+          if (instruction instanceof MethodInsnNode) {
+            MethodInsnNode invoke = (MethodInsnNode) instruction;
+            invokedMethods.add(Type.getObjectType(invoke.owner).getClassName() + "." + invoke.name);
+          }
+        }
+      }
+      return invokedMethods.build();
+    }
+
+    @Override
+    public void close() throws IOException {
+      loader.close();
+    }
+  }
+
+  private static String classFileName(String templateName) {
+    return Names.javaClassNameFromSoyTemplateName(templateName).replace('.', '/') + ".class";
+  }
+
+  private static SoyMsg translation(long id, SoyMsgPart... parts) {
+    return SoyMsg.builder().setId(id).setLocaleString("fr").setParts(Arrays.asList(parts)).build();
+  }
+
+  @Test
+  public void testCompileToJar_templateIndex() throws Exception {
+    SoyFileSetParser parser =
+        SoyFileSetParserBuilder.forFileContents(
+                Joiner.on("\n")
+                    .join(
+                        "{namespace ns requirecss=\"ns.css\"}",
+                        "{template .foo}",
+                        "  {call .bar /}",
+                        "  {delcall ns.del /}",
+                        "{/template}",
+                        "{template .bar requirecss=\"bar.css\"}",
+                        "  {@inject barIj: string}",
+                        "  {$barIj}",
+                        "{/template}",
+                        "{deltemplate ns.del}",
+                        "  {@inject delIj: string}",
+                        "  {$delIj}",
+                        "{/deltemplate}"))
+            .build();
+
+    try (LoadedJar jar = compileJarAndLoad(parser, JarOptions.defaults())) {
+      CompiledTemplates templates = jar.templates;
+      assertThat(templates.getTransitiveIjParamsForTemplate("ns.foo"))
+          .containsExactly("barIj", "delIj");
+      assertThat(templates.getAllRequiredCssNamespaces("ns.foo", arg -> false, false))
+          .containsExactly("ns.css", "bar.css")
+          .inOrder();
+      assertThat(templates.getTemplateData("ns.foo").kind()).isEqualTo(ContentKind.HTML);
+      // None of the above needed a template class.
+      assertThat(jar.loadedClasses).isEmpty();
+
+      // But the classes are still there for rendering.
+      BufferingAppendable output = LoggingAdvisingAppendable.buffering();
+      assertThat(
+              templates
+                  .getTemplate("ns.bar")
+                  .render(
+                      ParamStore.EMPTY_INSTANCE,
+                      asRecord(ImmutableMap.of("barIj", "hello")),
+                      output,
+                      getDefaultContext(templates)))
+          .isEqualTo(RenderResult.done());
+      assertThat(output.toString()).isEqualTo("hello");
+      assertThat(jar.loadedClasses).isNotEmpty();
+    }
+  }
+
   @Test
   public void testCallCustomFunction() {
     SoyJavaFunction plusOneFunction =
@@ -1271,6 +1662,7 @@ public class BytecodeCompilerTest {
 
   private static final class FakeRenamingMap implements SoyCssRenamingMap {
     private final ImmutableMap<String, String> renamingMap;
+    int lookups;
 
     FakeRenamingMap(Map<String, String> renamingMap) {
       this.renamingMap = ImmutableMap.copyOf(renamingMap);
@@ -1279,6 +1671,7 @@ public class BytecodeCompilerTest {
     @Nullable
     @Override
     public String get(String key) {
+      lookups++;
       return renamingMap.get(key);
     }
   }
@@ -1531,6 +1924,9 @@ public class BytecodeCompilerTest {
   private static CompilingClassLoader createCompilingClassLoader(
       SoyFileSetParser parser, ParseResult parseResult) {
     return new CompilingClassLoader(
-        parseResult.fileSet(), parser.soyFileSuppliers(), parser.typeRegistry());
+        parseResult.fileSet(),
+        parser.soyFileSuppliers(),
+        parser.typeRegistry(),
+        /* concurrentCalls= */ false);
   }
 }
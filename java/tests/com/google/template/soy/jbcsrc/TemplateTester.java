@@ -84,7 +84,7 @@ import javax.annotation.CheckReturnValue;
 /** Utilities for testing compiled soy templates. */
 public final class TemplateTester {
 
-  private static RenderContext.Builder createDefaultBuilder(CompiledTemplates templates) {
+  static RenderContext.Builder createDefaultBuilder(CompiledTemplates templates) {
     return new RenderContext.Builder(
         templates,
         InternalPlugins.internalDirectives(new SoySimpleScope()).stream()
@@ -381,7 +381,8 @@ public final class TemplateTester {
             new TemplateCompiler(
                     CompiledTemplateMetadata.create(templateName),
                     templateNode,
-                    new JavaSourceFunctionCompiler(typeRegistry, ErrorReporter.exploding()))
+                    new JavaSourceFunctionCompiler(typeRegistry, ErrorReporter.exploding()),
+                    /* concurrentCalls= */ false)
                 .compile();
         checkClasses(classData);
         CompiledTemplates compiledTemplates =
@@ -95,6 +95,8 @@ public final class VeLoggingTest {
       switch (value.functionName()) {
         case "depth":
           return Integer.toString(depth);
+        case "markup":
+          return "<b>&'\"";
         default:
           throw new UnsupportedOperationException(value.toString());
       }
@@ -109,6 +111,14 @@ public final class VeLoggingTest {
     }
   }
 
+  @SoyFunctionSignature(name = "markup", value = @Signature(returnType = "string"))
+  private static final class MarkupFunction implements LoggingFunction {
+    @Override
+    public String getPlaceholder() {
+      return "markup_placeholder";
+    }
+  }
+
   @Test
   public void testBasicLogging_treeStructure() throws Exception {
     StringBuilder sb = new StringBuilder();
@@ -296,6 +306,19 @@ public final class VeLoggingTest {
     assertThat(sb.toString()).contains("depth_placeholder");
   }
 
+  @Test
+  public void testLogging_loggingFunction_escaped() throws Exception {
+    StringBuilder sb = new StringBuilder();
+    TestLogger testLogger = new TestLogger();
+    renderTemplate(
+        OutputAppendable.create(sb, testLogger),
+        testLogger,
+        "<div title=\"{markup()}\" data-x={markup()}></div>");
+    assertThat(sb.toString())
+        .isEqualTo(
+            "<div title=\"&lt;b&gt;&amp;&#39;&quot;\" data-x=&lt;b&gt;&amp;&#39;&quot;></div>");
+  }
+
   @Test
   public void testLogging_elvis() throws Exception {
     StringBuilder sb = new StringBuilder();
@@ -327,6 +350,7 @@ public final class VeLoggingTest {
                 Foo.getDescriptor())
             .setLoggingConfig(config)
             .addSoySourceFunction(new DepthFunction())
+            .addSoySourceFunction(new MarkupFunction())
             .runAutoescaper(true);
     SoyFileSetParser parser = builder.build();
     ParseResult parseResult = parser.parse();
@@ -18,9 +18,12 @@ package com.google.template.soy.jbcsrc.api;
 
 import static com.google.common.truth.Truth.assertThat;
 import static com.google.template.soy.data.UnsafeSanitizedContentOrdainer.ordainAsSafe;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.Assert.fail;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.SettableFuture;
 import com.google.template.soy.SoyFileSet;
 import com.google.template.soy.data.SanitizedContent;
@@ -28,10 +31,19 @@ import com.google.template.soy.data.SanitizedContent.ContentKind;
 import com.google.template.soy.data.SoyValueProvider;
 import com.google.template.soy.data.restricted.IntegerData;
 import com.google.template.soy.data.restricted.NullData;
+import com.google.template.soy.data.restricted.StringData;
 import com.google.template.soy.jbcsrc.api.SoySauce.Continuation;
 import com.google.template.soy.jbcsrc.api.SoySauce.WriteContinuation;
 import com.google.template.soy.jbcsrc.runtime.DetachableSoyValueProvider;
+import com.google.template.soy.msgs.SoyMsgBundle;
+import com.google.template.soy.msgs.restricted.SoyMsgBundleImpl;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -266,6 +278,34 @@ public class SoySauceTest {
     assertThat(builder.toString()).isEqualTo("Hello world");
   }
 
+  /** Verifies that static text is passed pre-encoded to a {@link Utf8AdvisingAppendable}. */
+  @Test
+  public void testRenderText_toUtf8Appendable() throws IOException {
+    TestUtf8Appendable builder = new TestUtf8Appendable();
+    WriteContinuation continuation = sauce.renderTemplate("strict_test.hello").renderText(builder);
+    assertThat(continuation.result()).isEqualTo(RenderResult.done());
+    assertThat(builder.toString()).isEqualTo("Hello world");
+    assertThat(new String(builder.bytes.toByteArray(), UTF_8)).isEqualTo("Hello world");
+  }
+
+  @Test
+  public void testRenderHtml_toPooledBuffer() throws IOException {
+    RenderBufferPool pool = new RenderBufferPool(1, 16, 1024);
+    Utf8RenderBuffer buffer = pool.acquire();
+    WriteContinuation continuation =
+        sauce.renderTemplate("strict_test.helloHtml").renderHtml(buffer);
+    assertThat(continuation.result()).isEqualTo(RenderResult.done());
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    buffer.writeTo(out);
+    assertThat(new String(out.toByteArray(), UTF_8)).isEqualTo("Hello world");
+    pool.release(buffer);
+
+    buffer = pool.acquire();
+    continuation = sauce.renderTemplate("strict_test.hello").renderText(buffer);
+    assertThat(continuation.result()).isEqualTo(RenderResult.done());
+    assertThat(buffer.toString()).isEqualTo("Hello world");
+  }
+
   @Test
   public void testDetaching_string() {
     SoySauce.Renderer tmpl = sauce.renderTemplate("strict_test.withParam");
@@ -295,6 +335,114 @@ public class SoySauceTest {
     assertThat(strictContinuation.get().getContent()).isEqualTo("Hello, pooh bear");
   }
 
+  @Test
+  public void testFragmentCache() {
+    TemplateFragmentCache cache = TemplateFragmentCache.create(1024);
+    assertThat(renderCacheable(cache, "Hello", "tigger")).isEqualTo("Hello, tigger");
+    assertThat(cache.stats().missCount()).isEqualTo(1);
+
+    assertThat(renderCacheable(cache, "Hello", "tigger")).isEqualTo("Hello, tigger");
+    assertThat(cache.stats().hitCount()).isEqualTo(1);
+
+    // All the params are part of the key
+    assertThat(renderCacheable(cache, "Hello", "pooh")).isEqualTo("Hello, pooh");
+    assertThat(renderCacheable(cache, "Goodbye", "tigger")).isEqualTo("Goodbye, tigger");
+    assertThat(cache.stats().hitCount()).isEqualTo(1);
+    assertThat(cache.stats().missCount()).isEqualTo(3);
+
+    // Rendering without a cache is unaffected
+    assertThat(
+            sauce
+                .renderTemplate("strict_test.cacheable")
+                .setData(ImmutableMap.of("greeting", "Hi", "name", "piglet"))
+                .renderHtml()
+                .get()
+                .getContent())
+        .isEqualTo("Hi, piglet");
+  }
+
+  @Test
+  public void testFragmentCache_unresolvedParamBypassesCache() {
+    TemplateFragmentCache cache = TemplateFragmentCache.create(1024);
+    SettableFuture<String> name = SettableFuture.create();
+    Continuation<String> continuation =
+        sauce
+            .renderTemplate("strict_test.cacheable")
+            .setData(ImmutableMap.of("greeting", "Hello", "name", name))
+            .setFragmentCache(cache)
+            .renderText();
+    assertThat(continuation.result().type()).isEqualTo(RenderResult.Type.DETACH);
+    name.set("eeyore");
+    continuation = continuation.continueRender();
+    assertThat(continuation.get()).isEqualTo("Hello, eeyore");
+    assertThat(cache.stats().requestCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void testFragmentCache_keyedOnLocale() {
+    TemplateFragmentCache cache = TemplateFragmentCache.create(1024);
+    assertThat(renderCacheable(cache, new SoyMsgBundleImpl("fr", ImmutableList.of())))
+        .isEqualTo("Hi, roo");
+    // Bundles are compared by locale, so a different bundle for the same locale reuses the fragment
+    assertThat(renderCacheable(cache, new SoyMsgBundleImpl("fr", ImmutableList.of())))
+        .isEqualTo("Hi, roo");
+    assertThat(cache.stats().hitCount()).isEqualTo(1);
+
+    assertThat(renderCacheable(cache, new SoyMsgBundleImpl("de", ImmutableList.of())))
+        .isEqualTo("Hi, roo");
+    assertThat(cache.stats().hitCount()).isEqualTo(1);
+    assertThat(cache.stats().missCount()).isEqualTo(2);
+  }
+
+  private String renderCacheable(TemplateFragmentCache cache, SoyMsgBundle msgBundle) {
+    return sauce
+        .renderTemplate("strict_test.cacheable")
+        .setData(ImmutableMap.of("greeting", "Hi", "name", "roo"))
+        .setMsgBundle(msgBundle)
+        .setFragmentCache(cache)
+        .renderText()
+        .get();
+  }
+
+  private String renderCacheable(TemplateFragmentCache cache, String greeting, String name) {
+    return sauce
+        .renderTemplate("strict_test.cacheable")
+        .setData(ImmutableMap.of("greeting", greeting, "name", name))
+        .setFragmentCache(cache)
+        .renderText()
+        .get();
+  }
+
+  @Test
+  public void testDetaching_resumeOnAnotherThread() throws Exception {
+    SoyMsgBundle rtlBundle = new SoyMsgBundleImpl("ar", ImmutableList.of());
+    String expected =
+        sauce
+            .renderTemplate("strict_test.bidiWrap")
+            .setData(ImmutableMap.of("p", "hello"))
+            .setMsgBundle(rtlBundle)
+            .renderText()
+            .get();
+    assertThat(expected).isNotEqualTo("hello");
+
+    SettableFuture<String> p = SettableFuture.create();
+    Continuation<String> continuation =
+        sauce
+            .renderTemplate("strict_test.bidiWrap")
+            .setData(ImmutableMap.of("p", p))
+            .setMsgBundle(rtlBundle)
+            .renderText();
+    assertThat(continuation.result().type()).isEqualTo(RenderResult.Type.DETACH);
+    p.set("hello");
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Continuation<String> resumed = executor.submit(continuation::continueRender).get();
+      assertThat(resumed.get()).isEqualTo(expected);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
   @Test
   public void testDetaching_appendable() throws IOException {
     SoySauce.Renderer tmpl = sauce.renderTemplate("strict_test.withParam");
@@ -345,6 +493,196 @@ public class SoySauceTest {
     }
   }
 
+  @Test
+  public void testInlinedPrivateCall() {
+    SoySauce.Renderer tmpl = sauce.renderTemplate("strict_test.callsPrivateHelper");
+
+    SettableFuture<String> p = SettableFuture.create();
+    Continuation<String> continuation = tmpl.setData(ImmutableMap.of("p", p)).renderText();
+    assertThat(continuation.result().type()).isEqualTo(RenderResult.Type.DETACH);
+    p.set("eeyore");
+    continuation = continuation.continueRender();
+    assertThat(continuation.result()).isEqualTo(RenderResult.done());
+    assertThat(continuation.get()).isEqualTo("<b>Hello, eeyore!</b>");
+
+    // Stack traces still point at the caller source, which is where the bad value is passed.
+    SoyValueProvider intProvider =
+        new DetachableSoyValueProvider() {
+          @Override
+          protected RenderResult doResolve() {
+            resolvedValue = IntegerData.ZERO;
+            return RenderResult.done();
+          }
+        };
+    try {
+      tmpl.setData(ImmutableMap.of("p", intProvider)).renderHtml();
+      fail();
+    } catch (ClassCastException cce) {
+      assertThat(cce.getStackTrace()[0].toString())
+          .isEqualTo("strict_test.callsPrivateHelper.render(strict.soy:84)");
+    }
+  }
+
+  @Test
+  public void testIndependentCalls_sequentialByDefault() {
+    SettableFuture<String> a = SettableFuture.create();
+    ResolveTrackingProvider b = new ResolveTrackingProvider("b");
+    Continuation<String> continuation =
+        compileWithConcurrentCalls()
+            .renderTemplate("strict_test.independentCalls")
+            .setData(ImmutableMap.of("a", a, "b", b))
+            .renderText();
+    assertThat(continuation.result().future()).isEqualTo(a);
+    assertThat(b.resolvedOn).isNull();
+    a.set("a");
+    continuation = continuation.continueRender();
+    assertThat(continuation.get()).isEqualTo("Hello, a and Hello, b");
+  }
+
+  @Test
+  public void testIndependentCalls_notCompiledForConcurrency() {
+    CountingExecutor executor = new CountingExecutor(MoreExecutors.directExecutor());
+    Continuation<String> continuation =
+        sauce
+            .renderTemplate("strict_test.independentCalls")
+            .setData(ImmutableMap.of("a", "a", "b", "b"))
+            .setConcurrentRenderExecutor(executor)
+            .renderText();
+    assertThat(continuation.get()).isEqualTo("Hello, a and Hello, b");
+    assertThat(executor.tasks.get()).isEqualTo(0);
+  }
+
+  @Test
+  public void testIndependentCalls_concurrent() {
+    SettableFuture<String> a = SettableFuture.create();
+    ResolveTrackingProvider b = new ResolveTrackingProvider("b");
+    CountingExecutor executor = new CountingExecutor(MoreExecutors.directExecutor());
+    Continuation<String> continuation =
+        compileWithConcurrentCalls()
+            .renderTemplate("strict_test.independentCalls")
+            .setData(ImmutableMap.of("a", a, "b", b))
+            .setConcurrentRenderExecutor(executor)
+            .renderText();
+    assertThat(continuation.result().type()).isEqualTo(RenderResult.Type.DETACH);
+    // The first call is waiting on a future so it is rendered in place, but the second call has
+    // already been rendered on the executor.
+    assertThat(executor.tasks.get()).isEqualTo(1);
+    assertThat(b.resolvedOn).isEqualTo(Thread.currentThread());
+    a.set("a");
+    continuation = continuation.continueRender();
+    assertThat(continuation.result()).isEqualTo(RenderResult.done());
+    assertThat(continuation.get()).isEqualTo("Hello, a and Hello, b");
+  }
+
+  @Test
+  public void testIndependentCalls_concurrentOnThreadPool() throws Exception {
+    SoySauce concurrentSauce = compileWithConcurrentCalls();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      for (int i = 0; i < 100; i++) {
+        ResolveTrackingProvider a = new ResolveTrackingProvider("a" + i);
+        ResolveTrackingProvider b = new ResolveTrackingProvider("b" + i);
+        Continuation<String> continuation =
+            concurrentSauce
+                .renderTemplate("strict_test.independentCalls")
+                .setData(ImmutableMap.of("a", a, "b", b))
+                .setConcurrentRenderExecutor(executor)
+                .renderText();
+        while (continuation.result().type() == RenderResult.Type.DETACH) {
+          continuation.result().future().get();
+          continuation = continuation.continueRender();
+        }
+        assertThat(continuation.get()).isEqualTo("Hello, a" + i + " and Hello, b" + i);
+        // Lazy params are resolved before the calls are handed off.
+        assertThat(a.resolvedOn).isEqualTo(Thread.currentThread());
+        assertThat(b.resolvedOn).isEqualTo(Thread.currentThread());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testIndependentCalls_concurrentFailure() {
+    SoyValueProvider a =
+        new DetachableSoyValueProvider() {
+          @Override
+          protected RenderResult doResolve() {
+            throw new IllegalStateException("boom");
+          }
+        };
+    SoySauce.Renderer tmpl =
+        compileWithConcurrentCalls()
+            .renderTemplate("strict_test.independentCalls")
+            .setData(ImmutableMap.of("a", a, "b", "b"))
+            .setConcurrentRenderExecutor(MoreExecutors.directExecutor());
+    try {
+      tmpl.renderText();
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessageThat().isEqualTo("boom");
+    }
+  }
+
+  @Test
+  public void testPrefetchFutures() {
+    SettableFuture<String> a = SettableFuture.create();
+    SettableFuture<String> b = SettableFuture.create();
+    Continuation<String> continuation =
+        sauce
+            .renderTemplate("strict_test.independentCalls")
+            .setData(ImmutableMap.of("a", a, "b", b))
+            .setPrefetchFutures(true)
+            .renderText();
+    // We detach once, on a future for both params.
+    Future<?> prefetch = continuation.result().future();
+    b.set("b");
+    assertThat(prefetch.isDone()).isFalse();
+    a.set("a");
+    assertThat(prefetch.isDone()).isTrue();
+    continuation = continuation.continueRender();
+    assertThat(continuation.result()).isEqualTo(RenderResult.done());
+    assertThat(continuation.get()).isEqualTo("Hello, a and Hello, b");
+  }
+
+  private static SoySauce compileWithConcurrentCalls() {
+    SoyFileSet.Builder builder = SoyFileSet.builder();
+    builder.add(SoySauceTest.class.getResource("strict.soy"));
+    builder.setExperimentalFeatures(ImmutableList.of("jbcsrc_concurrent_calls"));
+    return builder.build().compileTemplates();
+  }
+
+  private static final class ResolveTrackingProvider extends DetachableSoyValueProvider {
+    final String value;
+    volatile Thread resolvedOn;
+
+    ResolveTrackingProvider(String value) {
+      this.value = value;
+    }
+
+    @Override
+    protected RenderResult doResolve() {
+      resolvedOn = Thread.currentThread();
+      resolvedValue = StringData.forValue(value);
+      return RenderResult.done();
+    }
+  }
+
+  private static final class CountingExecutor implements Executor {
+    final Executor delegate;
+    final AtomicInteger tasks = new AtomicInteger();
+
+    CountingExecutor(Executor delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+      tasks.incrementAndGet();
+      delegate.execute(task);
+    }
+  }
+
   /** Tests that a parameter set to {@code NullData} doesn't trigger the default parameter logic. */
   @Test
   public void testDefaultParam() {
@@ -354,6 +692,46 @@ public class SoySauceTest {
         .isEqualTo("null");
   }
 
+  private static final class TestUtf8Appendable implements Utf8AdvisingAppendable {
+    private final StringBuilder delegate = new StringBuilder();
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    @Override
+    public TestUtf8Appendable appendBytes(byte[] utf8, int start, int end) {
+      bytes.write(utf8, start, end - start);
+      delegate.append(new String(utf8, start, end - start, UTF_8));
+      return this;
+    }
+
+    @Override
+    public TestUtf8Appendable append(CharSequence s) {
+      delegate.append(s);
+      return this;
+    }
+
+    @Override
+    public TestUtf8Appendable append(CharSequence s, int start, int end) {
+      delegate.append(s, start, end);
+      return this;
+    }
+
+    @Override
+    public TestUtf8Appendable append(char c) {
+      delegate.append(c);
+      return this;
+    }
+
+    @Override
+    public boolean softLimitReached() {
+      return false;
+    }
+
+    @Override
+    public String toString() {
+      return delegate.toString();
+    }
+  }
+
   private static final class TestAppendable implements AdvisingAppendable {
     private final StringBuilder delegate = new StringBuilder();
     boolean softLimitReached;
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.template.soy.jbcsrc.api;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class Utf8RenderBufferTest {
+
+  @Test
+  public void testEncodesLikeString() throws Exception {
+    String text = "aé中😀z";
+    Utf8RenderBuffer buffer = new Utf8RenderBuffer(1);
+    buffer.append(text, 0, 3).append(text.charAt(3)).append(text.charAt(4));
+    byte[] utf8 = "z".getBytes(UTF_8);
+    buffer.appendBytes(utf8, 0, utf8.length);
+
+    assertThat(buffer.toByteArray()).isEqualTo(text.getBytes(UTF_8));
+    assertThat(buffer.toString()).isEqualTo(text);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    buffer.writeTo(out);
+    assertThat(out.toByteArray()).isEqualTo(text.getBytes(UTF_8));
+    assertThat(buffer.asByteBuffer().remaining()).isEqualTo(buffer.size());
+  }
+
+  @Test
+  public void testUnpairedSurrogates() {
+    String text = "\ud83d-\ude00\ud83d";
+    Utf8RenderBuffer buffer = new Utf8RenderBuffer().append(text);
+    assertThat(buffer.toByteArray()).isEqualTo(text.getBytes(UTF_8));
+  }
+
+  @Test
+  public void testReadingDoesNotSplitSurrogatePairs() throws Exception {
+    String text = "a😀";
+    Utf8RenderBuffer buffer = new Utf8RenderBuffer().append(text, 0, 2);
+    // The trailing high surrogate reads as unpaired until its low surrogate arrives.
+    assertThat(buffer.size()).isEqualTo(2);
+    assertThat(buffer.toString()).isEqualTo("a?");
+    buffer.writeTo(new ByteArrayOutputStream());
+
+    buffer.append(text.charAt(2));
+    assertThat(buffer.toByteArray()).isEqualTo(text.getBytes(UTF_8));
+    assertThat(buffer.size()).isEqualTo(5);
+  }
+
+  @Test
+  public void testResetKeepsCapacity() {
+    Utf8RenderBuffer buffer = new Utf8RenderBuffer(4).append("hello world");
+    int capacity = buffer.capacity();
+    buffer.reset();
+    assertThat(buffer.size()).isEqualTo(0);
+    assertThat(buffer.capacity()).isEqualTo(capacity);
+    assertThat(buffer.append("hi").toString()).isEqualTo("hi");
+  }
+
+  @Test
+  public void testPool() {
+    RenderBufferPool pool = new RenderBufferPool(1, 16, 64);
+    Utf8RenderBuffer buffer = pool.acquire();
+    buffer.append("text");
+    pool.release(buffer);
+    Utf8RenderBuffer reused = pool.acquire();
+    assertThat(reused).isSameInstanceAs(buffer);
+    assertThat(reused.size()).isEqualTo(0);
+
+    // Buffers that grew too large are dropped rather than pooled.
+    reused.append(new String(new char[100]));
+    pool.release(reused);
+    assertThat(pool.acquire()).isNotSameInstanceAs(reused);
+  }
+}
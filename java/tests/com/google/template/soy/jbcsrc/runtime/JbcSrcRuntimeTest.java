@@ -26,6 +26,7 @@ import com.google.template.soy.data.SoyValue;
 import com.google.template.soy.data.SoyValueProvider;
 import com.google.template.soy.data.restricted.StringData;
 import com.google.template.soy.jbcsrc.api.RenderResult;
+import com.google.template.soy.jbcsrc.runtime.JbcSrcRuntime.MsgLayout;
 import com.google.template.soy.jbcsrc.runtime.JbcSrcRuntime.MsgRenderer;
 import com.google.template.soy.msgs.restricted.SoyMsgPart;
 import com.google.template.soy.msgs.restricted.SoyMsgPlaceholderPart;
@@ -40,13 +41,12 @@ public final class JbcSrcRuntimeTest {
 
   @Test
   public void testChainOfOrderConstraints() {
-    MsgRenderer renderer = createRenderer(SoyMsgRawTextPart.of("Hello "));
-    renderer.setPlaceholderAndOrdering("A", StringData.forValue("foo"), "B");
     // can't extend a chain from B to C
     IllegalArgumentException iae =
         assertThrows(
             IllegalArgumentException.class,
-            () -> renderer.setPlaceholderAndOrdering("B", StringData.forValue("bar"), "C"));
+            () ->
+                MsgLayout.create(ImmutableList.of("A", "B", "C"), ImmutableList.of("B", "C", "")));
     assertThat(iae)
         .hasMessageThat()
         .isEqualTo(
@@ -57,7 +57,9 @@ public final class JbcSrcRuntimeTest {
     iae =
         assertThrows(
             IllegalArgumentException.class,
-            () -> renderer.setPlaceholderAndOrdering("Foo", StringData.forValue("bar"), "A"));
+            () ->
+                MsgLayout.create(
+                    ImmutableList.of("A", "B", "Foo"), ImmutableList.of("B", "", "A")));
     assertThat(iae)
         .hasMessageThat()
         .isEqualTo(
@@ -69,23 +71,62 @@ public final class JbcSrcRuntimeTest {
   public void testMessageRendering() {
     MsgRenderer renderer =
         createRenderer(
+            MsgLayout.create(ImmutableList.of("NAME"), ImmutableList.of("")),
             SoyMsgRawTextPart.of("Hello "),
             new SoyMsgPlaceholderPart("NAME"),
             SoyMsgRawTextPart.of("."));
-    renderer.setPlaceholder("NAME", StringData.forValue("world"));
+    renderer.setPlaceholder(0, StringData.forValue("world"));
     assertRendersAs(renderer, "Hello world.");
   }
 
+  @Test
+  public void testMessageRendering_reusesResolvedTranslation() {
+    MsgLayout layout =
+        MsgLayout.create(ImmutableList.of("FIRST", "LAST"), ImmutableList.of("", ""));
+    // a translation that reorders the placeholders
+    ImmutableList<SoyMsgPart> parts =
+        ImmutableList.of(
+            new SoyMsgPlaceholderPart("LAST"),
+            SoyMsgRawTextPart.of(", "),
+            new SoyMsgPlaceholderPart("FIRST"));
+    for (int i = 0; i < 2; i++) {
+      MsgRenderer renderer =
+          new MsgRenderer(/* msgId= */ 0L, parts, ULocale.US, layout, /* htmlEscape= */ false);
+      renderer.setPlaceholder(0, StringData.forValue("Ada"));
+      renderer.setPlaceholder(1, StringData.forValue("Lovelace"));
+      assertRendersAs(renderer, "Lovelace, Ada");
+    }
+    // alternating with another locale's translation still reuses the resolved placeholders
+    ImmutableList<SoyMsgPart> otherParts =
+        ImmutableList.of(new SoyMsgPlaceholderPart("FIRST"), new SoyMsgPlaceholderPart("LAST"));
+    int[] indices = layout.placeholderIndices(parts);
+    int[] otherIndices = layout.placeholderIndices(otherParts);
+    assertThat(layout.placeholderIndices(parts)).isSameInstanceAs(indices);
+    assertThat(layout.placeholderIndices(otherParts)).isSameInstanceAs(otherIndices);
+  }
+
+  @Test
+  public void testMessageRendering_unknownPlaceholder() {
+    MsgRenderer renderer =
+        createRenderer(
+            MsgLayout.create(ImmutableList.of("NAME"), ImmutableList.of("")),
+            new SoyMsgPlaceholderPart("OTHER"));
+    renderer.setPlaceholder(0, StringData.forValue("world"));
+    assertThat(assertThrows(IllegalStateException.class, renderer::status))
+        .hasMessageThat()
+        .isEqualTo("No value provided for placeholder: 'OTHER', expected one of [NAME]");
+  }
+
   @Test
   public void testMessageRendering_orderConstraints() {
     MsgRenderer renderer =
         createRenderer(
+            LINK_LAYOUT,
             SoyMsgRawTextPart.of("Hello "),
             new SoyMsgPlaceholderPart("LINK_START"),
             SoyMsgRawTextPart.of("world."),
             new SoyMsgPlaceholderPart("LINK_END"));
-    renderer.setPlaceholderAndOrdering("LINK_START", StringData.forValue("<a>"), "LINK_END");
-    renderer.setPlaceholder("LINK_END", StringData.forValue("</a>"));
+    setLinkPlaceholders(renderer);
     assertRendersAs(renderer, "Hello <a>world.</a>");
   }
 
@@ -94,12 +135,12 @@ public final class JbcSrcRuntimeTest {
     // imagine that the translator has reordered the placeholders incorrectly
     MsgRenderer renderer =
         createRenderer(
+            LINK_LAYOUT,
             SoyMsgRawTextPart.of("Hello "),
             new SoyMsgPlaceholderPart("LINK_END"),
             SoyMsgRawTextPart.of("world."),
             new SoyMsgPlaceholderPart("LINK_START"));
-    renderer.setPlaceholderAndOrdering("LINK_START", StringData.forValue("<a>"), "LINK_END");
-    renderer.setPlaceholder("LINK_END", StringData.forValue("</a>"));
+    setLinkPlaceholders(renderer);
     assertThat(assertThrows(IllegalStateException.class, renderer::status))
         .hasMessageThat()
         .isEqualTo(
@@ -111,11 +152,11 @@ public final class JbcSrcRuntimeTest {
     // imagine that the translator has dropped a start placeholder
     MsgRenderer renderer =
         createRenderer(
+            LINK_LAYOUT,
             SoyMsgRawTextPart.of("Hello "),
             SoyMsgRawTextPart.of("world."),
             new SoyMsgPlaceholderPart("LINK_END"));
-    renderer.setPlaceholderAndOrdering("LINK_START", StringData.forValue("<a>"), "LINK_END");
-    renderer.setPlaceholder("LINK_END", StringData.forValue("</a>"));
+    setLinkPlaceholders(renderer);
     assertThat(assertThrows(IllegalStateException.class, renderer::status))
         .hasMessageThat()
         .isEqualTo(
@@ -127,11 +168,11 @@ public final class JbcSrcRuntimeTest {
     // imagine that the translator has dropped an end placeholder
     MsgRenderer renderer =
         createRenderer(
+            LINK_LAYOUT,
             SoyMsgRawTextPart.of("Hello "),
             new SoyMsgPlaceholderPart("LINK_START"),
             SoyMsgRawTextPart.of("world."));
-    renderer.setPlaceholderAndOrdering("LINK_START", StringData.forValue("<a>"), "LINK_END");
-    renderer.setPlaceholder("LINK_END", StringData.forValue("</a>"));
+    setLinkPlaceholders(renderer);
     assertThat(assertThrows(IllegalStateException.class, renderer::status))
         .hasMessageThat()
         .isEqualTo(
@@ -145,19 +186,31 @@ public final class JbcSrcRuntimeTest {
     // placeholder
     MsgRenderer renderer =
         createRenderer(
+            MsgLayout.create(
+                ImmutableList.of("LINK_START_1", "LINK_START_2", "LINK_END"),
+                ImmutableList.of("LINK_END", "LINK_END", "")),
             new SoyMsgPlaceholderPart("LINK_START_1"),
             SoyMsgRawTextPart.of("Hello"),
             new SoyMsgPlaceholderPart("LINK_END"),
             new SoyMsgPlaceholderPart("LINK_START_2"),
             SoyMsgRawTextPart.of("world."),
             new SoyMsgPlaceholderPart("LINK_END"));
-    renderer.setPlaceholderAndOrdering("LINK_START_1", StringData.forValue("<a>"), "LINK_END");
-    renderer.setPlaceholderAndOrdering("LINK_START_2", StringData.forValue("<a>"), "LINK_END");
-    renderer.setPlaceholder("LINK_END", StringData.forValue("</a>"));
+    renderer.setPlaceholder(0, StringData.forValue("<a>"));
+    renderer.setPlaceholder(1, StringData.forValue("<a>"));
+    renderer.setPlaceholder(2, StringData.forValue("</a>"));
     // renders fine
     assertRendersAs(renderer, "<a>Hello</a><a>world.</a>");
   }
 
+  private static final MsgLayout LINK_LAYOUT =
+      MsgLayout.create(
+          ImmutableList.of("LINK_START", "LINK_END"), ImmutableList.of("LINK_END", ""));
+
+  private static void setLinkPlaceholders(MsgRenderer renderer) {
+    renderer.setPlaceholder(0, StringData.forValue("<a>"));
+    renderer.setPlaceholder(1, StringData.forValue("</a>"));
+  }
+
   static class FakeProvider implements SoyValueProvider {
     RenderResult result;
     int calls;
@@ -235,11 +288,8 @@ public final class JbcSrcRuntimeTest {
     assertThat(renderer.resolve().coerceToString()).isEqualTo(expected);
   }
 
-  private MsgRenderer createRenderer(SoyMsgPart... parts) {
-    ImmutableList<SoyMsgPart> partsCopy = ImmutableList.copyOf(parts);
-    int numPlaceholders =
-        (int) partsCopy.stream().filter(p -> p instanceof SoyMsgPlaceholderPart).count();
-    return new JbcSrcRuntime.MsgRenderer(
-        /* msgId=*/ 0L, partsCopy, ULocale.US, numPlaceholders, /* htmlEscape= */ false);
+  private MsgRenderer createRenderer(MsgLayout layout, SoyMsgPart... parts) {
+    return new MsgRenderer(
+        /* msgId= */ 0L, ImmutableList.copyOf(parts), ULocale.US, layout, /* htmlEscape= */ false);
   }
 }
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.template.soy.jbcsrc.shared;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.template.soy.logging.LoggableElementMetadata;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link CompiledTemplates}. */
+@RunWith(JUnit4.class)
+public final class CompiledTemplatesTest {
+
+  /** Stands in for a generated VE metadata class. */
+  public static final class FakeVeMetadata {
+    static final LoggableElementMetadata METADATA = LoggableElementMetadata.getDefaultInstance();
+
+    public static LoggableElementMetadata getMetadata(long veId) {
+      if (veId != 1) {
+        throw new IllegalArgumentException("unknown ve: " + veId);
+      }
+      return METADATA;
+    }
+
+    private FakeVeMetadata() {}
+  }
+
+  @Test
+  public void testGetVeMetadata() {
+    CompiledTemplates templates =
+        new CompiledTemplates(ImmutableSet.of(), CompiledTemplatesTest.class.getClassLoader());
+    String className = FakeVeMetadata.class.getName();
+
+    assertThat(templates.getVeMetadata(className, 1)).isSameInstanceAs(FakeVeMetadata.METADATA);
+    assertThat(templates.getVeMetadata(className, 1)).isSameInstanceAs(FakeVeMetadata.METADATA);
+    // Exceptions thrown by the accessor are propagated as is.
+    IllegalArgumentException e =
+        assertThrows(IllegalArgumentException.class, () -> templates.getVeMetadata(className, 2));
+    assertThat(e).hasMessageThat().isEqualTo("unknown ve: 2");
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.template.soy.jbcsrc.shared;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+
+import com.google.template.soy.data.SanitizedContent.ContentKind;
+import com.google.template.soy.jbcsrc.shared.CompiledTemplates.TemplateData;
+import com.google.template.soy.jbcsrc.shared.TemplateMetadata.DelTemplateMetadata;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link TemplateMetadataIndex}. */
+@RunWith(JUnit4.class)
+public final class TemplateMetadataIndexTest {
+
+  @TemplateMetadata(
+      contentKind = ContentKind.HTML,
+      callees = {"ns.a", "ns.b"},
+      delCallees = {"ns.del"},
+      injectedParams = {"foo", "bar"},
+      requiredCssNames = {"css.a"},
+      deltemplateMetadata =
+          @DelTemplateMetadata(name = "ns.del", delPackage = "pkg", variant = "a|b,c\\d\ne"))
+  private static final class Template {}
+
+  @Test
+  public void testRoundTrip_escapesDelimiters() {
+    TemplateMetadata metadata = Template.class.getAnnotation(TemplateMetadata.class);
+    String entry = TemplateMetadataIndex.toMetaInfEntry("ns.template", metadata);
+    // The index is read line by line, so the entry must be a single line.
+    assertThat(entry.indexOf('\n')).isEqualTo(entry.length() - 1);
+
+    TemplateData data =
+        TemplateMetadataIndex.fromMetaInfEntry(
+            entry.substring(0, entry.length() - 1), getClass().getClassLoader());
+    assertThat(data.kind()).isEqualTo(ContentKind.HTML);
+    assertThat(data.callees).containsExactly("ns.a", "ns.b").inOrder();
+    assertThat(data.delCallees).containsExactly("ns.del");
+    assertThat(data.injectedParams).containsExactly("foo", "bar").inOrder();
+    assertThat(data.requiredCssNamespaces).containsExactly("css.a");
+    assertThat(data.delTemplateName).hasValue("ns.del");
+    assertThat(data.delPackage).hasValue("pkg");
+    assertThat(data.variant).isEqualTo("a|b,c\\d\ne");
+  }
+
+  @Test
+  public void testRoundTrip_emptyLists() {
+    TemplateMetadata metadata = Empty.class.getAnnotation(TemplateMetadata.class);
+    String entry = TemplateMetadataIndex.toMetaInfEntry("ns.empty", metadata);
+    TemplateData data =
+        TemplateMetadataIndex.fromMetaInfEntry(
+            entry.substring(0, entry.length() - 1), getClass().getClassLoader());
+    assertThat(data.kind()).isEqualTo(ContentKind.TEXT);
+    assertThat(data.callees).isEmpty();
+    assertThat(data.injectedParams).isEmpty();
+    assertThat(data.delTemplateName).isEmpty();
+    assertThat(data.delPackage).isEmpty();
+    assertThat(data.variant).isEmpty();
+  }
+
+  @TemplateMetadata(contentKind = ContentKind.TEXT)
+  private static final class Empty {}
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.template.soy.jssrc.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.util.stream.Collectors.toList;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.template.soy.SoyFileSetParser.ParseResult;
+import com.google.template.soy.error.ErrorReporter;
+import com.google.template.soy.error.SoyError;
+import com.google.template.soy.error.SoyErrorKind;
+import com.google.template.soy.jssrc.SoyJsSrcOptions;
+import com.google.template.soy.shared.internal.SoySimpleScope;
+import com.google.template.soy.soytree.SoyFileNode;
+import com.google.template.soy.testing.SoyFileSetParserBuilder;
+import com.google.template.soy.types.SoyTypeRegistryBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class PerFileCodeGeneratorTest {
+  private static final SoyErrorKind ERROR = SoyErrorKind.of("Error in {0}.");
+
+  private static String[] testFiles() {
+    String[] files = new String[6];
+    for (int i = 0; i < files.length; i++) {
+      files[i] =
+          "{namespace ns"
+              + i
+              + "}\n"
+              + "{template foo}\n"
+              + "  {@param x: string}\n"
+              + "  {msg desc=\"a message\"}Hello {$x}{/msg}\n"
+              + "  <div dir=\"{bidiDirAttr($x)}\">{$x |bidiSpanWrap}</div>\n"
+              + "{/template}\n";
+    }
+    return files;
+  }
+
+  @Test
+  public void testGenerate_sinkAndErrorsInFileOrder() {
+    ParseResult parseResult = SoyFileSetParserBuilder.forFileContents(testFiles()).parse();
+    List<SoyFileNode> files = parseResult.fileSet().getChildren();
+    ErrorReporter errorReporter = ErrorReporter.create(ImmutableMap.of());
+    List<String> generated = new ArrayList<>();
+
+    PerFileCodeGenerator.generate(
+        files,
+        /* parallelism= */ 4,
+        errorReporter,
+        (file, fileReporter) -> {
+          // Make the earlier files finish last.
+          try {
+            Thread.sleep(10L * (files.size() - files.indexOf(file)));
+          } catch (InterruptedException e) {
+            throw new AssertionError(e);
+          }
+          fileReporter.report(file.getSourceLocation(), ERROR, file.getNamespace());
+          return file.getNamespace();
+        },
+        generated::add);
+
+    List<String> expected = files.stream().map(SoyFileNode::getNamespace).collect(toList());
+    assertThat(generated).containsExactlyElementsIn(expected).inOrder();
+    assertThat(errorReporter.getErrors().stream().map(SoyError::message).collect(toList()))
+        .containsExactlyElementsIn(
+            expected.stream().map(ns -> "Error in " + ns + ".").collect(toList()))
+        .inOrder();
+  }
+
+  @Test
+  public void testGenJsSrc_parallelMatchesSerial() {
+    assertThat(genJsSrc(/* codegenThreads= */ 4)).isEqualTo(genJsSrc(/* codegenThreads= */ 1));
+  }
+
+  private static List<String> genJsSrc(int codegenThreads) {
+    // The backend modifies the tree, so parse the files again for every run.
+    ParseResult parseResult = SoyFileSetParserBuilder.forFileContents(testFiles()).parse();
+    SoyJsSrcOptions options = new SoyJsSrcOptions();
+    options.setBidiGlobalDir(-1);
+    options.setCodegenThreads(codegenThreads);
+    List<String> jsFiles =
+        new JsSrcMain(new SoySimpleScope(), SoyTypeRegistryBuilder.create())
+            .genJsSrc(
+                parseResult.fileSet(),
+                parseResult.registry(),
+                options,
+                /* msgBundle= */ null,
+                ErrorReporter.exploding());
+    assertThat(jsFiles).hasSize(testFiles().length);
+    return jsFiles;
+  }
+}
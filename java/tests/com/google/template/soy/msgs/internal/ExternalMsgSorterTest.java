@@ -0,0 +1,146 @@
+/*
+ * Copyright 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.template.soy.msgs.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.template.soy.base.SourceFilePath;
+import com.google.template.soy.base.SourceLocation;
+import com.google.template.soy.error.ErrorReporter;
+import com.google.template.soy.msgs.restricted.SoyMsg;
+import com.google.template.soy.msgs.restricted.SoyMsgPart.Case;
+import com.google.template.soy.msgs.restricted.SoyMsgPlaceholderPart;
+import com.google.template.soy.msgs.restricted.SoyMsgPluralCaseSpec;
+import com.google.template.soy.msgs.restricted.SoyMsgPluralPart;
+import com.google.template.soy.msgs.restricted.SoyMsgPluralRemainderPart;
+import com.google.template.soy.msgs.restricted.SoyMsgRawTextPart;
+import com.google.template.soy.msgs.restricted.SoyMsgSelectPart;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class ExternalMsgSorterTest {
+
+  @Test
+  public void testSortsAndMergesAcrossSpilledRuns() throws Exception {
+    ErrorReporter errorReporter = ErrorReporter.create(ImmutableMap.of());
+    List<SoyMsg> actual = new ArrayList<>();
+    try (ExternalMsgSorter sorter = new ExternalMsgSorter(2, errorReporter)) {
+      sorter.addAll(1, ImmutableList.of(msg(30, "b.soy", 1), msg(10, "b.soy", 2)));
+      sorter.addAll(0, ImmutableList.of(msg(20, "a.soy", 1), msg(10, "a.soy", 5)));
+      sorter.addAll(2, ImmutableList.of(msg(5, "c.soy", 1)));
+      assertThat(sorter.numSpilledRuns()).isEqualTo(2);
+      sorter.sortedMsgs().forEach(actual::add);
+    }
+    assertThat(errorReporter.getErrors()).isEmpty();
+
+    assertThat(Lists.transform(actual, SoyMsg::getId)).containsExactly(5L, 10L, 20L, 30L).inOrder();
+    // The message from the earliest file wins, and gains the other locations.
+    SoyMsg merged = actual.get(1);
+    assertThat(merged.getExampleSourceLocation().getFilePath().path()).isEqualTo("a.soy");
+    assertThat(merged.getSourceLocations()).hasSize(2);
+  }
+
+  @Test
+  public void testMergesInFileSetOrder() throws Exception {
+    ErrorReporter errorReporter = ErrorReporter.create(ImmutableMap.of());
+    List<SoyMsg> actual = new ArrayList<>();
+    try (ExternalMsgSorter sorter = new ExternalMsgSorter(1, errorReporter)) {
+      // Files are added out of order, and their paths do not sort the same way as the file set.
+      sorter.addAll(2, ImmutableList.of(msg(10, "a.soy", 1)));
+      sorter.addAll(0, ImmutableList.of(msg(10, "z.soy", 7)));
+      sorter.addAll(1, ImmutableList.of(msg(10, "m.soy", 3)));
+      sorter.sortedMsgs().forEach(actual::add);
+    }
+    assertThat(errorReporter.getErrors()).isEmpty();
+
+    SoyMsg merged = Iterables.getOnlyElement(actual);
+    assertThat(
+            Iterables.transform(
+                merged.getSourceLocations(), l -> l.sourceLocation().getFilePath().path()))
+        .containsExactly("z.soy", "m.soy", "a.soy")
+        .inOrder();
+  }
+
+  @Test
+  public void testRoundTripsAllMessageParts() throws Exception {
+    SoyMsg original =
+        SoyMsg.builder()
+            .setId(42)
+            .setAlternateId(43)
+            .setMeaning("meaning")
+            .setDesc("a description [with attributes]")
+            .setContentType("text/html")
+            .setIsHidden(true)
+            .setIsPlrselMsg(true)
+            .setHasFallback(true)
+            .addSourceLocation(location("a.soy", 3), "ns.template")
+            .setParts(
+                ImmutableList.of(
+                    new SoyMsgPluralPart(
+                        "NUM",
+                        1,
+                        ImmutableList.of(
+                            Case.create(
+                                new SoyMsgPluralCaseSpec(1),
+                                ImmutableList.of(SoyMsgRawTextPart.of("one"))),
+                            Case.create(
+                                new SoyMsgPluralCaseSpec(SoyMsgPluralCaseSpec.Type.OTHER),
+                                ImmutableList.of(
+                                    new SoyMsgPluralRemainderPart("NUM"),
+                                    new SoyMsgSelectPart(
+                                        "GENDER",
+                                        ImmutableList.of(
+                                            Case.create(
+                                                "female",
+                                                ImmutableList.of(
+                                                    new SoyMsgPlaceholderPart(
+                                                        "NAME", Optional.of("Alice")))),
+                                            Case.create(
+                                                null,
+                                                ImmutableList.of(
+                                                    SoyMsgRawTextPart.of("☃")))))))))))
+            .build();
+    ErrorReporter errorReporter = ErrorReporter.create(ImmutableMap.of());
+    try (ExternalMsgSorter sorter = new ExternalMsgSorter(1, errorReporter)) {
+      sorter.addAll(0, ImmutableList.of(original));
+      assertThat(sorter.numSpilledRuns()).isEqualTo(1);
+      assertThat(sorter.sortedMsgs()).containsExactly(original);
+    }
+  }
+
+  private static SoyMsg msg(long id, String file, int line) {
+    return SoyMsg.builder()
+        .setId(id)
+        .setDesc("desc")
+        .addSourceLocation(location(file, line), "ns.t")
+        .setParts(ImmutableList.of(SoyMsgRawTextPart.of("msg " + id)))
+        .build();
+  }
+
+  private static SourceLocation location(String file, int line) {
+    return new SourceLocation(SourceFilePath.create(file), line, 1, line, 10);
+  }
+}
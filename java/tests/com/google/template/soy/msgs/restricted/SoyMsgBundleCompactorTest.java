@@ -147,6 +147,9 @@ public class SoyMsgBundleCompactorTest {
     assertWithMessage("SoyMsgSelectPart should be interned")
         .that(yyMsgBundle.getMsg(358).getParts().get(0))
         .isSameInstanceAs(xxMsgBundle.getMsg(358).getParts().get(0));
+    assertWithMessage("Part lists should be interned")
+        .that(yyMsgBundle.getMsg(159).getParts())
+        .isSameInstanceAs(xxMsgBundle.getMsg(159).getParts());
 
     SoyMsgSelectPart select1 = (SoyMsgSelectPart) xxMsgBundle.getMsg(265).getParts().get(0);
     SoyMsgSelectPart select2 = (SoyMsgSelectPart) xxMsgBundle.getMsg(266).getParts().get(0);
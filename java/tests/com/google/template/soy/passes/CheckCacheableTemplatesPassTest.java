@@ -0,0 +1,100 @@
+/*
+ * Copyright 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.template.soy.passes;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.Iterables;
+import com.google.template.soy.error.ErrorReporter;
+import com.google.template.soy.testing.SoyFileSetParserBuilder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link CheckCacheableTemplatesPass}. */
+@RunWith(JUnit4.class)
+public final class CheckCacheableTemplatesPassTest {
+
+  @Test
+  public void testPureTemplate() {
+    SoyFileSetParserBuilder.forFileContents(
+            "{namespace ns}\n"
+                + "{template .foo cacheable=\"true\"}\n"
+                + "  {@param p : string}\n"
+                + "  {call .bar}{param p : $p + '!' /}{/call}\n"
+                + "{/template}\n"
+                + "{template .bar}\n"
+                + "  {@param p : string}\n"
+                + "  {$p} {max(1, 2)}\n"
+                + "{/template}")
+        .errorReporter(ErrorReporter.exploding())
+        .parse();
+  }
+
+  @Test
+  public void testInjectedParam() {
+    assertThat(
+            getOnlyError(
+                "{namespace ns}\n"
+                    + "{template .foo cacheable=\"true\"}\n"
+                    + "  {@inject p : string}\n"
+                    + "  {$p}\n"
+                    + "{/template}"))
+        .isEqualTo(
+            "Cacheable templates can't depend on injected params, but 'ns.foo' uses injected"
+                + " param 'p'.");
+  }
+
+  @Test
+  public void testImpureFunction() {
+    assertThat(
+            getOnlyError(
+                "{namespace ns}\n"
+                    + "{template .foo cacheable=\"true\"}\n"
+                    + "  {randomInt(10)}\n"
+                    + "{/template}"))
+        .isEqualTo(
+            "Cacheable templates can't call functions that aren't pure, but 'ns.foo' uses"
+                + " 'randomInt'.");
+  }
+
+  @Test
+  public void testTransitiveCallees() {
+    assertThat(
+            getOnlyError(
+                "{namespace ns}\n"
+                    + "{template .foo cacheable=\"true\"}\n"
+                    + "  {call .bar /}\n"
+                    + "{/template}\n"
+                    + "{template .bar}\n"
+                    + "  {delcall ns.baz /}\n"
+                    + "{/template}\n"
+                    + "{deltemplate ns.baz}\n"
+                    + "  {@inject p : string}\n"
+                    + "  {$p}\n"
+                    + "{/deltemplate}"))
+        .isEqualTo(
+            "Cacheable templates can't depend on injected params, but 'ns.foo' calls a template"
+                + " that uses injected param 'p'.");
+  }
+
+  private static String getOnlyError(String fileContents) {
+    ErrorReporter errorReporter = ErrorReporter.createForTest();
+    SoyFileSetParserBuilder.forFileContents(fileContents).errorReporter(errorReporter).parse();
+    return Iterables.getOnlyElement(errorReporter.getErrors()).message();
+  }
+}
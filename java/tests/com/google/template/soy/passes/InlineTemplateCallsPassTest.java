@@ -0,0 +1,153 @@
+/*
+ * Copyright 2021 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.template.soy.passes;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import com.google.template.soy.soytree.SoyFileNode;
+import com.google.template.soy.soytree.SoyFileSetNode;
+import com.google.template.soy.soytree.TemplateNode;
+import com.google.template.soy.testing.SoyFileSetParserBuilder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class InlineTemplateCallsPassTest {
+
+  @Test
+  public void testInlinesSmallPrivateTemplate() {
+    String caller =
+        runPass(
+            "{template .caller}",
+            "  {call .callee}{param p: 'a' /}{/call}",
+            "{/template}",
+            "{template .callee visibility=\"private\"}",
+            "  {@param p: string}",
+            "  <b>{$p}</b>",
+            "{/template}");
+    assertThat(caller).doesNotContain("{call");
+    assertThat(caller).contains("{let $__internal_soy_inlined_p_");
+    assertThat(caller).contains("<b>");
+  }
+
+  @Test
+  public void testInlinesContentParamsAndDefaults() {
+    String caller =
+        runPass(
+            "{template .caller}",
+            "  {call .callee}{param c kind=\"html\"}<i>x</i>{/param}{/call}",
+            "{/template}",
+            "{template .callee visibility=\"private\"}",
+            "  {@param c: html}",
+            "  {@param d:= 'default'}",
+            "  {$c}{$d}",
+            "{/template}");
+    assertThat(caller).doesNotContain("{call");
+    assertThat(caller).contains("kind=\"html\"}<i>x</i>{/let}");
+    assertThat(caller).contains(": 'default' /}");
+  }
+
+  @Test
+  public void testDoesNotInlinePublicTemplates() {
+    String caller =
+        runPass(
+            "{template .caller}",
+            "  {call .callee /}",
+            "{/template}",
+            "{template .callee}",
+            "  hello",
+            "{/template}");
+    assertThat(caller).contains("{call .callee");
+  }
+
+  @Test
+  public void testDoesNotInlineTemplatesWithCallsOrLocals() {
+    String caller =
+        runPass(
+            "{template .caller}",
+            "  {call .callee /}",
+            "  {call .other /}",
+            "{/template}",
+            "{template .callee visibility=\"private\"}",
+            "  {call .other /}",
+            "{/template}",
+            "{template .other visibility=\"private\"}",
+            "  {let $x: 1 /}{$x}",
+            "{/template}");
+    assertThat(caller).contains("{call .callee");
+    assertThat(caller).contains("{call .other");
+  }
+
+  @Test
+  public void testDoesNotOverrideDefaultsForPassedParams() {
+    String caller =
+        runPass(
+            "{template .caller}",
+            "  {@param p: string}",
+            "  {call .callee}{param p: $p /}{/call}",
+            "{/template}",
+            "{template .callee visibility=\"private\"}",
+            "  {@param p:= 'default'}",
+            "  {$p}",
+            "{/template}");
+    assertThat(caller).contains("{call .callee");
+  }
+
+  @Test
+  public void testBailingOutOnALaterParamLeavesTheCallIntact() {
+    String caller =
+        runPass(
+            "{template .caller}",
+            "  {call .callee}{param a: 'x' /}{param p: 'y' /}{/call}",
+            "{/template}",
+            "{template .callee visibility=\"private\"}",
+            "  {@param a: string}",
+            "  {@param p:= 'default'}",
+            "  {$a}{$p}",
+            "{/template}");
+    assertThat(caller).contains("{call .callee}{param a: 'x' /}{param p: 'y' /}{/call}");
+  }
+
+  @Test
+  public void testDoesNotInlineLargeTemplates() {
+    String caller =
+        runPass(
+            "{template .caller}",
+            "  {call .callee /}",
+            "{/template}",
+            "{template .callee visibility=\"private\"}",
+            "  {@param? p: string|null}",
+            "  {if $p}a{elseif $p == 'b'}b{elseif $p == 'c'}c{elseif $p == 'd'}d{else}e{/if}",
+            "{/template}");
+    assertThat(caller).contains("{call .callee");
+  }
+
+  /** Runs the pass on the given file and returns the source string of the first template body. */
+  private static String runPass(String... lines) {
+    String soyFile = "{namespace ns}\n" + Joiner.on('\n').join(lines);
+    SoyFileSetNode fileSet =
+        SoyFileSetParserBuilder.forFileContents(soyFile).runOptimizer(false).parse().fileSet();
+    SoyFileNode file = fileSet.getChild(0);
+    new InlineTemplateCallsPass().run(ImmutableList.of(file), fileSet.getNodeIdGenerator());
+    StringBuilder sb = new StringBuilder();
+    ((TemplateNode) file.getChild(0)).appendSourceStringForChildren(sb);
+    return sb.toString();
+  }
+}
@@ -23,6 +23,7 @@ import static org.junit.Assert.assertEquals;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableSet;
 import com.google.template.soy.data.Dir;
+import com.google.template.soy.data.LoggingAdvisingAppendable;
 import com.google.template.soy.data.SanitizedContent;
 import com.google.template.soy.data.SanitizedContent.ContentKind;
 import com.google.template.soy.data.SoyValue;
@@ -33,6 +34,7 @@ import com.google.template.soy.data.restricted.IntegerData;
 import com.google.template.soy.data.restricted.NullData;
 import com.google.template.soy.data.restricted.StringData;
 import com.google.template.soy.shared.internal.TagWhitelist.OptionalSafeTag;
+import java.io.IOException;
 import java.util.EnumSet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -684,6 +686,68 @@ public class SanitizersTest {
     assertThat(cleanHtml("&<hr>amp;")).isEqualTo("&amp;amp;");
   }
 
+  @Test
+  public void testCleanHtmlStreaming() throws IOException {
+    String[] inputs = {
+      "Hello, World!",
+      "<b>Hello, World!</b>",
+      "<b onclick='evil()'>Hello, World!</b>",
+      "<b>Hello, <br/> World!",
+      "Hello, <br",
+      "Hello, <",
+      "Hello, </",
+      "Hello, < World",
+      "<img/onload=alert(1337)>",
+      "A<img/onload=alert(1337)>B",
+      "<<img/onload=alert(1337)>img onload=alert(1337)",
+      "<ul><li>1<li>2</ul>",
+      "<li>orphan</li><ol><li>nested</li></ol>",
+      "<table><tr><td>",
+      "&<hr>amp;",
+      "&&<b>&</b>&",
+      "<b title=\"a > b\">quoted</b>",
+      "<b title='it\"s'>mixed quotes</b>",
+      "<b title=\"unterminated>text <i>italic</i>",
+      "<!-- comment --> <!DOCTYPE html>",
+      "<b dir='RTL' class=x>dir</b><i dir=\"bogus\">x</i>",
+      "</b>unopened close",
+      "< b>not a tag</ b>",
+      "<b\n>newline</b\t>",
+      "\u00a0\"quotes\" & 'apostrophes'",
+    };
+    for (String input : inputs) {
+      String expected = Sanitizers.cleanHtml(input).getContent();
+
+      LoggingAdvisingAppendable whole = LoggingAdvisingAppendable.buffering();
+      LoggingAdvisingAppendable streaming =
+          Sanitizers.cleanHtmlStreaming(whole, ImmutableSet.of())
+              .setKindAndDirectionality(ContentKind.TEXT);
+      streaming.append(input);
+      streaming.flushBuffers(0);
+      assertWithMessage(input).that(whole.toString()).isEqualTo(expected);
+
+      LoggingAdvisingAppendable charByChar = LoggingAdvisingAppendable.buffering();
+      streaming = Sanitizers.cleanHtmlStreaming(charByChar, ImmutableSet.of());
+      for (int i = 0; i < input.length(); i++) {
+        streaming.append(input.charAt(i));
+      }
+      streaming.flushBuffers(0);
+      assertWithMessage(input).that(charByChar.toString()).isEqualTo(expected);
+    }
+  }
+
+  @Test
+  public void testCleanHtmlStreaming_largeUnterminatedTag() throws IOException {
+    String input = "<b title=\"" + Strings.repeat("x", 1_000_000) + " & more";
+    LoggingAdvisingAppendable output = LoggingAdvisingAppendable.buffering();
+    LoggingAdvisingAppendable streaming = Sanitizers.cleanHtmlStreaming(output, ImmutableSet.of());
+    streaming.append(input);
+    // The unterminated tag isn't buffered until the end.
+    assertThat(output.toString().length()).isGreaterThan(900_000);
+    streaming.flushBuffers(0);
+    assertThat(output.toString()).isEqualTo(Sanitizers.cleanHtml(input).getContent());
+  }
+
   @Test
   public void testCleanHtml() {
     assertThat(Sanitizers.cleanHtml("<em>f<object>oo</em>"))
@@ -111,7 +111,7 @@ public class TemplateNodeTest {
     assertThat(Iterables.getOnlyElement(errorReporter.getErrors()).message())
         .isEqualTo(
             "Unsupported attribute 'autoescape' for 'template' tag, expected one of [visibility, "
-                + "kind, requirecss, cssbase, stricthtml, whitespace, component].");
+                + "cacheable, kind, requirecss, cssbase, stricthtml, whitespace, component].");
   }
 
   @Test
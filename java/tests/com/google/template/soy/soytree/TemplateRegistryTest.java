@@ -36,6 +36,8 @@ import com.google.template.soy.exprtree.GlobalNode;
 import com.google.template.soy.exprtree.TemplateLiteralNode;
 import com.google.template.soy.shared.SoyGeneralOptions;
 import com.google.template.soy.testing.SoyFileSetParserBuilder;
+import com.google.template.soy.types.StringType;
+import com.google.template.soy.types.TemplateType;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -142,6 +144,69 @@ public final class TemplateRegistryTest {
     assertThatRegistry(registry).doesNotContainDelTemplate("ns.bar.baz");
   }
 
+  @Test
+  public void testDependencyTemplateTypes() {
+    ParseResult dependencyParseResult =
+        SoyFileSetParserBuilder.forSuppliers(
+                SoyFileSupplier.Factory.create(
+                    "{namespace ns}\n"
+                        + "/** Simple template. */\n"
+                        + "{template .foo}\n"
+                        + "  {@param a: string}\n"
+                        + "  {@param? b: int}\n"
+                        + "  {$a}{$b}\n"
+                        + "{/template}\n"
+                        + "/** Simple deltemplate. */\n"
+                        + "{deltemplate bar.baz kind=\"text\"}\n"
+                        + "{/deltemplate}",
+                    FILE_PATH))
+            .parse();
+    CompilationUnitAndKind dependencyCompilationUnit =
+        CompilationUnitAndKind.create(
+            SoyFileKind.DEP,
+            SourceFilePath.create("example_header.soy"),
+            TemplateMetadataSerializer.compilationUnitFromFileSet(
+                dependencyParseResult.fileSet(), dependencyParseResult.registry()));
+
+    TemplateRegistry registry =
+        SoyFileSetParserBuilder.forSuppliers(
+                SoyFileSupplier.Factory.create(
+                    "{namespace ns2}\n"
+                        + "/** Simple template. */\n"
+                        + "{template .main}\n"
+                        + "{/template}",
+                    SourceFilePath.create("main.soy")))
+            .addCompilationUnits(ImmutableList.of(dependencyCompilationUnit))
+            .build()
+            .parse()
+            .registry();
+
+    TemplateMetadata foo = registry.getBasicTemplateOrElement("ns.foo");
+    assertThat(foo.getTemplateKind()).isEqualTo(TemplateType.TemplateKind.BASIC);
+    // Neither building the registry nor comparing and hashing the metadata builds the signature.
+    TemplateMetadata fooCopy = foo.toBuilder().build();
+    assertThat(fooCopy).isEqualTo(foo);
+    assertThat(fooCopy.hashCode()).isEqualTo(foo.hashCode());
+    assertThat(foo.getLazyTemplateType().isBuilt()).isFalse();
+
+    TemplateType fooType = foo.getTemplateType();
+    assertThat(foo.getLazyTemplateType().isBuilt()).isTrue();
+    assertThat(fooType.getTemplateKind()).isEqualTo(TemplateType.TemplateKind.BASIC);
+    assertThat(fooType.getParameters().stream().map(TemplateType.Parameter::getName))
+        .containsExactly("a", "b")
+        .inOrder();
+    assertThat(fooType.getParameters().get(0).getType()).isEqualTo(StringType.getInstance());
+    // The signature is built once and then reused.
+    assertThat(foo.getTemplateType()).isSameInstanceAs(fooType);
+
+    TemplateMetadata baz =
+        Iterables.getOnlyElement(
+            registry.getDelTemplateSelector().delTemplateNameToValues().get("bar.baz"));
+    assertThat(baz.getTemplateKind()).isEqualTo(TemplateType.TemplateKind.DELTEMPLATE);
+    assertThat(baz.getTemplateType().getContentKind().getSanitizedContentKind())
+        .isEqualTo(SanitizedContentKind.TEXT);
+  }
+
   @Test
   public void testBasicTemplatesWithSameNamesInDifferentFiles() {
     TemplateRegistry registry =
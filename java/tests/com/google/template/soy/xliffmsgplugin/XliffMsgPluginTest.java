@@ -18,20 +18,28 @@ package com.google.template.soy.xliffmsgplugin;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.common.io.Files;
 import com.google.common.io.Resources;
 import com.google.template.soy.SoyFileSet;
 import com.google.template.soy.error.ErrorReporter;
 import com.google.template.soy.msgs.SoyMsgBundle;
+import com.google.template.soy.msgs.SoyMsgBundleHandler;
 import com.google.template.soy.msgs.SoyMsgBundleHandler.OutputFileOptions;
 import com.google.template.soy.msgs.restricted.SoyMsg;
+import com.google.template.soy.msgs.restricted.SoyMsgBundleCompactor;
 import com.google.template.soy.msgs.restricted.SoyMsgPart;
 import com.google.template.soy.msgs.restricted.SoyMsgPlaceholderPart;
 import com.google.template.soy.msgs.restricted.SoyMsgRawTextPart;
+import java.io.File;
 import java.net.URL;
 import java.util.List;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
@@ -41,6 +49,7 @@ import org.junit.runners.JUnit4;
  */
 @RunWith(JUnit4.class)
 public final class XliffMsgPluginTest {
+  @Rule public final TemporaryFolder temp = new TemporaryFolder();
 
   @Test
   public void testGenerateExtractedMsgsFile() throws Exception {
@@ -121,4 +130,31 @@ public final class XliffMsgPluginTest {
 
     assertEquals(8577643341484516105L, msgs.get(4).getId());
   }
+
+  @Test
+  public void testCreateCompactedFromFiles() throws Exception {
+    String translated =
+        Resources.toString(
+            Resources.getResource(
+                XliffMsgPluginTest.class, "test_data/test-v2_translated_x-zz.xlf"),
+            UTF_8);
+    File zzFile = temp.newFile("x-zz.xlf");
+    Files.asCharSink(zzFile, UTF_8).write(translated);
+    File yyFile = temp.newFile("x-yy.xlf");
+    Files.asCharSink(yyFile, UTF_8)
+        .write(translated.replace("target-language=\"x-zz\"", "target-language=\"x-yy\""));
+
+    List<SoyMsgBundle> bundles =
+        new SoyMsgBundleHandler(new XliffMsgPlugin())
+            .createCompactedFromFiles(
+                ImmutableList.of(zzFile, yyFile), new SoyMsgBundleCompactor(), 2);
+
+    assertEquals(2, bundles.size());
+    assertEquals("x-zz", bundles.get(0).getLocaleString());
+    assertEquals("x-yy", bundles.get(1).getLocaleString());
+    // Identical translations in different locales share their parts.
+    assertSame(
+        bundles.get(0).getMsg(2764913337766789440L).getParts(),
+        bundles.get(1).getMsg(2764913337766789440L).getParts());
+  }
 }